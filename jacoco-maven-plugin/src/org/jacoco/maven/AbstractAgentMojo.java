@@ -148,6 +148,43 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 	 */
 	@Parameter(property = "jacoco.classDumpDir")
 	File classDumpDir;
+	/**
+	 * If a directory is specified for this parameter the JaCoCo agent caches
+	 * the instrumented class files at the given location. On later starts
+	 * cached classes are not instrumented again, which reduces the startup
+	 * time of applications with many classes.
+	 *
+	 * @since 0.8.8
+	 */
+	@Parameter(property = "jacoco.instrCacheDir")
+	File instrCacheDir;
+	/**
+	 * Number of probe arrays per class. With more than one stripe threads
+	 * record executions in separate probe arrays, which avoids contention on
+	 * code executed by many threads concurrently. The value must be a power of
+	 * two not greater than 64.
+	 *
+	 * @since 0.8.8
+	 */
+	@Parameter(property = "jacoco.probeStripes")
+	Integer probeStripes;
+	/**
+	 * If set to true probes only write to the probe array if they have not
+	 * been executed before, which avoids repeated writes in hot code.
+	 *
+	 * @since 0.8.8
+	 */
+	@Parameter(property = "jacoco.writeOnceProbes")
+	Boolean writeOnceProbes;
+	/**
+	 * If set to true probes count their executions and the execution counts
+	 * are written with the execution data. The HTML report shows the
+	 * execution count of every source line.
+	 *
+	 * @since 0.8.8
+	 */
+	@Parameter(property = "jacoco.probeCounters")
+	Boolean probeCounters;
 	/**
 	 * If set to true the agent exposes functionality via JMX.
 	 */
@@ -225,6 +262,18 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 		if (classDumpDir != null) {
 			agentOptions.setClassDumpDir(classDumpDir.getAbsolutePath());
 		}
+		if (instrCacheDir != null) {
+			agentOptions.setInstrCacheDir(instrCacheDir.getAbsolutePath());
+		}
+		if (probeStripes != null) {
+			agentOptions.setProbeStripes(probeStripes.intValue());
+		}
+		if (writeOnceProbes != null) {
+			agentOptions.setWriteOnceProbes(writeOnceProbes.booleanValue());
+		}
+		if (probeCounters != null) {
+			agentOptions.setProbeCounters(probeCounters.booleanValue());
+		}
 		if (jmx != null) {
 			agentOptions.setJmx(jmx.booleanValue());
 		}
@@ -42,8 +42,8 @@ public abstract class AbstractReportMojo extends AbstractMojo
 	String outputEncoding;
 
 	/**
-	 * A list of report formats to generate. Supported formats are HTML, XML and
-	 * CSV. Defaults to all formats if no values are given.
+	 * A list of report formats to generate. Supported formats are HTML, XML, CSV
+	 * and BINARY. Defaults to HTML, XML and CSV if no values are given.
 	 *
 	 * @since 0.8.7
 	 */
@@ -86,6 +86,37 @@ public abstract class AbstractReportMojo extends AbstractMojo
 	@Parameter
 	List<String> excludes;
 
+	/**
+	 * Number of threads used to analyze class files and to render HTML pages.
+	 * With more than one thread class files are analyzed and the HTML pages of
+	 * source files and classes are rendered concurrently.
+	 *
+	 * @since 0.8.8
+	 */
+	@Parameter(property = "jacoco.threads", defaultValue = "1")
+	int threads;
+
+	/**
+	 * Directory where analysis results of class files are cached. Repeated
+	 * report creation for unchanged class files reuses the cached results.
+	 * By default no cache is used.
+	 *
+	 * @since 0.8.8
+	 */
+	@Parameter(property = "jacoco.cacheDirectory")
+	File cacheDirectory;
+
+	/**
+	 * Only write modified pages of the HTML report. Checksums of all pages are
+	 * recorded in the file <code>jacoco.manifest</code> in the output
+	 * directory. Pages with unchanged content are not written again, pages
+	 * which are not part of the report any more are removed.
+	 *
+	 * @since 0.8.8
+	 */
+	@Parameter(property = "jacoco.incremental", defaultValue = "false")
+	boolean incremental;
+
 	/**
 	 * Flag used to suppress execution.
 	 */
@@ -188,6 +219,8 @@ public abstract class AbstractReportMojo extends AbstractMojo
 			throws MavenReportException {
 		try {
 			final ReportSupport support = new ReportSupport(getLog());
+			support.setThreads(threads);
+			support.setCacheDirectory(cacheDirectory);
 			loadExecutionData(support);
 			addFormatters(support, locale);
 			final IReportVisitor visitor = support.initRootVisitor();
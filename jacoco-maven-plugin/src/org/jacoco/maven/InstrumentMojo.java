@@ -12,13 +12,13 @@
  *******************************************************************************/
 package org.jacoco.maven;
 
+import static java.lang.String.format;
+
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -26,9 +26,9 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.plexus.util.FileUtils;
-import org.codehaus.plexus.util.IOUtil;
 import org.jacoco.core.instr.Instrumenter;
 import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
+import org.jacoco.core.tools.IncrementalInstrumenter;
 
 /**
  * Performs offline instrumentation. Note that after execution of test you must
@@ -63,6 +63,29 @@ public class InstrumentMojo extends AbstractJacocoMojo {
 	@Parameter
 	private List<String> excludes;
 
+	/**
+	 * Number of threads used to instrument class files. With more than one
+	 * thread class files are instrumented concurrently.
+	 *
+	 * @since 0.8.8
+	 */
+	@Parameter(property = "jacoco.threads", defaultValue = "1")
+	int threads;
+
+	/**
+	 * If set to <code>true</code> only class files which have been modified
+	 * since the last execution are instrumented. Checksums of original and
+	 * instrumented class files are recorded in the manifest file
+	 * <code>generated-classes/jacoco.manifest</code>. Class files which are
+	 * not instrumented any more are restored. Note that class files which
+	 * have been restored by the "restore-instrumented-classes" goal are
+	 * instrumented again.
+	 *
+	 * @since 0.8.8
+	 */
+	@Parameter(property = "jacoco.incremental", defaultValue = "false")
+	boolean incremental;
+
 	@Override
 	public void executeMojo()
 			throws MojoExecutionException, MojoFailureException {
@@ -90,25 +113,48 @@ public class InstrumentMojo extends AbstractJacocoMojo {
 
 		final Instrumenter instrumenter = new Instrumenter(
 				new OfflineInstrumentationAccessGenerator());
-		for (final String fileName : fileNames) {
-			if (fileName.endsWith(".class")) {
-				final File source = new File(classesDir, fileName);
-				final File backup = new File(originalClassesDir, fileName);
-				InputStream input = null;
-				OutputStream output = null;
-				try {
-					FileUtils.copyFile(source, backup);
-					input = new FileInputStream(backup);
-					output = new FileOutputStream(source);
-					instrumenter.instrument(input, output, source.getPath());
-				} catch (final IOException e2) {
-					throw new MojoExecutionException(
-							"Unable to instrument file.", e2);
-				} finally {
-					IOUtil.close(input);
-					IOUtil.close(output);
+		try {
+			instrumenter.setThreads(threads);
+		} catch (final IllegalArgumentException e) {
+			throw new MojoExecutionException(e.getMessage(), e);
+		}
+		final IncrementalInstrumenter incrementalInstrumenter = new IncrementalInstrumenter(
+				instrumenter,
+				new File(originalClassesDir.getParentFile(), "jacoco.manifest")) {
+			@Override
+			protected void removeOutput(final File backup, final File target)
+					throws IOException {
+				FileUtils.copyFile(backup, target);
+			}
+		};
+		// Original class files are backed up first and then instrumented in
+		// place
+		final Map<File, File> files = new LinkedHashMap<File, File>();
+		try {
+			for (final String fileName : fileNames) {
+				if (fileName.endsWith(".class")) {
+					final File source = new File(classesDir, fileName);
+					final File backup = new File(originalClassesDir, fileName);
+					if (!incremental || !incrementalInstrumenter
+							.isUpToDate(backup, source)) {
+						FileUtils.copyFile(source, backup);
+					}
+					files.put(backup, source);
 				}
 			}
+			if (incremental) {
+				incrementalInstrumenter.instrumentAll(files);
+				getLog().info(format(
+						"%s class files unchanged, %s class files restored",
+						Integer.valueOf(
+								incrementalInstrumenter.getSkippedFiles()),
+						Integer.valueOf(
+								incrementalInstrumenter.getRemovedFiles())));
+			} else {
+				instrumenter.instrumentAll(files);
+			}
+		} catch (final IOException e2) {
+			throw new MojoExecutionException("Unable to instrument file.", e2);
 		}
 	}
 
@@ -14,6 +14,7 @@ package org.jacoco.maven;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -24,6 +25,7 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.shared.model.fileset.FileSet;
 import org.apache.maven.shared.model.fileset.util.FileSetManager;
 import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
 
 /**
  * Mojo for merging a set of execution data files (*.exec) into a single file
@@ -60,6 +62,25 @@ public class MergeMojo extends AbstractJacocoMojo {
 	@Parameter(required = true)
 	private List<FileSet> fileSets;
 
+	/**
+	 * Merges the execution data files on the fly after sorting each of them
+	 * by class id, instead of loading all execution data into memory. This
+	 * reduces memory consumption when a large number of files is merged.
+	 *
+	 * @since 0.8.8
+	 */
+	@Parameter(property = "jacoco.streaming", defaultValue = "false")
+	private boolean streaming;
+
+	/**
+	 * Number of threads used to sort the execution data files in streaming
+	 * mode.
+	 *
+	 * @since 0.8.8
+	 */
+	@Parameter(property = "jacoco.threads", defaultValue = "1")
+	private int threads;
+
 	@Override
 	protected void executeMojo()
 			throws MojoExecutionException, MojoFailureException {
@@ -78,33 +99,69 @@ public class MergeMojo extends AbstractJacocoMojo {
 	}
 
 	private void executeMerge() throws MojoExecutionException {
+		if (streaming) {
+			executeStreamingMerge();
+			return;
+		}
 		final ExecFileLoader loader = new ExecFileLoader();
 
 		load(loader);
 		save(loader);
 	}
 
-	private void load(final ExecFileLoader loader)
-			throws MojoExecutionException {
+	private List<File> getInputFiles() {
+		final List<File> files = new ArrayList<File>();
 		final FileSetManager fileSetManager = new FileSetManager(getLog());
 		for (final FileSet fileSet : fileSets) {
 			for (final String includedFilename : fileSetManager
 					.getIncludedFiles(fileSet)) {
 				final File inputFile = new File(fileSet.getDirectory(),
 						includedFilename);
-				if (inputFile.isDirectory()) {
-					continue;
-				}
-				try {
-					getLog().info("Loading execution data file "
-							+ inputFile.getAbsolutePath());
-					loader.load(inputFile);
-				} catch (final IOException e) {
-					throw new MojoExecutionException(
-							"Unable to read " + inputFile.getAbsolutePath(), e);
+				if (!inputFile.isDirectory()) {
+					files.add(inputFile);
 				}
 			}
 		}
+		return files;
+	}
+
+	private void load(final ExecFileLoader loader)
+			throws MojoExecutionException {
+		for (final File inputFile : getInputFiles()) {
+			try {
+				getLog().info("Loading execution data file "
+						+ inputFile.getAbsolutePath());
+				loader.load(inputFile);
+			} catch (final IOException e) {
+				throw new MojoExecutionException(
+						"Unable to read " + inputFile.getAbsolutePath(), e);
+			}
+		}
+	}
+
+	private void executeStreamingMerge() throws MojoExecutionException {
+		final List<File> inputFiles = getInputFiles();
+		if (inputFiles.isEmpty()) {
+			getLog().info(MSG_SKIPPING);
+			return;
+		}
+		final ExecFileMerger merger = new ExecFileMerger();
+		merger.setThreads(threads);
+		for (final File inputFile : inputFiles) {
+			getLog().info("Loading execution data file "
+					+ inputFile.getAbsolutePath());
+			merger.add(inputFile);
+		}
+		getLog().info("Writing merged execution data to "
+				+ destFile.getAbsolutePath());
+		try {
+			merger.merge(destFile, false);
+		} catch (final IOException e) {
+			throw new MojoExecutionException(
+					"Unable to merge execution data into "
+							+ destFile.getAbsolutePath(),
+					e);
+		}
 	}
 
 	private void save(final ExecFileLoader loader)
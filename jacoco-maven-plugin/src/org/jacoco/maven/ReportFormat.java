@@ -19,6 +19,8 @@ import java.util.Locale;
 
 import org.jacoco.report.FileMultiReportOutput;
 import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.IncrementalFileMultiReportOutput;
+import org.jacoco.report.binary.BinaryFormatter;
 import org.jacoco.report.csv.CSVFormatter;
 import org.jacoco.report.html.HTMLFormatter;
 import org.jacoco.report.xml.XMLFormatter;
@@ -38,11 +40,14 @@ public enum ReportFormat {
 			final HTMLFormatter htmlFormatter = new HTMLFormatter();
 			htmlFormatter.setOutputEncoding(mojo.outputEncoding);
 			htmlFormatter.setLocale(locale);
+			htmlFormatter.setThreads(mojo.threads);
 			if (mojo.footer != null) {
 				htmlFormatter.setFooterText(mojo.footer);
 			}
-			return htmlFormatter.createVisitor(
-					new FileMultiReportOutput(mojo.getOutputDirectory()));
+			final File outputDirectory = mojo.getOutputDirectory();
+			return htmlFormatter.createVisitor(mojo.incremental
+					? new IncrementalFileMultiReportOutput(outputDirectory)
+					: new FileMultiReportOutput(outputDirectory));
 		}
 	},
 
@@ -72,6 +77,19 @@ public enum ReportFormat {
 			return csv.createVisitor(new FileOutputStream(
 					new File(mojo.getOutputDirectory(), "jacoco.csv")));
 		}
+	},
+
+	/**
+	 * Single-file binary report.
+	 */
+	BINARY() {
+		@Override
+		IReportVisitor createVisitor(final AbstractReportMojo mojo,
+				final Locale locale) throws IOException {
+			final BinaryFormatter binary = new BinaryFormatter();
+			return binary.createVisitor(new FileOutputStream(
+					new File(mojo.getOutputDirectory(), "jacoco.bin")));
+		}
 	};
 
 	abstract IReportVisitor createVisitor(AbstractReportMojo mojo,
@@ -27,7 +27,7 @@ import java.util.List;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.jacoco.core.analysis.Analyzer;
-import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.CompactCoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.internal.analysis.diff.DiffClassRegistry;
@@ -58,6 +58,8 @@ final class ReportSupport {
 	private final Log log;
 	private final ExecFileLoader loader;
 	private final List<IReportVisitor> formatters;
+	private int threads = 1;
+	private File cacheDirectory;
 
 	/**
 	 * Construct a new instance with the given log output.
@@ -71,6 +73,26 @@ final class ReportSupport {
 		this.formatters = new ArrayList<IReportVisitor>();
 	}
 
+	/**
+	 * Sets the number of threads used to analyze class files.
+	 *
+	 * @param threads
+	 *            number of analysis threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the directory where analysis results of class files are cached.
+	 *
+	 * @param cacheDirectory
+	 *            cache directory or <code>null</code>
+	 */
+	public void setCacheDirectory(final File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
 	/**
 	 * Loads the given execution data file.
 	 *
@@ -155,7 +177,7 @@ final class ReportSupport {
 			final String bundleName, final MavenProject project,
 			final List<String> includes, final List<String> excludes,
 			final ISourceFileLocator locator) throws IOException {
-		final CoverageBuilder builder = new CoverageBuilder();
+		final CompactCoverageBuilder builder = new CompactCoverageBuilder();
 		final File classesDir = new File(
 				project.getBuild().getOutputDirectory());
 
@@ -164,10 +186,10 @@ final class ReportSupport {
 		if (classesDir.isDirectory()) {
 			final Analyzer analyzer = new Analyzer(
 					loader.getExecutionDataStore(), builder);
+			analyzer.setThreads(threads);
+			analyzer.setCacheDirectory(cacheDirectory);
 			final FileFilter filter = new FileFilter(includes, excludes);
-			for (final File file : filter.getFiles(classesDir)) {
-				analyzer.analyzeAll(file);
-			}
+			analyzer.analyzeAll(filter.getFiles(classesDir));
 		}
 
 		final IBundleCoverage bundle = builder.getBundle(bundleName);
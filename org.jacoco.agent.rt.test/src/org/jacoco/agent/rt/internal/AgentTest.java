@@ -28,6 +28,7 @@ import javax.management.ObjectName;
 
 import org.jacoco.agent.rt.internal.output.FileOutput;
 import org.jacoco.agent.rt.internal.output.IAgentOutput;
+import org.jacoco.agent.rt.internal.output.NioServerOutput;
 import org.jacoco.agent.rt.internal.output.NoneOutput;
 import org.jacoco.agent.rt.internal.output.TcpClientOutput;
 import org.jacoco.agent.rt.internal.output.TcpServerOutput;
@@ -70,6 +71,10 @@ public class AgentTest implements IExceptionLogger, IAgentOutput {
 		assertEquals(TcpServerOutput.class,
 				agent.createAgentOutput().getClass());
 
+		options.setOutput(OutputMode.nioserver);
+		assertEquals(NioServerOutput.class,
+				agent.createAgentOutput().getClass());
+
 		options.setOutput(OutputMode.tcpclient);
 		assertEquals(TcpClientOutput.class,
 				agent.createAgentOutput().getClass());
@@ -324,6 +329,17 @@ public class AgentTest implements IExceptionLogger, IAgentOutput {
 		assertTrue(probes[0]);
 	}
 
+	@Test
+	public void removeInstrumentation_should_fail_when_not_attached() {
+		Agent agent = createAgent();
+		try {
+			agent.removeInstrumentation();
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			assertEquals("JaCoCo agent not attached.", e.getMessage());
+		}
+	}
+
 	@Test
 	public void dump_should_trigger_writeExecutionData_with_reset()
 			throws Exception {
@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.jacoco.agent.rt.internal;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -25,20 +26,35 @@ import java.lang.instrument.IllegalClassFormatException;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import java.security.cert.Certificate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.jacoco.core.JaCoCo;
+import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.runtime.AbstractRuntime;
+import org.jacoco.core.internal.instr.InstrSupport;
 import org.jacoco.core.runtime.AgentOptions;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 /**
  * Unit tests for {@link CoverageTransformer}.
  */
 public class CoverageTransformerTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private ExceptionRecorder recorder;
 
 	private AgentOptions options;
@@ -233,10 +249,123 @@ public class CoverageTransformerTest {
 				protectionDomain, getClassData(target)));
 	}
 
+	@Test
+	public void testRetransformedClass() throws Exception {
+		CoverageTransformer t = new CoverageTransformer(runtime, options, true,
+				recorder);
+		final Class<?> target = JaCoCo.class;
+		final byte[] original = getClassData(target);
+
+		final byte[] instrumented = t.transform(classLoader,
+				"org/jacoco/core/JaCoCo", target, protectionDomain, original);
+
+		assertFalse(Arrays.equals(original, instrumented));
+		// Retransformation does not allow to add members:
+		assertEquals(getMembers(original), getMembers(instrumented));
+	}
+
+	@Test
+	public void testRetransformedClassUsesIdOfOriginalClassFile()
+			throws Exception {
+		CoverageTransformer t = new CoverageTransformer(runtime, options, true,
+				recorder);
+		final Class<?> target = JaCoCo.class;
+		final byte[] original = getClassData(target);
+		// The definition passed by the VM might be reconstituted:
+		final ClassWriter writer = new ClassWriter(0);
+		new ClassReader(original).accept(writer, ClassReader.SKIP_DEBUG);
+		final byte[] reconstituted = writer.toByteArray();
+
+		final byte[] instrumented = t.transform(classLoader,
+				"org/jacoco/core/JaCoCo", target, protectionDomain,
+				reconstituted);
+
+		assertEquals(CRC64.classId(original), runtime.classId);
+		assertNull(getSourceFile(instrumented));
+	}
+
+	@Test
+	public void testRetransformedClassKeepsMembersOfOtherAgents()
+			throws Exception {
+		CoverageTransformer t = new CoverageTransformer(runtime, options, true,
+				recorder);
+		final Class<?> target = JaCoCo.class;
+		// Another agent earlier in the chain added a field:
+		final ClassWriter writer = new ClassWriter(0);
+		new ClassReader(getClassData(target)).accept(
+				new ClassVisitor(InstrSupport.ASM_API_VERSION, writer) {
+					@Override
+					public void visitEnd() {
+						visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC,
+								"$agent", "I", null, null).visitEnd();
+						super.visitEnd();
+					}
+				}, 0);
+		final byte[] modified = writer.toByteArray();
+
+		final byte[] instrumented = t.transform(classLoader,
+				"org/jacoco/core/JaCoCo", target, protectionDomain, modified);
+
+		assertEquals(getMembers(modified), getMembers(instrumented));
+		assertTrue(getMembers(instrumented).contains("$agentI"));
+		assertEquals(CRC64.classId(modified), runtime.classId);
+	}
+
+	@Test
+	public void testTransformWithInstrCache() throws Exception {
+		options.setInstrCacheDir(folder.getRoot().toString());
+		final byte[] original = getClassData(JaCoCo.class);
+		final byte[] instrumented = createTransformer().transform(classLoader,
+				"org/jacoco/core/JaCoCo", null, protectionDomain, original);
+		final int count = runtime.accessorCount;
+
+		final byte[] cached = createTransformer().transform(classLoader,
+				"org/jacoco/core/JaCoCo", null, protectionDomain, original);
+
+		assertArrayEquals(instrumented, cached);
+		// Only the runtime key is computed, the class is not instrumented:
+		assertEquals(count + 1, runtime.accessorCount);
+	}
+
 	private CoverageTransformer createTransformer() {
 		return new CoverageTransformer(runtime, options, recorder);
 	}
 
+	private static Set<String> getMembers(final byte[] bytes) {
+		final Set<String> members = new HashSet<String>();
+		new ClassReader(bytes).accept(
+				new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+					@Override
+					public FieldVisitor visitField(int access, String name,
+							String descriptor, String signature,
+							Object value) {
+						members.add(name + descriptor);
+						return null;
+					}
+
+					@Override
+					public MethodVisitor visitMethod(int access, String name,
+							String descriptor, String signature,
+							String[] exceptions) {
+						members.add(name + descriptor);
+						return null;
+					}
+				}, 0);
+		return members;
+	}
+
+	private static String getSourceFile(final byte[] bytes) {
+		final String[] source = new String[1];
+		new ClassReader(bytes).accept(
+				new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+					@Override
+					public void visitSource(String file, String debug) {
+						source[0] = file;
+					}
+				}, 0);
+		return source[0];
+	}
+
 	private static byte[] getClassData(Class<?> clazz) throws IOException {
 		final String resource = "/" + clazz.getName().replace('.', '/')
 				+ ".class";
@@ -256,8 +385,20 @@ public class CoverageTransformerTest {
 		public StubRuntime() {
 		}
 
+		int accessorCount;
+
+		long classId;
+
 		public int generateDataAccessor(long classid, String classname,
 				int probecount, MethodVisitor mv) {
+			accessorCount++;
+			classId = classid;
+			return 0;
+		}
+
+		public int generateCounterAccessor(long classid, String classname,
+				int probecount, MethodVisitor mv) {
+			accessorCount++;
 			return 0;
 		}
 
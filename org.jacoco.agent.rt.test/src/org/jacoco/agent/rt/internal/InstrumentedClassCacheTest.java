@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.jacoco.core.runtime.AbstractRuntime;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link InstrumentedClassCache}.
+ */
+public class InstrumentedClassCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String location;
+
+	private StubRuntime runtime;
+
+	@Before
+	public void setup() {
+		location = new File(folder.getRoot(), "cache").toString();
+		runtime = new StubRuntime(Opcodes.ACONST_NULL);
+	}
+
+	@Test
+	public void get_should_return_entries_of_previous_instances()
+			throws IOException {
+		InstrumentedClassCache cache = new InstrumentedClassCache(location,
+				runtime);
+		cache.put(1, bytes("one"));
+		cache.put(2, bytes("two"));
+		assertNull(cache.get(1));
+
+		cache = new InstrumentedClassCache(location, runtime);
+
+		assertArrayEquals(bytes("one"), cache.get(1));
+		assertArrayEquals(bytes("two"), cache.get(2));
+		assertNull(cache.get(3));
+	}
+
+	@Test
+	public void put_should_write_entries_only_once() throws IOException {
+		InstrumentedClassCache cache = new InstrumentedClassCache(location,
+				runtime);
+		cache.put(1, bytes("one"));
+		final long length = cache.getFile().length();
+		cache.put(1, bytes("one"));
+		assertEquals(length, cache.getFile().length());
+
+		cache = new InstrumentedClassCache(location, runtime);
+		cache.put(1, bytes("other"));
+
+		assertEquals(length, cache.getFile().length());
+	}
+
+	@Test
+	public void should_use_separate_files_for_different_runtimes()
+			throws IOException {
+		final InstrumentedClassCache cache1 = new InstrumentedClassCache(
+				location, runtime);
+		final InstrumentedClassCache cache2 = new InstrumentedClassCache(
+				location, new StubRuntime(Opcodes.ICONST_0));
+
+		assertFalse(cache1.getFile().equals(cache2.getFile()));
+		assertEquals(InstrumentedClassCache.getRuntimeKey(runtime, null),
+				InstrumentedClassCache.getRuntimeKey(
+						new StubRuntime(Opcodes.ACONST_NULL), null));
+	}
+
+	@Test
+	public void should_use_separate_files_for_different_configurations()
+			throws IOException {
+		final InstrumentedClassCache cache1 = new InstrumentedClassCache(
+				location, runtime);
+		final InstrumentedClassCache cache2 = new InstrumentedClassCache(
+				location, runtime, "probestripes=4");
+
+		assertFalse(cache1.getFile().equals(cache2.getFile()));
+	}
+
+	@Test
+	public void should_remove_incomplete_entries() throws IOException {
+		InstrumentedClassCache cache = new InstrumentedClassCache(location,
+				runtime);
+		cache.put(1, bytes("one"));
+		cache.put(2, bytes("two"));
+		final File file = cache.getFile();
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(file.length() - 1);
+		raf.close();
+
+		cache = new InstrumentedClassCache(location, runtime);
+		assertArrayEquals(bytes("one"), cache.get(1));
+		assertNull(cache.get(2));
+		cache.put(2, bytes("two"));
+
+		cache = new InstrumentedClassCache(location, runtime);
+		assertArrayEquals(bytes("one"), cache.get(1));
+		assertArrayEquals(bytes("two"), cache.get(2));
+	}
+
+	@Test
+	public void should_not_shrink_files_which_are_replaced()
+			throws IOException {
+		InstrumentedClassCache cache = new InstrumentedClassCache(location,
+				runtime, null, 100);
+		cache.put(1, new byte[50]);
+		cache.put(2, new byte[50]);
+		final RandomAccessFile previous = new RandomAccessFile(
+				cache.getFile(), "r");
+		final long length = previous.length();
+
+		cache = new InstrumentedClassCache(location, runtime, null, 100);
+
+		assertEquals(length, previous.length());
+		assertNull(cache.get(1));
+		previous.close();
+	}
+
+	@Test
+	public void get_should_ignore_corrupted_entries() throws IOException {
+		InstrumentedClassCache cache = new InstrumentedClassCache(location,
+				runtime);
+		cache.put(1, bytes("one"));
+		final File file = cache.getFile();
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(file.length() - 1);
+		raf.write('X');
+		raf.close();
+
+		cache = new InstrumentedClassCache(location, runtime);
+
+		assertNull(cache.get(1));
+	}
+
+	@Test
+	public void should_discard_files_with_invalid_header() throws IOException {
+		InstrumentedClassCache cache = new InstrumentedClassCache(location,
+				runtime);
+		cache.put(1, bytes("one"));
+		final RandomAccessFile raf = new RandomAccessFile(cache.getFile(),
+				"rw");
+		raf.write(0);
+		raf.close();
+
+		cache = new InstrumentedClassCache(location, runtime);
+		assertNull(cache.get(1));
+		cache.put(1, bytes("new"));
+
+		cache = new InstrumentedClassCache(location, runtime);
+		assertArrayEquals(bytes("new"), cache.get(1));
+	}
+
+	@Test
+	public void should_ignore_entries_with_invalid_length()
+			throws IOException {
+		InstrumentedClassCache cache = new InstrumentedClassCache(location,
+				runtime);
+		cache.put(1, bytes("one"));
+		final File file = cache.getFile();
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(file.length() - 3 - 4);
+		raf.writeInt(Integer.MAX_VALUE - 8);
+		raf.close();
+
+		cache = new InstrumentedClassCache(location, runtime);
+		assertNull(cache.get(1));
+		cache.put(1, bytes("new"));
+
+		cache = new InstrumentedClassCache(location, runtime);
+		assertArrayEquals(bytes("new"), cache.get(1));
+	}
+
+	@Test
+	public void should_start_over_when_file_exceeds_maximum_size()
+			throws IOException {
+		InstrumentedClassCache cache = new InstrumentedClassCache(location,
+				runtime, null, 100);
+		final long empty = cache.getFile().length();
+		cache.put(1, new byte[50]);
+		cache.put(2, new byte[50]);
+		assertTrue(cache.getFile().length() > 100);
+
+		cache = new InstrumentedClassCache(location, runtime, null, 100);
+		assertEquals(empty, cache.getFile().length());
+		assertNull(cache.get(1));
+		assertNull(cache.get(2));
+		cache.put(1, bytes("new"));
+
+		cache = new InstrumentedClassCache(location, runtime, null, 100);
+		assertArrayEquals(bytes("new"), cache.get(1));
+	}
+
+	private static byte[] bytes(final String s) {
+		return s.getBytes();
+	}
+
+	private static class StubRuntime extends AbstractRuntime {
+
+		private final int opcode;
+
+		StubRuntime(final int opcode) {
+			this.opcode = opcode;
+		}
+
+		public int generateDataAccessor(long classid, String classname,
+				int probecount, MethodVisitor mv) {
+			mv.visitInsn(opcode);
+			return 1;
+		}
+
+		public int generateCounterAccessor(long classid, String classname,
+				int probecount, MethodVisitor mv) {
+			mv.visitInsn(opcode);
+			return 1;
+		}
+
+		public void shutdown() {
+		}
+
+	}
+
+}
@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jacoco.agent.rt.internal.ExceptionRecorder;
+import org.jacoco.agent.rt.internal.IExceptionLogger;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link NioServerOutput}.
+ */
+public class NioServerOutputTest {
+
+	private ExceptionRecorder logger;
+
+	private NioServerOutput controller;
+
+	private RuntimeData data;
+
+	private InetSocketAddress address;
+
+	private List<Socket> sockets;
+
+	@Before
+	public void setup() throws Exception {
+		logger = new ExceptionRecorder();
+		controller = createController(logger);
+		data = new RuntimeData();
+		data.setSessionId("stubid");
+		sockets = new ArrayList<Socket>();
+		controller.startup(new AgentOptions(), data);
+	}
+
+	@After
+	public void teardown() throws Exception {
+		for (final Socket socket : sockets) {
+			socket.close();
+		}
+	}
+
+	@Test
+	public void testShutdownWithoutConnection() throws Exception {
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testShutdownWithConnection() throws Exception {
+		final Client client = new Client();
+		client.nop();
+		controller.shutdown();
+		assertFalse(client.reader.read());
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testDumpCommand() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+		final Client client = new Client();
+
+		final ExecutionDataStore execStore = client.dump(true);
+
+		assertEquals("Foo", execStore.get(0x12345678).getName());
+		assertTrue(execStore.get(0x12345678).getProbes()[0]);
+		assertEquals("stubid", client.sessions.getInfos().get(0).getId());
+		assertFalse(data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0]);
+		logger.assertNoException();
+		controller.shutdown();
+	}
+
+	@Test
+	public void testResetCommand() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+		final Client client = new Client();
+
+		client.writer.visitDumpCommand(false, true);
+		assertTrue(client.reader.read());
+
+		assertFalse(data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0]);
+		logger.assertNoException();
+		controller.shutdown();
+	}
+
+	@Test
+	public void testLargeDumpToConcurrentClients() throws Exception {
+		for (int i = 0; i < 5000; i++) {
+			data.getExecutionData(Long.valueOf(i), "Class" + i, 100)
+					.getProbes()[i % 100] = true;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		final List<Future<ExecutionDataStore>> results = new ArrayList<Future<ExecutionDataStore>>();
+		for (int i = 0; i < 8; i++) {
+			final Client client = new Client();
+			results.add(executor.submit(new Callable<ExecutionDataStore>() {
+				public ExecutionDataStore call() throws Exception {
+					return client.dump(false);
+				}
+			}));
+		}
+
+		for (final Future<ExecutionDataStore> result : results) {
+			final ExecutionDataStore store = result.get();
+			assertEquals(5000, store.getContents().size());
+			assertTrue(store.get(4999).getProbes()[99]);
+		}
+		executor.shutdown();
+		logger.assertNoException();
+		controller.shutdown();
+	}
+
+	@Test
+	public void testWriteExecutionData() throws Exception {
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+		final Client client1 = new Client();
+		final Client client2 = new Client();
+
+		// First process a NOP command to ensure the connections are accepted:
+		client1.nop();
+		client2.nop();
+
+		// Now the actual test starts:
+		controller.writeExecutionData(false);
+
+		for (final Client client : new Client[] { client1, client2 }) {
+			final ExecutionDataStore execStore = new ExecutionDataStore();
+			client.reader.setExecutionDataVisitor(execStore);
+			assertTrue(client.reader.read());
+			assertEquals("Foo", execStore.get(0x12345678).getName());
+			final List<SessionInfo> infos = client.sessions.getInfos();
+			assertEquals(1, infos.size());
+			assertEquals("stubid", infos.get(0).getId());
+		}
+		logger.assertNoException();
+		controller.shutdown();
+	}
+
+	@Test
+	public void testWriteExecutionDataWithoutConnection() throws Exception {
+		controller.writeExecutionData(false);
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void testInvalidHeader() throws Exception {
+		final Socket socket = connect();
+		final OutputStream out = socket.getOutputStream();
+		out.write(0xca);
+		out.write(0xfe);
+		out.write(0xba);
+		out.write(0xbe);
+		out.flush();
+		// Only the header is received before the connection is closed:
+		assertEquals(5, readUntilClosed(socket));
+		logger.assertException(IOException.class,
+				"Invalid execution data file.");
+		controller.shutdown();
+	}
+
+	@Test
+	public void testGetInetAddressLoopback() throws UnknownHostException {
+		final InetAddress addr = controller.getInetAddress(null);
+		assertTrue(addr.isLoopbackAddress());
+	}
+
+	@Test
+	public void testGetInetAddressAny() throws UnknownHostException {
+		final InetAddress addr = controller.getInetAddress("*");
+		assertNull(addr);
+	}
+
+	@Test
+	public void testResetDuringConnect() throws Exception {
+		controller.shutdown();
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Exception> exceptions = new CopyOnWriteArrayList<Exception>();
+		// Block the worker thread in the logger, so that the next connection
+		// is reset before it is accepted:
+		controller = createController(new IExceptionLogger() {
+			public void logExeption(final Exception ex) {
+				exceptions.add(ex);
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		controller.startup(new AgentOptions(), data);
+		data.getExecutionData(Long.valueOf(0x12345678), "Foo", 42)
+				.getProbes()[0] = true;
+		final OutputStream out = connect().getOutputStream();
+		out.write(0xca);
+		out.flush();
+		blocked.await();
+
+		final Socket reset = connect();
+		reset.setSoLinger(true, 0);
+		reset.close();
+		release.countDown();
+
+		final ExecutionDataStore execStore = new Client().dump(false);
+		assertEquals("Foo", execStore.get(0x12345678).getName());
+		assertEquals("Invalid execution data file.",
+				exceptions.get(0).getMessage());
+		controller.shutdown();
+	}
+
+	private NioServerOutput createController(final IExceptionLogger logger) {
+		return new NioServerOutput(logger) {
+			@Override
+			protected ServerSocketChannel createServerChannel(
+					AgentOptions options) throws IOException {
+				final ServerSocketChannel channel = ServerSocketChannel.open();
+				channel.socket().bind(new InetSocketAddress(
+						InetAddress.getByName(null), 0));
+				address = (InetSocketAddress) channel.socket()
+						.getLocalSocketAddress();
+				return channel;
+			}
+		};
+	}
+
+	private Socket connect() throws IOException {
+		final Socket socket = new Socket(address.getAddress(),
+				address.getPort());
+		sockets.add(socket);
+		return socket;
+	}
+
+	private static int readUntilClosed(final Socket socket)
+			throws IOException {
+		int count = 0;
+		while (socket.getInputStream().read() != -1) {
+			count++;
+		}
+		return count;
+	}
+
+	private class Client {
+
+		final RemoteControlWriter writer;
+
+		final RemoteControlReader reader;
+
+		final SessionInfoStore sessions = new SessionInfoStore();
+
+		Client() throws IOException {
+			final Socket socket = connect();
+			writer = new RemoteControlWriter(socket.getOutputStream());
+			reader = new RemoteControlReader(socket.getInputStream());
+			reader.setSessionInfoVisitor(sessions);
+		}
+
+		void nop() throws IOException {
+			writer.visitDumpCommand(false, false);
+			assertTrue(reader.read());
+		}
+
+		ExecutionDataStore dump(final boolean reset) throws IOException {
+			final ExecutionDataStore store = new ExecutionDataStore();
+			reader.setExecutionDataVisitor(store);
+			writer.visitDumpCommand(true, reset);
+			assertTrue(reader.read());
+			return store;
+		}
+
+	}
+
+}
@@ -68,4 +68,16 @@ public interface IAgent {
 	 */
 	void dump(boolean reset) throws IOException;
 
+	/**
+	 * Removes the instrumentation from all classes which have been
+	 * instrumented since the agent has been attached to the running VM and
+	 * restores their original definition. Classes loaded afterwards are not
+	 * instrumented any more. Execution data collected so far is kept. To
+	 * instrument classes again the agent can be attached again.
+	 *
+	 * @throws IllegalStateException
+	 *             if the agent has not been attached to a running VM
+	 */
+	void removeInstrumentation() throws IllegalStateException;
+
 }
@@ -20,6 +20,7 @@ import java.util.concurrent.Callable;
 import org.jacoco.agent.rt.IAgent;
 import org.jacoco.agent.rt.internal.output.FileOutput;
 import org.jacoco.agent.rt.internal.output.IAgentOutput;
+import org.jacoco.agent.rt.internal.output.NioServerOutput;
 import org.jacoco.agent.rt.internal.output.NoneOutput;
 import org.jacoco.agent.rt.internal.output.TcpClientOutput;
 import org.jacoco.agent.rt.internal.output.TcpServerOutput;
@@ -89,6 +90,8 @@ public class Agent implements IAgent {
 
 	private Callable<Void> jmxRegistration;
 
+	private Retransformer retransformer;
+
 	/**
 	 * Creates a new agent with the given agent options.
 	 *
@@ -153,6 +156,25 @@ public class Agent implements IAgent {
 		}
 	}
 
+	/**
+	 * Instruments the classes of the running VM with the given retransformer
+	 * after the agent has been attached.
+	 *
+	 * @param retransformer
+	 *            retransformer to install
+	 * @throws IllegalStateException
+	 *             if classes are already instrumented by a previous attach
+	 */
+	synchronized void attach(final Retransformer retransformer)
+			throws IllegalStateException {
+		if (this.retransformer != null) {
+			throw new IllegalStateException(
+					"JaCoCo agent already attached.");
+		}
+		retransformer.install();
+		this.retransformer = retransformer;
+	}
+
 	/**
 	 * Create output implementation as given by the agent options.
 	 *
@@ -165,6 +187,8 @@ public class Agent implements IAgent {
 			return new FileOutput();
 		case tcpserver:
 			return new TcpServerOutput(logger);
+		case nioserver:
+			return new NioServerOutput(logger);
 		case tcpclient:
 			return new TcpClientOutput(logger);
 		case none:
@@ -220,4 +244,13 @@ public class Agent implements IAgent {
 		output.writeExecutionData(reset);
 	}
 
+	public synchronized void removeInstrumentation()
+			throws IllegalStateException {
+		if (retransformer == null) {
+			throw new IllegalStateException("JaCoCo agent not attached.");
+		}
+		retransformer.uninstall();
+		retransformer = null;
+	}
+
 }
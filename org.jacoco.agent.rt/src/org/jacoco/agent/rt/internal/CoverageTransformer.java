@@ -12,15 +12,26 @@
  *******************************************************************************/
 package org.jacoco.agent.rt.internal;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.internal.InputStreams;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.instr.InstrSupport;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.IRuntime;
 import org.jacoco.core.runtime.WildcardMatcher;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
 
 /**
  * Class file transformer to instrument classes for code coverage analysis.
@@ -46,10 +57,14 @@ public class CoverageTransformer implements ClassFileTransformer {
 
 	private final ClassFileDumper classFileDumper;
 
+	private final InstrumentedClassCache cache;
+
 	private final boolean inclBootstrapClasses;
 
 	private final boolean inclNoLocationClasses;
 
+	private final boolean retransformable;
+
 	/**
 	 * New transformer with the given delegates.
 	 *
@@ -62,13 +77,44 @@ public class CoverageTransformer implements ClassFileTransformer {
 	 */
 	public CoverageTransformer(final IRuntime runtime,
 			final AgentOptions options, final IExceptionLogger logger) {
+		this(runtime, options, false, logger);
+	}
+
+	/**
+	 * New transformer with the given delegates.
+	 *
+	 * @param runtime
+	 *            coverage runtime
+	 * @param options
+	 *            configuration options for the generator
+	 * @param retransformable
+	 *            if <code>true</code> classes are instrumented without
+	 *            additional members and also on class retransformation
+	 * @param logger
+	 *            logger for exceptions during instrumentation
+	 */
+	public CoverageTransformer(final IRuntime runtime,
+			final AgentOptions options, final boolean retransformable,
+			final IExceptionLogger logger) {
 		this.instrumenter = new Instrumenter(runtime);
+		instrumenter.setProbeStripes(options.getProbeStripes());
+		instrumenter.setWriteOnceProbes(options.getWriteOnceProbes());
+		instrumenter.setProbeCounters(options.getProbeCounters());
+		instrumenter.setRetransformable(retransformable);
+		this.retransformable = retransformable;
 		this.logger = logger;
 		// Class names will be reported in VM notation:
 		includes = new WildcardMatcher(toVMName(options.getIncludes()));
 		excludes = new WildcardMatcher(toVMName(options.getExcludes()));
 		exclClassloader = new WildcardMatcher(options.getExclClassloader());
 		classFileDumper = new ClassFileDumper(options.getClassDumpDir());
+		cache = openCache(options.getInstrCacheDir(), runtime,
+				String.format(
+						"probestripes=%s,writeonceprobes=%s,probecounters=%s,retransformable=%s",
+						Integer.valueOf(options.getProbeStripes()),
+						Boolean.valueOf(options.getWriteOnceProbes()),
+						Boolean.valueOf(options.getProbeCounters()),
+						Boolean.valueOf(retransformable)));
 		inclBootstrapClasses = options.getInclBootstrapClasses();
 		inclNoLocationClasses = options.getInclNoLocationClasses();
 	}
@@ -78,8 +124,9 @@ public class CoverageTransformer implements ClassFileTransformer {
 			final ProtectionDomain protectionDomain,
 			final byte[] classfileBuffer) throws IllegalClassFormatException {
 
-		// We do not support class retransformation:
-		if (classBeingRedefined != null) {
+		// Class retransformation is only supported for retransformable
+		// instrumentation as it must not add members:
+		if (classBeingRedefined != null && !retransformable) {
 			return null;
 		}
 
@@ -89,7 +136,14 @@ public class CoverageTransformer implements ClassFileTransformer {
 
 		try {
 			classFileDumper.dump(classname, classfileBuffer);
-			return instrumenter.instrument(classfileBuffer, classname);
+			if (classBeingRedefined == null) {
+				return instrument(classfileBuffer, classname);
+			}
+			// The cache is not used as entries are keyed by the id of the
+			// instrumented definition:
+			return instrumenter.instrument(classfileBuffer,
+					getClassId(classBeingRedefined, classname, classfileBuffer),
+					classname);
 		} catch (final Exception ex) {
 			final IllegalClassFormatException wrapper = new IllegalClassFormatException(
 					ex.getMessage());
@@ -100,6 +154,113 @@ public class CoverageTransformer implements ClassFileTransformer {
 		}
 	}
 
+	/**
+	 * On retransformation the VM passes the current definition of the class
+	 * which has to be instrumented, as it contains the changes of other agents
+	 * earlier in the chain. This definition might have been reconstituted from
+	 * the loaded class and therefore results in a different class id than the
+	 * original class file. Therefore the id of the original class file is used
+	 * if it is available as resource and declares the same members in the same
+	 * order as the current definition. Otherwise, e.g. if other agents added
+	 * members or the resource is a different copy of the class, the id of the
+	 * current definition is used.
+	 */
+	private static long getClassId(final Class<?> classBeingRedefined,
+			final String classname, final byte[] classfileBuffer)
+			throws IOException {
+		final InputStream in = classBeingRedefined
+				.getResourceAsStream("/" + classname + ".class");
+		if (in == null) {
+			return CRC64.classId(classfileBuffer);
+		}
+		final byte[] original;
+		try {
+			original = InputStreams.readFully(in);
+		} finally {
+			in.close();
+		}
+		if (getMembers(original).equals(getMembers(classfileBuffer))) {
+			return CRC64.classId(original);
+		}
+		return CRC64.classId(classfileBuffer);
+	}
+
+	/**
+	 * Returns the fields and methods declared by the given class in their
+	 * order of declaration.
+	 */
+	private static List<String> getMembers(final byte[] classfile) {
+		final List<String> members = new ArrayList<String>();
+		InstrSupport.classReaderFor(classfile)
+				.accept(new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+					@Override
+					public FieldVisitor visitField(final int access,
+							final String name, final String descriptor,
+							final String signature, final Object value) {
+						members.add("F " + name + descriptor);
+						return null;
+					}
+
+					@Override
+					public MethodVisitor visitMethod(final int access,
+							final String name, final String descriptor,
+							final String signature,
+							final String[] exceptions) {
+						members.add("M " + name + descriptor);
+						return null;
+					}
+				}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG
+						| ClassReader.SKIP_FRAMES);
+		return members;
+	}
+
+	private InstrumentedClassCache openCache(final String location,
+			final IRuntime runtime, final String configuration) {
+		if (location == null) {
+			return null;
+		}
+		try {
+			return new InstrumentedClassCache(location, runtime,
+					configuration);
+		} catch (final IOException e) {
+			// Classes are instrumented without cache
+			logger.logExeption(e);
+			return null;
+		} catch (final RuntimeException e) {
+			// e.g. a corrupt cache file which can't be mapped
+			logger.logExeption(e);
+			return null;
+		}
+	}
+
+	private byte[] instrument(final byte[] buffer, final String classname)
+			throws IOException {
+		if (cache == null) {
+			return instrumenter.instrument(buffer, classname);
+		}
+		final long classId = CRC64.classId(buffer);
+		byte[] instrumented;
+		try {
+			instrumented = cache.get(classId);
+		} catch (final Error e) {
+			// e.g. an InternalError if the mapped file has been truncated by
+			// an other process, the class is instrumented again
+			logger.logExeption(new RuntimeException(
+					"Error while reading instrumented class cache.", e));
+			instrumented = null;
+		}
+		if (instrumented == null) {
+			instrumented = instrumenter.instrument(buffer, classname);
+			try {
+				cache.put(classId, instrumented);
+			} catch (final IOException e) {
+				// The instrumented class can be used anyways
+				logger.logExeption(e);
+			}
+		}
+		return instrumented;
+	}
+
 	/**
 	 * Checks whether this class should be instrumented.
 	 *
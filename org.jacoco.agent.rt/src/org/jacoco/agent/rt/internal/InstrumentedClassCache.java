@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.runtime.IRuntime;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Persistent cache of instrumented class files. All entries for a given
+ * JaCoCo version and runtime are appended to a single file in the cache
+ * directory, which is memory mapped when the cache is opened. Entries are
+ * keyed by the id of the original class file. Entries appended by other
+ * processes or later in this process are only visible after the cache has
+ * been opened again. Multiple processes may use the same directory, a
+ * read-only cache file is used without adding new entries. As entries are
+ * never removed, a cache file which exceeds the maximum size is started over
+ * when it is opened. As other processes may have mapped the file, it is never
+ * truncated but atomically replaced with a new file.
+ */
+class InstrumentedClassCache {
+
+	/** Marker and format version of cache files */
+	private static final char FORMAT = 0xCA02;
+
+	/** Length of the header of each entry: id, checksum and length */
+	private static final int ENTRY_HEADER = 8 + 8 + 4;
+
+	/** Default maximum size of cache files in bytes */
+	static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+	private final File file;
+
+	private final long maxSize;
+
+	private final RandomAccessFile raf;
+
+	private final ByteBuffer buffer;
+
+	/** positions of the entries in the memory mapped buffer */
+	private final Map<Long, Long> index = new HashMap<Long, Long>();
+
+	/** ids of the entries which have been written by this instance */
+	private final Set<Long> written = new HashSet<Long>();
+
+	private boolean writable;
+
+	/**
+	 * Opens the cache for the given runtime in the given directory. The
+	 * directory is created on demand.
+	 *
+	 * @param location
+	 *            relative path to the cache directory
+	 * @param runtime
+	 *            runtime the instrumented classes are created for
+	 * @throws IOException
+	 *             if the cache file can't be opened
+	 */
+	InstrumentedClassCache(final String location, final IRuntime runtime)
+			throws IOException {
+		this(location, runtime, null);
+	}
+
+	/**
+	 * Opens the cache for the given runtime and instrumenter configuration in
+	 * the given directory. The directory is created on demand.
+	 *
+	 * @param location
+	 *            relative path to the cache directory
+	 * @param runtime
+	 *            runtime the instrumented classes are created for
+	 * @param configuration
+	 *            description of the instrumenter options which affect the
+	 *            instrumented classes or <code>null</code> for defaults
+	 * @throws IOException
+	 *             if the cache file can't be opened
+	 */
+	InstrumentedClassCache(final String location, final IRuntime runtime,
+			final String configuration) throws IOException {
+		this(location, runtime, configuration, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Opens the cache for the given runtime and instrumenter configuration in
+	 * the given directory with the given maximum file size. The directory is
+	 * created on demand.
+	 *
+	 * @param location
+	 *            relative path to the cache directory
+	 * @param runtime
+	 *            runtime the instrumented classes are created for
+	 * @param configuration
+	 *            description of the instrumenter options which affect the
+	 *            instrumented classes or <code>null</code> for defaults
+	 * @param maxSize
+	 *            maximum size of the cache file in bytes, at most
+	 *            {@link Integer#MAX_VALUE} as the file is memory mapped
+	 * @throws IOException
+	 *             if the cache file can't be opened or a read-only cache file
+	 *             exceeds the maximum size
+	 */
+	InstrumentedClassCache(final String location, final IRuntime runtime,
+			final String configuration, final long maxSize)
+			throws IOException {
+		this.maxSize = Math.min(maxSize, Integer.MAX_VALUE);
+		final File directory = new File(location);
+		directory.mkdirs();
+		file = new File(directory, String.format("instr-%016x.cache",
+				Long.valueOf(getRuntimeKey(runtime, configuration))));
+		RandomAccessFile f = openFile();
+		ByteBuffer b = open(f, true);
+		if (b == null) {
+			// The file has been replaced, open the new one
+			f.close();
+			f = openFile();
+			b = open(f, false);
+		}
+		raf = f;
+		buffer = b;
+	}
+
+	private RandomAccessFile openFile() throws IOException {
+		try {
+			final RandomAccessFile f = new RandomAccessFile(file, "rw");
+			writable = true;
+			return f;
+		} catch (final FileNotFoundException e) {
+			writable = false;
+			return new RandomAccessFile(file, "r");
+		}
+	}
+
+	/**
+	 * Computes a key which identifies the JaCoCo version and the code which
+	 * is generated for the given runtime and instrumenter configuration.
+	 */
+	static long getRuntimeKey(final IRuntime runtime,
+			final String configuration) {
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_5, 0, "Key", null, "java/lang/Object", null);
+		writer.visitSource(JaCoCo.VERSION, configuration);
+		final MethodVisitor mv = writer.visitMethod(Opcodes.ACC_STATIC, "key",
+				"()V", null, null);
+		mv.visitCode();
+		final int maxStack = runtime.generateDataAccessor(0, "Key", 1, mv);
+		mv.visitInsn(Opcodes.POP);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(maxStack, 0);
+		mv.visitEnd();
+		writer.visitEnd();
+		return CRC64.classId(writer.toByteArray());
+	}
+
+	private ByteBuffer open(final RandomAccessFile f, final boolean replace)
+			throws IOException {
+		if (!writable) {
+			return read(f, false);
+		}
+		final FileLock lock = f.getChannel().lock();
+		try {
+			return read(f, replace);
+		} finally {
+			lock.release();
+		}
+	}
+
+	/**
+	 * Maps the given cache file and indexes its entries.
+	 *
+	 * @return mapped entries or <code>null</code> if the file has been
+	 *         replaced and must be opened again
+	 */
+	private ByteBuffer read(final RandomAccessFile f, final boolean replace)
+			throws IOException {
+		final byte[] header = createHeader();
+		final long size = f.length();
+		ByteBuffer mapped = ByteBuffer.allocate(0);
+		long length = header.length;
+		if (hasHeader(f, header) && size <= maxSize) {
+			mapped = f.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+					size);
+			length = index(mapped, header.length);
+			if (length == size) {
+				return mapped;
+			}
+		} else if (!writable && size > maxSize) {
+			throw new IOException(String.format(
+					"Read-only cache file %s exceeds maximum size.",
+					file.getPath()));
+		}
+		if (!writable) {
+			return mapped;
+		}
+		if (size == 0) {
+			f.write(header);
+			return mapped;
+		}
+		// Other processes may have mapped the file, therefore it must not
+		// shrink. Instead it is replaced with a file which only contains the
+		// complete entries of the current file.
+		if (replace && replace(f.getChannel(), header, length)) {
+			index.clear();
+			return null;
+		}
+		// e.g. on platforms which do not allow to replace open files, in this
+		// case we must not append to the current file
+		writable = false;
+		return mapped;
+	}
+
+	/**
+	 * Adds the complete entries of the given buffer to the index.
+	 *
+	 * @return position after the last complete entry
+	 */
+	private long index(final ByteBuffer mapped, final long start) {
+		final long size = mapped.limit();
+		long position = start;
+		while (position + ENTRY_HEADER <= size) {
+			final long id = mapped.getLong((int) position);
+			final int length = mapped.getInt((int) position + 16);
+			if (length < 0 || position + ENTRY_HEADER + length > size) {
+				break;
+			}
+			index.put(Long.valueOf(id), Long.valueOf(position));
+			position += ENTRY_HEADER + length;
+		}
+		return position;
+	}
+
+	/**
+	 * Atomically replaces the cache file with a new file which contains the
+	 * given header and the entries of the given channel up to the given
+	 * length.
+	 *
+	 * @return <code>true</code> if the file has been replaced
+	 */
+	private boolean replace(final FileChannel channel, final byte[] header,
+			final long length) throws IOException {
+		final File temp = File.createTempFile("instr-", ".tmp",
+				file.getParentFile());
+		try {
+			final RandomAccessFile out = new RandomAccessFile(temp, "rw");
+			try {
+				out.write(header);
+				long position = header.length;
+				while (position < length) {
+					position += channel.transferTo(position,
+							length - position, out.getChannel());
+				}
+			} finally {
+				out.close();
+			}
+			return temp.renameTo(file);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	private static byte[] createHeader() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(buffer);
+		out.writeChar(FORMAT);
+		out.writeUTF(JaCoCo.VERSION);
+		out.close();
+		return buffer.toByteArray();
+	}
+
+	private static boolean hasHeader(final RandomAccessFile f,
+			final byte[] header) throws IOException {
+		if (f.length() < header.length) {
+			return false;
+		}
+		final byte[] actual = new byte[header.length];
+		f.seek(0);
+		f.readFully(actual);
+		return Arrays.equals(header, actual);
+	}
+
+	/**
+	 * @return the file which contains the cache entries
+	 */
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * Looks up the instrumented version of the class with the given id.
+	 *
+	 * @param classId
+	 *            id of the original class file
+	 * @return instrumented class file or <code>null</code> if no valid entry
+	 *         exists
+	 */
+	byte[] get(final long classId) {
+		final Long position = index.get(Long.valueOf(classId));
+		if (position == null) {
+			return null;
+		}
+		final ByteBuffer entry = buffer.duplicate();
+		entry.position((int) position.longValue() + 8);
+		final long checksum = entry.getLong();
+		final byte[] bytes = new byte[entry.getInt()];
+		entry.get(bytes);
+		if (CRC64.classId(bytes) != checksum) {
+			return null;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Appends the instrumented version of the class with the given id to the
+	 * cache file. Entries which already exist are not written again.
+	 *
+	 * @param classId
+	 *            id of the original class file
+	 * @param instrumented
+	 *            instrumented class file
+	 * @throws IOException
+	 *             if the entry can't be written
+	 */
+	synchronized void put(final long classId, final byte[] instrumented)
+			throws IOException {
+		final Long id = Long.valueOf(classId);
+		if (!writable || index.containsKey(id) || !written.add(id)) {
+			return;
+		}
+		final ByteBuffer entry = ByteBuffer
+				.allocate(ENTRY_HEADER + instrumented.length);
+		entry.putLong(classId);
+		entry.putLong(CRC64.classId(instrumented));
+		entry.putInt(instrumented.length);
+		entry.put(instrumented);
+		entry.flip();
+		final FileChannel channel = raf.getChannel();
+		final FileLock lock = channel.lock();
+		try {
+			long position = channel.size();
+			while (entry.hasRemaining()) {
+				position += channel.write(entry, position);
+			}
+		} finally {
+			lock.release();
+		}
+	}
+
+}
@@ -50,16 +50,32 @@ public final class Offline {
 	 * @param classid
 	 *            class identifier
 	 * @param classname
-	 *            VM class name
+	 *            VM class name, optionally with stripe index
 	 * @param probecount
 	 *            probe count for this class
 	 * @return probe array instance for this class
 	 */
 	public static boolean[] getProbes(final long classid,
 			final String classname, final int probecount) {
-		return getRuntimeData()
-				.getExecutionData(Long.valueOf(classid), classname, probecount)
-				.getProbes();
+		return getRuntimeData().getProbes(Long.valueOf(classid), classname,
+				probecount);
+	}
+
+	/**
+	 * API for offline instrumented classes with probe counters.
+	 *
+	 * @param classid
+	 *            class identifier
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @return probe counter array instance for this class
+	 */
+	public static int[] getCounters(final long classid,
+			final String classname, final int probecount) {
+		return getRuntimeData().getCounters(Long.valueOf(classid), classname,
+				probecount);
 	}
 
 }
@@ -23,11 +23,22 @@ import org.jacoco.core.runtime.InjectedClassRuntime;
 import org.jacoco.core.runtime.ModifiedSystemClassRuntime;
 
 /**
- * The agent which is referred as the <code>Premain-Class</code>. The agent
- * configuration is provided with the agent parameters in the command line.
+ * The agent which is referred as the <code>Premain-Class</code> and as the
+ * <code>Agent-Class</code>. The agent configuration is provided with the agent
+ * parameters in the command line or when the agent is attached to a running VM.
  */
 public final class PreMain {
 
+	/**
+	 * Runtime of the agent, created once per VM.
+	 */
+	private static IRuntime agentRuntime;
+
+	/**
+	 * Whether the runtime has been created by attaching to a running VM.
+	 */
+	private static boolean attached;
+
 	private PreMain() {
 		// no instances
 	}
@@ -49,12 +60,57 @@ public final class PreMain {
 
 		final Agent agent = Agent.getInstance(agentOptions);
 
-		final IRuntime runtime = createRuntime(inst);
-		runtime.startup(agent.getData());
+		final IRuntime runtime = startRuntime(inst, agent);
 		inst.addTransformer(new CoverageTransformer(runtime, agentOptions,
 				IExceptionLogger.SYSTEM_ERR));
 	}
 
+	/**
+	 * This method is called by the JVM when the agent is attached to a running
+	 * VM. Classes which are already loaded are instrumented with class
+	 * retransformation. The instrumentation can be removed again with
+	 * {@link Agent#removeInstrumentation()}, afterwards the agent can be
+	 * attached again.
+	 *
+	 * @param options
+	 *            agent options
+	 * @param inst
+	 *            instrumentation callback provided by the JVM
+	 * @throws Exception
+	 *             in case initialization fails
+	 */
+	public static void agentmain(final String options,
+			final Instrumentation inst) throws Exception {
+
+		final AgentOptions agentOptions = new AgentOptions(options);
+
+		final Agent agent = Agent.getInstance(agentOptions);
+
+		final IRuntime runtime;
+		synchronized (PreMain.class) {
+			if (agentRuntime != null && !attached) {
+				throw new IllegalStateException(
+						"JaCoCo agent already started with the VM.");
+			}
+			runtime = startRuntime(inst, agent);
+			attached = true;
+		}
+		agent.attach(new Retransformer(inst,
+				new CoverageTransformer(runtime, agentOptions, true,
+						IExceptionLogger.SYSTEM_ERR),
+				IExceptionLogger.SYSTEM_ERR));
+	}
+
+	private static synchronized IRuntime startRuntime(
+			final Instrumentation inst, final Agent agent) throws Exception {
+		if (agentRuntime == null) {
+			final IRuntime newRuntime = createRuntime(inst);
+			newRuntime.startup(agent.getData());
+			agentRuntime = newRuntime;
+		}
+		return agentRuntime;
+	}
+
 	private static IRuntime createRuntime(final Instrumentation inst)
 			throws Exception {
 
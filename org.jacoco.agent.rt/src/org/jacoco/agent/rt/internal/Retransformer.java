@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instruments the classes of a running VM after the agent has been attached
+ * dynamically. Already loaded classes are instrumented with class
+ * retransformation. As retransformation always starts from the original class
+ * definition the instrumentation can be removed again by retransforming the
+ * classes without the coverage transformer.
+ */
+class Retransformer {
+
+	private final Instrumentation inst;
+
+	private final CoverageTransformer transformer;
+
+	private final IExceptionLogger logger;
+
+	/**
+	 * Creates a new retransformer.
+	 *
+	 * @param inst
+	 *            instrumentation callback provided by the JVM
+	 * @param transformer
+	 *            transformer for retransformable instrumentation
+	 * @param logger
+	 *            logger for classes which cannot be retransformed
+	 */
+	Retransformer(final Instrumentation inst,
+			final CoverageTransformer transformer,
+			final IExceptionLogger logger) {
+		this.inst = inst;
+		this.transformer = transformer;
+		this.logger = logger;
+	}
+
+	/**
+	 * Registers the transformer for classes loaded from now on and
+	 * instruments all matching classes which are already loaded.
+	 *
+	 * @throws IllegalStateException
+	 *             if the VM does not support class retransformation
+	 */
+	void install() throws IllegalStateException {
+		if (!inst.isRetransformClassesSupported()) {
+			throw new IllegalStateException(
+					"Class retransformation not supported by the VM.");
+		}
+		inst.addTransformer(transformer, true);
+		retransform(getMatchingClasses());
+	}
+
+	/**
+	 * Removes the transformer and restores the original definition of all
+	 * matching classes.
+	 */
+	void uninstall() {
+		inst.removeTransformer(transformer);
+		retransform(getMatchingClasses());
+	}
+
+	private List<Class<?>> getMatchingClasses() {
+		final List<Class<?>> classes = new ArrayList<Class<?>>();
+		for (final Class<?> c : inst.getAllLoadedClasses()) {
+			if (inst.isModifiableClass(c)
+					&& transformer.filter(c.getClassLoader(),
+							c.getName().replace('.', '/'),
+							c.getProtectionDomain())) {
+				classes.add(c);
+			}
+		}
+		return classes;
+	}
+
+	private void retransform(final List<Class<?>> classes) {
+		if (classes.isEmpty()) {
+			return;
+		}
+		try {
+			inst.retransformClasses(
+					classes.toArray(new Class<?>[classes.size()]));
+		} catch (final Exception e) {
+			// Retry one by one to retransform all other classes
+			retransformEach(classes);
+		} catch (final LinkageError e) {
+			retransformEach(classes);
+		}
+	}
+
+	private void retransformEach(final List<Class<?>> classes) {
+		for (final Class<?> c : classes) {
+			try {
+				inst.retransformClasses(c);
+			} catch (final Exception e) {
+				logger.logExeption(retransformError(c, e));
+			} catch (final LinkageError e) {
+				logger.logExeption(retransformError(c, e));
+			}
+		}
+	}
+
+	private static Exception retransformError(final Class<?> c,
+			final Throwable cause) {
+		final IllegalStateException ex = new IllegalStateException(
+				String.format("Error while retransforming %s.", c.getName()));
+		ex.initCause(cause);
+		return ex;
+	}
+
+}
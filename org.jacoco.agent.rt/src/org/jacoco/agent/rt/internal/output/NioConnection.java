@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.runtime.IRemoteCommandVisitor;
+import org.jacoco.core.runtime.RemoteControlReader;
+import org.jacoco.core.runtime.RemoteControlWriter;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Handler for a single non-blocking socket channel. Incoming commands are
+ * buffered until complete blocks are available. Outgoing data is buffered in
+ * chunks which are written to the channel whenever it accepts more data.
+ */
+class NioConnection implements IRemoteCommandVisitor {
+
+	private static final int CHUNK_SIZE = 0x10000;
+
+	private final SocketChannel channel;
+
+	private final SelectionKey key;
+
+	private final RuntimeData data;
+
+	private final ByteBuffer input = ByteBuffer.allocate(0x100);
+
+	private final LinkedList<ByteBuffer> output = new LinkedList<ByteBuffer>();
+
+	private final RemoteControlWriter writer;
+
+	private final RemoteControlReader reader;
+
+	private int available;
+
+	/**
+	 * Creates a new handler for the given channel and registers it with the
+	 * selector. The execution data header is sent immediately.
+	 *
+	 * @param channel
+	 *            non-blocking socket channel
+	 * @param selector
+	 *            selector of the worker thread
+	 * @param data
+	 *            runtime data to dump on request
+	 * @throws IOException
+	 *             if the channel can not be registered
+	 */
+	NioConnection(final SocketChannel channel, final Selector selector,
+			final RuntimeData data) throws IOException {
+		this.channel = channel;
+		this.data = data;
+		this.key = channel.register(selector, SelectionKey.OP_READ, this);
+		this.writer = new RemoteControlWriter(new ChunkedOutput());
+		this.reader = new RemoteControlReader(new BlockInput());
+		this.reader.setRemoteCommandVisitor(this);
+		write();
+	}
+
+	/**
+	 * Reads available bytes from the channel and processes all complete
+	 * commands.
+	 *
+	 * @return <code>false</code> if the remote end has closed the connection
+	 * @throws IOException
+	 *             in case of invalid commands or problems with the channel
+	 */
+	boolean read() throws IOException {
+		if (channel.read(input) == -1) {
+			return false;
+		}
+		input.flip();
+		available = completeBlocks();
+		while (reader.read()) {
+		}
+		input.compact();
+		write();
+		return true;
+	}
+
+	/**
+	 * Returns the number of leading bytes of the input buffer which form
+	 * complete blocks. Unknown block types are passed to the reader which
+	 * reports them.
+	 */
+	private int completeBlocks() {
+		int pos = input.position();
+		while (pos < input.limit()) {
+			final int size;
+			switch (input.get(pos)) {
+			case ExecutionDataWriter.BLOCK_HEADER:
+				size = 5;
+				break;
+			case RemoteControlWriter.BLOCK_CMDDUMP:
+				size = 3;
+				break;
+			default:
+				size = 1;
+				break;
+			}
+			if (pos + size > input.limit()) {
+				break;
+			}
+			pos += size;
+		}
+		return pos - input.position();
+	}
+
+	/**
+	 * Sends the given execution data followed by a command confirmation.
+	 *
+	 * @param store
+	 *            execution data to send
+	 * @param sessions
+	 *            session infos to send
+	 * @throws IOException
+	 *             in case of problems with the channel
+	 */
+	void send(final ExecutionDataStore store, final SessionInfoStore sessions)
+			throws IOException {
+		sessions.accept(writer);
+		store.accept(writer);
+		writer.sendCmdOk();
+		write();
+	}
+
+	/**
+	 * Writes as much buffered output as the channel accepts without blocking.
+	 *
+	 * @throws IOException
+	 *             in case of problems with the channel
+	 */
+	void write() throws IOException {
+		while (!output.isEmpty()) {
+			final ByteBuffer chunk = output.getFirst();
+			chunk.flip();
+			channel.write(chunk);
+			if (chunk.hasRemaining()) {
+				chunk.compact();
+				break;
+			}
+			output.removeFirst();
+		}
+		key.interestOps(output.isEmpty() ? SelectionKey.OP_READ
+				: SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+	}
+
+	/**
+	 * @return <code>true</code> if there is output which has not been written
+	 *         to the channel yet
+	 */
+	boolean hasPendingOutput() {
+		return !output.isEmpty();
+	}
+
+	/**
+	 * Closes the underlying channel.
+	 *
+	 * @throws IOException
+	 */
+	void close() throws IOException {
+		key.cancel();
+		channel.close();
+	}
+
+	// === IRemoteCommandVisitor ===
+
+	public void visitDumpCommand(final boolean dump, final boolean reset)
+			throws IOException {
+		if (dump) {
+			data.collect(writer, writer, reset);
+		} else {
+			if (reset) {
+				data.reset();
+			}
+		}
+		writer.sendCmdOk();
+	}
+
+	/**
+	 * Exposes the complete blocks of the input buffer to the reader.
+	 */
+	private class BlockInput extends InputStream {
+
+		@Override
+		public int read() {
+			if (available == 0) {
+				return -1;
+			}
+			available--;
+			return input.get() & 0xFF;
+		}
+
+	}
+
+	/**
+	 * Collects the output in chunks. Full chunks are written to the channel
+	 * immediately to keep the memory footprint low for fast clients.
+	 */
+	private class ChunkedOutput extends OutputStream {
+
+		@Override
+		public void write(final int b) throws IOException {
+			ByteBuffer chunk = output.isEmpty() ? null : output.getLast();
+			if (chunk != null && !chunk.hasRemaining()) {
+				NioConnection.this.write();
+				chunk = output.isEmpty() ? null : output.getLast();
+			}
+			if (chunk == null || !chunk.hasRemaining()) {
+				chunk = ByteBuffer.allocate(CHUNK_SIZE);
+				output.addLast(chunk);
+			}
+			chunk.put((byte) b);
+		}
+
+	}
+
+}
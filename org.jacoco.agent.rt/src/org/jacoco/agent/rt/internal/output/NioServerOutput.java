@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.jacoco.agent.rt.internal.IExceptionLogger;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RuntimeData;
+
+/**
+ * Output that opens a non-blocking TCP server socket which serves any number
+ * of connections concurrently. All connections are handled by a single thread
+ * with a selector. Execution data is written to every connection as fast as
+ * the client reads it, so slow clients do not delay other clients. This
+ * controller uses the following agent options:
+ * <ul>
+ * <li>address</li>
+ * <li>port</li>
+ * </ul>
+ */
+public class NioServerOutput implements IAgentOutput {
+
+	/**
+	 * Maximum time in milliseconds to wait for pending writes on shutdown.
+	 */
+	private static final long SHUTDOWN_TIMEOUT = 10000;
+
+	private final IExceptionLogger logger;
+
+	private final Queue<Boolean> dumpRequests = new ConcurrentLinkedQueue<Boolean>();
+
+	private final List<NioConnection> connections = new ArrayList<NioConnection>();
+
+	private RuntimeData data;
+
+	private Selector selector;
+
+	private ServerSocketChannel serverChannel;
+
+	private Thread worker;
+
+	private volatile boolean shutdown;
+
+	/**
+	 * New controller instance.
+	 *
+	 * @param logger
+	 *            logger to use in case of exceptions is spawned threads
+	 */
+	public NioServerOutput(final IExceptionLogger logger) {
+		this.logger = logger;
+	}
+
+	public void startup(final AgentOptions options, final RuntimeData data)
+			throws IOException {
+		this.data = data;
+		selector = Selector.open();
+		serverChannel = createServerChannel(options);
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		worker = new Thread(new Runnable() {
+			public void run() {
+				try {
+					serve();
+				} catch (final IOException e) {
+					logger.logExeption(e);
+				} finally {
+					closeAll();
+				}
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	public void shutdown() throws Exception {
+		shutdown = true;
+		selector.wakeup();
+		worker.join();
+	}
+
+	/**
+	 * Sends the current execution data to all open connections. The data is
+	 * written asynchronously by the worker thread.
+	 */
+	public void writeExecutionData(final boolean reset) {
+		dumpRequests.add(Boolean.valueOf(reset));
+		selector.wakeup();
+	}
+
+	private void serve() throws IOException {
+		long deadline = 0;
+		while (true) {
+			Boolean reset;
+			while ((reset = dumpRequests.poll()) != null) {
+				dumpAll(reset.booleanValue());
+			}
+			long timeout = 0;
+			if (shutdown) {
+				if (deadline == 0) {
+					serverChannel.close();
+					deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+				}
+				timeout = deadline - System.currentTimeMillis();
+				if (!hasPendingOutput() || timeout <= 0) {
+					return;
+				}
+			}
+			selector.select(timeout);
+			final Iterator<SelectionKey> keys = selector.selectedKeys()
+					.iterator();
+			while (keys.hasNext()) {
+				final SelectionKey key = keys.next();
+				keys.remove();
+				if (!key.isValid()) {
+					continue;
+				}
+				if (key.isAcceptable()) {
+					accept();
+				} else {
+					process((NioConnection) key.attachment(), key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Accepts a pending connection. Problems with a single connection, e.g. a
+	 * client which resets the connection immediately, are logged and do not
+	 * stop the server.
+	 */
+	private void accept() {
+		SocketChannel channel = null;
+		try {
+			channel = serverChannel.accept();
+			if (channel != null) {
+				channel.configureBlocking(false);
+				connections.add(new NioConnection(channel, selector, data));
+			}
+		} catch (final IOException e) {
+			logger.logExeption(e);
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (final IOException ex) {
+					logger.logExeption(ex);
+				}
+			}
+		}
+	}
+
+	private void process(final NioConnection connection,
+			final SelectionKey key) {
+		try {
+			if (key.isReadable() && !connection.read()) {
+				close(connection);
+				return;
+			}
+			if (key.isValid() && key.isWritable()) {
+				connection.write();
+			}
+		} catch (final IOException e) {
+			logger.logExeption(e);
+			close(connection);
+		}
+	}
+
+	private void dumpAll(final boolean reset) {
+		if (connections.isEmpty()) {
+			return;
+		}
+		final ExecutionDataStore store = new ExecutionDataStore();
+		final SessionInfoStore sessions = new SessionInfoStore();
+		data.collect(store, sessions, reset);
+		for (final NioConnection connection : new ArrayList<NioConnection>(
+				connections)) {
+			try {
+				connection.send(store, sessions);
+			} catch (final IOException e) {
+				logger.logExeption(e);
+				close(connection);
+			}
+		}
+	}
+
+	private boolean hasPendingOutput() {
+		for (final NioConnection connection : connections) {
+			if (connection.hasPendingOutput()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void close(final NioConnection connection) {
+		connections.remove(connection);
+		try {
+			connection.close();
+		} catch (final IOException e) {
+			logger.logExeption(e);
+		}
+	}
+
+	private void closeAll() {
+		for (final NioConnection connection : new ArrayList<NioConnection>(
+				connections)) {
+			close(connection);
+		}
+		try {
+			serverChannel.close();
+			selector.close();
+		} catch (final IOException e) {
+			logger.logExeption(e);
+		}
+	}
+
+	/**
+	 * Open a server socket channel based on the given configuration.
+	 *
+	 * @param options
+	 *            address and port configuration
+	 * @return opened server socket channel
+	 * @throws IOException
+	 */
+	protected ServerSocketChannel createServerChannel(
+			final AgentOptions options) throws IOException {
+		final ServerSocketChannel channel = ServerSocketChannel.open();
+		final InetAddress inetAddr = getInetAddress(options.getAddress());
+		channel.socket().bind(new InetSocketAddress(inetAddr, options.getPort()));
+		return channel;
+	}
+
+	/**
+	 * Returns the {@link InetAddress} object to open the server socket on.
+	 *
+	 * @param address
+	 *            address specified as a string
+	 * @return address to open the server socket
+	 * @throws UnknownHostException
+	 */
+	protected InetAddress getInetAddress(final String address)
+			throws UnknownHostException {
+		if ("*".equals(address)) {
+			return null;
+		} else {
+			return InetAddress.getByName(address);
+		}
+	}
+
+}
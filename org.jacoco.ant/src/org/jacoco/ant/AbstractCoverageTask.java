@@ -201,6 +201,47 @@ public class AbstractCoverageTask extends Task {
 		agentOptions.setClassDumpDir(dir.getAbsolutePath());
 	}
 
+	/**
+	 * Sets the directory where the agent caches instrumented class files.
+	 *
+	 * @param dir
+	 *            cache location
+	 */
+	public void setInstrcache(final File dir) {
+		agentOptions.setInstrCacheDir(dir.getAbsolutePath());
+	}
+
+	/**
+	 * Sets the number of probe arrays per class.
+	 *
+	 * @param probeStripes
+	 *            number of probe stripes
+	 */
+	public void setProbestripes(final int probeStripes) {
+		agentOptions.setProbeStripes(probeStripes);
+	}
+
+	/**
+	 * Sets whether probes should only write to the probe array if they have
+	 * not been executed before.
+	 *
+	 * @param writeOnceProbes
+	 *            <code>true</code> if probes should be written only once
+	 */
+	public void setWriteonceprobes(final boolean writeOnceProbes) {
+		agentOptions.setWriteOnceProbes(writeOnceProbes);
+	}
+
+	/**
+	 * Sets whether probes should count their executions.
+	 *
+	 * @param probeCounters
+	 *            <code>true</code> if probes should count their executions
+	 */
+	public void setProbecounters(final boolean probeCounters) {
+		agentOptions.setProbeCounters(probeCounters);
+	}
+
 	/**
 	 * Sets whether the agent should expose functionality via JMX.
 	 *
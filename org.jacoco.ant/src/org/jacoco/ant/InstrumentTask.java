@@ -16,14 +16,19 @@ import static java.lang.String.format;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Task;
 import org.apache.tools.ant.types.Resource;
 import org.apache.tools.ant.types.ResourceCollection;
+import org.apache.tools.ant.types.resources.FileResource;
 import org.apache.tools.ant.types.resources.Union;
 import org.apache.tools.ant.util.FileUtils;
 import org.jacoco.core.instr.Instrumenter;
@@ -40,6 +45,8 @@ public class InstrumentTask extends Task {
 
 	private boolean removesignatures = true;
 
+	private int threads = 1;
+
 	/**
 	 * Sets the location of the instrumented classes.
 	 *
@@ -60,6 +67,18 @@ public class InstrumentTask extends Task {
 		this.removesignatures = removesignatures;
 	}
 
+	/**
+	 * Sets the number of threads used to instrument files and the entries of
+	 * archives. With more than one thread files are instrumented
+	 * concurrently. Default is 1.
+	 *
+	 * @param threads
+	 *            number of instrumentation threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
 	/**
 	 * This task accepts any number of class file resources.
 	 *
@@ -80,13 +99,30 @@ public class InstrumentTask extends Task {
 		final Instrumenter instrumenter = new Instrumenter(
 				new OfflineInstrumentationAccessGenerator());
 		instrumenter.setRemoveSignatures(removesignatures);
+		try {
+			instrumenter.setThreads(threads);
+		} catch (final IllegalArgumentException e) {
+			throw new BuildException(e.getMessage(), getLocation());
+		}
+		final Map<File, File> batch = new LinkedHashMap<File, File>();
 		final Iterator<?> resourceIterator = files.iterator();
 		while (resourceIterator.hasNext()) {
 			final Resource resource = (Resource) resourceIterator.next();
 			if (resource.isDirectory()) {
 				continue;
 			}
-			total += instrument(instrumenter, resource);
+			if (resource instanceof FileResource && threads > 1) {
+				batch.put(((FileResource) resource).getFile(),
+						new File(destdir, resource.getName()));
+			} else {
+				total += instrument(instrumenter, resource);
+			}
+		}
+		try {
+			total += instrumenter.instrumentAll(batch);
+		} catch (final IOException e) {
+			throw new BuildException("Error while instrumenting files", e,
+					getLocation());
 		}
 		log(format("Instrumented %s classes to %s", Integer.valueOf(total),
 				destdir.getAbsolutePath()));
@@ -97,6 +133,11 @@ public class InstrumentTask extends Task {
 		final File file = new File(destdir, resource.getName());
 		file.getParentFile().mkdirs();
 		try {
+			if (resource instanceof FileResource) {
+				// allows to copy unmodified entries of archives directly
+				return instrumenter.instrumentAll(Collections.singletonMap(
+						((FileResource) resource).getFile(), file));
+			}
 			InputStream input = null;
 			OutputStream output = null;
 			try {
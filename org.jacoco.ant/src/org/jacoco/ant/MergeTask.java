@@ -23,9 +23,11 @@ import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Task;
 import org.apache.tools.ant.types.Resource;
 import org.apache.tools.ant.types.ResourceCollection;
+import org.apache.tools.ant.types.resources.FileResource;
 import org.apache.tools.ant.types.resources.Union;
 import org.apache.tools.ant.util.FileUtils;
 import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
 
 /**
  * Task for merging a set of execution data files (*.exec) into a single file
@@ -36,6 +38,10 @@ public class MergeTask extends Task {
 
 	private final Union files = new Union();
 
+	private boolean streaming = false;
+
+	private int threads = 1;
+
 	/**
 	 * Sets the location of the merged data store
 	 *
@@ -46,6 +52,29 @@ public class MergeTask extends Task {
 		this.destfile = destfile;
 	}
 
+	/**
+	 * Sets whether the execution data resources are merged on the fly after
+	 * sorting each of them by class id, instead of loading all execution data
+	 * into memory. Default is <code>false</code>.
+	 *
+	 * @param streaming
+	 *            <code>true</code> for streaming mode
+	 */
+	public void setStreaming(final boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Sets the number of threads used to sort execution data files in
+	 * streaming mode. Default is 1.
+	 *
+	 * @param threads
+	 *            number of sort threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
 	/**
 	 * This task accepts any number of execution data resources.
 	 *
@@ -63,12 +92,61 @@ public class MergeTask extends Task {
 					getLocation());
 		}
 
+		if (streaming) {
+			executeStreaming();
+			return;
+		}
+
 		final ExecFileLoader loader = new ExecFileLoader();
 
 		load(loader);
 		save(loader);
 	}
 
+	private void executeStreaming() {
+		final ExecFileMerger merger = new ExecFileMerger();
+		try {
+			merger.setThreads(threads);
+		} catch (final IllegalArgumentException e) {
+			throw new BuildException(e.getMessage(), getLocation());
+		}
+		final Iterator<?> resourceIterator = files.iterator();
+		while (resourceIterator.hasNext()) {
+			final Resource resource = (Resource) resourceIterator.next();
+
+			if (resource.isDirectory()) {
+				continue;
+			}
+
+			log(format("Loading execution data file %s", resource));
+
+			if (resource instanceof FileResource) {
+				// Files are read and sorted in parallel during merge
+				merger.add(((FileResource) resource).getFile());
+				continue;
+			}
+			InputStream resourceStream = null;
+			try {
+				resourceStream = resource.getInputStream();
+				merger.add(resourceStream);
+			} catch (final IOException e) {
+				throw new BuildException(format("Unable to read %s", resource),
+						e, getLocation());
+			} finally {
+				FileUtils.close(resourceStream);
+			}
+		}
+
+		log(format("Writing merged execution data to %s",
+				destfile.getAbsolutePath()));
+		try {
+			merger.merge(destfile, false);
+		} catch (final IOException e) {
+			throw new BuildException(format("Unable to merge into file %s",
+					destfile.getAbsolutePath()), e, getLocation());
+		}
+	}
+
 	private void load(final ExecFileLoader loader) {
 		final Iterator<?> resourceIterator = files.iterator();
 		while (resourceIterator.hasNext()) {
@@ -33,7 +33,7 @@ import org.apache.tools.ant.types.resources.FileResource;
 import org.apache.tools.ant.types.resources.Union;
 import org.apache.tools.ant.util.FileUtils;
 import org.jacoco.core.analysis.Analyzer;
-import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.CompactCoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.analysis.ICoverageNode;
@@ -45,8 +45,10 @@ import org.jacoco.report.FileMultiReportOutput;
 import org.jacoco.report.IMultiReportOutput;
 import org.jacoco.report.IReportGroupVisitor;
 import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.IncrementalFileMultiReportOutput;
 import org.jacoco.report.MultiReportVisitor;
 import org.jacoco.report.ZipMultiReportOutput;
+import org.jacoco.report.binary.BinaryFormatter;
 import org.jacoco.report.check.IViolationsOutput;
 import org.jacoco.report.check.Limit;
 import org.jacoco.report.check.Rule;
@@ -176,6 +178,8 @@ public class ReportTask extends Task {
 
 		private Locale locale = Locale.getDefault();
 
+		private boolean incremental = false;
+
 		/**
 		 * Sets the output directory for the report.
 		 *
@@ -228,6 +232,18 @@ public class ReportTask extends Task {
 			this.locale = parseLocale(locale);
 		}
 
+		/**
+		 * Sets whether only modified pages should be written to the output
+		 * directory. Checksums of all pages are recorded in a manifest file
+		 * in the output directory. Default is <code>false</code>.
+		 *
+		 * @param incremental
+		 *            <code>true</code> to write modified pages only
+		 */
+		public void setIncremental(final boolean incremental) {
+			this.incremental = incremental;
+		}
+
 		@Override
 		public IReportVisitor createVisitor() throws IOException {
 			final IMultiReportOutput output;
@@ -246,12 +262,15 @@ public class ReportTask extends Task {
 							"Destination directory or file must be supplied for html report",
 							getLocation());
 				}
-				output = new FileMultiReportOutput(destdir);
+				output = incremental
+						? new IncrementalFileMultiReportOutput(destdir)
+						: new FileMultiReportOutput(destdir);
 			}
 			final HTMLFormatter formatter = new HTMLFormatter();
 			formatter.setFooterText(footer);
 			formatter.setOutputEncoding(encoding);
 			formatter.setLocale(locale);
+			formatter.setThreads(threads);
 			return formatter.createVisitor(output);
 		}
 
@@ -343,6 +362,36 @@ public class ReportTask extends Task {
 
 	}
 
+	/**
+	 * Formatter element for binary reports.
+	 */
+	public class BinaryFormatterElement extends FormatterElement {
+
+		private File destfile;
+
+		/**
+		 * Sets the output file for the report.
+		 *
+		 * @param destfile
+		 *            output file
+		 */
+		public void setDestfile(final File destfile) {
+			this.destfile = destfile;
+		}
+
+		@Override
+		public IReportVisitor createVisitor() throws IOException {
+			if (destfile == null) {
+				throw new BuildException(
+						"Destination file must be supplied for binary report",
+						getLocation());
+			}
+			final BinaryFormatter formatter = new BinaryFormatter();
+			return formatter.createVisitor(new FileOutputStream(destfile));
+		}
+
+	}
+
 	/**
 	 * Formatter element for coverage checks.
 	 */
@@ -425,6 +474,32 @@ public class ReportTask extends Task {
 
 	private final List<FormatterElement> formatters = new ArrayList<FormatterElement>();
 
+	private int threads = 1;
+
+	private File cachedir;
+
+	/**
+	 * Sets the number of threads used to analyze class files and to render
+	 * HTML pages. Default is 1.
+	 *
+	 * @param threads
+	 *            number of analysis and rendering threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the directory where analysis results of class files are cached. By
+	 * default no cache is used.
+	 *
+	 * @param cachedir
+	 *            cache directory
+	 */
+	public void setCachedir(final File cachedir) {
+		this.cachedir = cachedir;
+	}
+
 	/**
 	 * Returns the nested resource collection for execution data files.
 	 *
@@ -487,6 +562,17 @@ public class ReportTask extends Task {
 		return element;
 	}
 
+	/**
+	 * Creates a new binary report element.
+	 *
+	 * @return binary report element
+	 */
+	public BinaryFormatterElement createBinary() {
+		final BinaryFormatterElement element = new BinaryFormatterElement();
+		formatters.add(element);
+		return element;
+	}
+
 	@Override
 	public void execute() throws BuildException {
 		loadExecutionData();
@@ -565,18 +651,27 @@ public class ReportTask extends Task {
 
 	private IBundleCoverage createBundle(final GroupElement group)
 			throws IOException {
-		final CoverageBuilder builder = new CoverageBuilder();
+		final CompactCoverageBuilder builder = new CompactCoverageBuilder();
 		final Analyzer analyzer = new Analyzer(executionDataStore, builder);
+		try {
+			analyzer.setThreads(threads);
+		} catch (final IllegalArgumentException e) {
+			throw new BuildException(e.getMessage(), getLocation());
+		}
+		analyzer.setCacheDirectory(cachedir);
+		final List<File> files = new ArrayList<File>();
 		for (final Iterator<?> i = group.classfiles.iterator(); i.hasNext();) {
 			final Resource resource = (Resource) i.next();
-			if (resource.isDirectory() && resource instanceof FileResource) {
-				analyzer.analyzeAll(((FileResource) resource).getFile());
+			if (resource instanceof FileResource
+					&& (resource.isDirectory() || threads > 1)) {
+				files.add(((FileResource) resource).getFile());
 			} else {
 				final InputStream in = resource.getInputStream();
 				analyzer.analyzeAll(in, resource.getName());
 				in.close();
 			}
 		}
+		analyzer.analyzeAll(files);
 		final IBundleCoverage bundle = builder.getBundle(group.name);
 		logBundleInfo(bundle, builder.getNoMatchClasses());
 		return bundle;
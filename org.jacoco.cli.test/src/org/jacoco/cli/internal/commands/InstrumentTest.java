@@ -76,6 +76,42 @@ public class InstrumentTest extends CommandTestBase {
 				"org/jacoco/cli/internal/commands/InstrumentTest.class"));
 	}
 
+	@Test
+	public void should_instrument_with_multiple_threads() throws Exception {
+		File destdir = tmp.getRoot();
+
+		execute("instrument", "--dest", destdir.getAbsolutePath(),
+				"--threads", "4", getClassPath());
+
+		assertOk();
+		assertContains("[INFO] 14 classes instrumented to "
+				+ destdir.getAbsolutePath(), out);
+		assertInstrumented(new File(destdir,
+				"org/jacoco/cli/internal/commands/InstrumentTest.class"));
+	}
+
+	@Test
+	public void should_skip_unchanged_files_when_incremental()
+			throws Exception {
+		File destdir = new File(tmp.getRoot(), "dest");
+
+		execute("instrument", "--dest", destdir.getAbsolutePath(),
+				"--incremental", getClassPath());
+		assertOk();
+		assertContains("[INFO] 14 classes instrumented to "
+				+ destdir.getAbsolutePath(), out);
+		assertTrue(new File(tmp.getRoot(), "dest.manifest").isFile());
+
+		execute("instrument", "--dest", destdir.getAbsolutePath(),
+				"--incremental", getClassPath());
+		assertOk();
+		assertContains("[INFO] 0 classes instrumented to "
+				+ destdir.getAbsolutePath(), out);
+		assertContains("outdated files removed.", out);
+		assertInstrumented(new File(destdir,
+				"org/jacoco/cli/internal/commands/InstrumentTest.class"));
+	}
+
 	@Test
 	public void should_instrument_class_files_to_dest_folder_when_class_files_are_given()
 			throws Exception {
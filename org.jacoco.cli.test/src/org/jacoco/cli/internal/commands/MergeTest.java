@@ -75,6 +75,45 @@ public class MergeTest extends CommandTestBase {
 		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), names);
 	}
 
+	@Test
+	public void should_merge_exec_files_into_indexed_file() throws Exception {
+		File a = createExecFile("a");
+		File b = createExecFile("b");
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--destfile", dest.getAbsolutePath(), "--indexed",
+				a.getAbsolutePath(), b.getAbsolutePath());
+
+		assertOk();
+		Set<String> names = loadExecFile(dest);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b")), names);
+	}
+
+	@Test
+	public void should_merge_exec_files_in_streaming_mode() throws Exception {
+		File a = createExecFile("a");
+		File b = createExecFile("b");
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--destfile", dest.getAbsolutePath(), "--streaming",
+				"--threads", "2", a.getAbsolutePath(), b.getAbsolutePath());
+
+		assertOk();
+		Set<String> names = loadExecFile(dest);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b")), names);
+	}
+
+	@Test
+	public void should_not_allow_indexed_output_in_streaming_mode()
+			throws Exception {
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--destfile", dest.getAbsolutePath(), "--streaming",
+				"--indexed");
+
+		assertFailure();
+	}
+
 	private File createExecFile(String name) throws IOException {
 		File file = new File(tmp.getRoot(), name + ".exec");
 		final FileOutputStream execout = new FileOutputStream(file);
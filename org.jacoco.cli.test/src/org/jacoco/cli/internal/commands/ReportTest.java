@@ -12,14 +12,18 @@
  *******************************************************************************/
 package org.jacoco.cli.internal.commands;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
 
 import org.jacoco.cli.internal.CommandTestBase;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.report.binary.BinaryReportReader;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -60,6 +64,28 @@ public class ReportTest extends CommandTestBase {
 		assertContains("[INFO] Analyzing 14 classes.", out);
 	}
 
+	@Test
+	public void should_analyze_classes_with_multiple_threads()
+			throws Exception {
+		execute("report", "--classfiles", getClassPath(), "--threads", "4");
+
+		assertOk();
+		assertContains("[INFO] Analyzing 14 classes.", out);
+	}
+
+	@Test
+	public void should_cache_analysis_results() throws Exception {
+		final File cachedir = new File(tmp.getRoot(), "cache");
+		execute("report", "--classfiles", getClassPath(), "--reportcache",
+				cachedir.getAbsolutePath());
+		execute("report", "--classfiles", getClassPath(), "--reportcache",
+				cachedir.getAbsolutePath());
+
+		assertOk();
+		assertContains("[INFO] Analyzing 14 classes.", out);
+		assertTrue(cachedir.list().length > 0);
+	}
+
 	@Test
 	public void should_print_warning_when_exec_data_does_not_match()
 			throws Exception {
@@ -98,6 +124,24 @@ public class ReportTest extends CommandTestBase {
 		assertTrue(xml.isFile());
 	}
 
+	@Test
+	public void should_create_binary_report_when_binary_option_is_provided()
+			throws Exception {
+		File binary = new File(tmp.getRoot(), "coverage.bin");
+
+		execute("report", "--classfiles", getClassPath(), "--binary",
+				binary.getAbsolutePath());
+
+		assertOk();
+		final InputStream in = new FileInputStream(binary);
+		try {
+			assertEquals(1,
+					new BinaryReportReader(in).getBundles().size());
+		} finally {
+			in.close();
+		}
+	}
+
 	@Test
 	public void should_create_csv_report_when_csv_option_is_provided()
 			throws Exception {
@@ -127,6 +171,36 @@ public class ReportTest extends CommandTestBase {
 						.isFile());
 	}
 
+	@Test
+	public void should_create_html_report_with_multiple_threads()
+			throws Exception {
+		File html = new File(tmp.getRoot(), "coverage");
+
+		execute("report", "--classfiles", getClassPath(), "--sourcefiles",
+				"./src", "--html", html.getAbsolutePath(), "--threads", "4");
+
+		assertOk();
+		assertTrue(new File(html,
+				"org.jacoco.cli.internal.commands/ReportTest.html").isFile());
+		assertTrue(new File(html,
+				"org.jacoco.cli.internal.commands/ReportTest.java.html")
+						.isFile());
+	}
+
+	@Test
+	public void should_create_incremental_html_report() throws Exception {
+		File html = new File(tmp.getRoot(), "coverage");
+
+		execute("report", "--classfiles", getClassPath(), "--html",
+				html.getAbsolutePath(), "--incremental");
+
+		assertOk();
+		assertContains("[INFO] 0 unchanged HTML files skipped", out);
+		assertTrue(new File(html, "jacoco.manifest").isFile());
+		assertTrue(new File(html,
+				"org.jacoco.cli.internal.commands/ReportTest.html").isFile());
+	}
+
 	@Test
 	public void should_use_all_values_when_multiple_classfiles_options_are_provided()
 			throws Exception {
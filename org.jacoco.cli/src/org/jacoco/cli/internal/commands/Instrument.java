@@ -14,18 +14,17 @@
 package org.jacoco.cli.internal.commands;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jacoco.cli.internal.Command;
 import org.jacoco.core.instr.Instrumenter;
 import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
+import org.jacoco.core.tools.IncrementalInstrumenter;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 
@@ -40,7 +39,11 @@ public class Instrument extends Command {
 	@Argument(usage = "list of folder or files to instrument recusively", metaVar = "<sourcefiles>")
 	List<File> source = new ArrayList<File>();
 
-	private Instrumenter instrumenter;
+	@Option(name = "--threads", usage = "number of threads used to instrument files and archive entries (default 1)", metaVar = "<n>")
+	int threads = 1;
+
+	@Option(name = "--incremental", usage = "only instrument modified files, a manifest is written next to the destination folder")
+	boolean incremental = false;
 
 	@Override
 	public String description() {
@@ -51,52 +54,33 @@ public class Instrument extends Command {
 	public int execute(final PrintWriter out, final PrintWriter err)
 			throws IOException {
 		final File absoluteDest = dest.getAbsoluteFile();
-		instrumenter = new Instrumenter(
+		final Instrumenter instrumenter = new Instrumenter(
 				new OfflineInstrumentationAccessGenerator());
-		int total = 0;
+		instrumenter.setThreads(threads);
+		final Map<File, File> files = new LinkedHashMap<File, File>();
 		for (final File s : source) {
 			if (s.isFile()) {
-				total += instrument(s, new File(absoluteDest, s.getName()));
+				files.put(s, new File(absoluteDest, s.getName()));
 			} else {
-				total += instrumentRecursive(s, absoluteDest);
+				files.put(s, absoluteDest);
 			}
 		}
+		final int total;
+		if (incremental) {
+			final IncrementalInstrumenter incrementalInstrumenter = new IncrementalInstrumenter(
+					instrumenter, new File(absoluteDest.getParentFile(),
+							absoluteDest.getName() + ".manifest"));
+			total = incrementalInstrumenter.instrumentAll(files);
+			out.printf(
+					"[INFO] %s unchanged files skipped, %s outdated files removed.%n",
+					Integer.valueOf(incrementalInstrumenter.getSkippedFiles()),
+					Integer.valueOf(incrementalInstrumenter.getRemovedFiles()));
+		} else {
+			total = instrumenter.instrumentAll(files);
+		}
 		out.printf("[INFO] %s classes instrumented to %s.%n",
 				Integer.valueOf(total), absoluteDest);
 		return 0;
 	}
 
-	private int instrumentRecursive(final File src, final File dest)
-			throws IOException {
-		int total = 0;
-		if (src.isDirectory()) {
-			for (final File child : src.listFiles()) {
-				total += instrumentRecursive(child,
-						new File(dest, child.getName()));
-			}
-		} else {
-			total += instrument(src, dest);
-		}
-		return total;
-	}
-
-	private int instrument(final File src, final File dest) throws IOException {
-		dest.getParentFile().mkdirs();
-		final InputStream input = new FileInputStream(src);
-		try {
-			final OutputStream output = new FileOutputStream(dest);
-			try {
-				return instrumenter.instrumentAll(input, output,
-						src.getAbsolutePath());
-			} finally {
-				output.close();
-			}
-		} catch (final IOException e) {
-			dest.delete();
-			throw e;
-		} finally {
-			input.close();
-		}
-	}
-
 }
@@ -20,6 +20,7 @@ import java.util.List;
 
 import org.jacoco.cli.internal.Command;
 import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 
@@ -34,6 +35,15 @@ public class Merge extends Command {
 	@Option(name = "--destfile", usage = "file to write merged execution data to", metaVar = "<path>", required = true)
 	File destfile;
 
+	@Option(name = "--indexed", usage = "write execution data in the indexed format which allows random access")
+	boolean indexed = false;
+
+	@Option(name = "--streaming", usage = "merge inputs sorted by class id on the fly instead of loading all execution data into memory", forbids = "--indexed")
+	boolean streaming = false;
+
+	@Option(name = "--threads", usage = "number of threads used to sort inputs in streaming mode (default 1)", metaVar = "<n>")
+	int threads = 1;
+
 	@Override
 	public String description() {
 		return "Merges multiple exec files into a new one.";
@@ -42,10 +52,34 @@ public class Merge extends Command {
 	@Override
 	public int execute(final PrintWriter out, final PrintWriter err)
 			throws IOException {
+		if (streaming) {
+			return executeStreaming(out);
+		}
 		final ExecFileLoader loader = loadExecutionData(out);
 		out.printf("[INFO] Writing execution data to %s.%n",
 				destfile.getAbsolutePath());
-		loader.save(destfile, true);
+		if (indexed) {
+			loader.saveIndexed(destfile);
+		} else {
+			loader.save(destfile, true);
+		}
+		return 0;
+	}
+
+	private int executeStreaming(final PrintWriter out) throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger();
+		merger.setThreads(threads);
+		if (execfiles.isEmpty()) {
+			out.println("[WARN] No execution data files provided.");
+		}
+		for (final File file : execfiles) {
+			out.printf("[INFO] Loading execution data file %s.%n",
+					file.getAbsolutePath());
+			merger.add(file);
+		}
+		out.printf("[INFO] Writing execution data to %s.%n",
+				destfile.getAbsolutePath());
+		merger.merge(destfile, true);
 		return 0;
 	}
 
@@ -23,17 +23,20 @@ import java.util.List;
 
 import org.jacoco.cli.internal.Command;
 import org.jacoco.core.analysis.Analyzer;
-import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.CompactCoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.tools.ExecFileLoader;
 import org.jacoco.report.DirectorySourceFileLocator;
 import org.jacoco.report.FileMultiReportOutput;
+import org.jacoco.report.IMultiReportOutput;
 import org.jacoco.report.IReportVisitor;
 import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.IncrementalFileMultiReportOutput;
 import org.jacoco.report.MultiReportVisitor;
 import org.jacoco.report.MultiSourceFileLocator;
+import org.jacoco.report.binary.BinaryFormatter;
 import org.jacoco.report.csv.CSVFormatter;
 import org.jacoco.report.html.HTMLFormatter;
 import org.jacoco.report.xml.XMLFormatter;
@@ -57,6 +60,12 @@ public class Report extends Command {
 	@Option(name = "--tabwith", usage = "tab stop width for the source pages (default 4)", metaVar = "<n>")
 	int tabwidth = 4;
 
+	@Option(name = "--threads", usage = "number of threads used to analyze class files and render HTML pages (default 1)", metaVar = "<n>")
+	int threads = 1;
+
+	@Option(name = "--reportcache", usage = "directory to cache analysis results of class files", metaVar = "<dir>")
+	File cachedir;
+
 	@Option(name = "--name", usage = "name used for this report", metaVar = "<name>")
 	String name = "JaCoCo Coverage Report";
 
@@ -66,12 +75,20 @@ public class Report extends Command {
 	@Option(name = "--xml", usage = "output file for the XML report", metaVar = "<file>")
 	File xml;
 
+	@Option(name = "--binary", usage = "output file for the binary report", metaVar = "<file>")
+	File binary;
+
 	@Option(name = "--csv", usage = "output file for the CSV report", metaVar = "<file>")
 	File csv;
 
 	@Option(name = "--html", usage = "output directory for the HTML report", metaVar = "<dir>")
 	File html;
 
+	@Option(name = "--incremental", usage = "only write modified pages of the HTML report, a manifest is written to the HTML report directory")
+	boolean incremental = false;
+
+	private IncrementalFileMultiReportOutput incrementalOutput;
+
 	@Override
 	public String description() {
 		return "Generate reports in different formats by reading exec and Java class files.";
@@ -104,11 +121,11 @@ public class Report extends Command {
 
 	private IBundleCoverage analyze(final ExecutionDataStore data,
 			final PrintWriter out) throws IOException {
-		final CoverageBuilder builder = new CoverageBuilder();
+		final CompactCoverageBuilder builder = new CompactCoverageBuilder();
 		final Analyzer analyzer = new Analyzer(data, builder);
-		for (final File f : classfiles) {
-			analyzer.analyzeAll(f);
-		}
+		analyzer.setThreads(threads);
+		analyzer.setCacheDirectory(cachedir);
+		analyzer.analyzeAll(classfiles);
 		printNoMatchWarning(builder.getNoMatchClasses(), out);
 		return builder.getBundle(name);
 	}
@@ -138,6 +155,12 @@ public class Report extends Command {
 				loader.getExecutionDataStore().getContents());
 		visitor.visitBundle(bundle, getSourceLocator());
 		visitor.visitEnd();
+		if (incrementalOutput != null) {
+			out.printf(
+					"[INFO] %s unchanged HTML files skipped, %s outdated files removed.%n",
+					Integer.valueOf(incrementalOutput.getSkippedFiles()),
+					Integer.valueOf(incrementalOutput.getRemovedFiles()));
+		}
 	}
 
 	private IReportVisitor createReportVisitor() throws IOException {
@@ -148,6 +171,12 @@ public class Report extends Command {
 			visitors.add(formatter.createVisitor(new FileOutputStream(xml)));
 		}
 
+		if (binary != null) {
+			final BinaryFormatter formatter = new BinaryFormatter();
+			visitors.add(
+					formatter.createVisitor(new FileOutputStream(binary)));
+		}
+
 		if (csv != null) {
 			final CSVFormatter formatter = new CSVFormatter();
 			visitors.add(formatter.createVisitor(new FileOutputStream(csv)));
@@ -155,8 +184,15 @@ public class Report extends Command {
 
 		if (html != null) {
 			final HTMLFormatter formatter = new HTMLFormatter();
-			visitors.add(
-					formatter.createVisitor(new FileMultiReportOutput(html)));
+			formatter.setThreads(threads);
+			final IMultiReportOutput output;
+			if (incremental) {
+				incrementalOutput = new IncrementalFileMultiReportOutput(html);
+				output = incrementalOutput;
+			} else {
+				output = new FileMultiReportOutput(html);
+			}
+			visitors.add(formatter.createVisitor(output));
 		}
 
 		return new MultiReportVisitor(visitors);
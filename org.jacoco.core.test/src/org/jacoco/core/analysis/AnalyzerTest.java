@@ -38,6 +38,9 @@ import java.util.zip.ZipOutputStream;
 
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.internal.Pack200Streams;
+import org.jacoco.core.internal.analysis.ClassStructure;
+import org.jacoco.core.internal.analysis.ClassStructureCache;
+import org.jacoco.core.internal.analysis.StringPool;
 import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.AssumptionViolatedException;
@@ -164,7 +167,7 @@ public class AnalyzerTest {
 		final byte[] bytes = TargetLoader
 				.getClassDataAsBytes(AnalyzerTest.class);
 		executionData.get(Long.valueOf(CRC64.classId(bytes)),
-				"org/jacoco/core/analysis/AnalyzerTest", 200);
+				"org/jacoco/core/analysis/AnalyzerTest", 400);
 		analyzer.analyzeClass(bytes, "Test");
 		assertFalse(classes.get("org/jacoco/core/analysis/AnalyzerTest")
 				.isNoMatch());
@@ -437,6 +440,180 @@ public class AnalyzerTest {
 		}
 	}
 
+	@Test
+	public void setThreads_should_reject_non_positive_values() {
+		try {
+			analyzer.setThreads(0);
+			fail("expected exception");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Number of threads must be positive: 0",
+					e.getMessage());
+		}
+		assertEquals(1, analyzer.getThreads());
+	}
+
+	@Test
+	public void analyzeAll_should_analyze_folder_with_multiple_threads()
+			throws IOException {
+		analyzer.setThreads(4);
+		createClassfile("bin1", Analyzer.class);
+		createClassfile("bin2", AnalyzerTest.class);
+		createClassfile("bin2/sub", CoverageBuilder.class);
+
+		final int count = analyzer.analyzeAll(folder.getRoot());
+
+		assertEquals(3, count);
+		assertClasses("org/jacoco/core/analysis/Analyzer",
+				"org/jacoco/core/analysis/AnalyzerTest",
+				"org/jacoco/core/analysis/CoverageBuilder");
+	}
+
+	@Test
+	public void analyzeAll_should_analyze_zip_with_multiple_threads()
+			throws IOException {
+		analyzer.setThreads(4);
+		final File file = new File(folder.getRoot(), "classes.jar");
+		final ZipOutputStream zip = new ZipOutputStream(
+				new FileOutputStream(file));
+		zip.putNextEntry(new ZipEntry("Analyzer.class"));
+		zip.write(TargetLoader.getClassDataAsBytes(Analyzer.class));
+		zip.putNextEntry(new ZipEntry("readme.txt"));
+		zip.write("Hello".getBytes());
+		zip.putNextEntry(new ZipEntry("nested.jar"));
+		final ByteArrayOutputStream nested = new ByteArrayOutputStream();
+		final ZipOutputStream nestedZip = new ZipOutputStream(nested);
+		nestedZip.putNextEntry(new ZipEntry("AnalyzerTest.class"));
+		nestedZip.write(TargetLoader.getClassDataAsBytes(AnalyzerTest.class));
+		nestedZip.finish();
+		zip.write(nested.toByteArray());
+		zip.close();
+
+		final int count = analyzer.analyzeAll(file);
+
+		assertEquals(2, count);
+		assertClasses("org/jacoco/core/analysis/Analyzer",
+				"org/jacoco/core/analysis/AnalyzerTest");
+	}
+
+	@Test
+	public void analyzeAll_should_report_broken_class_with_multiple_threads()
+			throws IOException {
+		analyzer.setThreads(4);
+		final File file = new File(folder.getRoot(), "broken.jar");
+		final ZipOutputStream zip = new ZipOutputStream(
+				new FileOutputStream(file));
+		zip.putNextEntry(
+				new ZipEntry("org/jacoco/core/analysis/AnalyzerTest.class"));
+		final byte[] brokenclass = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+		brokenclass[10] = 0x23;
+		zip.write(brokenclass);
+		zip.close();
+
+		try {
+			analyzer.analyzeAll(file);
+			fail("expected exception");
+		} catch (IOException e) {
+			assertEquals("Error while analyzing " + file.getPath()
+					+ "@org/jacoco/core/analysis/AnalyzerTest.class.",
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void analyzeAll_should_analyze_path_with_multiple_threads()
+			throws IOException {
+		analyzer.setThreads(2);
+		createClassfile("bin1", Analyzer.class);
+		createClassfile("bin2", AnalyzerTest.class);
+		String path = "bin1" + File.pathSeparator + "bin2";
+		final int count = analyzer.analyzeAll(path, folder.getRoot());
+		assertEquals(2, count);
+		assertClasses("org/jacoco/core/analysis/Analyzer",
+				"org/jacoco/core/analysis/AnalyzerTest");
+	}
+
+	@Test
+	public void analyzeClass_should_create_cache_entries() throws IOException {
+		final File cacheDir = new File(folder.getRoot(), "cache");
+		analyzer.setCacheDirectory(cacheDir);
+		final byte[] bytes = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+
+		analyzer.analyzeClass(bytes, "Test");
+
+		assertEquals(cacheDir, analyzer.getCacheDirectory());
+		assertClasses("org/jacoco/core/analysis/AnalyzerTest");
+		final ClassStructure structure = new ClassStructureCache(cacheDir,
+				new StringPool()).get(CRC64.classId(bytes));
+		assertEquals("org/jacoco/core/analysis/AnalyzerTest",
+				structure.getName());
+	}
+
+	@Test
+	public void analyzeClass_should_use_cache_entries() throws IOException {
+		final File cacheDir = new File(folder.getRoot(), "cache");
+		final byte[] bytes = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+		new ClassStructureCache(cacheDir, new StringPool())
+				.put(CRC64.classId(bytes), new ClassStructure("Cached"));
+		executionData.get(Long.valueOf(0),
+				"org/jacoco/core/analysis/AnalyzerTest", 0);
+		analyzer.setCacheDirectory(cacheDir);
+
+		analyzer.analyzeClass(bytes, "Test");
+
+		assertClasses("Cached");
+		assertEquals(CRC64.classId(bytes), classes.get("Cached").getId());
+		assertTrue(classes.get("Cached").isNoMatch());
+	}
+
+	@Test
+	public void analyzeClass_should_give_same_result_with_cache()
+			throws IOException {
+		final byte[] bytes = TargetLoader.getClassDataAsBytes(Analyzer.class);
+		final boolean[] probes = executionData
+				.get(Long.valueOf(CRC64.classId(bytes)),
+						"org/jacoco/core/analysis/Analyzer", 1000)
+				.getProbes();
+		for (int i = 0; i < probes.length; i += 2) {
+			probes[i] = true;
+		}
+		analyzer.analyzeClass(bytes, "Test");
+		final IClassCoverage expected = classes
+				.remove("org/jacoco/core/analysis/Analyzer");
+		analyzer.setCacheDirectory(new File(folder.getRoot(), "cache"));
+
+		analyzer.analyzeClass(bytes, "Test");
+		final IClassCoverage missed = classes
+				.remove("org/jacoco/core/analysis/Analyzer");
+		analyzer.analyzeClass(bytes, "Test");
+		final IClassCoverage hit = classes
+				.remove("org/jacoco/core/analysis/Analyzer");
+
+		for (final ICoverageNode.CounterEntity e : ICoverageNode.CounterEntity
+				.values()) {
+			assertEquals(expected.getCounter(e), missed.getCounter(e));
+			assertEquals(expected.getCounter(e), hit.getCounter(e));
+		}
+	}
+
+	@Test
+	public void analyzeClass_should_throw_exception_when_cache_can_not_be_written()
+			throws IOException {
+		final File cacheDir = folder.newFile("cache");
+		analyzer.setCacheDirectory(cacheDir);
+
+		try {
+			analyzer.analyzeClass(
+					TargetLoader.getClassDataAsBytes(AnalyzerTest.class),
+					"Test");
+			fail("expected exception");
+		} catch (IOException e) {
+			assertEquals("Error while analyzing Test.", e.getMessage());
+		}
+	}
+
 	private void createClassfile(final String dir, final Class<?> source)
 			throws IOException {
 		File file = new File(folder.getRoot(), dir);
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CompactCoverageBuilder}.
+ */
+public class CompactCoverageBuilderTest {
+
+	private CompactCoverageBuilder compactBuilder;
+
+	private CoverageBuilder coverageBuilder;
+
+	@Before
+	public void setup() {
+		compactBuilder = new CompactCoverageBuilder();
+		coverageBuilder = new CoverageBuilder();
+	}
+
+	@Test
+	public void should_create_empty_bundle() {
+		final IBundleCoverage bundle = compactBuilder.getBundle("empty");
+
+		assertEquals("empty", bundle.getName());
+		assertTrue(bundle.getPackages().isEmpty());
+	}
+
+	@Test
+	public void should_create_same_bundle_as_CoverageBuilder() {
+		addClass(1, false, "org/example/Sample", "Sample.java", 3, 4);
+		addClass(2, false, "org/example/Sample$Inner", "Sample.java", 4, 5);
+		addClass(3, true, "org/example/Other", "Other.java", 7);
+		addClass(4, false, "org/example/NoSource", null, 9);
+		addClass(5, false, "org/example/sub/Sub", "Sub.java", 1, 2, 3);
+		addClass(6, false, "Default", "Default.java", 8);
+
+		assertBundle(coverageBuilder.getBundle("bundle"),
+				compactBuilder.getBundle("bundle"));
+	}
+
+	@Test
+	public void should_sort_classes_and_source_files_by_name() {
+		addClass(1, false, "org/example/B", "B.java", 1);
+		addClass(2, false, "org/example/C", "A.java", 1);
+		addClass(3, false, "org/example/A", "C.java", 1);
+
+		final IPackageCoverage p = compactBuilder.getBundle("bundle")
+				.getPackages().iterator().next();
+
+		final Iterator<IClassCoverage> classes = p.getClasses().iterator();
+		assertEquals("org/example/A", classes.next().getName());
+		assertEquals("org/example/B", classes.next().getName());
+		assertEquals("org/example/C", classes.next().getName());
+		final Iterator<ISourceFileCoverage> sourceFiles = p.getSourceFiles()
+				.iterator();
+		assertEquals("A.java", sourceFiles.next().getName());
+		assertEquals("B.java", sourceFiles.next().getName());
+		assertEquals("C.java", sourceFiles.next().getName());
+	}
+
+	@Test
+	public void should_return_no_match_classes() {
+		addClass(1, false, "org/example/Match", null, 1);
+		addClass(2, true, "org/example/NoMatch", null, 1);
+
+		final Collection<IClassCoverage> nomatch = compactBuilder
+				.getNoMatchClasses();
+		assertEquals(1, nomatch.size());
+		assertEquals("org/example/NoMatch", nomatch.iterator().next().getName());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_fail_for_different_classes_with_same_name() {
+		addClass(1, false, "org/example/Sample", null, 3);
+		addClass(2, false, "org/example/Sample", null, 3);
+	}
+
+	@Test
+	public void should_ignore_identical_classes_with_same_name() {
+		addClass(1, false, "org/example/Sample", "Sample.java", 3);
+		addClass(1, false, "org/example/Sample", "Sample.java", 3);
+
+		final IPackageCoverage p = compactBuilder.getBundle("bundle")
+				.getPackages().iterator().next();
+		assertEquals(1, p.getClasses().size());
+		assertEquals(1, p.getClassCounter().getTotalCount());
+		final ISourceFileCoverage s = p.getSourceFiles().iterator().next();
+		assertEquals(1, s.getClassCounter().getTotalCount());
+	}
+
+	private void addClass(final long id, final boolean nomatch,
+			final String name, final String source, final int... lines) {
+		final ClassCoverageImpl coverage = new ClassCoverageImpl(name, id,
+				nomatch);
+		coverage.setSourceFileName(source);
+		final MethodCoverageImpl method = new MethodCoverageImpl("doit",
+				"()V", null, false, name);
+		for (final int line : lines) {
+			method.increment(CounterImpl.getInstance(line % 2, 1),
+					CounterImpl.getInstance(1, line % 3), line, line);
+		}
+		method.incrementMethodCounter();
+		coverage.addMethod(method);
+		coverageBuilder.visitCoverage(coverage);
+		compactBuilder.visitCoverage(coverage);
+	}
+
+	private static void assertBundle(final IBundleCoverage expected,
+			final IBundleCoverage actual) {
+		assertNode(expected, actual);
+		assertEquals(expected.getPackages().size(),
+				actual.getPackages().size());
+		for (final IPackageCoverage p : expected.getPackages()) {
+			final IPackageCoverage a = find(actual.getPackages(),
+					p.getName());
+			assertNode(p, a);
+			assertEquals(p.getClasses().size(), a.getClasses().size());
+			for (final IClassCoverage c : p.getClasses()) {
+				final IClassCoverage ac = find(a.getClasses(), c.getName());
+				assertSourceNode(c, ac);
+				assertEquals(c.getId(), ac.getId());
+				assertEquals(c.isNoMatch(), ac.isNoMatch());
+				assertEquals(c.getSourceFileName(), ac.getSourceFileName());
+				assertEquals(c.getMethods().size(), ac.getMethods().size());
+			}
+			assertEquals(p.getSourceFiles().size(),
+					a.getSourceFiles().size());
+			for (final ISourceFileCoverage s : p.getSourceFiles()) {
+				final ISourceFileCoverage as = find(a.getSourceFiles(),
+						s.getName());
+				assertSourceNode(s, as);
+				assertEquals(s.getPackageName(), as.getPackageName());
+			}
+		}
+	}
+
+	private static <T extends ICoverageNode> T find(
+			final Collection<T> nodes, final String name) {
+		for (final T node : nodes) {
+			if (node.getName().equals(name)) {
+				return node;
+			}
+		}
+		throw new AssertionError("Missing node " + name);
+	}
+
+	private static void assertSourceNode(final ISourceNode expected,
+			final ISourceNode actual) {
+		assertNode(expected, actual);
+		assertEquals(expected.getFirstLine(), actual.getFirstLine());
+		assertEquals(expected.getLastLine(), actual.getLastLine());
+		for (int nr = expected.getFirstLine(); nr <= expected
+				.getLastLine(); nr++) {
+			assertEquals(expected.getLine(nr).getStatus(),
+					actual.getLine(nr).getStatus());
+			assertEquals(expected.getLine(nr).getInstructionCounter(),
+					actual.getLine(nr).getInstructionCounter());
+			assertEquals(expected.getLine(nr).getBranchCounter(),
+					actual.getLine(nr).getBranchCounter());
+			assertEquals(expected.getExecutionCount(nr),
+					actual.getExecutionCount(nr));
+		}
+	}
+
+	private static void assertNode(final ICoverageNode expected,
+			final ICoverageNode actual) {
+		assertEquals(expected.getElementType(), actual.getElementType());
+		assertEquals(expected.getName(), actual.getName());
+		for (final CounterEntity entity : CounterEntity.values()) {
+			assertEquals(entity.name(), expected.getCounter(entity),
+					actual.getCounter(entity));
+		}
+	}
+
+}
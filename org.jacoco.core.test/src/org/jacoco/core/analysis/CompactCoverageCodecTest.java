@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.analysis.ICoverageNode.ElementType;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CompactCoverageCodec}.
+ */
+public class CompactCoverageCodecTest {
+
+	@Test
+	public void should_read_written_counters() throws IOException {
+		final IPackageCoverage p = createPackage();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CompactCoverageCodec.writeCounters(p, out);
+		out.write(42);
+
+		final ByteArrayInputStream in = new ByteArrayInputStream(
+				out.toByteArray());
+		final ICoverageNode node = CompactCoverageCodec
+				.readCounters(ElementType.PACKAGE, "org/example", in);
+
+		assertEquals(ElementType.PACKAGE, node.getElementType());
+		assertEquals("org/example", node.getName());
+		for (final CounterEntity entity : CounterEntity.values()) {
+			assertEquals(entity.name(), p.getCounter(entity),
+					node.getCounter(entity));
+		}
+		assertEquals(42, in.read());
+	}
+
+	@Test
+	public void should_decode_encoded_package() throws IOException {
+		final IPackageCoverage p = createPackage();
+
+		final IPackageCoverage decoded = CompactCoverageCodec.decodePackage(
+				"org/example", CompactCoverageCodec.encodePackage(p));
+
+		assertEquals("org/example", decoded.getName());
+		assertEquals(p.getInstructionCounter(),
+				decoded.getInstructionCounter());
+		assertEquals(1, decoded.getClasses().size());
+		final IClassCoverage c = decoded.getClasses().iterator().next();
+		assertEquals("org/example/Sample", c.getName());
+		assertEquals(1, c.getId());
+		assertEquals(CounterImpl.getInstance(1, 1),
+				c.getLine(3).getInstructionCounter());
+		assertEquals(1, decoded.getSourceFiles().size());
+		assertEquals("Sample.java",
+				decoded.getSourceFiles().iterator().next().getName());
+	}
+
+	private static IPackageCoverage createPackage() {
+		final ClassCoverageImpl coverage = new ClassCoverageImpl(
+				"org/example/Sample", 1, false);
+		coverage.setSourceFileName("Sample.java");
+		final MethodCoverageImpl method = new MethodCoverageImpl("doit",
+				"()V", null, false, "org/example/Sample");
+		method.increment(CounterImpl.getInstance(1, 1),
+				CounterImpl.getInstance(1, 1), 3, 3);
+		method.incrementMethodCounter();
+		coverage.addMethod(method);
+		final CoverageBuilder builder = new CoverageBuilder();
+		builder.visitCoverage(coverage);
+		return builder.getBundle("bundle").getPackages().iterator().next();
+	}
+
+}
@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ExecutionDataIndex} and
+ * {@link ExecutionDataIndexWriter}.
+ */
+public class ExecutionDataIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ByteArrayOutputStream buffer;
+
+	private ExecutionDataIndexWriter writer;
+
+	@Before
+	public void setup() {
+		buffer = new ByteArrayOutputStream();
+		writer = new ExecutionDataIndexWriter(buffer);
+	}
+
+	@Test
+	public void should_read_empty_file() throws IOException {
+		final ExecutionDataIndex index = read();
+
+		assertEquals(0, index.getClassCount());
+		assertNull(index.get(123));
+		assertFalse(index.contains("Foo"));
+	}
+
+	@Test
+	public void should_read_execution_data() throws IOException {
+		writer.visitClassExecution(new ExecutionData(-5, "Foo",
+				new boolean[] { true, false, true, false, false, false,
+						false, false, true }));
+		writer.visitClassExecution(
+				new ExecutionData(42, "Bar", new boolean[] { false, true }));
+		writer.visitClassExecution(
+				new ExecutionData(7, "Foo", new boolean[] { true }));
+
+		final ExecutionDataIndex index = read();
+
+		assertEquals(3, index.getClassCount());
+		assertEquals(-5, index.getId(0));
+		assertEquals(7, index.getId(1));
+		assertEquals(42, index.getId(2));
+		final ExecutionData foo = index.get(-5);
+		assertEquals("Foo", foo.getName());
+		assertArrayEquals(new boolean[] { true, false, true, false, false,
+				false, false, false, true }, foo.getProbes());
+		assertEquals("Bar", index.get(42).getName());
+		assertArrayEquals(new boolean[] { false, true },
+				index.get(42).getProbes());
+		assertNull(index.get(8));
+		assertTrue(index.contains("Foo"));
+		assertTrue(index.contains("Bar"));
+		assertFalse(index.contains("Baz"));
+	}
+
+	@Test
+	public void should_read_execution_counts() throws IOException {
+		writer.visitClassExecution(new ExecutionData(3, "Foo",
+				new long[] { 0x5L }, 3, new long[] { 2, 0, 0x123456789AL }));
+		writer.visitClassExecution(
+				new ExecutionData(4, "Bar", new boolean[] { true }));
+
+		final ExecutionDataIndex index = read();
+
+		assertArrayEquals(new long[] { 2, 0, 0x123456789AL },
+				index.get(3).getCounts());
+		assertArrayEquals(new boolean[] { true, false, true },
+				index.get(3).getProbes());
+		assertNull(index.get(4).getCounts());
+	}
+
+	@Test
+	public void should_merge_execution_counts_with_same_id()
+			throws IOException {
+		writer.visitClassExecution(new ExecutionData(1, "Foo",
+				new long[] { 0x1L }, 2, new long[] { 3, 0 }));
+		writer.visitClassExecution(new ExecutionData(1, "Foo",
+				new long[] { 0x3L }, 2, new long[] { 4, 5 }));
+
+		assertArrayEquals(new long[] { 7, 5 }, read().get(1).getCounts());
+	}
+
+	@Test
+	public void should_skip_execution_data_without_hits() throws IOException {
+		writer.visitClassExecution(
+				new ExecutionData(1, "Foo", new boolean[] { false }));
+
+		assertEquals(0, read().getClassCount());
+	}
+
+	@Test
+	public void should_merge_execution_data_with_same_id()
+			throws IOException {
+		final ExecutionData data1 = new ExecutionData(1, "Foo",
+				new boolean[] { true, false });
+		writer.visitClassExecution(data1);
+		writer.visitClassExecution(
+				new ExecutionData(1, "Foo", new boolean[] { false, true }));
+
+		final ExecutionDataIndex index = read();
+
+		assertEquals(1, index.getClassCount());
+		assertArrayEquals(new boolean[] { true, true },
+				index.get(1).getProbes());
+		assertArrayEquals(new boolean[] { true, false }, data1.getProbes());
+	}
+
+	@Test
+	public void should_read_session_infos() throws IOException {
+		writer.visitSessionInfo(new SessionInfo("first", 1, 2));
+		writer.visitSessionInfo(new SessionInfo("s\u00e9cond", 3, 4));
+
+		final List<SessionInfo> infos = new ArrayList<SessionInfo>();
+		read().acceptSessions(new ISessionInfoVisitor() {
+			public void visitSessionInfo(final SessionInfo info) {
+				infos.add(info);
+			}
+		});
+
+		assertEquals(2, infos.size());
+		assertEquals("first", infos.get(0).getId());
+		assertEquals(1, infos.get(0).getStartTimeStamp());
+		assertEquals(2, infos.get(0).getDumpTimeStamp());
+		assertEquals("s\u00e9cond", infos.get(1).getId());
+		assertEquals(3, infos.get(1).getStartTimeStamp());
+		assertEquals(4, infos.get(1).getDumpTimeStamp());
+	}
+
+	@Test
+	public void should_write_all_execution_data_to_visitor()
+			throws IOException {
+		writer.visitClassExecution(
+				new ExecutionData(2, "Foo", new boolean[] { true }));
+		writer.visitClassExecution(
+				new ExecutionData(1, "Bar", new boolean[] { true }));
+
+		final List<ExecutionData> contents = new ArrayList<ExecutionData>();
+		read().acceptExecutionData(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				contents.add(data);
+			}
+		});
+
+		assertEquals(2, contents.size());
+		assertEquals("Bar", contents.get(0).getName());
+		assertEquals("Foo", contents.get(1).getName());
+	}
+
+	@Test
+	public void should_open_mapped_file_with_multiple_segments()
+			throws IOException {
+		for (int i = 0; i < 100; i++) {
+			final boolean[] probes = new boolean[i + 1];
+			probes[i] = true;
+			writer.visitClassExecution(
+					new ExecutionData(i, "Class" + i, probes));
+		}
+		writer.visitSessionInfo(new SessionInfo("session", 1, 2));
+		writer.finish();
+		final File file = folder.newFile("indexed.exec");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(buffer.toByteArray());
+		out.close();
+
+		final ExecutionDataIndex index = ExecutionDataIndex.open(file, 7);
+
+		assertEquals(100, index.getClassCount());
+		for (int i = 0; i < 100; i++) {
+			final ExecutionData data = index.get(i);
+			assertEquals("Class" + i, data.getName());
+			assertEquals(i + 1, data.getProbes().length);
+			assertTrue(data.getProbes()[i]);
+			assertTrue(index.contains("Class" + i));
+		}
+	}
+
+	@Test
+	public void merge_should_merge_indexes_in_order_of_ids()
+			throws IOException {
+		writer.visitClassExecution(
+				new ExecutionData(3, "C", new boolean[] { true, false }));
+		writer.visitClassExecution(
+				new ExecutionData(1, "A", new boolean[] { true }));
+		final ExecutionDataIndex index1 = read();
+		setup();
+		writer.visitClassExecution(
+				new ExecutionData(2, "B", new boolean[] { true }));
+		writer.visitClassExecution(
+				new ExecutionData(3, "C", new boolean[] { false, true }));
+		final ExecutionDataIndex index2 = read();
+		setup();
+		final ExecutionDataIndex empty = read();
+
+		final List<ExecutionData> contents = new ArrayList<ExecutionData>();
+		ExecutionDataIndex.merge(Arrays.asList(index1, empty, index2),
+				new IExecutionDataVisitor() {
+					public void visitClassExecution(final ExecutionData data) {
+						contents.add(data);
+					}
+				});
+
+		assertEquals(3, contents.size());
+		assertEquals("A", contents.get(0).getName());
+		assertEquals("B", contents.get(1).getName());
+		assertEquals("C", contents.get(2).getName());
+		assertArrayEquals(new boolean[] { true, true },
+				contents.get(2).getProbes());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void merge_should_fail_for_incompatible_data() throws IOException {
+		writer.visitClassExecution(
+				new ExecutionData(1, "A", new boolean[] { true }));
+		final ExecutionDataIndex index1 = read();
+		setup();
+		writer.visitClassExecution(
+				new ExecutionData(1, "B", new boolean[] { true }));
+		final ExecutionDataIndex index2 = read();
+
+		ExecutionDataIndex.merge(Arrays.asList(index1, index2),
+				new ExecutionDataStore());
+	}
+
+	@Test
+	public void isIndexed_should_detect_format() throws IOException {
+		writer.finish();
+
+		assertTrue(ExecutionDataIndex.isIndexed(buffer.toByteArray()));
+		assertFalse(ExecutionDataIndex
+				.isIndexed(ExecutionDataWriter.getFileHeader()));
+		assertFalse(ExecutionDataIndex.isIndexed(new byte[] { 0x01 }));
+	}
+
+	@Test
+	public void should_throw_exception_for_invalid_content() {
+		try {
+			ExecutionDataIndex.read(new ByteArrayInputStream(
+					"Invalid content of an execution data file"
+							.getBytes()));
+			fail("exception expected");
+		} catch (IOException e) {
+			assertEquals("Invalid execution data file.", e.getMessage());
+		}
+	}
+
+	@Test(expected = IncompatibleExecDataVersionException.class)
+	public void should_throw_exception_for_stream_format() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(ExecutionDataWriter.getFileHeader());
+		out.write(new byte[ExecutionDataIndexWriter.TRAILER_SIZE]);
+
+		ExecutionDataIndex.read(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	private ExecutionDataIndex read() throws IOException {
+		writer.finish();
+		return ExecutionDataIndex
+				.read(new ByteArrayInputStream(buffer.toByteArray()));
+	}
+
+}
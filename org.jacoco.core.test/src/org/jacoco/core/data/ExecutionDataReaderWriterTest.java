@@ -283,6 +283,82 @@ public class ExecutionDataReaderWriterTest {
 		assertArrayEquals(data, store.get(123).getProbes());
 	}
 
+	@Test
+	public void testClassWithCounts() throws IOException {
+		final long[] counts = new long[] { 0, 1, 300, 0x123456789AL, 0 };
+		writer.visitClassExecution(new ExecutionData(3, "Sample",
+				new long[] { 0xEL }, 5, counts));
+		assertFalse(createReaderWithVisitors().read());
+		assertArrayEquals(
+				new boolean[] { false, true, true, true, false },
+				store.get(3).getProbes());
+		assertTrue(Arrays.equals(counts, store.get(3).getCounts()));
+	}
+
+	@Test
+	public void testClassWithCountsWritesCountsHeaderOnce()
+			throws IOException {
+		final int headerSize = buffer.size();
+		writer.visitClassExecution(new ExecutionData(3, "Sample",
+				new long[] { 0x1L }, 1, new long[] { 5 }));
+		writer.visitClassExecution(new ExecutionData(4, "Sample",
+				new long[] { 0x1L }, 1, new long[] { 7 }));
+		final byte[] content = buffer.toByteArray();
+		assertEquals(ExecutionDataWriter.BLOCK_HEADER, content[headerSize]);
+		final char version = ExecutionDataWriter.COUNTS_FORMAT_VERSION;
+		assertEquals(version >> 8, 0xFF & content[headerSize + 3]);
+		assertEquals(version & 0xFF, 0xFF & content[headerSize + 4]);
+		assertEquals(ExecutionDataWriter.BLOCK_EXECUTIONDATA_COUNTS,
+				content[headerSize + 5]);
+
+		assertFalse(createReaderWithVisitors().read());
+		assertEquals(5, store.get(3).getCounts()[0]);
+		assertEquals(7, store.get(4).getCounts()[0]);
+	}
+
+	@Test
+	public void testClassWithoutCountsWritesNoCountsHeader()
+			throws IOException {
+		final int headerSize = buffer.size();
+		writer.visitClassExecution(
+				new ExecutionData(3, "Sample", new boolean[] { true }));
+		assertEquals(ExecutionDataWriter.BLOCK_EXECUTIONDATA,
+				buffer.toByteArray()[headerSize]);
+	}
+
+	@Test(expected = IncompatibleExecDataVersionException.class)
+	public void testCountsRejectedByReaderWithoutCountsSupport()
+			throws IOException {
+		writer.visitClassExecution(new ExecutionData(3, "Sample",
+				new long[] { 0x1L }, 1, new long[] { 5 }));
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(buffer.toByteArray())) {
+			@Override
+			protected boolean readBlock(final byte blocktype)
+					throws IOException {
+				if (blocktype == ExecutionDataWriter.BLOCK_HEADER) {
+					// Header check of releases before execution counts
+					in.readChar();
+					final char version = in.readChar();
+					if (version != ExecutionDataWriter.FORMAT_VERSION) {
+						throw new IncompatibleExecDataVersionException(
+								version);
+					}
+					return true;
+				}
+				return super.readBlock(blocktype);
+			}
+		};
+		reader.setExecutionDataVisitor(store);
+		reader.read();
+	}
+
+	@Test(expected = IOException.class)
+	public void testCountsBlockWithoutCountsHeader() throws IOException {
+		buffer.write(ExecutionDataWriter.BLOCK_EXECUTIONDATA_COUNTS);
+		createReaderWithVisitors().read();
+	}
+
 	@Test(expected = RuntimeException.class)
 	public void testExecutionDataIOException() throws IOException {
 		final boolean[] broken = new boolean[1];
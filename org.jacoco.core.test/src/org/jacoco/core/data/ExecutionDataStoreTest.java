@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.jacoco.core.data;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -19,6 +20,9 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -218,6 +222,111 @@ public class ExecutionDataStoreTest implements IExecutionDataVisitor {
 		assertFalse(data2[2]);
 	}
 
+	@Test
+	public void add_should_provide_execution_data_of_index()
+			throws IOException {
+		store.add(createIndex(new ExecutionData(1000, "Sample",
+				new boolean[] { true, false })));
+
+		assertTrue(store.contains("Sample"));
+		assertFalse(store.contains("Other"));
+		assertNull(store.get(1001));
+		assertArrayEquals(new boolean[] { true, false },
+				store.get(1000).getProbes());
+		assertSame(store.get(1000), store.get(1000));
+	}
+
+	@Test
+	public void add_should_merge_execution_data_of_indexes()
+			throws IOException {
+		store.put(new ExecutionData(1000, "Sample",
+				new boolean[] { false, false, true }));
+		store.add(createIndex(new ExecutionData(1000, "Sample",
+				new boolean[] { true, false, false })));
+		store.add(createIndex(new ExecutionData(1000, "Sample",
+				new boolean[] { false, true, false })));
+
+		assertArrayEquals(new boolean[] { true, true, true },
+				store.get(1000).getProbes());
+	}
+
+	@Test
+	public void add_should_merge_index_into_resolved_execution_data()
+			throws IOException {
+		store.add(createIndex(new ExecutionData(1000, "Sample",
+				new boolean[] { true, false })));
+		final ExecutionData data = store.get(1000);
+		store.add(createIndex(new ExecutionData(1000, "Sample",
+				new boolean[] { false, true })));
+
+		assertSame(data, store.get(1000));
+		assertArrayEquals(new boolean[] { true, true }, data.getProbes());
+	}
+
+	@Test
+	public void subtract_should_subtract_from_execution_data_of_index()
+			throws IOException {
+		store.add(createIndex(new ExecutionData(1000, "Sample",
+				new boolean[] { true, true })));
+		store.subtract(new ExecutionData(1000, "Sample",
+				new boolean[] { true, false }));
+
+		assertArrayEquals(new boolean[] { false, true },
+				store.get(1000).getProbes());
+	}
+
+	@Test
+	public void getContents_should_include_execution_data_of_index()
+			throws IOException {
+		store.put(new ExecutionData(1000, "Sample0", new boolean[] { true }));
+		store.add(createIndex(
+				new ExecutionData(1000, "Sample0", new boolean[] { true }),
+				new ExecutionData(1001, "Sample1", new boolean[] { true })));
+
+		assertEquals(2, store.getContents().size());
+		store.accept(this);
+		assertEquals(new HashSet<Long>(
+				Arrays.asList(Long.valueOf(1000), Long.valueOf(1001))),
+				dataOutput.keySet());
+	}
+
+	@Test
+	public void resolveAll_should_read_execution_data_of_index()
+			throws IOException {
+		store.add(createIndex(
+				new ExecutionData(1000, "Sample", new boolean[] { true })));
+
+		store.resolveAll();
+
+		assertTrue(store.contains("Sample"));
+		assertEquals(1, store.getContents().size());
+	}
+
+	@Test
+	public void reset_should_reset_execution_data_of_index()
+			throws IOException {
+		store.add(createIndex(
+				new ExecutionData(1000, "Sample", new boolean[] { true })));
+
+		store.reset();
+
+		assertArrayEquals(new boolean[] { false },
+				store.get(1000).getProbes());
+	}
+
+	private ExecutionDataIndex createIndex(final ExecutionData... data)
+			throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ExecutionDataIndexWriter writer = new ExecutionDataIndexWriter(
+				buffer);
+		for (final ExecutionData d : data) {
+			writer.visitClassExecution(d);
+		}
+		writer.finish();
+		return ExecutionDataIndex
+				.read(new ByteArrayInputStream(buffer.toByteArray()));
+	}
+
 	// === IExecutionDataOutput ===
 
 	public void visitClassExecution(final ExecutionData data) {
@@ -12,8 +12,10 @@
  *******************************************************************************/
 package org.jacoco.core.data;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -112,6 +114,170 @@ public class ExecutionDataTest {
 		assertTrue(b.getProbes()[3]);
 	}
 
+	@Test
+	public void testPacked() {
+		final ExecutionData e = new ExecutionData(5, "Example",
+				new long[] { 0x5L, 0x1L }, 65);
+		assertEquals(65, e.getProbeCount());
+		assertTrue(e.hasHits());
+		final boolean[] probes = e.getProbes();
+		assertEquals(65, probes.length);
+		assertTrue(probes[0]);
+		assertFalse(probes[1]);
+		assertTrue(probes[2]);
+		assertFalse(probes[63]);
+		assertTrue(probes[64]);
+		assertSame(probes, e.getProbes());
+	}
+
+	@Test
+	public void testPackedReset() {
+		final ExecutionData e = new ExecutionData(5, "Example",
+				new long[] { 0x5L }, 3);
+		e.reset();
+		assertFalse(e.hasHits());
+		assertFalse(e.getProbes()[0]);
+		assertFalse(e.getProbes()[2]);
+	}
+
+	@Test
+	public void testPackedHasHits_empty() {
+		final ExecutionData e = new ExecutionData(5, "Example", new long[0],
+				0);
+		assertFalse(e.hasHits());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPackedInvalidLength() {
+		new ExecutionData(5, "Example", new long[1], 65);
+	}
+
+	@Test
+	public void testCounts() {
+		final ExecutionData e = new ExecutionData(5, "Example",
+				new long[] { 0x5L }, 3, new long[] { 7, 0, 1 });
+		assertArrayEquals(new long[] { 7, 0, 1 }, e.getCounts());
+		assertArrayEquals(new boolean[] { true, false, true }, e.getProbes());
+	}
+
+	@Test
+	public void testNoCounts() {
+		assertNull(new ExecutionData(5, "Example", 3).getCounts());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCountsInvalidLength() {
+		new ExecutionData(5, "Example", new long[1], 3, new long[2]);
+	}
+
+	@Test
+	public void testResetCounts() {
+		final ExecutionData e = new ExecutionData(5, "Example",
+				new long[] { 0x1L }, 1, new long[] { 7 });
+		e.reset();
+		assertArrayEquals(new long[] { 0 }, e.getCounts());
+		assertFalse(e.hasHits());
+	}
+
+	@Test
+	public void testMergeCounts() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new long[] { 0x3L }, 3, new long[] { 1, 2, 0 });
+		final ExecutionData b = new ExecutionData(5, "Example",
+				new long[] { 0x6L }, 3, new long[] { 0, 10, 20 });
+		a.merge(b);
+
+		assertArrayEquals(new long[] { 1, 12, 20 }, a.getCounts());
+		assertArrayEquals(new long[] { 0, 10, 20 }, b.getCounts());
+	}
+
+	@Test
+	public void testMergeCountsIntoDataWithoutCounts() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new boolean[] { true, false });
+		final ExecutionData b = new ExecutionData(5, "Example",
+				new long[] { 0x2L }, 2, new long[] { 0, 3 });
+		a.merge(b);
+
+		assertArrayEquals(new boolean[] { true, true }, a.getProbes());
+		assertArrayEquals(new long[] { 0, 3 }, a.getCounts());
+	}
+
+	@Test
+	public void testMergeSubtractCounts() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new long[] { 0x3L }, 2, new long[] { 4, 5 });
+		final ExecutionData b = new ExecutionData(5, "Example",
+				new boolean[] { false, true });
+		a.merge(b, false);
+
+		assertArrayEquals(new boolean[] { true, false }, a.getProbes());
+		assertArrayEquals(new long[] { 4, 0 }, a.getCounts());
+	}
+
+	@Test
+	public void testGetWordCount() {
+		assertEquals(0, ExecutionData.getWordCount(0));
+		assertEquals(1, ExecutionData.getWordCount(1));
+		assertEquals(1, ExecutionData.getWordCount(64));
+		assertEquals(2, ExecutionData.getWordCount(65));
+	}
+
+	@Test
+	public void testMergePacked() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new long[] { 0xAL }, 4);
+		final ExecutionData b = new ExecutionData(5, "Example",
+				new long[] { 0xCL }, 4);
+		a.merge(b);
+
+		assertArrayEquals(new long[] { 0xEL }, a.getPackedProbes());
+		assertArrayEquals(new long[] { 0xCL }, b.getPackedProbes());
+	}
+
+	@Test
+	public void testMergeSubtractPacked() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new long[] { 0xAL }, 4);
+		final ExecutionData b = new ExecutionData(5, "Example",
+				new long[] { 0xCL }, 4);
+		a.merge(b, false);
+
+		assertArrayEquals(new long[] { 0x2L }, a.getPackedProbes());
+		assertArrayEquals(new long[] { 0xCL }, b.getPackedProbes());
+	}
+
+	@Test
+	public void testMergePackedIntoBoolean() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new boolean[] { false, true, false, true });
+		final ExecutionData b = new ExecutionData(5, "Example",
+				new long[] { 0xCL }, 4);
+		a.merge(b);
+
+		assertArrayEquals(new boolean[] { false, true, true, true },
+				a.getProbes());
+		assertArrayEquals(new long[] { 0xCL }, b.getPackedProbes());
+	}
+
+	@Test
+	public void testMergeBooleanIntoPacked() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new long[] { 0xAL }, 4);
+		final ExecutionData b = new ExecutionData(5, "Example",
+				new boolean[] { false, false, true, true });
+		a.merge(b, false);
+
+		assertArrayEquals(new long[] { 0x2L }, a.getPackedProbes());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMergePackedIncompatible() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new long[] { 0xAL }, 4);
+		a.merge(new ExecutionData(5, "Example", new long[] { 0xAL }, 5));
+	}
+
 	@Test
 	public void testAssertCompatibility() {
 		final ExecutionData a = new ExecutionData(5, "Example",
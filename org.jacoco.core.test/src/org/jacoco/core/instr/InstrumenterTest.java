@@ -14,37 +14,62 @@ package org.jacoco.core.instr;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import org.jacoco.core.analysis.AnalyzerTest;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.internal.InputStreams;
 import org.jacoco.core.internal.Pack200Streams;
 import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.jacoco.core.runtime.IRuntime;
+import org.jacoco.core.runtime.LoggerRuntime;
+import org.jacoco.core.runtime.RuntimeData;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.AssumptionViolatedException;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
 
 /**
  * Unit tests for {@link Instrumenter}.
@@ -71,6 +96,20 @@ public class InstrumenterTest {
 
 	}
 
+	public static class ConcurrentTarget implements Runnable {
+
+		private int count;
+
+		public void run() {
+			for (int i = 0; i < 1000; i++) {
+				if (i % 2 == 0) {
+					count++;
+				}
+			}
+		}
+
+	}
+
 	private static final class AccessorGenerator
 			implements IExecutionDataAccessorGenerator {
 
@@ -85,8 +124,20 @@ public class InstrumenterTest {
 			return 1;
 		}
 
+		public int generateCounterAccessor(final long classId,
+				final String classname, final int probeCount,
+				final MethodVisitor mv) {
+			this.classId = classId;
+			InstrSupport.push(mv, probeCount);
+			mv.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_INT);
+			return 1;
+		}
+
 	}
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private AccessorGenerator accessorGenerator;
 	private Instrumenter instrumenter;
 
@@ -516,4 +567,381 @@ public class InstrumenterTest {
 		assertNull(zipin.getNextEntry());
 	}
 
+	@Test
+	public void setThreads_should_reject_non_positive_values() {
+		assertEquals(1, instrumenter.getThreads());
+		try {
+			instrumenter.setThreads(0);
+			fail("exception expected");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Number of threads must be positive: 0",
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void setProbeStripes_should_reject_invalid_values() {
+		assertEquals(1, instrumenter.getProbeStripes());
+		for (final int stripes : new int[] { 0, 3, 128 }) {
+			try {
+				instrumenter.setProbeStripes(stripes);
+				fail("exception expected");
+			} catch (IllegalArgumentException e) {
+				assertEquals("Invalid number of probe stripes: " + stripes,
+						e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void instrument_should_record_executions_in_probe_stripes()
+			throws Exception {
+		final IRuntime runtime = new LoggerRuntime();
+		final RuntimeData data = new RuntimeData();
+		runtime.startup(data);
+		final Instrumenter striped = new Instrumenter(runtime);
+		striped.setProbeStripes(4);
+
+		assertAllProbesExecuted(executeConcurrently(striped, data));
+		runtime.shutdown();
+	}
+
+	@Test
+	public void instrument_should_record_executions_with_write_once_probes()
+			throws Exception {
+		final IRuntime runtime = new LoggerRuntime();
+		final RuntimeData data = new RuntimeData();
+		runtime.startup(data);
+		final Instrumenter writeOnce = new Instrumenter(runtime);
+		assertFalse(writeOnce.isWriteOnceProbes());
+		writeOnce.setWriteOnceProbes(true);
+
+		assertAllProbesExecuted(executeConcurrently(writeOnce, data));
+		runtime.shutdown();
+	}
+
+	@Test
+	public void instrument_should_record_executions_with_probe_counters()
+			throws Exception {
+		final IRuntime runtime = new LoggerRuntime();
+		final RuntimeData data = new RuntimeData();
+		runtime.startup(data);
+		final Instrumenter counting = new Instrumenter(runtime);
+		assertFalse(counting.isProbeCounters());
+		counting.setProbeCounters(true);
+
+		final ExecutionData executionData = executeConcurrently(counting,
+				data);
+		assertAllProbesExecuted(executionData);
+		for (final long count : executionData.getCounts()) {
+			assertTrue(count > 0);
+		}
+		runtime.shutdown();
+	}
+
+	@Test
+	public void instrument_should_record_executions_with_retransformable_instrumentation()
+			throws Exception {
+		final IRuntime runtime = new LoggerRuntime();
+		final RuntimeData data = new RuntimeData();
+		runtime.startup(data);
+		final Instrumenter retransformable = new Instrumenter(runtime);
+		assertFalse(retransformable.isRetransformable());
+		retransformable.setRetransformable(true);
+		retransformable.setProbeStripes(4);
+		retransformable.setProbeCounters(true);
+
+		final ExecutionData executionData = executeConcurrently(
+				retransformable, data);
+		assertAllProbesExecuted(executionData);
+		assertNull(executionData.getCounts());
+		runtime.shutdown();
+	}
+
+	@Test
+	public void instrument_should_not_add_members_when_retransformable()
+			throws Exception {
+		instrumenter.setRetransformable(true);
+		final byte[] original = TargetLoader
+				.getClassDataAsBytes(ConcurrentTarget.class);
+
+		final byte[] instrumented = instrumenter.instrument(original, "Test");
+
+		final ClassNode expected = new ClassNode();
+		new ClassReader(original).accept(expected, 0);
+		final ClassNode actual = new ClassNode();
+		new ClassReader(instrumented).accept(actual, 0);
+		assertEquals(expected.fields.size(), actual.fields.size());
+		assertEquals(expected.methods.size(), actual.methods.size());
+	}
+
+	/**
+	 * Executes an instrumented version of {@link ConcurrentTarget} from
+	 * multiple threads and returns its execution data.
+	 */
+	private static ExecutionData executeConcurrently(
+			final Instrumenter instrumenter, final RuntimeData data)
+			throws Exception {
+		final byte[] original = TargetLoader
+				.getClassDataAsBytes(ConcurrentTarget.class);
+		final byte[] bytes = instrumenter.instrument(original, "Test");
+		final Runnable target = (Runnable) new TargetLoader()
+				.add(ConcurrentTarget.class, bytes).newInstance();
+
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		final List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < 64; i++) {
+			futures.add(executor.submit(target));
+		}
+		for (final Future<?> f : futures) {
+			f.get();
+		}
+		executor.shutdown();
+
+		final ExecutionDataStore store = new ExecutionDataStore();
+		data.collect(store, new SessionInfoStore(), false);
+		final ExecutionData executionData = store
+				.get(CRC64.classId(original));
+		assertEquals(
+				"org/jacoco/core/instr/InstrumenterTest$ConcurrentTarget",
+				executionData.getName());
+		return executionData;
+	}
+
+	private static void assertAllProbesExecuted(final ExecutionData data) {
+		for (int i = 0; i < data.getProbeCount(); i++) {
+			assertTrue(data.getProbes()[i]);
+		}
+	}
+
+	@Test
+	public void instrumentAll_should_write_same_entries_in_same_order_with_multiple_threads()
+			throws IOException {
+		final byte[] nested = createArchive(5, ZipEntry.DEFLATED);
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zipout = new ZipOutputStream(buffer);
+		zipout.putNextEntry(new ZipEntry("nested.jar"));
+		zipout.write(nested);
+		zipout.putNextEntry(new ZipEntry("META-INF/ALIAS.SF"));
+		zipout.putNextEntry(new ZipEntry("readme.txt"));
+		zipout.write("Hello".getBytes());
+		zipout.finish();
+		final byte[] archive = concat(buffer.toByteArray(),
+				createArchive(50, ZipEntry.STORED));
+
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		final int expectedCount = instrumenter.instrumentAll(
+				new ByteArrayInputStream(archive), expected, "Test");
+		instrumenter.setThreads(4);
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		final int actualCount = instrumenter.instrumentAll(
+				new ByteArrayInputStream(archive), actual, "Test");
+
+		assertEquals(55, expectedCount);
+		assertEquals(expectedCount, actualCount);
+		assertEquals(readEntries(expected.toByteArray()),
+				readEntries(actual.toByteArray()));
+	}
+
+	@Test
+	public void instrumentAll_should_report_broken_entry_with_multiple_threads()
+			throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zipout = new ZipOutputStream(buffer);
+		zipout.putNextEntry(new ZipEntry("Test.class"));
+		final byte[] brokenclass = TargetLoader.getClassDataAsBytes(getClass());
+		brokenclass[10] = 0x23;
+		zipout.write(brokenclass);
+		zipout.finish();
+		instrumenter.setThreads(2);
+
+		try {
+			instrumenter.instrumentAll(
+					new ByteArrayInputStream(buffer.toByteArray()),
+					new ByteArrayOutputStream(), "test.zip");
+			fail("exception expected");
+		} catch (IOException e) {
+			assertEquals("Error while instrumenting test.zip@Test.class.",
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void instrumentAll_should_instrument_files_and_folders()
+			throws IOException {
+		final File src = folder.newFolder("src");
+		write(new File(src, "a/A.class"),
+				TargetLoader.getClassDataAsBytes(getClass()));
+		write(new File(src, "b/lib.jar"), createArchive(3, ZipEntry.DEFLATED));
+		write(new File(src, "b/readme.txt"), "Hello".getBytes());
+		final File jar = folder.newFile("other.jar");
+		write(jar, createArchive(2, ZipEntry.DEFLATED));
+		final File dest = new File(folder.getRoot(), "dest");
+		final Map<File, File> files = new LinkedHashMap<File, File>();
+		files.put(src, dest);
+		files.put(jar, new File(dest, "other.jar"));
+		instrumenter.setThreads(3);
+
+		assertEquals(6, instrumenter.instrumentAll(files));
+
+		assertTrue(new File(dest, "a/A.class").isFile());
+		assertEquals(3, readEntries(read(new File(dest, "b/lib.jar"))).size());
+		assertArrayEquals("Hello".getBytes(),
+				read(new File(dest, "b/readme.txt")));
+		assertEquals(2, readEntries(read(new File(dest, "other.jar"))).size());
+	}
+
+	@Test
+	public void instrumentAll_should_delete_target_of_broken_file()
+			throws IOException {
+		final File src = folder.newFile("Broken.class");
+		final byte[] brokenclass = TargetLoader.getClassDataAsBytes(getClass());
+		brokenclass[10] = 0x23;
+		write(src, brokenclass);
+		final File target = new File(folder.getRoot(), "dest/Broken.class");
+		instrumenter.setThreads(2);
+
+		try {
+			instrumenter
+					.instrumentAll(Collections.singletonMap(src, target));
+			fail("exception expected");
+		} catch (IOException e) {
+			assertEquals(
+					"Error while instrumenting " + src.getAbsolutePath() + ".",
+					e.getMessage());
+		}
+		assertFalse(target.exists());
+	}
+
+	@Test
+	public void instrumentAll_should_copy_unmodified_entries_of_zip_files()
+			throws IOException {
+		final File src = folder.newFile("src.jar");
+		final ZipOutputStream zipout = new ZipOutputStream(
+				new FileOutputStream(src));
+		zipout.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+		zipout.write(("Manifest-Version: 1.0\r\n\r\n"
+				+ "Name: Foo.class\r\nSHA1-Digest: 0\r\n\r\n").getBytes());
+		zipout.putNextEntry(new ZipEntry("META-INF/ALIAS.SF"));
+		final ZipEntry resource = new ZipEntry("resource.txt");
+		resource.setTime(1000000000000L);
+		zipout.putNextEntry(resource);
+		zipout.write(new byte[10000]);
+		zipout.putNextEntry(new ZipEntry("Test.class"));
+		zipout.write(TargetLoader.getClassDataAsBytes(getClass()));
+		zipout.putNextEntry(new ZipEntry("nested.jar"));
+		zipout.write(createArchive(2, ZipEntry.DEFLATED));
+		zipout.close();
+		final File target = new File(folder.getRoot(), "target.jar");
+
+		assertEquals(3, instrumenter
+				.instrumentAll(Collections.singletonMap(src, target)));
+
+		final ZipFile expected = new ZipFile(src);
+		final ZipFile actual = new ZipFile(target);
+		assertEquals(
+				Arrays.asList("META-INF/MANIFEST.MF", "resource.txt",
+						"Test.class", "nested.jar"),
+				names(actual));
+		final ZipEntry copied = actual.getEntry("resource.txt");
+		assertEquals(expected.getEntry("resource.txt").getTime(),
+				copied.getTime());
+		assertEquals(expected.getEntry("resource.txt").getCompressedSize(),
+				copied.getCompressedSize());
+		assertEquals("Manifest-Version: 1.0\r\n\r\n", new String(
+				InputStreams.readFully(actual.getInputStream(
+						actual.getEntry("META-INF/MANIFEST.MF")))));
+		assertEquals(2, readEntries(InputStreams.readFully(
+				actual.getInputStream(actual.getEntry("nested.jar")))).size());
+		expected.close();
+		actual.close();
+	}
+
+	private byte[] createArchive(final int classes, final int method)
+			throws IOException {
+		final byte[] bytes = TargetLoader.getClassDataAsBytes(getClass());
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zipout = new ZipOutputStream(buffer);
+		for (int i = 0; i < classes; i++) {
+			final ZipEntry entry = new ZipEntry("Test" + i + ".class");
+			entry.setMethod(method);
+			entry.setSize(bytes.length);
+			entry.setCrc(crc.getValue());
+			zipout.putNextEntry(entry);
+			zipout.write(bytes);
+		}
+		zipout.finish();
+		return buffer.toByteArray();
+	}
+
+	private static byte[] concat(final byte[] archive1, final byte[] archive2)
+			throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zipout = new ZipOutputStream(buffer);
+		for (final byte[] archive : Arrays.asList(archive1, archive2)) {
+			final ZipInputStream zipin = new ZipInputStream(
+					new ByteArrayInputStream(archive));
+			ZipEntry entry;
+			while ((entry = zipin.getNextEntry()) != null) {
+				final ZipEntry copy = new ZipEntry(entry.getName());
+				copy.setMethod(entry.getMethod());
+				final byte[] content = InputStreams.readFully(zipin);
+				if (entry.getMethod() == ZipEntry.STORED) {
+					final CRC32 crc = new CRC32();
+					crc.update(content);
+					copy.setSize(content.length);
+					copy.setCrc(crc.getValue());
+				}
+				zipout.putNextEntry(copy);
+				zipout.write(content);
+			}
+		}
+		zipout.finish();
+		return buffer.toByteArray();
+	}
+
+	private static List<String> readEntries(final byte[] archive)
+			throws IOException {
+		final List<String> entries = new ArrayList<String>();
+		final ZipInputStream zipin = new ZipInputStream(
+				new ByteArrayInputStream(archive));
+		ZipEntry entry;
+		while ((entry = zipin.getNextEntry()) != null) {
+			final byte[] content = InputStreams.readFully(zipin);
+			// nested archives contain the time of instrumentation
+			final Object hash = entry.getName().endsWith(".jar")
+					? readEntries(content)
+					: Integer.valueOf(Arrays.hashCode(content));
+			entries.add(entry.getName() + ":" + entry.getMethod() + ":" + hash);
+		}
+		return entries;
+	}
+
+	private static List<String> names(final ZipFile zip) {
+		final List<String> names = new ArrayList<String>();
+		for (final ZipEntry entry : Collections.list(zip.entries())) {
+			names.add(entry.getName());
+		}
+		return names;
+	}
+
+	private static void write(final File file, final byte[] content)
+			throws IOException {
+		file.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(file);
+		out.write(content);
+		out.close();
+	}
+
+	private static byte[] read(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			return InputStreams.readFully(in);
+		} finally {
+			in.close();
+		}
+	}
+
 }
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link RawZipFile}.
+ */
+public class RawZipFileTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void open_should_read_entries_of_central_directory()
+			throws IOException {
+		final File file = createZip(folder.newFile("test.zip"));
+
+		final RawZipFile zip = RawZipFile.open(file);
+		final List<RawZipFile.Entry> entries = zip.getEntries();
+
+		assertEquals(3, entries.size());
+		assertEquals("dir/", entries.get(0).getName());
+		assertEquals("deflated.txt", entries.get(1).getName());
+		assertEquals(ZipEntry.DEFLATED, entries.get(1).getMethod());
+		assertEquals("stored.txt", entries.get(2).getName());
+		assertEquals(ZipEntry.STORED, entries.get(2).getMethod());
+		assertEquals("comment", new String(zip.getComment(), "UTF-8"));
+		zip.close();
+	}
+
+	@Test
+	public void getInputStream_should_return_uncompressed_content()
+			throws IOException {
+		final File file = createZip(folder.newFile("test.zip"));
+
+		final RawZipFile zip = RawZipFile.open(file);
+
+		assertArrayEquals(new byte[0], read(zip, zip.getEntries().get(0)));
+		assertArrayEquals(content("deflated"),
+				read(zip, zip.getEntries().get(1)));
+		assertArrayEquals(content("stored"), read(zip, zip.getEntries().get(2)));
+		zip.close();
+	}
+
+	@Test
+	public void open_should_return_null_for_other_files() throws IOException {
+		final File file = folder.newFile("test.txt");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(content("text"));
+		out.close();
+
+		assertNull(RawZipFile.open(file));
+	}
+
+	@Test
+	public void open_should_return_null_for_prefixed_files()
+			throws IOException {
+		final File file = folder.newFile("test.zip");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(content("#!/bin/sh\n"));
+		writeZip(out);
+
+		assertNull(RawZipFile.open(file));
+	}
+
+	@Test
+	public void open_should_return_null_for_empty_zip_files()
+			throws IOException {
+		final File file = folder.newFile("test.zip");
+		new ZipOutputStream(new FileOutputStream(file)).close();
+
+		assertNull(RawZipFile.open(file));
+	}
+
+	static File createZip(final File file) throws IOException {
+		writeZip(new FileOutputStream(file));
+		return file;
+	}
+
+	private static void writeZip(final OutputStream out) throws IOException {
+		final ZipOutputStream zip = new ZipOutputStream(out);
+		zip.setComment("comment");
+		zip.putNextEntry(new ZipEntry("dir/"));
+		final ZipEntry deflated = new ZipEntry("deflated.txt");
+		deflated.setTime(1000000000000L);
+		deflated.setExtra(new byte[] { 0x34, 0x12, 2, 0, 42, 43 });
+		deflated.setComment("entry comment");
+		zip.putNextEntry(deflated);
+		zip.write(content("deflated"));
+		final byte[] stored = content("stored");
+		final CRC32 crc = new CRC32();
+		crc.update(stored);
+		final ZipEntry entry = new ZipEntry("stored.txt");
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(stored.length);
+		entry.setCrc(crc.getValue());
+		zip.putNextEntry(entry);
+		zip.write(stored);
+		zip.close();
+	}
+
+	static byte[] content(final String text) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			sb.append(text);
+		}
+		try {
+			return sb.toString().getBytes("UTF-8");
+		} catch (final IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	static byte[] read(final RawZipFile zip, final RawZipFile.Entry entry)
+			throws IOException {
+		final InputStream in = zip.getInputStream(entry);
+		try {
+			return InputStreams.readFully(in);
+		} finally {
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal;
+
+import static org.jacoco.core.internal.RawZipFileTest.content;
+import static org.jacoco.core.internal.RawZipFileTest.createZip;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link RawZipOutputStream}.
+ */
+public class RawZipOutputStreamTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void copyEntry_should_preserve_entries() throws IOException {
+		final File source = createZip(folder.newFile("source.zip"));
+		final File target = folder.newFile("target.zip");
+
+		final RawZipFile zip = RawZipFile.open(source);
+		final OutputStream out = new FileOutputStream(target);
+		final RawZipOutputStream zipout = new RawZipOutputStream(out);
+		for (final RawZipFile.Entry entry : zip.getEntries()) {
+			zipout.copyEntry(zip, entry);
+		}
+		zipout.finish(zip);
+		out.close();
+		zip.close();
+
+		final ZipFile expected = new ZipFile(source);
+		final ZipFile actual = new ZipFile(target);
+		assertEquals(expected.getComment(), actual.getComment());
+		final Enumeration<? extends ZipEntry> e = expected.entries();
+		final Enumeration<? extends ZipEntry> a = actual.entries();
+		while (e.hasMoreElements()) {
+			assertEntry(expected, e.nextElement(), actual, a.nextElement());
+		}
+		assertFalse(a.hasMoreElements());
+		expected.close();
+		actual.close();
+	}
+
+	@Test
+	public void putEntry_should_write_new_content() throws IOException {
+		final File source = createZip(folder.newFile("source.zip"));
+
+		final RawZipFile zip = RawZipFile.open(source);
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final RawZipOutputStream zipout = new RawZipOutputStream(buffer);
+		zipout.putEntry(zip, zip.getEntries().get(1), content("new1"));
+		zipout.putEntry(zip, zip.getEntries().get(2), content("new2"));
+		zipout.finish(zip);
+		zip.close();
+		final File target = folder.newFile("target.zip");
+		final OutputStream out = new FileOutputStream(target);
+		out.write(buffer.toByteArray());
+		out.close();
+
+		final ZipFile actual = new ZipFile(target);
+		final ZipEntry entry1 = actual.getEntry("deflated.txt");
+		assertEquals(ZipEntry.DEFLATED, entry1.getMethod());
+		assertEquals("entry comment", entry1.getComment());
+		assertArrayEquals(content("new1"), read(actual, entry1));
+		final ZipEntry entry2 = actual.getEntry("stored.txt");
+		assertEquals(ZipEntry.STORED, entry2.getMethod());
+		assertArrayEquals(content("new2"), read(actual, entry2));
+		actual.close();
+	}
+
+	private static void assertEntry(final ZipFile expectedZip,
+			final ZipEntry expected, final ZipFile actualZip,
+			final ZipEntry actual) throws IOException {
+		assertEquals(expected.getName(), actual.getName());
+		assertEquals(expected.getMethod(), actual.getMethod());
+		assertEquals(expected.getTime(), actual.getTime());
+		assertEquals(expected.getCrc(), actual.getCrc());
+		assertEquals(expected.getCompressedSize(), actual.getCompressedSize());
+		assertEquals(expected.getComment(), actual.getComment());
+		assertArrayEquals(expected.getExtra(), actual.getExtra());
+		assertArrayEquals(read(expectedZip, expected),
+				read(actualZip, actual));
+	}
+
+	private static byte[] read(final ZipFile zip, final ZipEntry entry)
+			throws IOException {
+		final InputStream in = zip.getInputStream(entry);
+		try {
+			return InputStreams.readFully(in);
+		} finally {
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ClassStructureCache}.
+ */
+public class ClassStructureCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File dir;
+
+	private ClassStructureCache cache;
+
+	@Before
+	public void setup() {
+		dir = new File(folder.getRoot(), "cache");
+		cache = new ClassStructureCache(dir, new StringPool());
+	}
+
+	@Test
+	public void get_should_return_null_for_missing_entry() {
+		assertNull(cache.get(0x1234));
+	}
+
+	@Test
+	public void get_should_return_stored_entry() throws IOException {
+		cache.put(0x1234, new ClassStructure("Foo"));
+
+		assertEquals("Foo", cache.get(0x1234).getName());
+		assertTrue(new File(dir, "00/0000000000001234").isFile());
+		assertEquals(1, new File(dir, "00").list().length);
+	}
+
+	@Test
+	public void put_should_replace_existing_entry() throws IOException {
+		cache.put(0x1234, new ClassStructure("Foo"));
+		cache.put(0x1234, new ClassStructure("Bar"));
+
+		assertEquals("Bar", cache.get(0x1234).getName());
+	}
+
+	@Test
+	public void get_should_return_null_for_entry_of_other_class()
+			throws IOException {
+		cache.put(0x1234, new ClassStructure("Foo"));
+		new File(dir, "00/0000000000001234")
+				.renameTo(new File(dir, "00/0000000000005678"));
+
+		assertNull(cache.get(0x5678));
+	}
+
+	@Test
+	public void get_should_return_null_for_broken_entry() throws IOException {
+		final File file = new File(dir, "ab/abcdef0123456789");
+		file.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(file);
+		out.write(new byte[] { (byte) 0xCA, 0x01, 0x00 });
+		out.close();
+
+		assertNull(cache.get(0xabcdef0123456789L));
+	}
+
+	@Test
+	public void put_should_throw_exception_when_entry_can_not_be_written()
+			throws IOException {
+		dir.getParentFile().mkdirs();
+		new FileOutputStream(dir).close();
+
+		try {
+			cache.put(0x1234, new ClassStructure("Foo"));
+			fail("exception expected");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+}
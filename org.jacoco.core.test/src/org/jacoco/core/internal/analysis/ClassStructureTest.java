@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.test.TargetLoader;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Unit tests for {@link ClassStructure} and {@link MethodStructure}.
+ */
+public class ClassStructureTest {
+
+	@Test
+	public void createCoverage_should_give_same_result_as_analysis_without_probes()
+			throws IOException {
+		assertSameCoverage(Analyzer.class, null);
+	}
+
+	@Test
+	public void createCoverage_should_give_same_result_as_analysis_with_probes()
+			throws IOException {
+		final boolean[] probes = new boolean[1000];
+		for (int i = 0; i < probes.length; i++) {
+			probes[i] = i % 3 != 0;
+		}
+		assertSameCoverage(Analyzer.class, probes);
+		assertSameCoverage(ClassAnalyzer.class, probes);
+		assertSameCoverage(MethodStructure.class, probes);
+	}
+
+	@Test
+	public void read_should_restore_written_structure() throws IOException {
+		final ClassStructure structure = new ClassStructure("Foo");
+		structure.setHeader("LFoo<TT;>;", "java/lang/Object",
+				new String[] { "java/lang/Runnable" });
+		structure.setSourceFileName("Foo.java");
+		structure.addMethod(new MethodStructure("run", "()V", null));
+
+		final ClassStructure copy = copy(structure);
+
+		assertEquals("Foo", copy.getName());
+		assertEquals(1, copy.getMethods().size());
+		final MethodStructure method = copy.getMethods().get(0);
+		assertEquals("run", method.getName());
+		assertEquals("()V", method.getDesc());
+		assertEquals(null, method.getSignature());
+		final ClassCoverageImpl coverage = copy.createCoverage(42, true,
+				null);
+		assertEquals(42, coverage.getId());
+		assertTrue(coverage.isNoMatch());
+		assertEquals("LFoo<TT;>;", coverage.getSignature());
+		assertEquals("java/lang/Object", coverage.getSuperName());
+		assertArrayEquals(new String[] { "java/lang/Runnable" },
+				coverage.getInterfaceNames());
+		assertEquals("Foo.java", coverage.getSourceFileName());
+	}
+
+	private void assertSameCoverage(final Class<?> target,
+			final boolean[] probes) throws IOException {
+		final byte[] bytes = TargetLoader.getClassDataAsBytes(target);
+		final ClassReader reader = new ClassReader(bytes);
+		final ClassCoverageImpl expected = new ClassCoverageImpl(
+				reader.getClassName(), 1, false);
+		final ClassStructure structure = new ClassStructure(
+				reader.getClassName());
+		reader.accept(new ClassProbesAdapter(new ClassAnalyzer(expected,
+				probes, new StringPool(), structure), false), 0);
+
+		final ClassCoverageImpl actual = copy(structure).createCoverage(1,
+				false, probes);
+
+		assertSameCounters(expected, actual);
+		assertEquals(expected.getMethods().size(),
+				actual.getMethods().size());
+		final Iterator<IMethodCoverage> e = expected.getMethods().iterator();
+		final Iterator<IMethodCoverage> a = actual.getMethods().iterator();
+		while (e.hasNext()) {
+			final IMethodCoverage em = e.next();
+			final IMethodCoverage am = a.next();
+			assertEquals(em.getName() + em.getDesc(),
+					am.getName() + am.getDesc());
+			assertSameCounters(em, am);
+			assertEquals(em.getFirstLine(), am.getFirstLine());
+			assertEquals(em.getLastLine(), am.getLastLine());
+			for (int l = em.getFirstLine(); l <= em.getLastLine(); l++) {
+				assertEquals(em.getLine(l).getStatus(),
+						am.getLine(l).getStatus());
+			}
+		}
+	}
+
+	private void assertSameCounters(final ICoverageNode expected,
+			final ICoverageNode actual) {
+		for (final CounterEntity entity : CounterEntity.values()) {
+			assertEquals(expected.getName() + " " + entity,
+					expected.getCounter(entity), actual.getCounter(entity));
+		}
+	}
+
+	private ClassStructure copy(final ClassStructure structure)
+			throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		structure.write(new CompactDataOutput(buffer));
+		return ClassStructure.read(
+				new CompactDataInput(
+						new ByteArrayInputStream(buffer.toByteArray())),
+				new StringPool());
+	}
+
+}
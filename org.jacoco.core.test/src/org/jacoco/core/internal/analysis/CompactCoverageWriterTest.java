@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.internal.analysis.diff.DiffClassRegistry;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CompactCoverageWriter} and
+ * {@link CompactCoverageReader}.
+ */
+public class CompactCoverageWriterTest {
+
+	private static final String SOURCE = "CompactCoverageWriterTest.java";
+
+	private static final String CLASS = "org/jacoco/example/CompactCoverageWriterTest";
+
+	private ByteArrayOutputStream buffer;
+
+	private CompactCoverageWriter writer;
+
+	@Before
+	public void setup() {
+		DiffClassRegistry.putDiffLinesOfClass(SOURCE,
+				new int[][] { { 10, 12 } });
+		DiffClassRegistry.putDiffLinesOfClass(CLASS,
+				new int[][] { { 10, 12 } });
+		buffer = new ByteArrayOutputStream();
+		writer = new CompactCoverageWriter(new CompactDataOutput(buffer));
+	}
+
+	@Test
+	public void should_read_class() throws IOException {
+		final ClassCoverageImpl c = createClass();
+		c.setSignature("Ljava/lang/Object;");
+		c.setSuperName("java/lang/Object");
+		c.setInterfaces(new String[] { "java/lang/Runnable" });
+
+		writer.writeClass(c);
+		final IClassCoverage actual = createReader().readClass();
+
+		assertSourceNode(c, actual);
+		assertEquals(0x1234, actual.getId());
+		assertFalse(actual.isNoMatch());
+		assertEquals("org/jacoco/example", actual.getPackageName());
+		assertEquals("Ljava/lang/Object;", actual.getSignature());
+		assertEquals("java/lang/Object", actual.getSuperName());
+		assertArrayEquals(new String[] { "java/lang/Runnable" },
+				actual.getInterfaceNames());
+		assertEquals(SOURCE, actual.getSourceFileName());
+		assertEquals(2, actual.getMethods().size());
+		final Iterator<IMethodCoverage> methods = actual.getMethods()
+				.iterator();
+		for (final IMethodCoverage m : c.getMethods()) {
+			final IMethodCoverage am = methods.next();
+			assertSourceNode(m, am);
+			assertEquals(m.getDesc(), am.getDesc());
+			assertEquals(m.getSignature(), am.getSignature());
+		}
+	}
+
+	@Test
+	public void should_read_class_with_null_attributes() throws IOException {
+		final ClassCoverageImpl c = new ClassCoverageImpl("Foo", 42, true);
+
+		writer.writeClass(c);
+		final IClassCoverage actual = createReader().readClass();
+
+		assertSourceNode(c, actual);
+		assertTrue(actual.isNoMatch());
+		assertEquals("", actual.getPackageName());
+		assertNull(actual.getSignature());
+		assertNull(actual.getSuperName());
+		assertNull(actual.getInterfaceNames());
+		assertNull(actual.getSourceFileName());
+		assertTrue(actual.getMethods().isEmpty());
+	}
+
+	@Test
+	public void should_read_lines() throws IOException {
+		final ClassCoverageImpl c = createClass();
+
+		writer.writeClass(c);
+		final IClassCoverage actual = createReader().readClass();
+
+		assertEquals(10, actual.getFirstLine());
+		assertEquals(13, actual.getLastLine());
+		assertEquals(ICounter.DIFF_PARTLY_COVERED,
+				actual.getLine(10).getStatus());
+		assertEquals(ICounter.DIFF_FULLY_COVERED,
+				actual.getLine(11).getStatus());
+		assertEquals(ICounter.EMPTY, actual.getLine(12).getStatus());
+		assertEquals(ICounter.NOT_COVERED, actual.getLine(13).getStatus());
+		assertEquals(ICounter.EMPTY, actual.getLine(14).getStatus());
+		assertEquals(42, actual.getExecutionCount(11));
+		assertEquals(0, actual.getExecutionCount(13));
+		assertEquals(0, actual.getExecutionCount(99));
+	}
+
+	@Test
+	public void should_read_package() throws IOException {
+		final ClassCoverageImpl c1 = createClass();
+		final ClassCoverageImpl c2 = new ClassCoverageImpl(
+				"org/jacoco/example/Bar", 1, false);
+		final SourceFileCoverageImpl s = new SourceFileCoverageImpl(SOURCE,
+				"org/jacoco/example");
+		s.increment(c1);
+		final IPackageCoverage p = new PackageCoverageImpl(
+				"org/jacoco/example", Arrays.<IClassCoverage> asList(c1, c2),
+				Collections.<ISourceFileCoverage> singletonList(s));
+
+		writer.writePackage(p);
+		final IPackageCoverage actual = createReader()
+				.readPackage("org/jacoco/example");
+
+		assertNode(p, actual);
+		assertEquals(2, actual.getClasses().size());
+		final Iterator<IClassCoverage> classes = actual.getClasses()
+				.iterator();
+		assertSourceNode(c1, classes.next());
+		assertSourceNode(c2, classes.next());
+		assertEquals(1, actual.getSourceFiles().size());
+		final ISourceFileCoverage as = actual.getSourceFiles().iterator()
+				.next();
+		assertSourceNode(s, as);
+		assertEquals("org/jacoco/example", as.getPackageName());
+	}
+
+	@Test
+	public void should_read_counters() throws IOException {
+		final ClassCoverageImpl c = createClass();
+		final CompactDataOutput out = new CompactDataOutput(buffer);
+
+		CompactCoverageWriter.writeCounters(c, out);
+		final CounterImpl[] counters = CompactCoverageReader.readCounters(
+				new CompactDataInput(
+						new ByteArrayInputStream(buffer.toByteArray())));
+
+		for (final CounterEntity entity : CounterEntity.values()) {
+			assertEquals(entity.name(), c.getCounter(entity),
+					counters[entity.ordinal()]);
+		}
+	}
+
+	private CompactCoverageReader createReader() {
+		return new CompactCoverageReader(new CompactDataInput(
+				new ByteArrayInputStream(buffer.toByteArray())));
+	}
+
+	private static ClassCoverageImpl createClass() {
+		final ClassCoverageImpl c = new ClassCoverageImpl(CLASS, 0x1234, false);
+		c.setSourceFileName(SOURCE);
+		final MethodCoverageImpl m1 = new MethodCoverageImpl("run", "()V",
+				null, true, SOURCE);
+		m1.increment(CounterImpl.getInstance(1, 2),
+				CounterImpl.getInstance(1, 1), 10);
+		m1.increment(CounterImpl.getInstance(0, 3), CounterImpl.COUNTER_0_0,
+				11, 42);
+		m1.incrementMethodCounter();
+		c.addMethod(m1);
+		final MethodCoverageImpl m2 = new MethodCoverageImpl("<init>", "(I)V",
+				"<T:Ljava/lang/Object;>(I)V", false, SOURCE);
+		m2.increment(CounterImpl.getInstance(4, 0), CounterImpl.COUNTER_0_0,
+				13);
+		m2.increment(CounterImpl.COUNTER_1_0, CounterImpl.COUNTER_0_0,
+				ISourceNode.UNKNOWN_LINE);
+		m2.incrementMethodCounter();
+		c.addMethod(m2);
+		return c;
+	}
+
+	private static void assertSourceNode(final ISourceNode expected,
+			final ISourceNode actual) {
+		assertNode(expected, actual);
+		assertEquals(expected.getFirstLine(), actual.getFirstLine());
+		assertEquals(expected.getLastLine(), actual.getLastLine());
+		for (int nr = expected.getFirstLine(); nr <= expected
+				.getLastLine(); nr++) {
+			assertEquals(expected.getLine(nr).getStatus(),
+					actual.getLine(nr).getStatus());
+			assertEquals(expected.getLine(nr).getInstructionCounter(),
+					actual.getLine(nr).getInstructionCounter());
+			assertEquals(expected.getLine(nr).getBranchCounter(),
+					actual.getLine(nr).getBranchCounter());
+			assertEquals(expected.getExecutionCount(nr),
+					actual.getExecutionCount(nr));
+		}
+	}
+
+	private static void assertNode(final ICoverageNode expected,
+			final ICoverageNode actual) {
+		assertEquals(expected.getElementType(), actual.getElementType());
+		assertEquals(expected.getName(), actual.getName());
+		for (final CounterEntity entity : CounterEntity.values()) {
+			assertEquals(entity.name(), expected.getCounter(entity),
+					actual.getCounter(entity));
+		}
+	}
+
+}
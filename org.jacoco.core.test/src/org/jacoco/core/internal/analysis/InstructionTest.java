@@ -159,6 +159,47 @@ public class InstructionTest {
 				instruction.getBranchCounter());
 	}
 
+	@Test
+	public void addBranchWithProbe_should_add_execution_count() {
+		instruction.addBranch(true, 3, 0);
+		instruction.addBranch(true, 4, 1);
+
+		assertEquals(7, instruction.getExecutionCount());
+	}
+
+	@Test
+	public void addBranchWithProbe_should_propagate_execution_count_to_existing_predecessors() {
+		final Instruction i1 = new Instruction(124);
+		final Instruction i2 = new Instruction(125);
+		i1.addBranch(i2, 0);
+		i2.addBranch(instruction, 0);
+
+		instruction.addBranch(true, 5, 0);
+
+		assertEquals(5, i1.getExecutionCount());
+		assertEquals(5, i2.getExecutionCount());
+	}
+
+	@Test
+	public void addBranchWithInstruction_should_propagate_existing_execution_count() {
+		final Instruction target = new Instruction(122);
+		target.addBranch(true, 42, 0);
+
+		instruction.addBranch(target, 0);
+
+		assertEquals(42, instruction.getExecutionCount());
+	}
+
+	@Test
+	public void merge_should_sum_execution_counts() {
+		final Instruction i1 = new Instruction(124);
+		i1.addBranch(true, 2, 0);
+		final Instruction i2 = new Instruction(124);
+		i2.addBranch(true, 3, 0);
+
+		assertEquals(5, i1.merge(i2).getExecutionCount());
+	}
+
 	@Test
 	public void replaceBranches_should_calculate_coverage_on_new_branches() {
 		Instruction i1 = new Instruction(1);
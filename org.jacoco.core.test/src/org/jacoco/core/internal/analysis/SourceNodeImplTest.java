@@ -223,4 +223,40 @@ public class SourceNodeImplTest {
 		assertEquals(CounterImpl.getInstance(0, 1), node.getLineCounter());
 	}
 
+	@Test
+	public void testExecutionCount() {
+		final SourceNodeImpl node = new SourceNodeImpl(ElementType.CLASS,
+				"Foo");
+		node.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0, 10,
+				5);
+		node.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0, 10,
+				3);
+		node.increment(CounterImpl.COUNTER_1_0, CounterImpl.COUNTER_0_0, 11);
+
+		assertEquals(5, node.getExecutionCount(10));
+		assertEquals(0, node.getExecutionCount(11));
+		assertEquals(0, node.getExecutionCount(12));
+		assertEquals(0, node.getExecutionCount(ISourceNode.UNKNOWN_LINE));
+	}
+
+	@Test
+	public void testIncrementChildWithExecutionCounts() {
+		final SourceNodeImpl node = new SourceNodeImpl(ElementType.CLASS,
+				"Foo");
+		node.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0, 5,
+				2);
+
+		final SourceNodeImpl child = new SourceNodeImpl(ElementType.CLASS,
+				"Foo");
+		child.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0, 5,
+				7);
+		child.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0, 6,
+				1);
+
+		node.increment(child);
+
+		assertEquals(7, node.getExecutionCount(5));
+		assertEquals(1, node.getExecutionCount(6));
+	}
+
 }
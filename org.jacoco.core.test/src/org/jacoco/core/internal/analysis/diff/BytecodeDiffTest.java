@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link BytecodeDiff}.
+ */
+public class BytecodeDiffTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void fingerprint_should_identify_methods_by_name_and_descriptor() {
+		final Map<String, String> methods = BytecodeDiff
+				.fingerprint(createClass("Foo", 1, 1));
+
+		assertEquals(Arrays.asList("m()V", "m(I)V", "lambda$m$0()V"),
+				Arrays.asList(methods.keySet().toArray()));
+		assertNotEquals(methods.get("m()V"), methods.get("m(I)V"));
+	}
+
+	@Test
+	public void fingerprint_should_ignore_line_numbers() {
+		assertEquals(BytecodeDiff.fingerprint(createClass("Foo", 1, 1)),
+				BytecodeDiff.fingerprint(createClass("Foo", 1, 42)));
+	}
+
+	@Test
+	public void fingerprint_should_detect_changed_instructions() {
+		final Map<String, String> a = BytecodeDiff
+				.fingerprint(createClass("Foo", 1, 1));
+		final Map<String, String> b = BytecodeDiff
+				.fingerprint(createClass("Foo", 2, 1));
+
+		assertNotEquals(a.get("m()V"), b.get("m()V"));
+		assertEquals(a.get("m(I)V"), b.get("m(I)V"));
+		assertEquals(a.get("lambda$m$0()V"), b.get("lambda$m$0()V"));
+	}
+
+	@Test
+	public void fingerprint_should_read_java_18_class() {
+		final byte[] bytes = createClass("Foo", 1, 1);
+		bytes[6] = (byte) ((Opcodes.V17 + 1) >>> 8);
+		bytes[7] = (byte) (Opcodes.V17 + 1);
+
+		assertEquals(BytecodeDiff.fingerprint(createClass("Foo", 1, 1)),
+				BytecodeDiff.fingerprint(bytes));
+	}
+
+	@Test
+	public void getDiffs_should_report_changed_and_new_methods()
+			throws IOException {
+		final File base = folder.newFolder("base");
+		write(new File(base, "a/Foo.class"), createClass("a/Foo", 1, 1));
+		write(new File(base, "a/Bar.class"), createClass("a/Bar", 1, 1));
+		final File current = folder.newFile("current.jar");
+		final ZipOutputStream zip = new ZipOutputStream(
+				new FileOutputStream(current));
+		addEntry(zip, "a/Foo.class", createClass("a/Foo", 2, 7));
+		addEntry(zip, "a/Bar.class", createClass("a/Bar", 1, 3));
+		addEntry(zip, "a/Baz.class", createClass("a/Baz", 1, 1));
+		addEntry(zip, "META-INF/versions/11/a/Foo.class",
+				createClass("a/Foo", 3, 1));
+		zip.close();
+
+		final Map<String, Set<String>> diffs = BytecodeDiff.getDiffs(
+				Collections.singletonList(base),
+				Collections.singletonList(current));
+
+		assertEquals(new TreeSet<String>(Arrays.asList("a/Baz", "a/Foo")),
+				new TreeSet<String>(diffs.keySet()));
+		assertEquals(Collections.singleton("m()V"), diffs.get("a/Foo"));
+		assertEquals(
+				new HashSet<String>(
+						Arrays.asList("m()V", "m(I)V", "lambda$m$0()V")),
+				diffs.get("a/Baz"));
+	}
+
+	@Test
+	public void isDiffMethod_should_use_descriptor_for_bytecode_diffs() {
+		final String name = "org/jacoco/core/internal/analysis/diff/BytecodeDiffTarget";
+		DiffClassRegistry.putDiffMethodKeysOfClass(name,
+				Collections.singleton("m()V"));
+
+		assertTrue(DiffClassRegistry.isDiffClass(name));
+		assertTrue(DiffClassRegistry.isDiffMethod(name, "m", "()V"));
+		assertFalse(DiffClassRegistry.isDiffMethod(name, "m", "(I)V"));
+		assertFalse(DiffClassRegistry.isDiffMethod(name, "n", "()V"));
+	}
+
+	/**
+	 * Creates a class with an overloaded method <code>m</code> and a
+	 * synthetic lambda method. The first method loads the given constant.
+	 */
+	private static byte[] createClass(final String name, final int constant,
+			final int line) {
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null,
+				"java/lang/Object", null);
+
+		MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "m", "()V",
+				null, null);
+		mv.visitCode();
+		final Label start = new Label();
+		mv.visitLabel(start);
+		mv.visitLineNumber(line, start);
+		mv.visitLdcInsn(Integer.valueOf(constant));
+		mv.visitInsn(Opcodes.POP);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+
+		mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "m", "(I)V", null, null);
+		mv.visitCode();
+		final Label label = new Label();
+		mv.visitLabel(label);
+		mv.visitLineNumber(line + 1, label);
+		mv.visitVarInsn(Opcodes.ILOAD, 1);
+		final Label end = new Label();
+		mv.visitJumpInsn(Opcodes.IFEQ, end);
+		mv.visitInsn(Opcodes.NOP);
+		mv.visitLabel(end);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitLocalVariable("x", "I", null, label, end, 1);
+		mv.visitMaxs(1, 2);
+		mv.visitEnd();
+
+		mv = writer.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC
+				| Opcodes.ACC_SYNTHETIC, "lambda$m$0", "()V", null, null);
+		mv.visitCode();
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	private static void write(final File file, final byte[] content)
+			throws IOException {
+		file.getParentFile().mkdirs();
+		final FileOutputStream out = new FileOutputStream(file);
+		out.write(content);
+		out.close();
+	}
+
+	private static void addEntry(final ZipOutputStream zip, final String name,
+			final byte[] content) throws IOException {
+		zip.putNextEntry(new ZipEntry(name));
+		zip.write(content);
+		zip.closeEntry();
+	}
+
+}
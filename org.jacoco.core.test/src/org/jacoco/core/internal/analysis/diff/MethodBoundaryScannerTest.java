@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MethodBoundaryScanner}.
+ */
+public class MethodBoundaryScannerTest {
+
+	private static final String SOURCE = "" //
+			+ "package org.example;\n" //
+			+ "import java.util.*;\n" //
+			+ "/** Doc { */\n" //
+			+ "@SuppressWarnings(\"all\")\n" //
+			+ "public class Foo<T extends Comparable<T>> implements Runnable {\n" //
+			+ "  private final Runnable field = new Runnable() {\n" //
+			+ "    public void run() { }\n" //
+			+ "  };\n" //
+			+ "  private int[] array = new int[] { 1, 2 };\n" //
+			+ "  static { String s = \"}{\"; char c = '}'; }\n" //
+			+ "  public Foo() { }\n" //
+			+ "  @Override\n" //
+			+ "  public void run() {\n" //
+			+ "    Runnable r = () -> { System.out.println(Foo.class); };\n" //
+			+ "    class Local { void local() { } }\n" //
+			+ "    new Thread(new Runnable() { public void run() { } });\n" //
+			+ "  }\n" //
+			+ "  <K> Map<K, List<T>> map(final Map<K, ? extends T> a, String[] b, int... c) {\n" //
+			+ "    return null;\n" //
+			+ "  }\n" //
+			+ "  interface Inner { void abstractMethod(int x); }\n" //
+			+ "  enum Kind { A { void kind() { } }, B(1); Kind() { } Kind(int i) { } }\n" //
+			+ "}\n";
+
+	@Test
+	public void parse_should_find_all_methods() {
+		final List<MethodInfo> methods = MethodBoundaryScanner.parse(SOURCE);
+
+		assertEquals(Arrays.asList( //
+				"org.example.Foo$1.run()", //
+				"org.example.Foo.Foo()", //
+				"org.example.Foo$1Local.local()", //
+				"org.example.Foo$2.run()", //
+				"org.example.Foo.run()", //
+				"org.example.Foo.map(final Map<K,? extends T> a, String[] b, int... c)", //
+				"org.example.Foo$Inner.abstractMethod(int x)", //
+				"org.example.Foo$Kind$1.kind()", //
+				"org.example.Foo$Kind.Kind()", //
+				"org.example.Foo$Kind.Kind(int i)" //
+		), toStrings(methods));
+	}
+
+	@Test
+	public void parse_should_mark_methods_of_anonymous_classes() {
+		final List<MethodInfo> methods = MethodBoundaryScanner.parse(SOURCE);
+
+		assertTrue(methods.get(0).isAnonymousClass);
+		assertFalse(methods.get(1).isAnonymousClass);
+		assertTrue(methods.get(7).isAnonymousClass);
+	}
+
+	@Test
+	public void parse_should_ignore_formatting_and_comments() {
+		final String a = "class A { void m() { int x = 1; } void n() { } }";
+		final String b = "class A {\n  // comment\n  void m() {\n    int x =  1;\n  }\n"
+				+ "  void n() { /* changed */ } }";
+		final String c = "class A { void m() { int x = 2; } void n() { } }";
+
+		final List<MethodInfo> ma = MethodBoundaryScanner.parse(a);
+		final List<MethodInfo> mb = MethodBoundaryScanner.parse(b);
+		final List<MethodInfo> mc = MethodBoundaryScanner.parse(c);
+
+		assertEquals(ma.get(0).md5, mb.get(0).md5);
+		assertEquals(ma.get(1).md5, mb.get(1).md5);
+		assertNotEquals(ma.get(0).md5, mc.get(0).md5);
+		assertEquals(ma.get(1).md5, mc.get(1).md5);
+	}
+
+	@Test
+	public void parseClassContent_should_use_scanner_mode() {
+		final List<MethodInfo> methods = AstGenerator.parseClassContent(
+				"package a; class A { void m(int x) { } static String n() { return null; } }",
+				AstGenerator.PARSER_SCANNER);
+
+		assertEquals(Arrays.asList("a.A.m(int x)", "a.A.n()"),
+				toStrings(methods));
+	}
+
+	@Test
+	public void parse_should_handle_incomplete_source() {
+		assertEquals(Arrays.asList("A.m()"),
+				toStrings(MethodBoundaryScanner.parse("class A { void m() {")));
+		assertTrue(MethodBoundaryScanner.parse("").isEmpty());
+	}
+
+	private static List<String> toStrings(final List<MethodInfo> methods) {
+		final List<String> result = new ArrayList<String>();
+		for (final MethodInfo m : methods) {
+			final StringBuilder params = new StringBuilder();
+			for (final String p : m.paramList) {
+				if (params.length() > 0) {
+					params.append(", ");
+				}
+				params.append(p);
+			}
+			result.add(m.className + "." + m.methodName + "(" + params + ")");
+		}
+		return result;
+	}
+
+}
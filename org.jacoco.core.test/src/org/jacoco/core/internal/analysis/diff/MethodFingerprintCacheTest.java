@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MethodFingerprintCache}.
+ */
+public class MethodFingerprintCacheTest {
+
+	private static final String BLOB_ID = "0123456789abcdef0123456789abcdef01234567";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void get_should_return_null_for_unknown_blob() {
+		final MethodFingerprintCache cache = new MethodFingerprintCache(
+				folder.getRoot());
+
+		assertNull(cache.get(BLOB_ID));
+	}
+
+	@Test
+	public void get_should_return_entries_written_by_other_instance() {
+		new MethodFingerprintCache(folder.getRoot()).put(BLOB_ID,
+				Arrays.asList(method("run", "String a", "int b")));
+
+		final List<MethodInfo> methods = new MethodFingerprintCache(
+				folder.getRoot()).get(BLOB_ID);
+
+		assertEquals(1, methods.size());
+		final MethodInfo method = methods.get(0);
+		assertEquals("org.example.Foo", method.className);
+		assertEquals("run", method.methodName);
+		assertEquals("md5-run", method.md5);
+		assertTrue(method.isAnonymousClass);
+		assertEquals(Arrays.asList("String a", "int b"), method.paramList);
+		assertTrue(new File(folder.getRoot(), "01/" + BLOB_ID.substring(2))
+				.isFile());
+	}
+
+	@Test
+	public void get_should_keep_entries_in_memory() {
+		final MethodFingerprintCache cache = new MethodFingerprintCache(null);
+		cache.put(BLOB_ID, Collections.<MethodInfo> emptyList());
+
+		assertTrue(cache.get(BLOB_ID).isEmpty());
+		assertSame(cache.get(BLOB_ID), cache.get(BLOB_ID));
+	}
+
+	@Test
+	public void get_should_ignore_invalid_entries() throws IOException {
+		final File dir = new File(folder.getRoot(), "01");
+		dir.mkdirs();
+		final FileOutputStream out = new FileOutputStream(
+				new File(dir, BLOB_ID.substring(2)));
+		out.write("invalid".getBytes());
+		out.close();
+
+		assertNull(new MethodFingerprintCache(folder.getRoot()).get(BLOB_ID));
+	}
+
+	@Test
+	public void forDirectory_should_return_shared_instance() {
+		final MethodFingerprintCache cache = MethodFingerprintCache
+				.forDirectory(folder.getRoot());
+
+		assertSame(cache,
+				MethodFingerprintCache.forDirectory(folder.getRoot()));
+		assertEquals(folder.getRoot(), cache.getDirectory());
+	}
+
+	private static MethodInfo method(final String name,
+			final String... params) {
+		final MethodInfo method = new MethodInfo();
+		method.className = "org.example.Foo";
+		method.methodName = name;
+		method.md5 = "md5-" + name;
+		method.isAnonymousClass = true;
+		method.paramList.addAll(Arrays.asList(params));
+		return method;
+	}
+
+}
@@ -14,6 +14,8 @@ package org.jacoco.core.internal.data;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 
 import org.jacoco.core.data.ExecutionDataWriter;
@@ -95,4 +97,16 @@ public class CRC64Test {
 		assertEquals(0xD8016B38AAD48308L, sum);
 	}
 
+	@Test
+	public void checksum_should_read_stream_until_end() throws IOException {
+		final byte[] bytes = new byte[20000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) i;
+		}
+		assertEquals(CRC64.classId(bytes),
+				CRC64.checksum(new ByteArrayInputStream(bytes)));
+		assertEquals(0xE3DCADD69B01ADD1L, CRC64.checksum(
+				new ByteArrayInputStream("IHATEMATH".getBytes("ASCII"))));
+	}
+
 }
@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.jacoco.core.internal.data;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
@@ -85,6 +86,33 @@ public class CompactDataInputOutputTest {
 		assertEquals(Integer.valueOf(-1), Integer.valueOf(in.read()));
 	}
 
+	@Test
+	public void testVarLong0x7F() throws IOException {
+		testVarLong(0x7FL);
+	}
+
+	@Test
+	public void testVarLong0x123456789A() throws IOException {
+		testVarLong(0x123456789AL);
+	}
+
+	@Test
+	public void testVarLongMaxValue() throws IOException {
+		testVarLong(Long.MAX_VALUE);
+	}
+
+	@Test
+	public void testVarLongMinus1() throws IOException {
+		testVarLong(-1L);
+	}
+
+	private void testVarLong(long value) throws IOException {
+		out.writeVarLong(value);
+		out.close();
+		assertEquals(Long.valueOf(value), Long.valueOf(in.readVarLong()));
+		assertEquals(Integer.valueOf(-1), Integer.valueOf(in.read()));
+	}
+
 	@Test
 	public void testPackedBooleanEmpty() throws IOException {
 		testPackedBoolean();
@@ -106,6 +134,31 @@ public class CompactDataInputOutputTest {
 				true);
 	}
 
+	@Test
+	public void testPackedBits() throws IOException {
+		final long[] bits = new long[] { 0x8000000000000001L, 0x5L };
+		out.writeBooleanArray(bits, 67);
+		out.writeBooleanArray(bits, 67);
+		out.close();
+		final boolean[] actual = in.readBooleanArray();
+		assertEquals(67, actual.length);
+		for (int i = 0; i < actual.length; i++) {
+			assertEquals("Index " + i,
+					Boolean.valueOf(i == 0 || i == 63 || i == 64 || i == 66),
+					Boolean.valueOf(actual[i]));
+		}
+		assertArrayEquals(bits, in.readBooleanBits(in.readVarInt()));
+	}
+
+	@Test
+	public void testToBits() {
+		assertArrayEquals(new long[] { 0x0201L, 0x01L },
+				CompactDataInput.toBits(new byte[] { 0x01, 0x02, 0, 0, 0, 0,
+						0, 0, (byte) 0xFF }, 65));
+		assertArrayEquals(new long[0],
+				CompactDataInput.toBits(new byte[0], 0));
+	}
+
 	private void testPackedBoolean(boolean... values) throws IOException {
 		out.writeBooleanArray(values);
 		out.close();
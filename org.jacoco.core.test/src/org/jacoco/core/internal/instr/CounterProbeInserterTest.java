@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jacoco.core.instr.MethodRecorder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link CounterProbeInserter}.
+ */
+public class CounterProbeInserterTest {
+
+	private MethodRecorder actual, expected;
+
+	private MethodVisitor actualVisitor, expectedVisitor;
+
+	private IProbeArrayStrategy arrayStrategy;
+
+	@Before
+	public void setup() {
+		actual = new MethodRecorder();
+		actualVisitor = actual.getVisitor();
+		expected = new MethodRecorder();
+		expectedVisitor = expected.getVisitor();
+		arrayStrategy = new IProbeArrayStrategy() {
+			public int storeInstance(MethodVisitor mv, boolean clinit,
+					int variable) {
+				mv.visitMethodInsn(Opcodes.INVOKESTATIC, "Foo",
+						InstrSupport.INITMETHOD_NAME,
+						InstrSupport.COUNTER_INITMETHOD_DESC, false);
+				mv.visitVarInsn(Opcodes.ASTORE, variable);
+				return 1;
+			}
+
+			public void addMembers(ClassVisitor delegate, int probeCount) {
+			}
+		};
+	}
+
+	@After
+	public void verify() {
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void insertProbe_should_increment_counter() {
+		CounterProbeInserter pi = new CounterProbeInserter(Opcodes.ACC_STATIC,
+				"m", "()V", actualVisitor, arrayStrategy);
+		pi.insertProbe(3);
+
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_3);
+		expectedVisitor.visitInsn(Opcodes.DUP2);
+		expectedVisitor.visitInsn(Opcodes.IALOAD);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.IADD);
+		expectedVisitor.visitInsn(Opcodes.IASTORE);
+	}
+
+	@Test
+	public void visitFrame_should_insert_counter_array() {
+		CounterProbeInserter pi = new CounterProbeInserter(Opcodes.ACC_STATIC,
+				"m", "(J)V", actualVisitor, arrayStrategy);
+		pi.visitFrame(Opcodes.F_NEW, 1, new Object[] { Opcodes.LONG }, 0,
+				new Object[0]);
+
+		expectedVisitor.visitFrame(Opcodes.F_NEW, 2,
+				new Object[] { Opcodes.LONG, "[I" }, 0, new Object[0]);
+	}
+
+	@Test
+	public void visitMaxs_should_increase_stack_size_for_counter_probes() {
+		CounterProbeInserter pi = new CounterProbeInserter(Opcodes.ACC_STATIC,
+				"m", "()V", actualVisitor, arrayStrategy);
+		pi.visitMaxs(10, 8);
+
+		expectedVisitor.visitMaxs(14, 9);
+	}
+
+}
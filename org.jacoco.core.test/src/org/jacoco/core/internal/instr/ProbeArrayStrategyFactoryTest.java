@@ -264,14 +264,94 @@ public class ProbeArrayStrategyFactoryTest {
 		assertEquals(NoneProbeArrayStrategy.class, strategy.getClass());
 	}
 
+	@Test
+	public void should_create_striped_strategy_for_classes() {
+		assertEquals(StripedProbeArrayStrategy.class,
+				createStriped(Opcodes.V1_5, 0).getClass());
+		assertEquals(StripedProbeArrayStrategy.class,
+				createStriped(Opcodes.V11, 0).getClass());
+	}
+
+	@Test
+	public void should_not_create_striped_strategy_for_interfaces() {
+		assertEquals(InterfaceFieldProbeArrayStrategy.class,
+				createStriped(Opcodes.V1_8, Opcodes.ACC_INTERFACE).getClass());
+	}
+
+	@Test
+	public void should_create_counter_strategy_for_classes() {
+		assertEquals(CounterProbeArrayStrategy.class,
+				createWithCounters(Opcodes.V1_5, 0).getClass());
+		assertEquals(CounterProbeArrayStrategy.class,
+				createWithCounters(Opcodes.V11, 0).getClass());
+	}
+
+	@Test
+	public void should_not_create_counter_strategy_for_interfaces() {
+		assertEquals(InterfaceFieldProbeArrayStrategy.class,
+				createWithCounters(Opcodes.V1_8, Opcodes.ACC_INTERFACE)
+						.getClass());
+	}
+
+	@Test
+	public void should_create_local_strategy_for_retransformation() {
+		assertEquals(LocalProbeArrayStrategy.class,
+				ProbeArrayStrategyFactory.createForRetransformation(0,
+						createClass(Opcodes.V11, 0), generator).getClass());
+		assertEquals(LocalProbeArrayStrategy.class,
+				ProbeArrayStrategyFactory
+						.createForRetransformation(0,
+								createClass(Opcodes.V1_8,
+										Opcodes.ACC_INTERFACE),
+								generator)
+						.getClass());
+	}
+
+	@Test
+	public void should_create_none_strategy_for_retransformation_without_code() {
+		assertEquals(NoneProbeArrayStrategy.class,
+				ProbeArrayStrategyFactory
+						.createForRetransformation(0,
+								createModuleReader(Opcodes.V9), generator)
+						.getClass());
+	}
+
+	private IProbeArrayStrategy createStriped(int version, int access) {
+		return ProbeArrayStrategyFactory.createFor(0,
+				createClass(version, access), generator, 4);
+	}
+
+	private IProbeArrayStrategy createWithCounters(int version, int access) {
+		return ProbeArrayStrategyFactory.createFor(0,
+				createClass(version, access), generator, 4, true);
+	}
+
+	private ClassReader createClass(int version, int access) {
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(version, access, "Foo", null, "java/lang/Object", null);
+		final MethodVisitor mv = writer.visitMethod(
+				Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "doit", "()V", null,
+				null);
+		mv.visitCode();
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		writer.visitEnd();
+		return new ClassReader(writer.toByteArray());
+	}
+
 	private IProbeArrayStrategy createForModule(int version) {
+		return ProbeArrayStrategyFactory.createFor(0,
+				createModuleReader(version), generator);
+	}
+
+	private ClassReader createModuleReader(int version) {
 		final ClassWriter writer = new ClassWriter(0);
 		writer.visit(version, Opcodes.ACC_MODULE, "module-info", null, null,
 				null);
 		writer.visitModule("module", 0, null).visitEnd();
 		writer.visitEnd();
-		return ProbeArrayStrategyFactory.createFor(0,
-				new ClassReader(writer.toByteArray()), generator);
+		return new ClassReader(writer.toByteArray());
 	}
 
 	private IProbeArrayStrategy test(int version, int access, boolean clinit,
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jacoco.core.instr.MethodRecorder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.AnalyzerAdapter;
+
+/**
+ * Unit tests for {@link WriteOnceProbeInserter}.
+ */
+public class WriteOnceProbeInserterTest {
+
+	private MethodRecorder actual, expected;
+
+	private MethodVisitor actualVisitor, expectedVisitor;
+
+	private IProbeArrayStrategy arrayStrategy;
+
+	@Before
+	public void setup() {
+		actual = new MethodRecorder();
+		actualVisitor = actual.getVisitor();
+		expected = new MethodRecorder();
+		expectedVisitor = expected.getVisitor();
+		arrayStrategy = new IProbeArrayStrategy() {
+			public int storeInstance(MethodVisitor mv, boolean clinit,
+					int variable) {
+				mv.visitMethodInsn(Opcodes.INVOKESTATIC, "Foo",
+						InstrSupport.INITMETHOD_NAME,
+						InstrSupport.INITMETHOD_DESC, false);
+				mv.visitVarInsn(Opcodes.ASTORE, variable);
+				return 1;
+			}
+
+			public void addMembers(ClassVisitor delegate, int probeCount) {
+			}
+		};
+	}
+
+	@After
+	public void verify() {
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void insertProbe_should_check_probe_before_writing() {
+		WriteOnceProbeInserter pi = new WriteOnceProbeInserter(
+				Opcodes.ACC_STATIC, "m", "()V", actualVisitor, arrayStrategy,
+				null);
+		pi.insertProbe(3);
+
+		final Label skip = new Label();
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_3);
+		expectedVisitor.visitInsn(Opcodes.BALOAD);
+		expectedVisitor.visitJumpInsn(Opcodes.IFNE, skip);
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_3);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.BASTORE);
+		expectedVisitor.visitLabel(skip);
+	}
+
+	@Test
+	public void insertProbe_should_add_frame_of_probe_location() {
+		AnalyzerAdapter analyzer = new AnalyzerAdapter("Foo",
+				Opcodes.ACC_STATIC, "m", "(J)V", actualVisitor);
+		WriteOnceProbeInserter pi = new WriteOnceProbeInserter(
+				Opcodes.ACC_STATIC, "m", "(J)V", analyzer, arrayStrategy,
+				analyzer);
+		pi.visitCode();
+		pi.visitInsn(Opcodes.ICONST_1);
+		pi.insertProbe(3);
+
+		final Label skip = new Label();
+		expectedVisitor.visitLabel(new Label());
+		expectedVisitor.visitMethodInsn(Opcodes.INVOKESTATIC, "Foo",
+				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
+				false);
+		expectedVisitor.visitVarInsn(Opcodes.ASTORE, 2);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 2);
+		expectedVisitor.visitInsn(Opcodes.ICONST_3);
+		expectedVisitor.visitInsn(Opcodes.BALOAD);
+		expectedVisitor.visitJumpInsn(Opcodes.IFNE, skip);
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 2);
+		expectedVisitor.visitInsn(Opcodes.ICONST_3);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.BASTORE);
+		expectedVisitor.visitFrame(Opcodes.F_NEW, 2,
+				new Object[] { Opcodes.LONG, "[Z" }, 1,
+				new Object[] { Opcodes.INTEGER });
+		expectedVisitor.visitLabel(skip);
+		expectedVisitor.visitInsn(Opcodes.NOP);
+	}
+
+	@Test
+	public void insertProbe_should_write_unconditionally_in_unreachable_code() {
+		AnalyzerAdapter analyzer = new AnalyzerAdapter("Foo",
+				Opcodes.ACC_STATIC, "m", "()V", actualVisitor);
+		WriteOnceProbeInserter pi = new WriteOnceProbeInserter(
+				Opcodes.ACC_STATIC, "m", "()V", analyzer, arrayStrategy,
+				analyzer);
+		pi.visitInsn(Opcodes.RETURN);
+		pi.insertProbe(0);
+
+		expectedVisitor.visitInsn(Opcodes.RETURN);
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_0);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.BASTORE);
+	}
+
+}
@@ -52,6 +52,10 @@ public class AgentOptionsTest {
 		assertEquals(AgentOptions.DEFAULT_ADDRESS, options.getAddress());
 		assertEquals(AgentOptions.DEFAULT_PORT, options.getPort());
 		assertNull(options.getClassDumpDir());
+		assertNull(options.getInstrCacheDir());
+		assertEquals(1, options.getProbeStripes());
+		assertFalse(options.getWriteOnceProbes());
+		assertFalse(options.getProbeCounters());
 		assertFalse(options.getJmx());
 
 		assertEquals("", options.toString());
@@ -85,6 +89,10 @@ public class AgentOptionsTest {
 		properties.put("address", "remotehost");
 		properties.put("port", "1234");
 		properties.put("classdumpdir", "target/dump");
+		properties.put("instrcache", "target/cache");
+		properties.put("probestripes", "8");
+		properties.put("writeonceprobes", "true");
+		properties.put("probecounters", "true");
 		properties.put("jmx", "true");
 
 		AgentOptions options = new AgentOptions(properties);
@@ -103,6 +111,10 @@ public class AgentOptionsTest {
 		assertEquals("remotehost", options.getAddress());
 		assertEquals(1234, options.getPort());
 		assertEquals("target/dump", options.getClassDumpDir());
+		assertEquals("target/cache", options.getInstrCacheDir());
+		assertEquals(8, options.getProbeStripes());
+		assertTrue(options.getWriteOnceProbes());
+		assertTrue(options.getProbeCounters());
 		assertTrue(options.getJmx());
 	}
 
@@ -388,6 +400,62 @@ public class AgentOptionsTest {
 		assertEquals("classdumpdir=target/dump", options.toString());
 	}
 
+	@Test
+	public void testGetInstrCacheDir() {
+		AgentOptions options = new AgentOptions("instrcache=target/cache");
+		assertEquals("target/cache", options.getInstrCacheDir());
+	}
+
+	@Test
+	public void testSetInstrCacheDir() {
+		AgentOptions options = new AgentOptions();
+		options.setInstrCacheDir("target/cache");
+		assertEquals("target/cache", options.getInstrCacheDir());
+		assertEquals("instrcache=target/cache", options.toString());
+	}
+
+	@Test
+	public void testGetProbeStripes() {
+		AgentOptions options = new AgentOptions("probestripes=16");
+		assertEquals(16, options.getProbeStripes());
+	}
+
+	@Test
+	public void testSetProbeStripes() {
+		AgentOptions options = new AgentOptions();
+		options.setProbeStripes(4);
+		assertEquals(4, options.getProbeStripes());
+		assertEquals("probestripes=4", options.toString());
+	}
+
+	@Test
+	public void testGetWriteOnceProbes() {
+		AgentOptions options = new AgentOptions("writeonceprobes=true");
+		assertTrue(options.getWriteOnceProbes());
+	}
+
+	@Test
+	public void testSetWriteOnceProbes() {
+		AgentOptions options = new AgentOptions();
+		options.setWriteOnceProbes(true);
+		assertTrue(options.getWriteOnceProbes());
+		assertEquals("writeonceprobes=true", options.toString());
+	}
+
+	@Test
+	public void testGetProbeCounters() {
+		AgentOptions options = new AgentOptions("probecounters=true");
+		assertTrue(options.getProbeCounters());
+	}
+
+	@Test
+	public void testSetProbeCounters() {
+		AgentOptions options = new AgentOptions();
+		options.setProbeCounters(true);
+		assertTrue(options.getProbeCounters());
+		assertEquals("probecounters=true", options.toString());
+	}
+
 	@Test
 	public void testGetJmx() {
 		AgentOptions options = new AgentOptions("jmx=true");
@@ -78,6 +78,24 @@ public class OfflineInstrumentationAccessGeneratorTest {
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void testCounterAccessor() throws Exception {
+		generator = new OfflineInstrumentationAccessGenerator();
+		MethodRecorder actual = new MethodRecorder();
+		assertEquals(4, generator.generateCounterAccessor(987654321,
+				"foo/Bar", 17, actual.getVisitor()));
+
+		MethodRecorder expected = new MethodRecorder();
+		expected.getVisitor().visitLdcInsn(Long.valueOf(987654321));
+		expected.getVisitor().visitLdcInsn("foo/Bar");
+		expected.getVisitor().visitIntInsn(Opcodes.BIPUSH, 17);
+		String rtname = JaCoCo.RUNTIMEPACKAGE.replace('.', '/') + "/Offline";
+		expected.getVisitor().visitMethodInsn(Opcodes.INVOKESTATIC, rtname,
+				"getCounters", "(JLjava/lang/String;I)[I", false);
+
+		assertEquals(expected, actual);
+	}
+
 	/**
 	 * Creates a new class with the given id, loads this class and instantiates
 	 * it. The constructor of the generated class will request the probe array
@@ -12,14 +12,22 @@
  *******************************************************************************/
 package org.jacoco.core.runtime;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.Before;
 import org.junit.Test;
@@ -64,10 +72,51 @@ public class RuntimeDataTest {
 		assertFalse(data[0]);
 		assertFalse(data[1]);
 		assertFalse(data[2]);
-		assertSame(storage.getData(123).getProbes(), data);
+		assertArrayEquals(storage.getData(123).getProbes(), data);
 		assertEquals("Foo", storage.getData(123).getName());
 	}
 
+	@Test
+	public void collect_should_write_snapshot_of_probes() {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(123), "Foo", 3).getProbes();
+		probes[1] = true;
+
+		data.collect(storage, storage, false);
+		probes[2] = true;
+
+		assertArrayEquals(new boolean[] { false, true, false },
+				storage.getData(123).getProbes());
+		assertArrayEquals(new boolean[] { false, true, true }, probes);
+	}
+
+	@Test(timeout = 10000)
+	public void collect_should_not_block_other_dumps_while_writing()
+			throws Exception {
+		data.getExecutionData(Long.valueOf(1), "Foo", 1).getProbes()[0] = true;
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final TestStorage other = new TestStorage();
+
+		data.collect(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData d) {
+				try {
+					executor.submit(new Runnable() {
+						public void run() {
+							data.collect(other, other, true);
+						}
+					}).get(5, TimeUnit.SECONDS);
+				} catch (final Exception e) {
+					throw new AssertionError(e);
+				}
+			}
+		}, storage, false);
+		executor.shutdown();
+
+		assertTrue(other.getData(1).getProbes()[0]);
+		assertFalse(data.getExecutionData(Long.valueOf(1), "Foo", 1)
+				.getProbes()[0]);
+	}
+
 	@Test
 	public void testCollectEmpty() {
 		data.collect(storage, storage, false);
@@ -100,6 +149,165 @@ public class RuntimeDataTest {
 		assertEquals("testsession", storage.getSessionInfo().getId());
 	}
 
+	@Test
+	public void getProbes_should_return_probes_of_execution_data_for_stripe_0() {
+		final boolean[] probes = data.getProbes(Long.valueOf(123), "Foo;0", 3);
+
+		assertSame(data.getExecutionData(Long.valueOf(123), "Foo", 3)
+				.getProbes(), probes);
+	}
+
+	@Test
+	public void getProbes_should_return_same_instance_for_same_stripe() {
+		final boolean[] probes = data.getProbes(Long.valueOf(123), "Foo;3", 3);
+
+		assertEquals(3, probes.length);
+		assertSame(probes, data.getProbes(Long.valueOf(123), "Foo;3", 3));
+		assertNotSame(probes, data.getProbes(Long.valueOf(123), "Foo;2", 3));
+		assertNotSame(probes, data.getProbes(Long.valueOf(123), "Foo", 3));
+	}
+
+	@Test
+	public void collect_should_merge_stripes() {
+		data.getProbes(Long.valueOf(123), "Foo", 3)[0] = true;
+		data.getProbes(Long.valueOf(123), "Foo;1", 3)[2] = true;
+
+		data.collect(storage, storage, false);
+
+		storage.assertSize(1);
+		assertEquals("Foo", storage.getData(123).getName());
+		storage.assertData(123, new boolean[] { true, false, true });
+	}
+
+	@Test
+	public void collect_should_reset_stripes() {
+		final boolean[] probes = data.getProbes(Long.valueOf(123), "Foo;1", 1);
+		probes[0] = true;
+
+		data.collect(storage, storage, true);
+
+		assertFalse(probes[0]);
+		storage.assertData(123, new boolean[] { true });
+	}
+
+	@Test
+	public void reset_should_reset_stripes() {
+		final boolean[] probes = data.getProbes(Long.valueOf(123), "Foo;1", 1);
+		probes[0] = true;
+
+		data.reset();
+
+		assertFalse(probes[0]);
+	}
+
+	@Test
+	public void getCounters_should_return_same_instance() {
+		final int[] counters = data.getCounters(Long.valueOf(123), "Foo", 3);
+
+		assertEquals(3, counters.length);
+		assertSame(counters, data.getCounters(Long.valueOf(123), "Foo", 3));
+		assertEquals("Foo",
+				data.getExecutionData(Long.valueOf(123), "Foo", 3).getName());
+	}
+
+	@Test
+	public void getProbes_should_return_counters_when_requested() {
+		final Object[] args = new Object[] { Long.valueOf(123), "Foo",
+				Integer.valueOf(3), Boolean.TRUE };
+
+		data.getProbes(args);
+
+		assertSame(data.getCounters(Long.valueOf(123), "Foo", 3), args[0]);
+	}
+
+	@Test
+	public void collect_should_report_counts() {
+		final int[] counters = data.getCounters(Long.valueOf(123), "Foo", 3);
+		counters[0] = 5;
+		counters[2] = -1;
+
+		data.collect(storage, storage, false);
+
+		storage.assertData(123, new boolean[] { true, false, true });
+		assertArrayEquals(new long[] { 5, 0, 0xFFFFFFFFL },
+				storage.getData(123).getCounts());
+		assertEquals(5, counters[0]);
+	}
+
+	@Test
+	public void collect_should_reset_counters() {
+		final int[] counters = data.getCounters(Long.valueOf(123), "Foo", 1);
+		counters[0] = 42;
+
+		data.collect(storage, storage, true);
+
+		assertEquals(0, counters[0]);
+		assertArrayEquals(new long[] { 42 }, storage.getData(123).getCounts());
+	}
+
+	@Test
+	public void reset_should_reset_counters() {
+		final int[] counters = data.getCounters(Long.valueOf(123), "Foo", 1);
+		counters[0] = 42;
+
+		data.reset();
+
+		assertEquals(0, counters[0]);
+	}
+
+	@Test
+	public void getExecutionData_should_return_same_instance_for_concurrent_calls()
+			throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		final Callable<ExecutionData> task = new Callable<ExecutionData>() {
+			public ExecutionData call() {
+				return data.getExecutionData(Long.valueOf(42), "Foo", 2);
+			}
+		};
+		final Future<?>[] futures = new Future<?>[100];
+		for (int i = 0; i < futures.length; i++) {
+			futures[i] = executor.submit(task);
+		}
+		executor.shutdown();
+
+		final Object first = futures[0].get();
+		for (final Future<?> f : futures) {
+			assertSame(first, f.get());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void getExecutionData_should_check_compatibility() {
+		data.getExecutionData(Long.valueOf(42), "Foo", 2);
+		data.getExecutionData(Long.valueOf(42), "Foo", 3);
+	}
+
+	@Test(timeout = 10000)
+	public void getExecutionData_should_not_block_while_collecting()
+			throws Exception {
+		data.getExecutionData(Long.valueOf(1), "Foo", 1);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final boolean[][] probes = new boolean[1][];
+
+		data.collect(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData d) {
+				try {
+					probes[0] = executor.submit(new Callable<boolean[]>() {
+						public boolean[] call() {
+							return data.getExecutionData(Long.valueOf(2),
+									"Bar", 3).getProbes();
+						}
+					}).get(5, TimeUnit.SECONDS);
+				} catch (final Exception e) {
+					throw new AssertionError(e);
+				}
+			}
+		}, storage, false);
+		executor.shutdown();
+
+		assertEquals(3, probes[0].length);
+	}
+
 	@Test
 	public void testEquals() {
 		assertTrue(data.equals(data));
@@ -148,6 +356,45 @@ public class RuntimeDataTest {
 		assertEquals(Integer.valueOf(15), args[2]);
 	}
 
+	@Test
+	public void testGenerateCounterArgumentArray() throws Exception {
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, "Sample", null,
+				"java/lang/Object",
+				new String[] { Type.getInternalName(Callable.class) });
+
+		// Constructor
+		MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>",
+				"()V", null, new String[0]);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>",
+				"()V", false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(1, 1);
+		mv.visitEnd();
+
+		// call()
+		mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "call",
+				"()Ljava/lang/Object;", null, new String[0]);
+		mv.visitCode();
+		RuntimeData.generateArgumentArray(1000, "Sample", 15, true, mv);
+		mv.visitInsn(Opcodes.ARETURN);
+		mv.visitMaxs(5, 1);
+		mv.visitEnd();
+
+		writer.visitEnd();
+		final TargetLoader loader = new TargetLoader();
+		Callable<?> callable = (Callable<?>) loader
+				.add("Sample", writer.toByteArray()).newInstance();
+		final Object[] args = (Object[]) callable.call();
+		assertEquals(4, args.length);
+		assertEquals(Long.valueOf(1000), args[0]);
+		assertEquals("Sample", args[1]);
+		assertEquals(Integer.valueOf(15), args[2]);
+		assertEquals(Boolean.TRUE, args[3]);
+	}
+
 	@Test
 	public void testGenerateAccessCall() throws Exception {
 		final boolean[] probes = data
@@ -12,10 +12,14 @@
  *******************************************************************************/
 package org.jacoco.core.runtime;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.concurrent.Callable;
+
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.After;
@@ -58,8 +62,22 @@ public abstract class RuntimeTestBase {
 	public void testDataAccessor()
 			throws InstantiationException, IllegalAccessException {
 		ITarget t = generateAndInstantiateClass(1234);
+		t.a();
 		data.collect(storage, storage, false);
 		storage.assertData(1234, t.get());
+		assertSame(t.get(),
+				data.getExecutionData(Long.valueOf(1234),
+						"org/jacoco/test/targets/RuntimeTestTarget_1234", 2)
+						.getProbes());
+	}
+
+	@Test
+	public void testCounterAccessor() throws Exception {
+		final Callable<?> t = generateAndInstantiateCounterClass(1234);
+		final int[] counters = (int[]) t.call();
+		assertSame(counters, data.getCounters(Long.valueOf(1234),
+				"org/jacoco/test/targets/RuntimeCounterTarget_1234", 2));
+		assertEquals(2, counters.length);
 	}
 
 	@Test
@@ -97,6 +115,54 @@ public abstract class RuntimeTestBase {
 		assertTrue(data[1]);
 	}
 
+	/**
+	 * Creates a new class with the given id, loads this class and instantiates
+	 * it. The <code>call()</code> method of the generated class requests the
+	 * probe counter array from the runtime under test.
+	 */
+	private Callable<?> generateAndInstantiateCounterClass(int classid)
+			throws InstantiationException, IllegalAccessException {
+
+		final String className = "org/jacoco/test/targets/RuntimeCounterTarget_"
+				+ classid;
+
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, className, null,
+				"java/lang/Object",
+				new String[] { Type.getInternalName(Callable.class) });
+
+		// Constructor
+		GeneratorAdapter gen = new GeneratorAdapter(
+				writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null,
+						new String[0]),
+				Opcodes.ACC_PUBLIC, "<init>", "()V");
+		gen.visitCode();
+		gen.loadThis();
+		gen.invokeConstructor(Type.getType(Object.class),
+				new Method("<init>", "()V"));
+		gen.returnValue();
+		gen.visitMaxs(1, 1);
+		gen.visitEnd();
+
+		// call()
+		gen = new GeneratorAdapter(writer.visitMethod(Opcodes.ACC_PUBLIC,
+				"call", "()Ljava/lang/Object;", null, new String[0]),
+				Opcodes.ACC_PUBLIC, "call", "()Ljava/lang/Object;");
+		gen.visitCode();
+		final int size = runtime.generateCounterAccessor(classid, className,
+				2, gen);
+		gen.returnValue();
+		gen.visitMaxs(size, 1);
+		gen.visitEnd();
+
+		writer.visitEnd();
+
+		final TargetLoader loader = new TargetLoader();
+		return (Callable<?>) loader
+				.add(className.replace('/', '.'), writer.toByteArray())
+				.newInstance();
+	}
+
 	/**
 	 * Creates a new class with the given id, loads this class and instantiates
 	 * it. The constructor of the generated class will request the probe array
@@ -75,4 +75,39 @@ public class WildcardMatcherTest {
 				.matches("org/example/Enity$$$generated123"));
 	}
 
+	@Test
+	public void should_match_expressions_with_common_prefix() {
+		final WildcardMatcher matcher = new WildcardMatcher(
+				"org/example/*:org/example/Foo:org/exa?ple/Bar*:org/ex");
+		assertTrue(matcher.matches("org/example/"));
+		assertTrue(matcher.matches("org/example/Foo"));
+		assertTrue(matcher.matches("org/exaMple/Bar"));
+		assertTrue(matcher.matches("org/exaMple/BarTest"));
+		assertTrue(matcher.matches("org/ex"));
+		assertFalse(matcher.matches("org/e"));
+		assertFalse(matcher.matches("org/exaMple/Foo"));
+		assertFalse(matcher.matches("org/examples"));
+	}
+
+	@Test
+	public void should_match_many_expressions() {
+		final StringBuilder expression = new StringBuilder("*Test");
+		for (int i = 0; i < 1000; i++) {
+			expression.append(":com/example/p").append(i).append("/*");
+		}
+		final WildcardMatcher matcher = new WildcardMatcher(
+				expression.toString());
+		assertTrue(matcher.matches("com/example/p0/Foo"));
+		assertTrue(matcher.matches("com/example/p999/Foo"));
+		assertTrue(matcher.matches("com/example/p1000/FooTest"));
+		assertFalse(matcher.matches("com/example/p1000/Foo"));
+	}
+
+	@Test
+	public void asterix_should_backtrack_to_later_positions() {
+		assertTrue(new WildcardMatcher("*ab?").matches("aabababc"));
+		assertTrue(new WildcardMatcher("a**b").matches("ab"));
+		assertFalse(new WildcardMatcher("*a?").matches("ba"));
+	}
+
 }
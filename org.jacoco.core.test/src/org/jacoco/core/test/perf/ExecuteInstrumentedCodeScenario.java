@@ -22,16 +22,29 @@ import org.jacoco.core.test.TargetLoader;
 
 /**
  * This scenario runs a given scenario twice and reports the execution time:
- * Once on its original version, once in a instrumented version.
+ * Once on its original version, once in a instrumented version. Optionally the
+ * instrumented version uses striped or write-once probes.
  */
 public class ExecuteInstrumentedCodeScenario extends TimedScenario {
 
 	private final Class<? extends Callable<Void>> target;
 
+	private final int probeStripes;
+
+	private final boolean writeOnceProbes;
+
 	protected ExecuteInstrumentedCodeScenario(String description,
 			Class<? extends Callable<Void>> target) {
+		this(description, target, 1, false);
+	}
+
+	protected ExecuteInstrumentedCodeScenario(String description,
+			Class<? extends Callable<Void>> target, int probeStripes,
+			boolean writeOnceProbes) {
 		super(description);
 		this.target = target;
+		this.probeStripes = probeStripes;
+		this.writeOnceProbes = writeOnceProbes;
 	}
 
 	@Override
@@ -40,6 +53,8 @@ public class ExecuteInstrumentedCodeScenario extends TimedScenario {
 		IRuntime runtime = new LoggerRuntime();
 		runtime.startup(new RuntimeData());
 		final Instrumenter instr = new Instrumenter(runtime);
+		instr.setProbeStripes(probeStripes);
+		instr.setWriteOnceProbes(writeOnceProbes);
 		final byte[] original = TargetLoader.getClassDataAsBytes(target);
 		final byte[] instrumentedBuffer = instr.instrument(original, "");
 		final TargetLoader loader = new TargetLoader();
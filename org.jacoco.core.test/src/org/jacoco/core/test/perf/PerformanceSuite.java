@@ -17,6 +17,7 @@ import java.io.PrintWriter;
 import org.jacoco.core.test.perf.targets.Target01;
 import org.jacoco.core.test.perf.targets.Target02;
 import org.jacoco.core.test.perf.targets.Target03;
+import org.jacoco.core.test.perf.targets.Target04;
 
 /**
  * The main test suite.
@@ -30,9 +31,23 @@ public class PerformanceSuite implements IPerfScenario {
 				.run(output);
 		new ExecuteInstrumentedCodeScenario("game of life", Target03.class)
 				.run(output);
+		new ExecuteInstrumentedCodeScenario("concurrent loop", Target04.class)
+				.run(output);
+		new ExecuteInstrumentedCodeScenario("plain method calls, 8 stripes",
+				Target01.class, 8, false).run(output);
+		new ExecuteInstrumentedCodeScenario("concurrent loop, 8 stripes",
+				Target04.class, 8, false).run(output);
+		new ExecuteInstrumentedCodeScenario("plain method calls, write once",
+				Target01.class, 1, true).run(output);
+		new ExecuteInstrumentedCodeScenario("loop only, write once",
+				Target02.class, 1, true).run(output);
+		new ExecuteInstrumentedCodeScenario("concurrent loop, write once",
+				Target04.class, 1, true).run(output);
 		new InstrumentationSizeSzenario(Target03.class).run(output);
 		new InstrumentationTimeScenario(Target03.class, 1000).run(output);
 		new AnalysisTimeScenario(Target03.class, 1000).run(output);
+		new SourceParseTimeScenario(Target03.class, 1000).run(output);
+		new WildcardMatcherScenario(200, 100000).run(output);
 	}
 
 	public static void main(String[] args) throws Exception {
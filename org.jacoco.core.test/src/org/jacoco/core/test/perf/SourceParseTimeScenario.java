@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.test.perf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+
+import org.jacoco.core.internal.InputStreams;
+import org.jacoco.core.internal.analysis.diff.AstGenerator;
+
+/**
+ * Scenario to measure the time taken to parse java sources for diff coverage
+ * with the method boundary scanner compared to the JDT parser.
+ */
+public class SourceParseTimeScenario extends TimedScenario {
+
+	private final String source;
+
+	private final int count;
+
+	protected SourceParseTimeScenario(Class<?> target, int count)
+			throws IOException {
+		super(String.format("parsing %s sources", Integer.valueOf(count)));
+		this.source = readSource(target);
+		this.count = count;
+	}
+
+	private static String readSource(Class<?> target) throws IOException {
+		final File file = new File("src",
+				target.getName().replace('.', '/') + ".java");
+		final InputStream in = new FileInputStream(file);
+		try {
+			return new String(InputStreams.readFully(in), "UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+
+	@Override
+	protected Callable<Void> getInstrumentedCallable() throws Exception {
+		return getParseCallable(AstGenerator.PARSER_SCANNER);
+	}
+
+	@Override
+	protected Callable<Void> getReferenceCallable() throws Exception {
+		return getParseCallable(AstGenerator.PARSER_JDT);
+	}
+
+	private Callable<Void> getParseCallable(final String parser) {
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				for (int i = 0; i < count; i++) {
+					AstGenerator.parseClassContent(source, parser);
+				}
+				return null;
+			}
+		};
+	}
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.test.perf;
+
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+import org.jacoco.core.runtime.WildcardMatcher;
+
+/**
+ * Scenario to measure the time taken to match class names against include
+ * patterns with the compiled {@link WildcardMatcher} compared to matching with
+ * a single regular expression.
+ */
+public class WildcardMatcherScenario extends TimedScenario {
+
+	private final String expression;
+
+	private final String[] names;
+
+	protected WildcardMatcherScenario(final int patterns, final int classes) {
+		super(String.format("matching %s class names against %s patterns",
+				Integer.valueOf(classes), Integer.valueOf(patterns)));
+		final StringBuilder expression = new StringBuilder();
+		for (int i = 0; i < patterns; i++) {
+			if (i > 0) {
+				expression.append(':');
+			}
+			if (i % 4 == 3) {
+				expression.append("*Generated").append(i);
+			} else {
+				expression.append("com/example/module").append(i)
+						.append("/*");
+			}
+		}
+		this.expression = expression.toString();
+		names = new String[classes];
+		for (int i = 0; i < classes; i++) {
+			names[i] = String.format("%s/module%s/internal/Class%s",
+					i % 2 == 0 ? "com/example" : "org/other",
+					Integer.valueOf(i % (patterns * 2)), Integer.valueOf(i));
+		}
+	}
+
+	@Override
+	protected Callable<Void> getInstrumentedCallable() throws Exception {
+		final WildcardMatcher matcher = new WildcardMatcher(expression);
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				for (final String name : names) {
+					matcher.matches(name);
+				}
+				return null;
+			}
+		};
+	}
+
+	@Override
+	protected Callable<Void> getReferenceCallable() throws Exception {
+		final Pattern pattern = toRegex(expression);
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				for (final String name : names) {
+					pattern.matcher(name).matches();
+				}
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Regular expression as previously used by {@link WildcardMatcher}.
+	 */
+	private static Pattern toRegex(final String expression) {
+		final StringBuilder regex = new StringBuilder();
+		boolean next = false;
+		for (final String part : expression.split("\\:")) {
+			if (next) {
+				regex.append('|');
+			}
+			regex.append('(');
+			for (final char c : part.toCharArray()) {
+				switch (c) {
+				case '?':
+					regex.append(".");
+					break;
+				case '*':
+					regex.append(".*");
+					break;
+				default:
+					regex.append(Pattern.quote(String.valueOf(c)));
+					break;
+				}
+			}
+			regex.append(')');
+			next = true;
+		}
+		return Pattern.compile(regex.toString());
+	}
+
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.test.perf.targets;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Loop with branches which is executed by multiple threads concurrently.
+ */
+public class Target04 implements Callable<Void>, Runnable {
+
+	private static final int THREADS = 4;
+
+	private volatile int c;
+
+	public Void call() throws Exception {
+		final Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < THREADS; i++) {
+			threads[i] = new Thread(this);
+			threads[i].start();
+		}
+		for (final Thread t : threads) {
+			t.join();
+		}
+		return null;
+	}
+
+	public void run() {
+		int local = 0;
+		for (int i = 0; i < 10000000; i++) {
+			if ((i & 1) == 0) {
+				local++;
+			} else {
+				local--;
+			}
+		}
+		c = local; // some side effect, otherwise the JIT will remove the loop
+	}
+
+}
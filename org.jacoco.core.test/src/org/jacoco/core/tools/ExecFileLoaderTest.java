@@ -13,6 +13,7 @@
 package org.jacoco.core.tools;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -114,6 +115,94 @@ public class ExecFileLoaderTest {
 		assertFileContents(file, "a");
 	}
 
+	@Test
+	public void testLoadIndexedFile() throws IOException {
+		loader.load(createIndexedFile("a"));
+		loader.load(createFile("bb"));
+
+		assertLoaderContents("a", "bb");
+	}
+
+	@Test
+	public void testLoadIndexedInputStream() throws IOException {
+		final FileInputStream in = new FileInputStream(
+				createIndexedFile("a"));
+		loader.load(in);
+		in.close();
+
+		assertLoaderContents("a");
+	}
+
+	@Test
+	public void testSaveIndexedFile() throws IOException {
+		final File file = new File(sourceFolder.getRoot(),
+				"a/b/target.exec");
+
+		loader.load(createFile("a"));
+		loader.load(createFile("bb"));
+		loader.saveIndexed(file);
+
+		final ExecFileLoader other = new ExecFileLoader();
+		other.load(file);
+		assertContents(other.getExecutionDataStore(),
+				other.getSessionInfoStore(), "a", "bb");
+	}
+
+	@Test
+	public void testSaveIndexedFileOverLoadedFile() throws IOException {
+		final File file = createIndexedFile("a");
+
+		loader.load(file);
+		loader.load(createFile("bb"));
+		loader.saveIndexed(file);
+
+		assertLoaderContents("a", "bb");
+		final ExecFileLoader other = new ExecFileLoader();
+		other.load(file);
+		assertContents(other.getExecutionDataStore(),
+				other.getSessionInfoStore(), "a", "bb");
+	}
+
+	@Test
+	public void testSaveFileAppendToIndexedFile() throws IOException {
+		final File file = createIndexedFile("a");
+		final long length = file.length();
+
+		loader.load(createFile("bb"));
+		try {
+			loader.save(file, true);
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Can't append to execution data file "
+					+ file.getPath() + " in the indexed format.",
+					e.getMessage());
+		}
+
+		assertEquals(length, file.length());
+		final ExecFileLoader other = new ExecFileLoader();
+		other.load(file);
+		assertContents(other.getExecutionDataStore(),
+				other.getSessionInfoStore(), "a");
+	}
+
+	@Test
+	public void testSaveFileOverIndexedFile() throws IOException {
+		final File file = createIndexedFile("a");
+
+		loader.load(createFile("bb"));
+		loader.save(file, false);
+
+		assertFileContents(file, "bb");
+	}
+
+	private File createIndexedFile(String id) throws IOException {
+		final ExecFileLoader l = new ExecFileLoader();
+		l.load(createFile(id));
+		final File file = new File(sourceFolder.getRoot(), id + ".iexec");
+		l.saveIndexed(file);
+		return file;
+	}
+
 	private File createFile(String id) throws IOException {
 		final File file = new File(sourceFolder.getRoot(), id + ".exec");
 		final FileOutputStream out = new FileOutputStream(file);
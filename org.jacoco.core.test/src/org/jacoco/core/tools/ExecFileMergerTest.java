@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ExecFileMerger}.
+ */
+public class ExecFileMergerTest {
+
+	@Rule
+	public final TemporaryFolder sourceFolder = new TemporaryFolder();
+
+	private ExecFileMerger merger;
+
+	@Before
+	public void setup() {
+		merger = new ExecFileMerger();
+	}
+
+	@Test
+	public void should_merge_files() throws IOException {
+		merger.add(createFile("a", 1, true, false));
+		merger.add(createFile("b", 2, false, true));
+		merger.add(createFile("c", 1, false, true));
+		final File file = new File(sourceFolder.getRoot(), "x/target.exec");
+
+		merger.merge(file, false);
+
+		final ExecutionDataStore store = assertFileContents(file, "a", "b",
+				"c");
+		assertArrayEquals(new boolean[] { true, true },
+				store.get(1).getProbes());
+		assertArrayEquals(new boolean[] { false, true },
+				store.get(2).getProbes());
+	}
+
+	@Test
+	public void should_write_execution_data_in_order_of_ids()
+			throws IOException {
+		merger.add(createFile("a", 3, true));
+		merger.add(createFile("b", -7, true));
+		merger.add(createFile("c", 1, true));
+		final List<Long> ids = new ArrayList<Long>();
+
+		merger.merge(new SessionInfoStore(), new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				ids.add(Long.valueOf(data.getId()));
+			}
+		});
+
+		assertEquals("[-7, 1, 3]", ids.toString());
+	}
+
+	@Test
+	public void should_merge_files_with_multiple_threads() throws IOException {
+		merger.setThreads(3);
+		final String[] ids = new String[20];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = String.valueOf(i);
+			merger.add(createFile(ids[i], i % 4, i % 2 == 0, i % 3 == 0));
+		}
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		merger.merge(buffer);
+
+		final ExecutionDataStore store = assertContents(
+				new ByteArrayInputStream(buffer.toByteArray()), ids);
+		assertEquals(4, store.getContents().size());
+		assertArrayEquals(new boolean[] { true, true },
+				store.get(0).getProbes());
+		assertArrayEquals(new boolean[] { false, true },
+				store.get(1).getProbes());
+	}
+
+	@Test
+	public void should_merge_input_streams_and_indexed_files()
+			throws IOException {
+		final InputStream in = new FileInputStream(createFile("a", 1, true));
+		merger.add(in);
+		in.close();
+		merger.add(createIndexedFile("b", 2));
+		final File file = new File(sourceFolder.getRoot(), "target.exec");
+
+		merger.merge(file, false);
+
+		assertFileContents(file, "a", "b");
+	}
+
+	@Test
+	public void should_merge_execution_counts() throws IOException {
+		merger.add(createFileWithCounts("a", 1, 3, 0));
+		merger.add(createFileWithCounts("b", 1, 4, 5));
+		merger.add(createFile("c", 2, true));
+		final File indexed = new File(sourceFolder.getRoot(), "d.iexec");
+		final ExecFileLoader loader = new ExecFileLoader();
+		loader.load(createFileWithCounts("d", 1, 0, 10));
+		loader.saveIndexed(indexed);
+		merger.add(indexed);
+		final File file = new File(sourceFolder.getRoot(), "target.exec");
+
+		merger.merge(file, false);
+
+		final ExecutionDataStore store = assertFileContents(file, "a", "b",
+				"c", "d");
+		assertArrayEquals(new long[] { 7, 15 }, store.get(1).getCounts());
+		assertArrayEquals(new boolean[] { true, true },
+				store.get(1).getProbes());
+		assertNull(store.get(2).getCounts());
+	}
+
+	@Test
+	public void should_append_to_input_file() throws IOException {
+		final File file = createFile("a", 1, true);
+		merger.add(file);
+		merger.add(createFile("b", 2, true));
+
+		merger.merge(file, true);
+
+		final ExecutionDataStore store = new ExecutionDataStore();
+		final SessionInfoStore sessions = new SessionInfoStore();
+		read(new FileInputStream(file), store, sessions);
+		assertEquals(2, store.getContents().size());
+		assertEquals(3, sessions.getInfos().size());
+	}
+
+	@Test
+	public void should_write_only_header_without_inputs() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		merger.merge(buffer);
+
+		assertArrayEquals(ExecutionDataWriter.getFileHeader(),
+				buffer.toByteArray());
+	}
+
+	@Test
+	public void should_report_file_which_can_not_be_read() throws IOException {
+		merger.setThreads(2);
+		merger.add(createFile("a", 1, true));
+		final File broken = new File(sourceFolder.getRoot(), "broken.exec");
+		final FileWriter writer = new FileWriter(broken);
+		writer.write("Invalid Content");
+		writer.close();
+		merger.add(broken);
+
+		try {
+			merger.merge(new ByteArrayOutputStream());
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Error while reading execution data file "
+					+ broken.getPath() + ".", e.getMessage());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_fail_for_incompatible_execution_data()
+			throws IOException {
+		merger.add(createFile("a", 1, true));
+		merger.add(createFile("b", 1, true, true));
+
+		merger.merge(new ByteArrayOutputStream());
+	}
+
+	@Test
+	public void setThreads_should_throw_exception_for_invalid_value() {
+		try {
+			merger.setThreads(0);
+			fail("exception expected");
+		} catch (final IllegalArgumentException e) {
+			assertEquals("Number of threads must be positive: 0",
+					e.getMessage());
+		}
+		assertEquals(1, merger.getThreads());
+	}
+
+	private File createIndexedFile(String id, long classid)
+			throws IOException {
+		final ExecFileLoader l = new ExecFileLoader();
+		l.load(createFile(id, classid, true));
+		final File file = new File(sourceFolder.getRoot(), id + ".iexec");
+		l.saveIndexed(file);
+		return file;
+	}
+
+	/**
+	 * Creates a file with a session with the given id and execution data for
+	 * a single class with the given class id.
+	 */
+	private File createFile(String id, long classid, boolean... probes)
+			throws IOException {
+		final File file = new File(sourceFolder.getRoot(), id + ".exec");
+		final FileOutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo(id, 1, 2));
+		writer.visitClassExecution(
+				new ExecutionData(classid, "Class" + classid, probes));
+		out.close();
+		return file;
+	}
+
+	/**
+	 * Creates a file with a session with the given id and execution data with
+	 * the given execution counts for a single class with the given class id.
+	 */
+	private File createFileWithCounts(String id, long classid, long... counts)
+			throws IOException {
+		final File file = new File(sourceFolder.getRoot(), id + ".exec");
+		final FileOutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo(id, 1, 2));
+		long bits = 0;
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				bits |= 1L << i;
+			}
+		}
+		writer.visitClassExecution(new ExecutionData(classid,
+				"Class" + classid, new long[] { bits }, counts.length,
+				counts.clone()));
+		out.close();
+		return file;
+	}
+
+	private ExecutionDataStore assertFileContents(File file,
+			String... sessions) throws IOException {
+		return assertContents(new FileInputStream(file), sessions);
+	}
+
+	private ExecutionDataStore assertContents(InputStream in,
+			String... sessions) throws IOException {
+		final ExecutionDataStore store = new ExecutionDataStore();
+		final SessionInfoStore sessionStore = new SessionInfoStore();
+		read(in, store, sessionStore);
+		final List<SessionInfo> infos = sessionStore.getInfos();
+		assertEquals(sessions.length, infos.size());
+		for (int i = 0; i < sessions.length; i++) {
+			assertEquals(sessions[i], infos.get(i).getId());
+		}
+		for (ExecutionData data : store.getContents()) {
+			assertTrue(data.hasHits());
+		}
+		return store;
+	}
+
+	private void read(InputStream in, ExecutionDataStore store,
+			SessionInfoStore sessions) throws IOException {
+		try {
+			final ExecutionDataReader reader = new ExecutionDataReader(in);
+			reader.setExecutionDataVisitor(store);
+			reader.setSessionInfoVisitor(sessions);
+			reader.read();
+		} finally {
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
+import org.jacoco.core.test.TargetLoader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link IncrementalInstrumenter}.
+ */
+public class IncrementalInstrumenterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File src;
+
+	private File dest;
+
+	private File manifest;
+
+	private Map<File, File> files;
+
+	@Before
+	public void setup() throws IOException {
+		src = folder.newFolder("src");
+		dest = new File(folder.getRoot(), "dest");
+		manifest = new File(folder.getRoot(), "dest.manifest");
+		files = Collections.singletonMap(src, dest);
+		write(new File(src, "A.class"),
+				TargetLoader.getClassDataAsBytes(getClass()));
+		write(new File(src, "b/B.class"),
+				TargetLoader.getClassDataAsBytes(Instrumenter.class));
+	}
+
+	@Test
+	public void instrumentAll_should_instrument_all_files_initially()
+			throws IOException {
+		final IncrementalInstrumenter instrumenter = create();
+
+		assertEquals(2, instrumenter.instrumentAll(files));
+
+		assertEquals(0, instrumenter.getSkippedFiles());
+		assertTrue(new File(dest, "A.class").isFile());
+		assertTrue(new File(dest, "b/B.class").isFile());
+		assertTrue(manifest.isFile());
+	}
+
+	@Test
+	public void instrumentAll_should_skip_unchanged_files() throws IOException {
+		create().instrumentAll(files);
+		write(new File(src, "A.class"),
+				TargetLoader.getClassDataAsBytes(TargetLoader.class));
+
+		final IncrementalInstrumenter instrumenter = create();
+
+		assertEquals(1, instrumenter.instrumentAll(files));
+		assertEquals(1, instrumenter.getSkippedFiles());
+		assertEquals(0, instrumenter.getRemovedFiles());
+		assertEquals(0, create().instrumentAll(files));
+	}
+
+	@Test
+	public void instrumentAll_should_instrument_modified_outputs_again()
+			throws IOException {
+		create().instrumentAll(files);
+		write(new File(dest, "A.class"), new byte[0]);
+		new File(dest, "b/B.class").delete();
+
+		assertEquals(2, create().instrumentAll(files));
+	}
+
+	@Test
+	public void instrumentAll_should_remove_outdated_outputs()
+			throws IOException {
+		create().instrumentAll(files);
+		new File(src, "A.class").delete();
+
+		final IncrementalInstrumenter instrumenter = create();
+		assertEquals(0, instrumenter.instrumentAll(files));
+
+		assertEquals(1, instrumenter.getRemovedFiles());
+		assertFalse(new File(dest, "A.class").exists());
+		assertTrue(new File(dest, "b/B.class").exists());
+	}
+
+	@Test
+	public void instrumentAll_should_ignore_manifest_of_other_version()
+			throws IOException {
+		create().instrumentAll(files);
+		write(manifest, "JaCoCo instrumentation manifest 0.0.0\n".getBytes());
+
+		assertEquals(2, create().instrumentAll(files));
+	}
+
+	@Test
+	public void isUpToDate_should_check_source() throws IOException {
+		create().instrumentAll(files);
+		final IncrementalInstrumenter instrumenter = create();
+
+		assertTrue(instrumenter.isUpToDate(new File(src, "A.class"),
+				new File(dest, "A.class")));
+		assertFalse(instrumenter.isUpToDate(new File(src, "b/B.class"),
+				new File(dest, "A.class")));
+		assertFalse(instrumenter.isUpToDate(new File(src, "A.class"),
+				new File(dest, "C.class")));
+	}
+
+	private IncrementalInstrumenter create() {
+		return new IncrementalInstrumenter(
+				new Instrumenter(new OfflineInstrumentationAccessGenerator()),
+				manifest);
+	}
+
+	private static void write(final File file, final byte[] content)
+			throws IOException {
+		file.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(file);
+		out.write(content);
+		out.close();
+	}
+
+}
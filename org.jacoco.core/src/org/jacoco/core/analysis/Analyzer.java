@@ -12,11 +12,20 @@
  *******************************************************************************/
 package org.jacoco.core.analysis;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -28,6 +37,8 @@ import org.jacoco.core.internal.InputStreams;
 import org.jacoco.core.internal.Pack200Streams;
 import org.jacoco.core.internal.analysis.ClassAnalyzer;
 import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.ClassStructure;
+import org.jacoco.core.internal.analysis.ClassStructureCache;
 import org.jacoco.core.internal.analysis.StringPool;
 import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.internal.flow.ClassProbesAdapter;
@@ -43,15 +54,31 @@ import org.objectweb.asm.Opcodes;
  * {@link Analyzer} requires a {@link ExecutionDataStore} instance that holds
  * the execution data for the classes to analyze. The {@link Analyzer} offers
  * several methods to analyze classes from a variety of sources.
+ * <p>
+ * Optionally files and folders can be analyzed with multiple threads, see
+ * {@link #setThreads(int)}. Coverage data is always reported to the
+ * {@link ICoverageVisitor} sequentially, therefore the visitor does not need to
+ * be thread safe. The probe independent analysis results can be cached on
+ * disk to speed up repeated analysis of the same classes, see
+ * {@link #setCacheDirectory(File)}.
  */
 public class Analyzer {
 
+	/** Maximum number of pending archive entries per thread */
+	private static final int PENDING_ENTRIES = 4;
+
 	private final ExecutionDataStore executionData;
 
 	private final ICoverageVisitor coverageVisitor;
 
 	private final StringPool stringPool;
 
+	private final Object visitorLock = new Object();
+
+	private int threads = 1;
+
+	private ClassStructureCache cache;
+
 	/**
 	 * Creates a new analyzer reporting to the given output.
 	 *
@@ -68,6 +95,61 @@ public class Analyzer {
 		this.stringPool = new StringPool();
 	}
 
+	/**
+	 * Sets the number of threads used to analyze files and folders with
+	 * {@link #analyzeAll(File)}, {@link #analyzeAll(Collection)} and
+	 * {@link #analyzeAll(String, File)}. With more than one thread folders are
+	 * traversed and the class files within folders and archives are analyzed
+	 * concurrently in a fork/join pool. The default is <code>1</code>, i.e.
+	 * all classes are analyzed sequentially by the calling thread.
+	 *
+	 * @param threads
+	 *            number of threads, must be at least 1
+	 */
+	public void setThreads(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be positive: " + threads);
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Returns the number of threads used to analyze files and folders.
+	 *
+	 * @return number of threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets a directory where the probe independent analysis result of every
+	 * class is cached. Classes are identified by their id and the cache is
+	 * only valid for the current JaCoCo version. Subsequent analysis of the
+	 * same class files with a different execution data set only calculates
+	 * the coverage from the cached result without parsing the class files
+	 * again. Multiple analyzers may share the same cache directory. By
+	 * default no cache is used.
+	 *
+	 * @param directory
+	 *            cache directory, will be created on demand, or
+	 *            <code>null</code> to disable caching
+	 */
+	public void setCacheDirectory(final File directory) {
+		this.cache = directory == null ? null
+				: new ClassStructureCache(directory, stringPool);
+	}
+
+	/**
+	 * Returns the directory where analysis results are cached.
+	 *
+	 * @return cache directory or <code>null</code> if no cache is used
+	 */
+	public File getCacheDirectory() {
+		return cache == null ? null : cache.getDirectory();
+	}
+
 	/**
 	 * Creates an ASM class visitor for analysis.
 	 *
@@ -75,34 +157,46 @@ public class Analyzer {
 	 *            id of the class calculated with {@link CRC64}
 	 * @param className
 	 *            VM name of the class
+	 * @param structure
+	 *            structure to record to or <code>null</code>
 	 * @return ASM visitor to write class definition to
 	 */
 	private ClassVisitor createAnalyzingVisitor(final long classid,
-			final String className) {
+			final String className, final ClassStructure structure) {
 		final ExecutionData data = executionData.get(classid);
-		final boolean[] probes;
-		final boolean noMatch;
-		if (data == null) {
-			probes = null;
-			noMatch = executionData.contains(className);
-		} else {
-			probes = data.getProbes();
-			noMatch = false;
-		}
 		final ClassCoverageImpl coverage = new ClassCoverageImpl(className,
-				classid, noMatch);
-		final ClassAnalyzer analyzer = new ClassAnalyzer(coverage, probes,
-				stringPool) {
+				classid, isNoMatch(data, className));
+		final ClassAnalyzer analyzer = new ClassAnalyzer(coverage,
+				getProbes(data), getCounts(data), stringPool, structure) {
 			@Override
 			public void visitEnd() {
 				super.visitEnd();
-				coverageVisitor.visitCoverage(coverage);
+				visitCoverage(coverage);
 			}
 		};
 		return new ClassProbesAdapter(analyzer, false);
 	}
 
-	private void analyzeClass(final byte[] source) {
+	private boolean[] getProbes(final ExecutionData data) {
+		return data == null ? null : data.getProbes();
+	}
+
+	private long[] getCounts(final ExecutionData data) {
+		return data == null ? null : data.getCounts();
+	}
+
+	private boolean isNoMatch(final ExecutionData data,
+			final String className) {
+		return data == null && executionData.contains(className);
+	}
+
+	private void visitCoverage(final IClassCoverage coverage) {
+		synchronized (visitorLock) {
+			coverageVisitor.visitCoverage(coverage);
+		}
+	}
+
+	private void analyzeClass(final byte[] source) throws IOException {
 		final long classId = CRC64.classId(source);
 		final ClassReader reader = InstrSupport.classReaderFor(source);
 		if ((reader.getAccess() & Opcodes.ACC_MODULE) != 0) {
@@ -111,9 +205,24 @@ public class Analyzer {
 		if ((reader.getAccess() & Opcodes.ACC_SYNTHETIC) != 0) {
 			return;
 		}
-		final ClassVisitor visitor = createAnalyzingVisitor(classId,
-				reader.getClassName());
-		reader.accept(visitor, 0);
+		final String className = reader.getClassName();
+		if (cache == null) {
+			reader.accept(createAnalyzingVisitor(classId, className, null),
+					0);
+			return;
+		}
+		ClassStructure structure = cache.get(classId);
+		if (structure == null) {
+			structure = new ClassStructure(className);
+			reader.accept(
+					createAnalyzingVisitor(classId, className, structure), 0);
+			cache.put(classId, structure);
+		} else {
+			final ExecutionData data = executionData.get(classId);
+			visitCoverage(structure.createCoverage(classId,
+					isNoMatch(data, className), getProbes(data),
+					getCounts(data)));
+		}
 	}
 
 	/**
@@ -130,6 +239,8 @@ public class Analyzer {
 			throws IOException {
 		try {
 			analyzeClass(buffer);
+		} catch (final IOException cause) {
+			throw analyzerError(location, cause);
 		} catch (final RuntimeException cause) {
 			throw analyzerError(location, cause);
 		}
@@ -215,6 +326,9 @@ public class Analyzer {
 	 *             if the file can't be read or a class can't be analyzed
 	 */
 	public int analyzeAll(final File file) throws IOException {
+		if (threads > 1) {
+			return analyzeParallel(Collections.singletonList(file));
+		}
 		int count = 0;
 		if (file.isDirectory()) {
 			for (final File f : file.listFiles()) {
@@ -247,11 +361,33 @@ public class Analyzer {
 	 */
 	public int analyzeAll(final String path, final File basedir)
 			throws IOException {
-		int count = 0;
+		final List<File> files = new ArrayList<File>();
 		final StringTokenizer st = new StringTokenizer(path,
 				File.pathSeparator);
 		while (st.hasMoreTokens()) {
-			count += analyzeAll(new File(basedir, st.nextToken()));
+			files.add(new File(basedir, st.nextToken()));
+		}
+		return analyzeAll(files);
+	}
+
+	/**
+	 * Analyzes all class files contained in the given files or folders. Class
+	 * files as well as ZIP files are considered. Folders are searched
+	 * recursively.
+	 *
+	 * @param files
+	 *            files or folders to look for class files
+	 * @return number of class files found
+	 * @throws IOException
+	 *             if a file can't be read or a class can't be analyzed
+	 */
+	public int analyzeAll(final Collection<File> files) throws IOException {
+		if (threads > 1) {
+			return analyzeParallel(files);
+		}
+		int count = 0;
+		for (final File file : files) {
+			count += analyzeAll(file);
 		}
 		return count;
 	}
@@ -298,4 +434,182 @@ public class Analyzer {
 		return analyzeAll(unpackedInput, location);
 	}
 
+	private int analyzeParallel(final Collection<File> files)
+			throws IOException {
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			int count = 0;
+			for (final File file : files) {
+				count += pool.invoke(new FileTask(file)).intValue();
+			}
+			return count;
+		} catch (final AnalysisException e) {
+			throw e.unwrap();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static int joinAll(final List<ForkJoinTask<Integer>> tasks) {
+		int count = 0;
+		for (final ForkJoinTask<Integer> task : tasks) {
+			count += task.join().intValue();
+		}
+		return count;
+	}
+
+	/**
+	 * Task that analyzes a single file or recursively forks tasks for the
+	 * content of a folder.
+	 */
+	private class FileTask extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final File file;
+
+		FileTask(final File file) {
+			this.file = file;
+		}
+
+		@Override
+		protected Integer compute() {
+			if (file.isDirectory()) {
+				final List<ForkJoinTask<Integer>> tasks = new ArrayList<ForkJoinTask<Integer>>();
+				for (final File f : file.listFiles()) {
+					tasks.add(new FileTask(f).fork());
+				}
+				return Integer.valueOf(joinAll(tasks));
+			}
+			try {
+				final InputStream in = new FileInputStream(file);
+				try {
+					return Integer.valueOf(
+							new ContentTask(in, file.getPath()).compute());
+				} finally {
+					in.close();
+				}
+			} catch (final IOException e) {
+				throw new AnalysisException(e);
+			}
+		}
+	}
+
+	/**
+	 * Task that analyzes the content of a stream. Class files contained in ZIP
+	 * archives are buffered and analyzed in separate forked tasks. The number
+	 * of buffered entries per archive is limited.
+	 */
+	private class ContentTask extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final InputStream input;
+
+		private final String location;
+
+		ContentTask(final InputStream input, final String location) {
+			this.input = input;
+			this.location = location;
+		}
+
+		@Override
+		protected Integer compute() {
+			try {
+				return Integer.valueOf(analyze(input));
+			} catch (final IOException e) {
+				throw new AnalysisException(e);
+			}
+		}
+
+		private int analyze(final InputStream in) throws IOException {
+			final ContentTypeDetector detector;
+			try {
+				detector = new ContentTypeDetector(in);
+			} catch (final IOException e) {
+				throw analyzerError(location, e);
+			}
+			switch (detector.getType()) {
+			case ContentTypeDetector.CLASSFILE:
+				analyzeClass(detector.getInputStream(), location);
+				return 1;
+			case ContentTypeDetector.ZIPFILE:
+				return analyzeZipEntries(detector.getInputStream());
+			case ContentTypeDetector.GZFILE:
+				final InputStream gzipInput;
+				try {
+					gzipInput = new GZIPInputStream(detector.getInputStream());
+				} catch (final IOException e) {
+					throw analyzerError(location, e);
+				}
+				return analyze(gzipInput);
+			case ContentTypeDetector.PACK200FILE:
+				final InputStream unpackedInput;
+				try {
+					unpackedInput = Pack200Streams
+							.unpack(detector.getInputStream());
+				} catch (final IOException e) {
+					throw analyzerError(location, e);
+				}
+				return analyze(unpackedInput);
+			default:
+				return 0;
+			}
+		}
+
+		private int analyzeZipEntries(final InputStream in)
+				throws IOException {
+			final ZipInputStream zip = new ZipInputStream(in);
+			final LinkedList<ForkJoinTask<Integer>> tasks = new LinkedList<ForkJoinTask<Integer>>();
+			int count = 0;
+			ZipEntry entry;
+			while ((entry = nextEntry(zip, location)) != null) {
+				if (tasks.size() >= threads * PENDING_ENTRIES) {
+					// Limit the number of buffered entries
+					count += tasks.removeFirst().join().intValue();
+				}
+				final String entryLocation = location + "@" + entry.getName();
+				final ContentTypeDetector detector;
+				final byte[] buffer;
+				try {
+					detector = new ContentTypeDetector(zip);
+					if (detector.getType() == ContentTypeDetector.UNKNOWN) {
+						continue;
+					}
+					buffer = InputStreams.readFully(detector.getInputStream());
+				} catch (final IOException e) {
+					throw analyzerError(entryLocation, e);
+				}
+				tasks.add(new ContentTask(new ByteArrayInputStream(buffer),
+						entryLocation).fork());
+			}
+			return count + joinAll(tasks);
+		}
+	}
+
+	/**
+	 * Transports checked {@link IOException}s out of fork/join tasks.
+	 */
+	private static class AnalysisException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		AnalysisException(final IOException cause) {
+			super(cause);
+		}
+
+		IOException unwrap() {
+			// The fork/join framework might re-create the exception instance
+			// when it is re-thrown in a different thread
+			Throwable t = getCause();
+			while (t != null && !(t instanceof IOException)) {
+				t = t.getCause();
+			}
+			if (t == null) {
+				throw this;
+			}
+			return (IOException) t;
+		}
+	}
+
 }
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jacoco.core.internal.analysis.BundleCoverageImpl;
+import org.jacoco.core.internal.analysis.CompactCoverageReader;
+import org.jacoco.core.internal.analysis.CompactCoverageWriter;
+import org.jacoco.core.internal.analysis.PackageCoverageImpl;
+import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Builder for hierarchical coverage data of large bundles. Like
+ * {@link CoverageBuilder} it collects all analyzed classes, but instead of
+ * keeping the coverage nodes with their line data it serializes every class
+ * into a compact per-package buffer right away.
+ *
+ * Bundles created by this builder contain the counters of all packages. The
+ * classes and source files of a package are decoded when they are requested
+ * and are only softly referenced afterwards, so report formatters which
+ * process one package after the other never need the line data of the
+ * complete bundle in memory at the same time.
+ */
+public class CompactCoverageBuilder implements ICoverageVisitor {
+
+	private static final Comparator<ICoverageNode> NAME_ORDER = new Comparator<ICoverageNode>() {
+		public int compare(final ICoverageNode n1, final ICoverageNode n2) {
+			return n1.getName().compareTo(n2.getName());
+		}
+	};
+
+	private final Map<String, Long> classIds;
+
+	private final Map<String, PackageBuffer> packages;
+
+	private final Collection<IClassCoverage> noMatchClasses;
+
+	/**
+	 * Create a new builder.
+	 */
+	public CompactCoverageBuilder() {
+		this.classIds = new HashMap<String, Long>();
+		this.packages = new HashMap<String, PackageBuffer>();
+		this.noMatchClasses = new ArrayList<IClassCoverage>();
+	}
+
+	/**
+	 * Creates a bundle from all classes currently contained in this builder.
+	 * The source files and the counters of every package are calculated
+	 * immediately, which requires to decode each package once.
+	 *
+	 * @param name
+	 *            Name of the bundle
+	 * @return bundle containing all classes and source files
+	 */
+	public IBundleCoverage getBundle(final String name) {
+		final Collection<IPackageCoverage> result = new ArrayList<IPackageCoverage>(
+				packages.size());
+		for (final Map.Entry<String, PackageBuffer> entry : packages
+				.entrySet()) {
+			result.add(new PackageNode(
+					createPackage(entry.getKey(), entry.getValue())));
+		}
+		return new BundleCoverageImpl(name, result);
+	}
+
+	/**
+	 * Returns all classes for which execution data does not match.
+	 *
+	 * @see IClassCoverage#isNoMatch()
+	 * @return collection of classes with non-matching execution data
+	 */
+	public Collection<IClassCoverage> getNoMatchClasses() {
+		return Collections.unmodifiableCollection(noMatchClasses);
+	}
+
+	// === ICoverageVisitor ===
+
+	public void visitCoverage(final IClassCoverage coverage) {
+		final String name = coverage.getName();
+		final Long dup = classIds.put(name, Long.valueOf(coverage.getId()));
+		if (dup != null) {
+			if (dup.longValue() != coverage.getId()) {
+				throw new IllegalStateException(
+						"Can't add different class with same name: " + name);
+			}
+			return;
+		}
+		if (coverage.isNoMatch()) {
+			noMatchClasses.add(coverage);
+		}
+		final String packageName = coverage.getPackageName();
+		PackageBuffer buffer = packages.get(packageName);
+		if (buffer == null) {
+			buffer = new PackageBuffer();
+			packages.put(packageName, buffer);
+		}
+		buffer.add(coverage);
+	}
+
+	/**
+	 * Encoded classes of a single package. Every class is written with its
+	 * own string table, so no strings need to be kept for the package.
+	 */
+	private static class PackageBuffer {
+
+		final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+		final CompactDataOutput out = new CompactDataOutput(content);
+
+		int classCount;
+
+		void add(final IClassCoverage coverage) {
+			try {
+				new CompactCoverageWriter(out).writeClass(coverage);
+			} catch (final IOException e) {
+				// Can't happen with a ByteArrayOutputStream
+				throw new IllegalStateException(e);
+			}
+			classCount++;
+		}
+
+	}
+
+	/**
+	 * Creates the package from the encoded classes. The source file nodes are
+	 * created from the classes in the same way as {@link CoverageBuilder} does.
+	 * Classes and source files are sorted by name to get a stable order
+	 * independently of the order of analysis.
+	 */
+	private static IPackageCoverage createPackage(final String name,
+			final PackageBuffer buffer) {
+		final CompactDataInput in = new CompactDataInput(
+				new ByteArrayInputStream(buffer.content.toByteArray()));
+		final List<IClassCoverage> classes = new ArrayList<IClassCoverage>(
+				buffer.classCount);
+		final Map<String, SourceFileCoverageImpl> sourceFiles = new TreeMap<String, SourceFileCoverageImpl>();
+		try {
+			for (int i = 0; i < buffer.classCount; i++) {
+				final IClassCoverage c = new CompactCoverageReader(in)
+						.readClass();
+				classes.add(c);
+				final String source = c.getSourceFileName();
+				if (source != null) {
+					SourceFileCoverageImpl sourceFile = sourceFiles.get(source);
+					if (sourceFile == null) {
+						sourceFile = new SourceFileCoverageImpl(source, name);
+						sourceFiles.put(source, sourceFile);
+					}
+					sourceFile.increment(c);
+				}
+			}
+		} catch (final IOException e) {
+			// Can't happen with a ByteArrayInputStream
+			throw new IllegalStateException(e);
+		}
+		Collections.sort(classes, NAME_ORDER);
+		return new PackageCoverageImpl(name, classes,
+				new ArrayList<ISourceFileCoverage>(sourceFiles.values()));
+	}
+
+	/**
+	 * Package with counters calculated in advance. Classes and source files
+	 * are kept in encoded form and are decoded on demand.
+	 */
+	private static class PackageNode extends CoverageNodeImpl
+			implements IPackageCoverage {
+
+		private final byte[] content;
+
+		private SoftReference<IPackageCoverage> decoded;
+
+		PackageNode(final IPackageCoverage p) {
+			super(ElementType.PACKAGE, p.getName());
+			increment(p);
+			content = CompactCoverageCodec.encodePackage(p);
+			decoded = new SoftReference<IPackageCoverage>(p);
+		}
+
+		public Collection<IClassCoverage> getClasses() {
+			return get().getClasses();
+		}
+
+		public Collection<ISourceFileCoverage> getSourceFiles() {
+			return get().getSourceFiles();
+		}
+
+		private synchronized IPackageCoverage get() {
+			IPackageCoverage p = decoded.get();
+			if (p == null) {
+				try {
+					p = CompactCoverageCodec.decodePackage(getName(), content);
+				} catch (final IOException e) {
+					// Can't happen with a ByteArrayInputStream
+					throw new IllegalStateException(e);
+				}
+				decoded = new SoftReference<IPackageCoverage>(p);
+			}
+			return p;
+		}
+
+	}
+
+}
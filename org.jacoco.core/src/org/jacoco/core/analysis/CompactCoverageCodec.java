@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.internal.analysis.CompactCoverageReader;
+import org.jacoco.core.internal.analysis.CompactCoverageWriter;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Compact binary encoding of coverage nodes as used by
+ * {@link CompactCoverageBuilder}. The counters of a node and the content of a
+ * package are encoded separately, so the counters of a package can be read
+ * without decoding its classes and source files.
+ */
+public final class CompactCoverageCodec {
+
+	private CompactCoverageCodec() {
+	}
+
+	/**
+	 * Writes all counters of the given node.
+	 *
+	 * @param node
+	 *            node to write the counters of
+	 * @param output
+	 *            stream to write to
+	 * @throws IOException
+	 *             in case of problems with the underlying stream
+	 */
+	public static void writeCounters(final ICoverageNode node,
+			final OutputStream output) throws IOException {
+		CompactCoverageWriter.writeCounters(node,
+				new CompactDataOutput(output));
+	}
+
+	/**
+	 * Reads counters written by
+	 * {@link #writeCounters(ICoverageNode, OutputStream)}.
+	 *
+	 * @param elementType
+	 *            type of the node to create
+	 * @param name
+	 *            name of the node to create
+	 * @param input
+	 *            stream to read from
+	 * @return node with the given type and name and the counters read
+	 * @throws IOException
+	 *             in case of problems with the underlying stream
+	 */
+	public static ICoverageNode readCounters(
+			final ICoverageNode.ElementType elementType, final String name,
+			final InputStream input) throws IOException {
+		final CounterImpl[] counters = CompactCoverageReader
+				.readCounters(new CompactDataInput(input));
+		final CoverageNodeImpl node = new CoverageNodeImpl(elementType, name);
+		node.instructionCounter = counters[CounterEntity.INSTRUCTION.ordinal()];
+		node.branchCounter = counters[CounterEntity.BRANCH.ordinal()];
+		node.diffBranchCounter = counters[CounterEntity.DIFF_BRANCH.ordinal()];
+		node.lineCounter = counters[CounterEntity.LINE.ordinal()];
+		node.diffLineCounter = counters[CounterEntity.DIFF_LINE.ordinal()];
+		node.complexityCounter = counters[CounterEntity.COMPLEXITY.ordinal()];
+		node.methodCounter = counters[CounterEntity.METHOD.ordinal()];
+		node.diffMethodCounter = counters[CounterEntity.DIFF_METHOD.ordinal()];
+		node.classCounter = counters[CounterEntity.CLASS.ordinal()];
+		node.diffClassCounter = counters[CounterEntity.DIFF_CLASS.ordinal()];
+		return node;
+	}
+
+	/**
+	 * Encodes all classes and source files of the given package. The name and
+	 * the counters of the package are not encoded.
+	 *
+	 * @param p
+	 *            package coverage data
+	 * @return encoded package content
+	 */
+	public static byte[] encodePackage(final IPackageCoverage p) {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try {
+			new CompactCoverageWriter(new CompactDataOutput(buffer))
+					.writePackage(p);
+		} catch (final IOException e) {
+			// Can't happen with a ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Decodes the content of a package encoded by
+	 * {@link #encodePackage(IPackageCoverage)}.
+	 *
+	 * @param name
+	 *            name of the package
+	 * @param content
+	 *            encoded package content
+	 * @return package coverage data
+	 * @throws IOException
+	 *             if the content is invalid
+	 */
+	public static IPackageCoverage decodePackage(final String name,
+			final byte[] content) throws IOException {
+		return new CompactCoverageReader(
+				new CompactDataInput(new ByteArrayInputStream(content)))
+						.readPackage(name);
+	}
+
+}
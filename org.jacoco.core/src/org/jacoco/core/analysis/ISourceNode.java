@@ -46,4 +46,16 @@ public interface ISourceNode extends ICoverageNode {
 	 */
 	ILine getLine(int nr);
 
+	/**
+	 * Returns how often the given line has been executed, i.e. the execution
+	 * count of the most frequently executed instruction of this line.
+	 * Execution counts are only available for classes instrumented with probe
+	 * counters.
+	 *
+	 * @param nr
+	 *            line number of interest
+	 * @return execution count or 0 if unknown
+	 */
+	long getExecutionCount(int nr);
+
 }
@@ -20,6 +20,16 @@ import java.util.Arrays;
  * Execution data for a single Java class. While instances are immutable care
  * has to be taken about the probe data array of type <code>boolean[]</code>
  * which can be modified.
+ * <p>
+ * The probes can also be stored packed into a bit set of type
+ * <code>long[]</code>, which needs only an eighth of the memory. This is the
+ * representation used for execution data read from files, where
+ * {@link #merge(ExecutionData, boolean)} operates on 64 probes at once. The
+ * packed probes are only converted to <code>boolean[]</code> if
+ * {@link #getProbes()} is called.
+ * <p>
+ * Execution data of classes instrumented with probe counters additionally
+ * contains the number of executions of every probe, see {@link #getCounts()}.
  */
 public final class ExecutionData {
 
@@ -27,7 +37,16 @@ public final class ExecutionData {
 
 	private final String name;
 
-	private final boolean[] probes;
+	private final int probeCount;
+
+	/** probes as boolean array or <code>null</code> if packed */
+	private volatile boolean[] probes;
+
+	/** packed probes or <code>null</code> if stored as boolean array */
+	private long[] bits;
+
+	/** execution counts or <code>null</code> if not available */
+	private long[] counts;
 
 	/**
 	 * Creates a new {@link ExecutionData} object with the given probe data.
@@ -43,9 +62,66 @@ public final class ExecutionData {
 			final boolean[] probes) {
 		this.id = id;
 		this.name = name;
+		this.probeCount = probes.length;
 		this.probes = probes;
 	}
 
+	/**
+	 * Creates a new {@link ExecutionData} object with the given packed probe
+	 * data. Probe <code>i</code> is stored in bit <code>i % 64</code> of
+	 * <code>bits[i / 64]</code>.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name
+	 * @param bits
+	 *            packed probe data, unused bits must be zero
+	 * @param probeCount
+	 *            probe count
+	 */
+	public ExecutionData(final long id, final String name, final long[] bits,
+			final int probeCount) {
+		if (bits.length != getWordCount(probeCount)) {
+			throw new IllegalArgumentException(
+					format("Invalid bit set length %s for %s probes.",
+							Integer.valueOf(bits.length),
+							Integer.valueOf(probeCount)));
+		}
+		this.id = id;
+		this.name = name;
+		this.probeCount = probeCount;
+		this.bits = bits;
+	}
+
+	/**
+	 * Creates a new {@link ExecutionData} object with the given packed probe
+	 * data and execution counts. A probe must be marked as executed if its
+	 * execution count is not zero.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name
+	 * @param bits
+	 *            packed probe data, unused bits must be zero
+	 * @param probeCount
+	 *            probe count
+	 * @param counts
+	 *            execution count of every probe
+	 */
+	public ExecutionData(final long id, final String name, final long[] bits,
+			final int probeCount, final long[] counts) {
+		this(id, name, bits, probeCount);
+		if (counts.length != probeCount) {
+			throw new IllegalArgumentException(
+					format("Invalid count array length %s for %s probes.",
+							Integer.valueOf(counts.length),
+							Integer.valueOf(probeCount)));
+		}
+		this.counts = counts;
+	}
+
 	/**
 	 * Creates a new {@link ExecutionData} object with the given probe data
 	 * length. All probes are set to <code>false</code>.
@@ -61,9 +137,22 @@ public final class ExecutionData {
 			final int probeCount) {
 		this.id = id;
 		this.name = name;
+		this.probeCount = probeCount;
 		this.probes = new boolean[probeCount];
 	}
 
+	/**
+	 * Returns the number of <code>long</code> words required to store the
+	 * given number of probes packed.
+	 *
+	 * @param probeCount
+	 *            probe count
+	 * @return number of words
+	 */
+	public static int getWordCount(final int probeCount) {
+		return (probeCount + 63) >>> 6;
+	}
+
 	/**
 	 * Return the unique identifier for this class. The identifier is the CRC64
 	 * checksum of the raw class file definition.
@@ -83,21 +172,74 @@ public final class ExecutionData {
 		return name;
 	}
 
+	/**
+	 * Returns the number of probes.
+	 *
+	 * @return probe count
+	 */
+	public int getProbeCount() {
+		return probeCount;
+	}
+
 	/**
 	 * Returns the execution data probes. A value of <code>true</code> indicates
-	 * that the corresponding probe was executed.
+	 * that the corresponding probe was executed. If the probes are stored
+	 * packed they are converted to a <code>boolean[]</code> which is used for
+	 * this instance from now on.
 	 *
 	 * @return probe data
 	 */
 	public boolean[] getProbes() {
+		final boolean[] p = probes;
+		return p == null ? unpack() : p;
+	}
+
+	private synchronized boolean[] unpack() {
+		if (probes == null) {
+			final boolean[] p = new boolean[probeCount];
+			for (int i = 0; i < probeCount; i++) {
+				p[i] = (bits[i >>> 6] & (1L << i)) != 0;
+			}
+			probes = p;
+			bits = null;
+		}
 		return probes;
 	}
 
 	/**
-	 * Sets all probes to <code>false</code>.
+	 * Returns the packed probes.
+	 *
+	 * @return packed probes or <code>null</code> if the probes are stored as
+	 *         <code>boolean[]</code>
+	 */
+	long[] getPackedProbes() {
+		return probes == null ? bits : null;
+	}
+
+	/**
+	 * Returns the execution counts of the probes if available. The counts are
+	 * only recorded for classes instrumented with probe counters.
+	 *
+	 * @return execution count of every probe or <code>null</code> if no
+	 *         counts are available
+	 */
+	public long[] getCounts() {
+		return counts;
+	}
+
+	/**
+	 * Sets all probes to <code>false</code> and all execution counts to zero.
 	 */
 	public void reset() {
-		Arrays.fill(probes, false);
+		final boolean[] p = probes;
+		if (p == null) {
+			Arrays.fill(bits, 0L);
+		} else {
+			Arrays.fill(p, false);
+		}
+		if (counts != null) {
+			Arrays.fill(counts, 0L);
+		}
 	}
 
 	/**
@@ -106,8 +248,17 @@ public final class ExecutionData {
 	 * @return <code>true</code>, if at least one probe has been hit
 	 */
 	public boolean hasHits() {
-		for (final boolean p : probes) {
-			if (p) {
+		final boolean[] p = probes;
+		if (p == null) {
+			for (final long w : bits) {
+				if (w != 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+		for (final boolean b : p) {
+			if (b) {
 				return true;
 			}
 		}
@@ -149,7 +300,9 @@ public final class ExecutionData {
 	 * A and not B
 	 * </pre>
 	 *
-	 * The probe array of the other object is not modified.
+	 * The probe array of the other object is not modified. Execution counts of
+	 * the other object are added for <code>flag==true</code>, for
+	 * <code>flag==false</code> the counts of the unset probes are cleared.
 	 *
 	 * @param other
 	 *            execution data to merge
@@ -158,12 +311,63 @@ public final class ExecutionData {
 	 */
 	public void merge(final ExecutionData other, final boolean flag) {
 		assertCompatibility(other.getId(), other.getName(),
-				other.getProbes().length);
-		final boolean[] otherData = other.getProbes();
-		for (int i = 0; i < probes.length; i++) {
-			if (otherData[i]) {
-				probes[i] = flag;
+				other.getProbeCount());
+		mergeCounts(other, flag);
+		final boolean[] p = probes;
+		final boolean[] otherProbes = other.probes;
+		if (p == null && otherProbes == null) {
+			final long[] otherBits = other.bits;
+			if (flag) {
+				for (int i = 0; i < bits.length; i++) {
+					bits[i] |= otherBits[i];
+				}
+			} else {
+				for (int i = 0; i < bits.length; i++) {
+					bits[i] &= ~otherBits[i];
+				}
+			}
+			return;
+		}
+		for (int i = 0; i < probeCount; i++) {
+			if (other.isSet(otherProbes, i)) {
+				set(p, i, flag);
+			}
+		}
+	}
+
+	private void mergeCounts(final ExecutionData other, final boolean flag) {
+		final long[] otherCounts = other.counts;
+		if (flag) {
+			if (otherCounts == null) {
+				return;
+			}
+			if (counts == null) {
+				counts = new long[probeCount];
+			}
+			for (int i = 0; i < probeCount; i++) {
+				counts[i] += otherCounts[i];
 			}
+		} else if (counts != null) {
+			final boolean[] otherProbes = other.probes;
+			for (int i = 0; i < probeCount; i++) {
+				if (other.isSet(otherProbes, i)) {
+					counts[i] = 0;
+				}
+			}
+		}
+	}
+
+	private boolean isSet(final boolean[] p, final int i) {
+		return p == null ? (bits[i >>> 6] & (1L << i)) != 0 : p[i];
+	}
+
+	private void set(final boolean[] p, final int i, final boolean value) {
+		if (p != null) {
+			p[i] = value;
+		} else if (value) {
+			bits[i >>> 6] |= 1L << i;
+		} else {
+			bits[i >>> 6] &= ~(1L << i);
 		}
 	}
 
@@ -193,7 +397,7 @@ public final class ExecutionData {
 					format("Different class names %s and %s for id %016x.",
 							this.name, name, Long.valueOf(id)));
 		}
-		if (this.probes.length != probecount) {
+		if (this.probeCount != probecount) {
 			throw new IllegalStateException(format(
 					"Incompatible execution data for class %s with id %016x.",
 					name, Long.valueOf(id)));
@@ -0,0 +1,430 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.PriorityQueue;
+
+import org.jacoco.core.internal.InputStreams;
+import org.jacoco.core.internal.data.CompactDataInput;
+
+/**
+ * Random access to execution data files in the indexed format written by
+ * {@link ExecutionDataIndexWriter}. Files are memory mapped and
+ * {@link ExecutionData} objects are only created for the classes which are
+ * actually requested. Instances are immutable and can be shared between
+ * threads.
+ */
+public final class ExecutionDataIndex {
+
+	/** Maximum size of a single memory mapped segment */
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	private final ByteBuffer[] segments;
+
+	private final int segmentSize;
+
+	private final long sessionsPos;
+
+	private final int sessionCount;
+
+	private final long classIndexPos;
+
+	private final int classCount;
+
+	private final long nameIndexPos;
+
+	private final int nameCount;
+
+	private ExecutionDataIndex(final ByteBuffer[] segments,
+			final int segmentSize, final long size) throws IOException {
+		this.segments = segments;
+		this.segmentSize = segmentSize;
+		if (size < ExecutionDataIndexWriter.HEADER_SIZE
+				+ ExecutionDataIndexWriter.TRAILER_SIZE
+				|| readByte(0) != ExecutionDataWriter.BLOCK_HEADER
+				|| readChar(1) != ExecutionDataWriter.MAGIC_NUMBER) {
+			throw new IOException("Invalid execution data file.");
+		}
+		final char version = readChar(3);
+		if (version != ExecutionDataIndexWriter.FORMAT_VERSION) {
+			throw new IncompatibleExecDataVersionException(version);
+		}
+		final long trailer = size - ExecutionDataIndexWriter.TRAILER_SIZE;
+		sessionsPos = readLong(trailer);
+		sessionCount = readInt(trailer + 8);
+		classIndexPos = readLong(trailer + 12);
+		classCount = readInt(trailer + 20);
+		nameIndexPos = readLong(trailer + 24);
+		nameCount = readInt(trailer + 32);
+	}
+
+	/**
+	 * Checks whether the given header bytes identify a file in the indexed
+	 * format.
+	 *
+	 * @param header
+	 *            the first bytes of a file, at least 5 bytes are required
+	 * @return <code>true</code> if the header is a header of the indexed
+	 *         format
+	 */
+	public static boolean isIndexed(final byte[] header) {
+		if (header.length < ExecutionDataIndexWriter.HEADER_SIZE) {
+			return false;
+		}
+		return header[0] == ExecutionDataWriter.BLOCK_HEADER
+				&& readChar(header, 1) == ExecutionDataWriter.MAGIC_NUMBER
+				&& readChar(header,
+						3) == ExecutionDataIndexWriter.FORMAT_VERSION;
+	}
+
+	private static char readChar(final byte[] buffer, final int pos) {
+		return (char) (((buffer[pos] & 0xff) << 8) | (buffer[pos + 1] & 0xff));
+	}
+
+	/**
+	 * Opens the given file by mapping it into memory.
+	 *
+	 * @param file
+	 *            file in the indexed format
+	 * @return index for the file
+	 * @throws IOException
+	 *             if the file can't be read or has an invalid format
+	 */
+	public static ExecutionDataIndex open(final File file) throws IOException {
+		return open(file, SEGMENT_SIZE);
+	}
+
+	static ExecutionDataIndex open(final File file, final int segmentSize)
+			throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final long size = channel.size();
+			final ByteBuffer[] segments = new ByteBuffer[(int) ((size
+					+ segmentSize - 1) / segmentSize)];
+			for (int i = 0; i < segments.length; i++) {
+				final long pos = (long) i * segmentSize;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos,
+						Math.min(segmentSize, size - pos));
+			}
+			// The mapping stays valid after the channel is closed
+			return new ExecutionDataIndex(segments, segmentSize, size);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads the content of the given stream in the indexed format into
+	 * memory. The provided {@link InputStream} is not closed by this method.
+	 *
+	 * @param input
+	 *            stream with content in the indexed format
+	 * @return index for the content
+	 * @throws IOException
+	 *             if the stream can't be read or has an invalid format
+	 */
+	public static ExecutionDataIndex read(final InputStream input)
+			throws IOException {
+		final byte[] buffer = InputStreams.readFully(input);
+		return new ExecutionDataIndex(
+				new ByteBuffer[] { ByteBuffer.wrap(buffer) }, Integer.MAX_VALUE,
+				buffer.length);
+	}
+
+	/**
+	 * Returns the number of classes contained in this file.
+	 *
+	 * @return number of classes
+	 */
+	public int getClassCount() {
+		return classCount;
+	}
+
+	/**
+	 * Returns the id of the class at the given position of the index.
+	 *
+	 * @param index
+	 *            position in the index, classes are sorted by id
+	 * @return class id
+	 */
+	long getId(final int index) {
+		return readLong(classIndexPos
+				+ (long) index * ExecutionDataIndexWriter.CLASS_ENTRY_SIZE);
+	}
+
+	/**
+	 * Returns the execution data for the class with the given id. Every call
+	 * creates a new {@link ExecutionData} instance.
+	 *
+	 * @param id
+	 *            class id
+	 * @return execution data or <code>null</code> if the file does not
+	 *         contain data for this class
+	 */
+	public ExecutionData get(final long id) {
+		int low = 0;
+		int high = classCount - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final long midId = getId(mid);
+			if (midId < id) {
+				low = mid + 1;
+			} else if (midId > id) {
+				high = mid - 1;
+			} else {
+				return read(mid);
+			}
+		}
+		return null;
+	}
+
+	private ExecutionData read(final int index) {
+		final long entry = classIndexPos
+				+ (long) index * ExecutionDataIndexWriter.CLASS_ENTRY_SIZE;
+		final String name = readUTF(readLong(entry + 8));
+		final long probesPos = readLong(entry + 16);
+		final long countsPos = readLong(entry + 24);
+		final int probeCount = readInt(entry + 32);
+		final byte[] packed = new byte[(probeCount + 7) >> 3];
+		readBytes(probesPos, packed);
+		final long[] bits = CompactDataInput.toBits(packed, probeCount);
+		if (countsPos == ExecutionDataIndexWriter.NO_COUNTS) {
+			return new ExecutionData(getId(index), name, bits, probeCount);
+		}
+		final long[] counts = new long[probeCount];
+		for (int i = 0; i < probeCount; i++) {
+			counts[i] = readLong(countsPos + 8L * i);
+		}
+		return new ExecutionData(getId(index), name, bits, probeCount,
+				counts);
+	}
+
+	/**
+	 * Checks whether execution data for classes with the given name are
+	 * contained in this file.
+	 *
+	 * @param name
+	 *            VM name
+	 * @return <code>true</code> if at least one class with the name is
+	 *         contained
+	 */
+	public boolean contains(final String name) {
+		int low = 0;
+		int high = nameCount - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final int c = readUTF(readLong(nameIndexPos
+					+ (long) mid * ExecutionDataIndexWriter.NAME_ENTRY_SIZE))
+							.compareTo(name);
+			if (c < 0) {
+				low = mid + 1;
+			} else if (c > 0) {
+				high = mid - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes all session infos of this file to the given visitor.
+	 *
+	 * @param visitor
+	 *            visitor to write session infos to
+	 */
+	public void acceptSessions(final ISessionInfoVisitor visitor) {
+		long pos = sessionsPos;
+		for (int i = 0; i < sessionCount; i++) {
+			final int length = readChar(pos);
+			final String id = readUTF(pos);
+			pos += 2 + length;
+			final long start = readLong(pos);
+			final long dump = readLong(pos + 8);
+			pos += 16;
+			visitor.visitSessionInfo(new SessionInfo(id, start, dump));
+		}
+	}
+
+	/**
+	 * Writes the execution data of all classes of this file in the order of
+	 * their ids to the given visitor.
+	 *
+	 * @param visitor
+	 *            visitor to write execution data to
+	 */
+	public void acceptExecutionData(final IExecutionDataVisitor visitor) {
+		for (int i = 0; i < classCount; i++) {
+			visitor.visitClassExecution(read(i));
+		}
+	}
+
+	/**
+	 * Merges the execution data of all given indexes and writes it in the
+	 * order of the class ids to the given visitor. As all indexes are sorted
+	 * by id, the data of a class is written as soon as it has been read from
+	 * all indexes. So only the execution data of a single class is held in
+	 * memory at a time.
+	 *
+	 * @param indexes
+	 *            indexes to merge
+	 * @param visitor
+	 *            visitor to write merged execution data to
+	 * @throws IllegalStateException
+	 *             if the execution data of a class is not compatible in all
+	 *             indexes
+	 */
+	public static void merge(final Collection<ExecutionDataIndex> indexes,
+			final IExecutionDataVisitor visitor) throws IllegalStateException {
+		final PriorityQueue<Cursor> queue = new PriorityQueue<Cursor>(
+				Math.max(1, indexes.size()));
+		for (final ExecutionDataIndex index : indexes) {
+			if (index.classCount > 0) {
+				queue.add(new Cursor(index));
+			}
+		}
+		while (!queue.isEmpty()) {
+			Cursor cursor = queue.poll();
+			final long id = cursor.id;
+			final ExecutionData data = cursor.read();
+			while (true) {
+				if (cursor.next()) {
+					queue.add(cursor);
+				}
+				if (queue.isEmpty() || queue.peek().id != id) {
+					break;
+				}
+				cursor = queue.poll();
+				data.merge(cursor.read());
+			}
+			visitor.visitClassExecution(data);
+		}
+	}
+
+	/**
+	 * Current position within the sorted class index of a single file.
+	 */
+	private static class Cursor implements Comparable<Cursor> {
+
+		private final ExecutionDataIndex index;
+
+		private int position;
+
+		long id;
+
+		Cursor(final ExecutionDataIndex index) {
+			this.index = index;
+			this.id = index.getId(0);
+		}
+
+		ExecutionData read() {
+			return index.read(position);
+		}
+
+		boolean next() {
+			if (++position == index.classCount) {
+				return false;
+			}
+			id = index.getId(position);
+			return true;
+		}
+
+		public int compareTo(final Cursor other) {
+			return id < other.id ? -1 : (id == other.id ? 0 : 1);
+		}
+
+	}
+
+	// === Random access to segments ===
+
+	private void readBytes(final long pos, final byte[] dst) {
+		int done = 0;
+		while (done < dst.length) {
+			final long p = pos + done;
+			final ByteBuffer segment = segments[(int) (p / segmentSize)]
+					.duplicate();
+			segment.position((int) (p % segmentSize));
+			final int n = Math.min(dst.length - done, segment.remaining());
+			segment.get(dst, done, n);
+			done += n;
+		}
+	}
+
+	/**
+	 * Reads a number which crosses the boundary of two segments byte by byte.
+	 */
+	private long readBits(final long pos, final int length) {
+		final byte[] buffer = new byte[length];
+		readBytes(pos, buffer);
+		long value = 0;
+		for (final byte b : buffer) {
+			value = (value << 8) | (b & 0xff);
+		}
+		return value;
+	}
+
+	private byte readByte(final long pos) {
+		return segments[(int) (pos / segmentSize)]
+				.get((int) (pos % segmentSize));
+	}
+
+	private char readChar(final long pos) {
+		final ByteBuffer segment = segments[(int) (pos / segmentSize)];
+		final int offset = (int) (pos % segmentSize);
+		if (offset + 2 <= segment.limit()) {
+			return segment.getChar(offset);
+		}
+		return (char) readBits(pos, 2);
+	}
+
+	private int readInt(final long pos) {
+		final ByteBuffer segment = segments[(int) (pos / segmentSize)];
+		final int offset = (int) (pos % segmentSize);
+		if (offset + 4 <= segment.limit()) {
+			return segment.getInt(offset);
+		}
+		return (int) readBits(pos, 4);
+	}
+
+	private long readLong(final long pos) {
+		final ByteBuffer segment = segments[(int) (pos / segmentSize)];
+		final int offset = (int) (pos % segmentSize);
+		if (offset + 8 <= segment.limit()) {
+			return segment.getLong(offset);
+		}
+		return readBits(pos, 8);
+	}
+
+	private String readUTF(final long pos) {
+		final byte[] buffer = new byte[2 + readChar(pos)];
+		readBytes(pos, buffer);
+		try {
+			return new DataInputStream(new ByteArrayInputStream(buffer))
+					.readUTF();
+		} catch (final IOException e) {
+			throw new IllegalStateException("Invalid execution data file.",
+					e);
+		}
+	}
+
+}
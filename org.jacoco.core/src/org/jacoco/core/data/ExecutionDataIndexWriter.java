@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Serialization of execution data into the indexed file format which can be
+ * read with random access by {@link ExecutionDataIndex}. In contrast to
+ * {@link ExecutionDataWriter} all data is collected first and written with
+ * {@link #finish()}, as the execution data has to be sorted by class id.
+ * <p>
+ * The file starts with the same header block as the stream format but with a
+ * different format version. The header is followed by the session infos, the
+ * sorted distinct class names, the packed probe arrays each optionally
+ * followed by the execution counts of the probes, the index of all classes
+ * sorted by id, an index of all names and finally a fixed size
+ * trailer with the position and length of each section. All numbers are
+ * stored in big endian byte order with fixed width.
+ */
+public class ExecutionDataIndexWriter
+		implements ISessionInfoVisitor, IExecutionDataVisitor {
+
+	/**
+	 * File format version of the indexed format, will be incremented for each
+	 * incompatible change.
+	 */
+	public static final char FORMAT_VERSION;
+
+	static {
+		// Runtime initialize to ensure javac does not inline the value.
+		FORMAT_VERSION = 0x2008;
+	}
+
+	/** Size of the header in bytes. */
+	static final int HEADER_SIZE = 5;
+
+	/** Size of a single entry of the class index in bytes. */
+	static final int CLASS_ENTRY_SIZE = 36;
+
+	/** Position of the counts in a class entry without execution counts. */
+	static final long NO_COUNTS = -1;
+
+	/** Size of a single entry of the name index in bytes. */
+	static final int NAME_ENTRY_SIZE = 8;
+
+	/** Size of the trailer in bytes. */
+	static final int TRAILER_SIZE = 36;
+
+	private final OutputStream output;
+
+	private final List<SessionInfo> sessions = new ArrayList<SessionInfo>();
+
+	private final Map<Long, ExecutionData> entries = new TreeMap<Long, ExecutionData>();
+
+	/**
+	 * Creates a new writer based on the given output stream. Depending on the
+	 * nature of the underlying stream output should be buffered.
+	 *
+	 * @param output
+	 *            binary stream to write execution data to
+	 */
+	public ExecutionDataIndexWriter(final OutputStream output) {
+		this.output = output;
+	}
+
+	public void visitSessionInfo(final SessionInfo info) {
+		sessions.add(info);
+	}
+
+	public void visitClassExecution(final ExecutionData data) {
+		if (!data.hasHits()) {
+			return;
+		}
+		final Long id = Long.valueOf(data.getId());
+		final ExecutionData entry = entries.get(id);
+		if (entry == null) {
+			entries.put(id, data);
+		} else {
+			// Do not modify the given instances
+			final int probeCount = entry.getProbeCount();
+			final ExecutionData merged = new ExecutionData(entry.getId(),
+					entry.getName(),
+					new long[ExecutionData.getWordCount(probeCount)],
+					probeCount);
+			merged.merge(entry);
+			merged.merge(data);
+			entries.put(id, merged);
+		}
+	}
+
+	/**
+	 * Writes all collected data to the underlying stream and flushes it.
+	 *
+	 * @throws IOException
+	 *             if the data can't be written
+	 */
+	public void finish() throws IOException {
+		final CountingOutputStream counter = new CountingOutputStream(output);
+		final DataOutputStream out = new DataOutputStream(counter);
+
+		out.writeByte(ExecutionDataWriter.BLOCK_HEADER);
+		out.writeChar(ExecutionDataWriter.MAGIC_NUMBER);
+		out.writeChar(FORMAT_VERSION);
+
+		final long sessionsPos = counter.position;
+		for (final SessionInfo info : sessions) {
+			out.writeUTF(info.getId());
+			out.writeLong(info.getStartTimeStamp());
+			out.writeLong(info.getDumpTimeStamp());
+		}
+
+		final Map<String, Long> names = new TreeMap<String, Long>();
+		for (final ExecutionData data : entries.values()) {
+			names.put(data.getName(), null);
+		}
+		for (final Map.Entry<String, Long> name : names.entrySet()) {
+			name.setValue(Long.valueOf(counter.position));
+			out.writeUTF(name.getKey());
+		}
+
+		final long[] probesPos = new long[entries.size()];
+		final long[] countsPos = new long[entries.size()];
+		int idx = 0;
+		for (final ExecutionData data : entries.values()) {
+			probesPos[idx] = counter.position;
+			writeProbes(out, data);
+			final long[] counts = data.getCounts();
+			if (counts == null) {
+				countsPos[idx] = NO_COUNTS;
+			} else {
+				countsPos[idx] = counter.position;
+				for (final long c : counts) {
+					out.writeLong(c);
+				}
+			}
+			idx++;
+		}
+
+		final long classIndexPos = counter.position;
+		idx = 0;
+		for (final ExecutionData data : entries.values()) {
+			out.writeLong(data.getId());
+			out.writeLong(names.get(data.getName()).longValue());
+			out.writeLong(probesPos[idx]);
+			out.writeLong(countsPos[idx++]);
+			out.writeInt(data.getProbeCount());
+		}
+
+		final long nameIndexPos = counter.position;
+		for (final Long pos : names.values()) {
+			out.writeLong(pos.longValue());
+		}
+
+		out.writeLong(sessionsPos);
+		out.writeInt(sessions.size());
+		out.writeLong(classIndexPos);
+		out.writeInt(entries.size());
+		out.writeLong(nameIndexPos);
+		out.writeInt(names.size());
+		out.flush();
+	}
+
+	private static void writeProbes(final DataOutputStream out,
+			final ExecutionData data) throws IOException {
+		final long[] bits = data.getPackedProbes();
+		if (bits != null) {
+			final int length = (data.getProbeCount() + 7) >>> 3;
+			for (int i = 0; i < length; i++) {
+				out.writeByte((int) (bits[i >>> 3] >>> ((i & 7) << 3)));
+			}
+			return;
+		}
+		int buffer = 0;
+		int bufferSize = 0;
+		for (final boolean b : data.getProbes()) {
+			if (b) {
+				buffer |= 0x01 << bufferSize;
+			}
+			if (++bufferSize == 8) {
+				out.writeByte(buffer);
+				buffer = 0;
+				bufferSize = 0;
+			}
+		}
+		if (bufferSize > 0) {
+			out.writeByte(buffer);
+		}
+	}
+
+	private static class CountingOutputStream extends FilterOutputStream {
+
+		long position;
+
+		CountingOutputStream(final OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			out.write(b);
+			position++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len)
+				throws IOException {
+			out.write(b, off, len);
+			position += len;
+		}
+
+	}
+
+}
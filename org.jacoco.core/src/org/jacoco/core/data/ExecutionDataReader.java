@@ -33,6 +33,8 @@ public class ExecutionDataReader {
 
 	private boolean firstBlock = true;
 
+	private boolean countsEnabled = false;
+
 	/**
 	 * Creates a new reader based on the given input stream input. Depending on
 	 * the nature of the underlying stream input should be buffered as most data
@@ -113,7 +115,14 @@ public class ExecutionDataReader {
 			readSessionInfo();
 			return true;
 		case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
-			readExecutionData();
+			readExecutionData(false);
+			return true;
+		case ExecutionDataWriter.BLOCK_EXECUTIONDATA_COUNTS:
+			if (!countsEnabled) {
+				throw new IOException(
+						"Execution counts without counts header.");
+			}
+			readExecutionData(true);
 			return true;
 		default:
 			throw new IOException(
@@ -126,7 +135,9 @@ public class ExecutionDataReader {
 			throw new IOException("Invalid execution data file.");
 		}
 		final char version = in.readChar();
-		if (version != ExecutionDataWriter.FORMAT_VERSION) {
+		if (version == ExecutionDataWriter.COUNTS_FORMAT_VERSION) {
+			countsEnabled = true;
+		} else if (version != ExecutionDataWriter.FORMAT_VERSION) {
 			throw new IncompatibleExecDataVersionException(version);
 		}
 	}
@@ -141,15 +152,26 @@ public class ExecutionDataReader {
 		sessionInfoVisitor.visitSessionInfo(new SessionInfo(id, start, dump));
 	}
 
-	private void readExecutionData() throws IOException {
+	private void readExecutionData(final boolean withCounts)
+			throws IOException {
 		if (executionDataVisitor == null) {
 			throw new IOException("No execution data visitor.");
 		}
 		final long id = in.readLong();
 		final String name = in.readUTF();
-		final boolean[] probes = in.readBooleanArray();
-		executionDataVisitor
-				.visitClassExecution(new ExecutionData(id, name, probes));
+		final int probeCount = in.readVarInt();
+		final long[] probes = in.readBooleanBits(probeCount);
+		if (withCounts) {
+			final long[] counts = new long[probeCount];
+			for (int i = 0; i < probeCount; i++) {
+				counts[i] = in.readVarLong();
+			}
+			executionDataVisitor.visitClassExecution(
+					new ExecutionData(id, name, probes, probeCount, counts));
+		} else {
+			executionDataVisitor.visitClassExecution(
+					new ExecutionData(id, name, probes, probeCount));
+		}
 	}
 
 }
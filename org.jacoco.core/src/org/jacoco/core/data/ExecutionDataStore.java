@@ -12,10 +12,14 @@
  *******************************************************************************/
 package org.jacoco.core.data;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -25,7 +29,12 @@ import java.util.Set;
  * multiple times for the same class the data is merged, i.e. a probe is marked
  * as executed if it is reported as executed at least once. This allows to merge
  * coverage date from multiple runs. A instance of this class is not thread
- * safe.
+ * safe, only the lookup methods {@link #get(long)} and
+ * {@link #contains(String)} may be called concurrently.
+ * <p>
+ * Execution data files in the indexed format can be added with
+ * {@link #add(ExecutionDataIndex)}. The execution data of such files is only
+ * read when it is requested for a particular class id.
  */
 public final class ExecutionDataStore implements IExecutionDataVisitor {
 
@@ -33,6 +42,73 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 
 	private final Set<String> names = new HashSet<String>();
 
+	private final List<ExecutionDataIndex> indexes = new ArrayList<ExecutionDataIndex>();
+
+	/** ids for which the execution data of all indexes has been merged */
+	private final Set<Long> resolved = new HashSet<Long>();
+
+	/**
+	 * Adds the content of the given execution data file in the indexed
+	 * format. The execution data of a class is only read and merged with
+	 * other data in this store when it is requested for the first time.
+	 * Incompatible execution data is therefore only reported when a class is
+	 * accessed.
+	 *
+	 * @param index
+	 *            execution data file to add
+	 */
+	public void add(final ExecutionDataIndex index) {
+		indexes.add(index);
+		for (final Long id : resolved) {
+			merge(index, id);
+		}
+	}
+
+	/**
+	 * Reads the execution data of all added indexed files into this store.
+	 * Afterwards the store does not access these files anymore.
+	 */
+	public void resolveAll() {
+		for (final Long id : getIds()) {
+			resolve(id);
+		}
+		indexes.clear();
+		resolved.clear();
+	}
+
+	private void resolve(final Long id) {
+		if (indexes.isEmpty() || !resolved.add(id)) {
+			return;
+		}
+		for (final ExecutionDataIndex index : indexes) {
+			merge(index, id);
+		}
+	}
+
+	private void merge(final ExecutionDataIndex index, final Long id) {
+		final ExecutionData data = index.get(id.longValue());
+		if (data == null) {
+			return;
+		}
+		final ExecutionData entry = entries.get(id);
+		if (entry == null) {
+			entries.put(id, data);
+			names.add(data.getName());
+		} else {
+			entry.merge(data);
+		}
+	}
+
+	private Set<Long> getIds() {
+		final Set<Long> ids = new LinkedHashSet<Long>(entries.keySet());
+		for (final ExecutionDataIndex index : indexes) {
+			for (int i = 0; i < index.getClassCount(); i++) {
+				ids.add(Long.valueOf(index.getId(i)));
+			}
+		}
+		return ids;
+	}
+
 	/**
 	 * Adds the given {@link ExecutionData} object into the store. If there is
 	 * already execution data with this same class id, this structure is merged
@@ -47,6 +123,7 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 */
 	public void put(final ExecutionData data) throws IllegalStateException {
 		final Long id = Long.valueOf(data.getId());
+		resolve(id);
 		final ExecutionData entry = entries.get(id);
 		if (entry == null) {
 			entries.put(id, data);
@@ -72,6 +149,7 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	public void subtract(final ExecutionData data)
 			throws IllegalStateException {
 		final Long id = Long.valueOf(data.getId());
+		resolve(id);
 		final ExecutionData entry = entries.get(id);
 		if (entry != null) {
 			entry.merge(data, false);
@@ -100,7 +178,14 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * @return execution data or <code>null</code>
 	 */
 	public ExecutionData get(final long id) {
-		return entries.get(Long.valueOf(id));
+		final Long key = Long.valueOf(id);
+		if (indexes.isEmpty()) {
+			return entries.get(key);
+		}
+		synchronized (resolved) {
+			resolve(key);
+			return entries.get(key);
+		}
 	}
 
 	/**
@@ -113,7 +198,20 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 *         contained.
 	 */
 	public boolean contains(final String name) {
-		return names.contains(name);
+		if (indexes.isEmpty()) {
+			return names.contains(name);
+		}
+		synchronized (resolved) {
+			if (names.contains(name)) {
+				return true;
+			}
+		}
+		for (final ExecutionDataIndex index : indexes) {
+			if (index.contains(name)) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -130,6 +228,7 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 */
 	public ExecutionData get(final Long id, final String name,
 			final int probecount) {
+		resolve(id);
 		ExecutionData entry = entries.get(id);
 		if (entry == null) {
 			entry = new ExecutionData(id.longValue(), name, probecount);
@@ -146,18 +245,49 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * execution data objects itself are not removed.
 	 */
 	public void reset() {
+		resolveAll();
 		for (final ExecutionData executionData : this.entries.values()) {
 			executionData.reset();
 		}
 	}
 
 	/**
-	 * Returns a collection that represents current contents of the store.
+	 * Returns a collection that represents current contents of the store. If
+	 * indexed execution data files have been added, the execution data of
+	 * these files is only read when the collection is iterated.
 	 *
 	 * @return current contents
 	 */
 	public Collection<ExecutionData> getContents() {
-		return new ArrayList<ExecutionData>(entries.values());
+		if (indexes.isEmpty()) {
+			return new ArrayList<ExecutionData>(entries.values());
+		}
+		final Set<Long> ids = getIds();
+		return new AbstractCollection<ExecutionData>() {
+
+			@Override
+			public Iterator<ExecutionData> iterator() {
+				final Iterator<Long> i = ids.iterator();
+				return new Iterator<ExecutionData>() {
+					public boolean hasNext() {
+						return i.hasNext();
+					}
+
+					public ExecutionData next() {
+						return get(i.next().longValue());
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return ids.size();
+			}
+		};
 	}
 
 	/**
@@ -32,8 +32,19 @@ public class ExecutionDataWriter
 	static {
 		// Runtime initialize to ensure javac does not inline the value.
 		FORMAT_VERSION = 0x1007;
+		COUNTS_FORMAT_VERSION = 0x1008;
 	}
 
+	/**
+	 * File format version of an additional header block which is written
+	 * before the first block of type {@link #BLOCK_EXECUTIONDATA_COUNTS}.
+	 * Readers of earlier releases which do not support execution counts fail
+	 * with an {@link IncompatibleExecDataVersionException} at this block
+	 * instead of an unknown block type. Data without execution counts is still
+	 * written with {@link #FORMAT_VERSION}.
+	 */
+	public static final char COUNTS_FORMAT_VERSION;
+
 	/** Magic number in header for file format identification. */
 	public static final char MAGIC_NUMBER = 0xC0C0;
 
@@ -46,9 +57,18 @@ public class ExecutionDataWriter
 	/** Block identifier for execution data of a single class. */
 	public static final byte BLOCK_EXECUTIONDATA = 0x11;
 
+	/**
+	 * Block identifier for execution data of a single class including
+	 * execution counts of the probes. Only valid after a header block with
+	 * version {@link #COUNTS_FORMAT_VERSION}.
+	 */
+	public static final byte BLOCK_EXECUTIONDATA_COUNTS = 0x12;
+
 	/** Underlying data output */
 	protected final CompactDataOutput out;
 
+	private boolean countsHeaderWritten = false;
+
 	/**
 	 * Creates a new writer based on the given output stream. Depending on the
 	 * nature of the underlying stream output should be buffered as most data is
@@ -71,9 +91,13 @@ public class ExecutionDataWriter
 	 *             if the header can't be written
 	 */
 	private void writeHeader() throws IOException {
+		writeHeader(FORMAT_VERSION);
+	}
+
+	private void writeHeader(final char version) throws IOException {
 		out.writeByte(BLOCK_HEADER);
 		out.writeChar(MAGIC_NUMBER);
-		out.writeChar(FORMAT_VERSION);
+		out.writeChar(version);
 	}
 
 	/**
@@ -100,10 +124,26 @@ public class ExecutionDataWriter
 	public void visitClassExecution(final ExecutionData data) {
 		if (data.hasHits()) {
 			try {
-				out.writeByte(BLOCK_EXECUTIONDATA);
+				final long[] counts = data.getCounts();
+				if (counts != null && !countsHeaderWritten) {
+					writeHeader(COUNTS_FORMAT_VERSION);
+					countsHeaderWritten = true;
+				}
+				out.writeByte(counts == null ? BLOCK_EXECUTIONDATA
+						: BLOCK_EXECUTIONDATA_COUNTS);
 				out.writeLong(data.getId());
 				out.writeUTF(data.getName());
-				out.writeBooleanArray(data.getProbes());
+				final long[] bits = data.getPackedProbes();
+				if (bits == null) {
+					out.writeBooleanArray(data.getProbes());
+				} else {
+					out.writeBooleanArray(bits, data.getProbeCount());
+				}
+				if (counts != null) {
+					for (final long c : counts) {
+						out.writeVarLong(c);
+					}
+				}
 			} catch (final IOException e) {
 				throw new RuntimeException(e);
 			}
@@ -12,10 +12,21 @@
  *******************************************************************************/
 package org.jacoco.core.instr;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -26,6 +37,8 @@ import java.util.zip.ZipOutputStream;
 import org.jacoco.core.internal.ContentTypeDetector;
 import org.jacoco.core.internal.InputStreams;
 import org.jacoco.core.internal.Pack200Streams;
+import org.jacoco.core.internal.RawZipFile;
+import org.jacoco.core.internal.RawZipOutputStream;
 import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.internal.flow.ClassProbesAdapter;
 import org.jacoco.core.internal.instr.ClassInstrumenter;
@@ -40,13 +53,28 @@ import org.objectweb.asm.ClassWriter;
 
 /**
  * Several APIs to instrument Java class definitions for coverage tracing.
+ * Optionally files and the entries of archives can be instrumented with
+ * multiple threads, see {@link #setThreads(int)}.
  */
 public class Instrumenter {
 
+	/** Maximum number of pending archive entries per thread */
+	private static final int PENDING_ENTRIES = 4;
+
 	private final IExecutionDataAccessorGenerator accessorGenerator;
 
 	private final SignatureRemover signatureRemover;
 
+	private int threads = 1;
+
+	private int probeStripes = 1;
+
+	private boolean writeOnceProbes;
+
+	private boolean probeCounters;
+
+	private boolean retransformable;
+
 	/**
 	 * Creates a new instance based on the given runtime.
 	 *
@@ -71,8 +99,143 @@ public class Instrumenter {
 		signatureRemover.setActive(flag);
 	}
 
-	private byte[] instrument(final byte[] source) {
-		final long classId = CRC64.classId(source);
+	/**
+	 * Sets the number of threads used by {@link #instrumentAll(Map)} and
+	 * {@link #instrumentAll(InputStream, OutputStream, String)}. With more
+	 * than one thread files and the entries of archives are instrumented
+	 * concurrently. Entries are always written in their original order, so
+	 * the result does not depend on the number of threads. Default is 1.
+	 *
+	 * @param threads
+	 *            number of threads, must be at least 1
+	 */
+	public void setThreads(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be positive: " + threads);
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Returns the number of threads used to instrument files and archives.
+	 *
+	 * @return number of threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets the number of probe stripes for instrumented classes. With more
+	 * than one stripe every class has a separate probe array per stripe and
+	 * threads record their executions in the stripe selected by their thread
+	 * id. This avoids contention on hot probes which are executed by many
+	 * threads concurrently at the cost of a slightly more expensive probe
+	 * array lookup on method entry. The runtime merges all stripes when
+	 * execution data is collected. Probes of interfaces are not striped.
+	 * Default is 1 (no striping).
+	 *
+	 * @param probeStripes
+	 *            number of probe stripes, must be a power of two not greater
+	 *            than 64
+	 */
+	public void setProbeStripes(final int probeStripes) {
+		if (probeStripes < 1 || probeStripes > InstrSupport.MAX_PROBE_STRIPES
+				|| (probeStripes & (probeStripes - 1)) != 0) {
+			throw new IllegalArgumentException(
+					"Invalid number of probe stripes: " + probeStripes);
+		}
+		this.probeStripes = probeStripes;
+	}
+
+	/**
+	 * Returns the number of probe stripes for instrumented classes.
+	 *
+	 * @return number of probe stripes
+	 */
+	public int getProbeStripes() {
+		return probeStripes;
+	}
+
+	/**
+	 * Determines whether probes only write to the probe array if they have
+	 * not been executed before. Once covered, code only reads the probe array,
+	 * which avoids repeated writes to the same memory location in hot code.
+	 * The additional check adds a small overhead to the first executions and
+	 * slightly increases the size of instrumented classes. Default is
+	 * <code>false</code>.
+	 *
+	 * @param flag
+	 *            <code>true</code> if probes should be written only once
+	 */
+	public void setWriteOnceProbes(final boolean flag) {
+		this.writeOnceProbes = flag;
+	}
+
+	/**
+	 * Returns whether probes only write to the probe array if they have not
+	 * been executed before.
+	 *
+	 * @return <code>true</code> if probes are written only once
+	 */
+	public boolean isWriteOnceProbes() {
+		return writeOnceProbes;
+	}
+
+	/**
+	 * Determines whether probes count their executions. With probe counters
+	 * every class has an <code>int[]</code> array instead of a probe array
+	 * and every probe increments its slot. The execution counts are reported
+	 * with the execution data. Increments are not atomic, so concurrent
+	 * executions of the same probe might be lost. Probes of interfaces are
+	 * not counted. If enabled, probe stripes and write-once probes have no
+	 * effect. Default is <code>false</code>.
+	 *
+	 * @param flag
+	 *            <code>true</code> if probes should count their executions
+	 */
+	public void setProbeCounters(final boolean flag) {
+		this.probeCounters = flag;
+	}
+
+	/**
+	 * Returns whether probes count their executions.
+	 *
+	 * @return <code>true</code> if probes count their executions
+	 */
+	public boolean isProbeCounters() {
+		return probeCounters;
+	}
+
+	/**
+	 * Determines whether instrumented classes must not declare additional
+	 * members. Such classes can be instrumented and restored again with class
+	 * retransformation of a running VM, which does not allow to add fields or
+	 * methods. As there is no field to keep the probe array every method
+	 * invocation requests the probe array from the runtime, which adds
+	 * considerable overhead. If enabled, probe stripes and probe counters have
+	 * no effect. Default is <code>false</code>.
+	 *
+	 * @param flag
+	 *            <code>true</code> if instrumented classes must not declare
+	 *            additional members
+	 */
+	public void setRetransformable(final boolean flag) {
+		this.retransformable = flag;
+	}
+
+	/**
+	 * Returns whether instrumented classes must not declare additional
+	 * members.
+	 *
+	 * @return <code>true</code> if instrumented classes can be retransformed
+	 */
+	public boolean isRetransformable() {
+		return retransformable;
+	}
+
+	private byte[] instrument(final byte[] source, final long classId) {
 		final ClassReader reader = InstrSupport.classReaderFor(source);
 		final ClassWriter writer = new ClassWriter(reader, 0) {
 			@Override
@@ -81,11 +244,17 @@ public class Instrumenter {
 				throw new IllegalStateException();
 			}
 		};
-		final IProbeArrayStrategy strategy = ProbeArrayStrategyFactory
-				.createFor(classId, reader, accessorGenerator);
+		final IProbeArrayStrategy strategy;
+		if (retransformable) {
+			strategy = ProbeArrayStrategyFactory.createForRetransformation(
+					classId, reader, accessorGenerator);
+		} else {
+			strategy = ProbeArrayStrategyFactory.createFor(classId, reader,
+					accessorGenerator, probeStripes, probeCounters);
+		}
 		final int version = InstrSupport.getMajorVersion(reader);
 		final ClassVisitor visitor = new ClassProbesAdapter(
-				new ClassInstrumenter(strategy, writer),
+				new ClassInstrumenter(strategy, writeOnceProbes, writer),
 				InstrSupport.needsFrames(version));
 		reader.accept(visitor, ClassReader.EXPAND_FRAMES);
 		return writer.toByteArray();
@@ -105,7 +274,33 @@ public class Instrumenter {
 	public byte[] instrument(final byte[] buffer, final String name)
 			throws IOException {
 		try {
-			return instrument(buffer);
+			return instrument(buffer, CRC64.classId(buffer));
+		} catch (final RuntimeException e) {
+			throw instrumentError(name, e);
+		}
+	}
+
+	/**
+	 * Creates a instrumented version of the given class with the given class
+	 * id if possible. The id is used to identify the execution data of the
+	 * class, typically it is the id of the class file which is analyzed for
+	 * the report. The given class must have the same probes as that class
+	 * file.
+	 *
+	 * @param buffer
+	 *            definition of the class
+	 * @param classId
+	 *            id of the class for the execution data
+	 * @param name
+	 *            a name used for exception messages
+	 * @return instrumented definition
+	 * @throws IOException
+	 *             if the class can't be instrumented
+	 */
+	public byte[] instrument(final byte[] buffer, final long classId,
+			final String name) throws IOException {
+		try {
+			return instrument(buffer, classId);
 		} catch (final RuntimeException e) {
 			throw instrumentError(name, e);
 		}
@@ -183,6 +378,21 @@ public class Instrumenter {
 	 */
 	public int instrumentAll(final InputStream input, final OutputStream output,
 			final String name) throws IOException {
+		if (threads > 1 && !ForkJoinTask.inForkJoinPool()) {
+			return invoke(new RecursiveTask<Integer>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Integer compute() {
+					try {
+						return Integer.valueOf(
+								instrumentAll(input, output, name));
+					} catch (final IOException e) {
+						throw new InstrumentationException(e);
+					}
+				}
+			});
+		}
 		final ContentTypeDetector detector;
 		try {
 			detector = new ContentTypeDetector(input);
@@ -205,10 +415,169 @@ public class Instrumenter {
 		}
 	}
 
+	/**
+	 * Instruments the given files or folders. Every source is written to its
+	 * target, the content of folders is instrumented recursively into the
+	 * target folder. Class files and the content of archive files are
+	 * instrumented, all other files are copied without modification. With
+	 * more than one thread files are processed concurrently. If a source
+	 * can't be instrumented its target file is deleted.
+	 *
+	 * @param files
+	 *            source files or folders mapped to their targets
+	 * @return number of instrumented classes
+	 * @throws IOException
+	 *             if reading or writing a file fails or a class can't be
+	 *             instrumented
+	 */
+	public int instrumentAll(final Map<File, File> files) throws IOException {
+		if (threads == 1) {
+			int count = 0;
+			for (final Map.Entry<File, File> e : files.entrySet()) {
+				count += instrumentFile(e.getKey(), e.getValue());
+			}
+			return count;
+		}
+		return invoke(new RecursiveTask<Integer>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected Integer compute() {
+				final List<ForkJoinTask<Integer>> tasks = new ArrayList<ForkJoinTask<Integer>>();
+				for (final Map.Entry<File, File> e : files.entrySet()) {
+					tasks.add(new FileTask(e.getKey(), e.getValue()).fork());
+				}
+				return Integer.valueOf(joinAll(tasks));
+			}
+		});
+	}
+
+	private int instrumentFile(final File source, final File target)
+			throws IOException {
+		if (source.isDirectory()) {
+			int count = 0;
+			for (final File child : source.listFiles()) {
+				count += instrumentFile(child,
+						new File(target, child.getName()));
+			}
+			return count;
+		}
+		target.getAbsoluteFile().getParentFile().mkdirs();
+		final String name = source.getAbsolutePath();
+		final RawZipFile zip = openZipFile(source, name);
+		try {
+			final OutputStream output = new FileOutputStream(target);
+			try {
+				if (zip != null) {
+					return instrumentZipFile(zip, output, name);
+				}
+				final InputStream input = new FileInputStream(source);
+				try {
+					return instrumentAll(input, output, name);
+				} finally {
+					input.close();
+				}
+			} finally {
+				output.close();
+			}
+		} catch (final IOException e) {
+			target.delete();
+			throw e;
+		} catch (final RuntimeException e) {
+			target.delete();
+			throw e;
+		} finally {
+			if (zip != null) {
+				zip.close();
+			}
+		}
+	}
+
+	private RawZipFile openZipFile(final File source, final String name)
+			throws IOException {
+		try {
+			return RawZipFile.open(source);
+		} catch (final IOException e) {
+			throw instrumentError(name, e);
+		}
+	}
+
+	/**
+	 * Instruments a ZIP file with random access to its entries. The content
+	 * type of every entry is determined from its first bytes, entries which
+	 * are neither modified by instrumentation nor signature removal are
+	 * copied with their compressed data. With multiple threads entries are
+	 * instrumented in forked tasks.
+	 */
+	private int instrumentZipFile(final RawZipFile zip,
+			final OutputStream output, final String name) throws IOException {
+		final boolean parallel = threads > 1 && ForkJoinTask.inForkJoinPool();
+		final RawZipOutputStream zipout = new RawZipOutputStream(output);
+		final LinkedList<EntryTask> pending = new LinkedList<EntryTask>();
+		int count = 0;
+		for (final RawZipFile.Entry entry : zip.getEntries()) {
+			final String entryName = entry.getName();
+			if (signatureRemover.removeEntry(entryName)) {
+				continue;
+			}
+			byte[] bytes = null;
+			try {
+				final InputStream in = zip.getInputStream(entry);
+				try {
+					final ContentTypeDetector detector = new ContentTypeDetector(
+							in);
+					if (detector.getType() != ContentTypeDetector.UNKNOWN
+							|| signatureRemover.filtersEntry(entryName)) {
+						bytes = InputStreams.readFully(detector.getInputStream());
+					}
+				} finally {
+					in.close();
+				}
+			} catch (final IOException e) {
+				throw instrumentError(name + "@" + entryName, e);
+			}
+			final EntryTask task = new EntryTask(entry, bytes, name);
+			if (parallel) {
+				task.start();
+			}
+			pending.add(task);
+			if (pending.size() > (parallel ? threads * PENDING_ENTRIES : 0)) {
+				count += pending.removeFirst().write(zipout, zip);
+			}
+		}
+		while (!pending.isEmpty()) {
+			count += pending.removeFirst().write(zipout, zip);
+		}
+		zipout.finish(zip);
+		return count;
+	}
+
+	private int invoke(final ForkJoinTask<Integer> task) throws IOException {
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.invoke(task).intValue();
+		} catch (final InstrumentationException e) {
+			throw e.unwrap();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static int joinAll(final List<ForkJoinTask<Integer>> tasks) {
+		int count = 0;
+		for (final ForkJoinTask<Integer> task : tasks) {
+			count += task.join().intValue();
+		}
+		return count;
+	}
+
 	private int instrumentZip(final InputStream input,
 			final OutputStream output, final String name) throws IOException {
 		final ZipInputStream zipin = new ZipInputStream(input);
 		final ZipOutputStream zipout = new ZipOutputStream(output);
+		if (threads > 1 && ForkJoinTask.inForkJoinPool()) {
+			return instrumentZipParallel(zipin, zipout, name);
+		}
 		ZipEntry entry;
 		int count = 0;
 		while ((entry = nextEntry(zipin, name)) != null) {
@@ -245,6 +614,43 @@ public class Instrumenter {
 		return count;
 	}
 
+	/**
+	 * Instruments the entries of the given archive in forked tasks. The
+	 * number of pending entries is limited, entries are written in their
+	 * original order.
+	 */
+	private int instrumentZipParallel(final ZipInputStream zipin,
+			final ZipOutputStream zipout, final String name)
+			throws IOException {
+		final LinkedList<EntryTask> pending = new LinkedList<EntryTask>();
+		ZipEntry entry;
+		int count = 0;
+		while ((entry = nextEntry(zipin, name)) != null) {
+			final String entryName = entry.getName();
+			if (signatureRemover.removeEntry(entryName)) {
+				continue;
+			}
+			final byte[] bytes;
+			try {
+				bytes = InputStreams.readFully(zipin);
+			} catch (final IOException e) {
+				throw instrumentError(name + "@" + entryName, e);
+			}
+			final EntryTask task = new EntryTask(entryName, entry.getMethod(),
+					bytes, name);
+			task.start();
+			pending.add(task);
+			if (pending.size() > threads * PENDING_ENTRIES) {
+				count += pending.removeFirst().write(zipout);
+			}
+		}
+		while (!pending.isEmpty()) {
+			count += pending.removeFirst().write(zipout);
+		}
+		zipout.finish();
+		return count;
+	}
+
 	private int filterOrInstrument(final InputStream in, final OutputStream out,
 			final String name, final String entryName) throws IOException {
 		if (signatureRemover.filterEntry(entryName, in, out)) {
@@ -315,4 +721,185 @@ public class Instrumenter {
 		}
 	}
 
+	/**
+	 * Task that instruments a single file or recursively forks tasks for the
+	 * content of a folder.
+	 */
+	private class FileTask extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final File source;
+
+		private final File target;
+
+		FileTask(final File source, final File target) {
+			this.source = source;
+			this.target = target;
+		}
+
+		@Override
+		protected Integer compute() {
+			if (source.isDirectory()) {
+				final List<ForkJoinTask<Integer>> tasks = new ArrayList<ForkJoinTask<Integer>>();
+				for (final File child : source.listFiles()) {
+					tasks.add(new FileTask(child,
+							new File(target, child.getName())).fork());
+				}
+				return Integer.valueOf(joinAll(tasks));
+			}
+			try {
+				return Integer.valueOf(instrumentFile(source, target));
+			} catch (final IOException e) {
+				throw new InstrumentationException(e);
+			}
+		}
+	}
+
+	/**
+	 * Task that instruments the content of a single archive entry. Entries of
+	 * ZIP files which are copied without modification have no content.
+	 */
+	private class EntryTask extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String entryName;
+
+		private final int method;
+
+		private final RawZipFile.Entry rawEntry;
+
+		private final String name;
+
+		private final boolean copy;
+
+		private boolean forked;
+
+		private byte[] bytes;
+
+		EntryTask(final String entryName, final int method, final byte[] bytes,
+				final String name) {
+			this(entryName, method, null, bytes, name);
+		}
+
+		EntryTask(final RawZipFile.Entry rawEntry, final byte[] bytes,
+				final String name) {
+			this(rawEntry.getName(), rawEntry.getMethod(), rawEntry, bytes,
+					name);
+		}
+
+		private EntryTask(final String entryName, final int method,
+				final RawZipFile.Entry rawEntry, final byte[] bytes,
+				final String name) {
+			this.entryName = entryName;
+			this.method = method;
+			this.rawEntry = rawEntry;
+			this.bytes = bytes;
+			this.name = name;
+			this.copy = bytes == null;
+		}
+
+		/**
+		 * Starts this task asynchronously unless the entry is copied.
+		 */
+		void start() {
+			if (!copy) {
+				forked = true;
+				fork();
+			}
+		}
+
+		@Override
+		protected Integer compute() {
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			try {
+				final int count = filterOrInstrument(
+						new ByteArrayInputStream(bytes), buffer, name,
+						entryName);
+				bytes = buffer.toByteArray();
+				return Integer.valueOf(count);
+			} catch (final IOException e) {
+				throw new InstrumentationException(e);
+			}
+		}
+
+		/**
+		 * Waits for the result of this task or executes it in the current
+		 * thread if it has not been started.
+		 */
+		private int await() throws IOException {
+			if (copy) {
+				return 0;
+			}
+			try {
+				return (forked ? join() : invoke()).intValue();
+			} catch (final InstrumentationException e) {
+				throw e.unwrap();
+			}
+		}
+
+		/**
+		 * Waits for the result of this task and writes it as a new entry.
+		 */
+		int write(final ZipOutputStream zipout) throws IOException {
+			final int count = await();
+			final ZipEntry newEntry = new ZipEntry(entryName);
+			newEntry.setMethod(method);
+			if (method == ZipEntry.STORED) {
+				newEntry.setSize(bytes.length);
+				newEntry.setCompressedSize(bytes.length);
+				newEntry.setCrc(crc(bytes));
+			}
+			zipout.putNextEntry(newEntry);
+			zipout.write(bytes);
+			zipout.closeEntry();
+			return count;
+		}
+
+		/**
+		 * Waits for the result of this task and writes it as a new entry or
+		 * copies the original entry.
+		 */
+		int write(final RawZipOutputStream zipout, final RawZipFile zip)
+				throws IOException {
+			final int count = await();
+			try {
+				if (copy) {
+					zipout.copyEntry(zip, rawEntry);
+				} else {
+					zipout.putEntry(zip, rawEntry, bytes);
+				}
+			} catch (final IOException e) {
+				throw instrumentError(name + "@" + entryName, e);
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Transports checked {@link IOException}s out of fork/join tasks.
+	 */
+	private static class InstrumentationException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		InstrumentationException(final IOException cause) {
+			super(cause);
+		}
+
+		IOException unwrap() {
+			// The fork/join framework might re-create the exception instance
+			// when it is re-thrown in a different thread
+			Throwable t = getCause();
+			while (t != null && !(t instanceof IOException)) {
+				t = t.getCause();
+			}
+			if (t == null) {
+				throw this;
+			}
+			return (IOException) t;
+		}
+	}
+
 }
@@ -0,0 +1,363 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Random access to the entries of a ZIP file based on its central directory.
+ * In addition to reading the content of entries the compressed data of entries
+ * can be copied to a {@link RawZipOutputStream} without inflating it. Only
+ * plain ZIP files are supported: Files with ZIP64 extensions, multiple disks,
+ * prefixed data, encrypted entries or compression methods other than STORED
+ * and DEFLATED are rejected by {@link #open(File)}.
+ */
+public final class RawZipFile {
+
+	static final int LOCAL_HEADER = 0x04034b50;
+
+	static final int CENTRAL_HEADER = 0x02014b50;
+
+	static final int END_HEADER = 0x06054b50;
+
+	static final int LOCAL_HEADER_SIZE = 30;
+
+	static final int CENTRAL_HEADER_SIZE = 46;
+
+	static final int END_HEADER_SIZE = 22;
+
+	static final long MAX_VALUE = 0xffffffffL;
+
+	private static final int FLAG_ENCRYPTED = 1;
+
+	private final RandomAccessFile file;
+
+	private final List<Entry> entries;
+
+	private final byte[] comment;
+
+	private RawZipFile(final RandomAccessFile file, final List<Entry> entries,
+			final byte[] comment) {
+		this.file = file;
+		this.entries = entries;
+		this.comment = comment;
+	}
+
+	/**
+	 * Opens the given file if it is a supported ZIP file.
+	 *
+	 * @param file
+	 *            file to open
+	 * @return opened ZIP file or <code>null</code> if the file is not a ZIP
+	 *         file or uses unsupported features
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public static RawZipFile open(final File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		RawZipFile zip = null;
+		try {
+			zip = read(raf);
+			return zip;
+		} finally {
+			if (zip == null) {
+				raf.close();
+			}
+		}
+	}
+
+	private static RawZipFile read(final RandomAccessFile raf)
+			throws IOException {
+		final long length = raf.length();
+		if (length < LOCAL_HEADER_SIZE + END_HEADER_SIZE
+				|| length > Integer.MAX_VALUE) {
+			return null;
+		}
+		final ByteBuffer start = readBuffer(raf, 0, 4);
+		if (start.getInt(0) != LOCAL_HEADER) {
+			return null;
+		}
+		final int tailLength = (int) Math.min(length, END_HEADER_SIZE + 0xffff);
+		final long tailStart = length - tailLength;
+		final ByteBuffer tail = readBuffer(raf, tailStart, tailLength);
+		int end = -1;
+		for (int i = tailLength - END_HEADER_SIZE; i >= 0; i--) {
+			if (tail.getInt(i) == END_HEADER && i + END_HEADER_SIZE
+					+ u16(tail, i + 20) == tailLength) {
+				end = i;
+				break;
+			}
+		}
+		if (end == -1 || u16(tail, end + 4) != 0 || u16(tail, end + 6) != 0) {
+			return null;
+		}
+		final int count = u16(tail, end + 10);
+		final long size = u32(tail, end + 12);
+		final long offset = u32(tail, end + 16);
+		if (count == 0xffff || offset + size != tailStart + end) {
+			return null;
+		}
+		final byte[] comment = new byte[u16(tail, end + 20)];
+		tail.position(end + END_HEADER_SIZE);
+		tail.get(comment);
+
+		final ByteBuffer central = readBuffer(raf, offset, (int) size);
+		final List<Entry> entries = new ArrayList<Entry>(count);
+		int pos = 0;
+		for (int i = 0; i < count; i++) {
+			if (pos + CENTRAL_HEADER_SIZE > size
+					|| central.getInt(pos) != CENTRAL_HEADER) {
+				return null;
+			}
+			final Entry entry = new Entry();
+			entry.versionMadeBy = u16(central, pos + 4);
+			entry.versionNeeded = u16(central, pos + 6);
+			entry.flags = u16(central, pos + 8);
+			entry.method = u16(central, pos + 10);
+			entry.dosTime = central.getInt(pos + 12);
+			entry.crc = u32(central, pos + 16);
+			entry.compressedSize = u32(central, pos + 20);
+			entry.size = u32(central, pos + 24);
+			final int nameLength = u16(central, pos + 28);
+			final int extraLength = u16(central, pos + 30);
+			final int commentLength = u16(central, pos + 32);
+			entry.internalAttributes = u16(central, pos + 36);
+			entry.externalAttributes = central.getInt(pos + 38);
+			entry.localOffset = u32(central, pos + 42);
+			if ((entry.flags & FLAG_ENCRYPTED) != 0
+					|| (entry.method != ZipEntry.STORED
+							&& entry.method != ZipEntry.DEFLATED)
+					|| u16(central, pos + 34) != 0
+					|| entry.compressedSize == MAX_VALUE
+					|| entry.size == MAX_VALUE
+					|| entry.localOffset == MAX_VALUE) {
+				return null;
+			}
+			central.position(pos + CENTRAL_HEADER_SIZE);
+			entry.rawName = new byte[nameLength];
+			central.get(entry.rawName);
+			entry.centralExtra = new byte[extraLength];
+			central.get(entry.centralExtra);
+			entry.comment = new byte[commentLength];
+			central.get(entry.comment);
+			entry.name = new String(entry.rawName, "UTF-8");
+			entries.add(entry);
+			pos = central.position();
+		}
+		return new RawZipFile(raf, Collections.unmodifiableList(entries),
+				comment);
+	}
+
+	private static ByteBuffer readBuffer(final RandomAccessFile raf,
+			final long position, final int length) throws IOException {
+		final byte[] buffer = new byte[length];
+		raf.seek(position);
+		raf.readFully(buffer);
+		return ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	static int u16(final ByteBuffer buffer, final int index) {
+		return buffer.getShort(index) & 0xffff;
+	}
+
+	static long u32(final ByteBuffer buffer, final int index) {
+		return buffer.getInt(index) & MAX_VALUE;
+	}
+
+	/**
+	 * @return all entries in the order of the central directory
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	byte[] getComment() {
+		return comment;
+	}
+
+	FileChannel getChannel() {
+		return file.getChannel();
+	}
+
+	/**
+	 * Returns the position of the compressed data of the given entry and
+	 * reads the extra field of its local header.
+	 */
+	long getDataOffset(final Entry entry) throws IOException {
+		if (entry.localExtra == null) {
+			final ByteBuffer header = readBuffer(file, entry.localOffset,
+					LOCAL_HEADER_SIZE);
+			if (header.getInt(0) != LOCAL_HEADER) {
+				throw new IOException(
+						"Invalid local header for entry " + entry.name);
+			}
+			final int nameLength = u16(header, 26);
+			final int extraLength = u16(header, 28);
+			entry.localExtra = new byte[extraLength];
+			file.seek(entry.localOffset + LOCAL_HEADER_SIZE + nameLength);
+			file.readFully(entry.localExtra);
+			entry.dataOffset = entry.localOffset + LOCAL_HEADER_SIZE
+					+ nameLength + extraLength;
+		}
+		return entry.dataOffset;
+	}
+
+	/**
+	 * Opens a stream to read the uncompressed content of the given entry.
+	 *
+	 * @param entry
+	 *            entry of this file
+	 * @return stream with the content of the entry
+	 * @throws IOException
+	 *             if the local header of the entry is invalid
+	 */
+	public InputStream getInputStream(final Entry entry) throws IOException {
+		final long offset = getDataOffset(entry);
+		if (entry.method == ZipEntry.STORED) {
+			return new RegionInputStream(offset, entry.compressedSize);
+		}
+		// Inflater requires an extra dummy byte after the compressed data,
+		// which is always followed by at least the central directory
+		final Inflater inflater = new Inflater(true);
+		return new InflaterInputStream(
+				new RegionInputStream(offset, entry.compressedSize + 1),
+				inflater, 8192) {
+			@Override
+			public void close() throws IOException {
+				super.close();
+				inflater.end();
+			}
+		};
+	}
+
+	/**
+	 * Closes the underlying file.
+	 *
+	 * @throws IOException
+	 *             if the file can't be closed
+	 */
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Entry from the central directory of a ZIP file.
+	 */
+	public static final class Entry {
+
+		String name;
+		byte[] rawName;
+		int versionMadeBy;
+		int versionNeeded;
+		int flags;
+		int method;
+		int dosTime;
+		long crc;
+		long compressedSize;
+		long size;
+		byte[] centralExtra;
+		byte[] comment;
+		int internalAttributes;
+		int externalAttributes;
+		long localOffset;
+
+		byte[] localExtra;
+		long dataOffset;
+
+		Entry() {
+		}
+
+		Entry(final Entry other) {
+			name = other.name;
+			rawName = other.rawName;
+			versionMadeBy = other.versionMadeBy;
+			versionNeeded = other.versionNeeded;
+			flags = other.flags;
+			method = other.method;
+			dosTime = other.dosTime;
+			crc = other.crc;
+			compressedSize = other.compressedSize;
+			size = other.size;
+			centralExtra = other.centralExtra;
+			comment = other.comment;
+			internalAttributes = other.internalAttributes;
+			externalAttributes = other.externalAttributes;
+			localExtra = other.localExtra;
+		}
+
+		/**
+		 * @return name of the entry
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return compression method, either {@link ZipEntry#STORED} or
+		 *         {@link ZipEntry#DEFLATED}
+		 */
+		public int getMethod() {
+			return method;
+		}
+
+	}
+
+	private class RegionInputStream extends InputStream {
+
+		private long position;
+
+		private long remaining;
+
+		RegionInputStream(final long position, final long length) {
+			this.position = position;
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			final ByteBuffer buffer = ByteBuffer.wrap(b, off,
+					(int) Math.min(len, remaining));
+			final int n = file.getChannel().read(buffer, position);
+			if (n == -1) {
+				return -1;
+			}
+			position += n;
+			remaining -= n;
+			return n;
+		}
+
+	}
+
+}
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.jacoco.core.internal.RawZipFile.Entry;
+
+/**
+ * Writes a ZIP file from entries of a {@link RawZipFile}. Entries can either
+ * be copied with their compressed data or written with new content. Names,
+ * timestamps, attributes and extra fields of the original entries are
+ * preserved. ZIP64 extensions are not supported.
+ */
+public final class RawZipOutputStream {
+
+	/** general purpose flag for sizes in a data descriptor */
+	private static final int FLAG_DATA_DESCRIPTOR = 8;
+
+	private final OutputStream out;
+
+	private final WritableByteChannel channel;
+
+	private final List<Entry> written = new ArrayList<Entry>();
+
+	private long offset;
+
+	/**
+	 * Creates a new stream which writes to the given output. If the output is
+	 * a {@link FileOutputStream} copied data is transferred between the files
+	 * directly.
+	 *
+	 * @param out
+	 *            output for the ZIP file
+	 */
+	public RawZipOutputStream(final OutputStream out) {
+		this.out = out;
+		if (out instanceof FileOutputStream) {
+			this.channel = ((FileOutputStream) out).getChannel();
+		} else {
+			this.channel = Channels.newChannel(out);
+		}
+	}
+
+	/**
+	 * Copies the given entry with its compressed data.
+	 *
+	 * @param zip
+	 *            ZIP file the entry belongs to
+	 * @param entry
+	 *            entry to copy
+	 * @throws IOException
+	 *             if the entry can't be read or written
+	 */
+	public void copyEntry(final RawZipFile zip, final Entry entry)
+			throws IOException {
+		final long dataOffset = zip.getDataOffset(entry);
+		final Entry copy = new Entry(entry);
+		writeLocalHeader(copy);
+		final FileChannel source = zip.getChannel();
+		long position = dataOffset;
+		final long end = dataOffset + entry.compressedSize;
+		while (position < end) {
+			final long n = source.transferTo(position, end - position,
+					channel);
+			if (n <= 0) {
+				throw new IOException(
+						"Unexpected end of data for entry " + entry.name);
+			}
+			position += n;
+		}
+		offset += entry.compressedSize;
+	}
+
+	/**
+	 * Writes the given entry with new content. The content is compressed with
+	 * the compression method of the original entry.
+	 *
+	 * @param zip
+	 *            ZIP file the entry belongs to
+	 * @param entry
+	 *            original entry
+	 * @param content
+	 *            new uncompressed content
+	 * @throws IOException
+	 *             if the entry can't be written
+	 */
+	public void putEntry(final RawZipFile zip, final Entry entry,
+			final byte[] content) throws IOException {
+		zip.getDataOffset(entry);
+		final Entry copy = new Entry(entry);
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+		copy.crc = crc.getValue();
+		copy.size = content.length;
+		final byte[] data;
+		if (entry.method == ZipEntry.STORED) {
+			data = content;
+		} else {
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION,
+					true);
+			try {
+				final DeflaterOutputStream deflaterOut = new DeflaterOutputStream(
+						buffer, deflater);
+				deflaterOut.write(content);
+				deflaterOut.finish();
+			} finally {
+				deflater.end();
+			}
+			data = buffer.toByteArray();
+		}
+		copy.compressedSize = data.length;
+		writeLocalHeader(copy);
+		out.write(data);
+		offset += data.length;
+	}
+
+	private void writeLocalHeader(final Entry entry) throws IOException {
+		checkLimit(offset);
+		checkLimit(entry.compressedSize);
+		checkLimit(entry.size);
+		entry.flags &= ~FLAG_DATA_DESCRIPTOR;
+		entry.localOffset = offset;
+		final ByteBuffer header = buffer(RawZipFile.LOCAL_HEADER_SIZE
+				+ entry.rawName.length + entry.localExtra.length);
+		header.putInt(RawZipFile.LOCAL_HEADER);
+		header.putShort((short) entry.versionNeeded);
+		header.putShort((short) entry.flags);
+		header.putShort((short) entry.method);
+		header.putInt(entry.dosTime);
+		header.putInt((int) entry.crc);
+		header.putInt((int) entry.compressedSize);
+		header.putInt((int) entry.size);
+		header.putShort((short) entry.rawName.length);
+		header.putShort((short) entry.localExtra.length);
+		header.put(entry.rawName);
+		header.put(entry.localExtra);
+		write(header);
+		written.add(entry);
+	}
+
+	/**
+	 * Writes the central directory. The underlying output is not closed.
+	 *
+	 * @param zip
+	 *            ZIP file to take the archive comment from
+	 * @throws IOException
+	 *             if the central directory can't be written
+	 */
+	public void finish(final RawZipFile zip) throws IOException {
+		if (written.size() >= 0xffff) {
+			throw new IOException("Too many entries for ZIP file");
+		}
+		final long start = offset;
+		for (final Entry entry : written) {
+			final ByteBuffer header = buffer(RawZipFile.CENTRAL_HEADER_SIZE
+					+ entry.rawName.length + entry.centralExtra.length
+					+ entry.comment.length);
+			header.putInt(RawZipFile.CENTRAL_HEADER);
+			header.putShort((short) entry.versionMadeBy);
+			header.putShort((short) entry.versionNeeded);
+			header.putShort((short) entry.flags);
+			header.putShort((short) entry.method);
+			header.putInt(entry.dosTime);
+			header.putInt((int) entry.crc);
+			header.putInt((int) entry.compressedSize);
+			header.putInt((int) entry.size);
+			header.putShort((short) entry.rawName.length);
+			header.putShort((short) entry.centralExtra.length);
+			header.putShort((short) entry.comment.length);
+			header.putShort((short) 0);
+			header.putShort((short) entry.internalAttributes);
+			header.putInt(entry.externalAttributes);
+			header.putInt((int) entry.localOffset);
+			header.put(entry.rawName);
+			header.put(entry.centralExtra);
+			header.put(entry.comment);
+			write(header);
+		}
+		checkLimit(offset);
+		final byte[] comment = zip.getComment();
+		final ByteBuffer end = buffer(
+				RawZipFile.END_HEADER_SIZE + comment.length);
+		end.putInt(RawZipFile.END_HEADER);
+		end.putShort((short) 0);
+		end.putShort((short) 0);
+		end.putShort((short) written.size());
+		end.putShort((short) written.size());
+		end.putInt((int) (offset - start));
+		end.putInt((int) start);
+		end.putShort((short) comment.length);
+		end.put(comment);
+		write(end);
+		out.flush();
+	}
+
+	private static ByteBuffer buffer(final int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private void write(final ByteBuffer buffer) throws IOException {
+		out.write(buffer.array());
+		offset += buffer.capacity();
+	}
+
+	private static void checkLimit(final long value) throws IOException {
+		if (value >= RawZipFile.MAX_VALUE) {
+			throw new IOException("ZIP64 is not supported");
+		}
+	}
+
+}
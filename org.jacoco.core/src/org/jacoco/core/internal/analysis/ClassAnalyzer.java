@@ -13,14 +13,14 @@
 package org.jacoco.core.internal.analysis;
 
 import java.util.HashSet;
-import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.jacoco.core.internal.analysis.diff.DiffClassRegistry;
-import org.jacoco.core.internal.analysis.diff.MethodInfo;
 import org.jacoco.core.internal.analysis.filter.Filters;
 import org.jacoco.core.internal.analysis.filter.IFilter;
 import org.jacoco.core.internal.analysis.filter.IFilterContext;
+import org.jacoco.core.internal.analysis.filter.IFilterOutput;
 import org.jacoco.core.internal.flow.ClassProbesVisitor;
 import org.jacoco.core.internal.flow.MethodProbesVisitor;
 import org.jacoco.core.internal.instr.InstrSupport;
@@ -28,6 +28,7 @@ import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
 /**
@@ -38,6 +39,7 @@ public class ClassAnalyzer extends ClassProbesVisitor
 
 	private final ClassCoverageImpl coverage;
 	private final boolean[] probes;
+	private final long[] counts;
 	private final StringPool stringPool;
 
 	private final Set<String> classAnnotations = new HashSet<String>();
@@ -48,6 +50,8 @@ public class ClassAnalyzer extends ClassProbesVisitor
 
 	private final IFilter filter;
 
+	private final ClassStructure structure;
+
 	/**
 	 * Creates a new analyzer that builds coverage data for a class.
 	 *
@@ -60,10 +64,53 @@ public class ClassAnalyzer extends ClassProbesVisitor
 	 */
 	public ClassAnalyzer(final ClassCoverageImpl coverage,
 			final boolean[] probes, final StringPool stringPool) {
+		this(coverage, probes, stringPool, null);
+	}
+
+	/**
+	 * Creates a new analyzer that builds coverage data for a class and
+	 * additionally records the probe independent structure of the class.
+	 *
+	 * @param coverage
+	 *            coverage node for the analyzed class data
+	 * @param probes
+	 *            execution data for this class or <code>null</code>
+	 * @param stringPool
+	 *            shared pool to minimize the number of {@link String} instances
+	 * @param structure
+	 *            structure to record to or <code>null</code>
+	 */
+	public ClassAnalyzer(final ClassCoverageImpl coverage,
+			final boolean[] probes, final StringPool stringPool,
+			final ClassStructure structure) {
+		this(coverage, probes, null, stringPool, structure);
+	}
+
+	/**
+	 * Creates a new analyzer that builds coverage data including execution
+	 * counts for a class and additionally records the probe independent
+	 * structure of the class.
+	 *
+	 * @param coverage
+	 *            coverage node for the analyzed class data
+	 * @param probes
+	 *            execution data for this class or <code>null</code>
+	 * @param counts
+	 *            execution counts of the probes or <code>null</code>
+	 * @param stringPool
+	 *            shared pool to minimize the number of {@link String} instances
+	 * @param structure
+	 *            structure to record to or <code>null</code>
+	 */
+	public ClassAnalyzer(final ClassCoverageImpl coverage,
+			final boolean[] probes, final long[] counts,
+			final StringPool stringPool, final ClassStructure structure) {
 		this.coverage = coverage;
 		this.probes = probes;
+		this.counts = counts;
 		this.stringPool = stringPool;
 		this.filter = Filters.all();
+		this.structure = structure;
 	}
 
 	@Override
@@ -73,6 +120,10 @@ public class ClassAnalyzer extends ClassProbesVisitor
 		coverage.setSignature(stringPool.get(signature));
 		coverage.setSuperName(stringPool.get(superName));
 		coverage.setInterfaces(stringPool.get(interfaces));
+		if (structure != null) {
+			structure.setHeader(coverage.getSignature(),
+					coverage.getSuperName(), coverage.getInterfaceNames());
+		}
 	}
 
 	@Override
@@ -91,6 +142,9 @@ public class ClassAnalyzer extends ClassProbesVisitor
 	public void visitSource(final String source, final String debug) {
 		coverage.setSourceFileName(stringPool.get(source));
 		sourceDebugExtension = debug;
+		if (structure != null) {
+			structure.setSourceFileName(coverage.getSourceFileName());
+		}
 	}
 
 	@Override
@@ -100,7 +154,11 @@ public class ClassAnalyzer extends ClassProbesVisitor
 
 		InstrSupport.assertNotInstrumented(name, coverage.getName());
 
-		final InstructionsBuilder builder = new InstructionsBuilder(probes);
+		final MethodStructure methodStructure = structure == null ? null
+				: new MethodStructure(stringPool.get(name),
+						stringPool.get(desc), stringPool.get(signature));
+		final InstructionsBuilder builder = new InstructionsBuilder(probes,
+				counts, methodStructure);
 
 		return new MethodAnalyzer(builder) {
 
@@ -109,21 +167,25 @@ public class ClassAnalyzer extends ClassProbesVisitor
 					final MethodVisitor methodVisitor) {
 				super.accept(methodNode, methodVisitor);
 				addMethodCoverage(stringPool.get(name), stringPool.get(desc),
-						stringPool.get(signature), builder, methodNode);
+						stringPool.get(signature), builder, methodNode,
+						methodStructure);
 			}
 		};
 	}
 
 	private void addMethodCoverage(final String name, final String desc,
 			final String signature, final InstructionsBuilder icc,
-			final MethodNode methodNode) {
+			final MethodNode methodNode,
+			final MethodStructure methodStructure) {
+		final Map<AbstractInsnNode, Instruction> instructions = icc
+				.getInstructions();
 		final MethodCoverageCalculator mcc = new MethodCoverageCalculator(
-				icc.getInstructions());
-		filter.filter(methodNode, this, mcc);
-		String className = coverage.getName();
-		String methodName = methodNode.name;
-		List<MethodInfo> classMethods = DiffClassRegistry.getDiffMethodsOfClass(className);
-		boolean isDiffMethod = classMethods != null && classMethods.stream().anyMatch(methodInfo -> methodInfo.methodName.equals(methodName));
+				instructions);
+		final IFilterOutput output = methodStructure == null ? mcc
+				: methodStructure.recordFilterOutput(instructions, mcc);
+		filter.filter(methodNode, this, output);
+		final boolean isDiffMethod = DiffClassRegistry.isDiffMethod(
+				coverage.getName(), methodNode.name, methodNode.desc);
 
 		final MethodCoverageImpl mc = new MethodCoverageImpl(name, desc,
 				signature, isDiffMethod, getSourceFileName());
@@ -132,6 +194,9 @@ public class ClassAnalyzer extends ClassProbesVisitor
 		if (mc.containsCode()) {
 			// Only consider methods that actually contain code
 			coverage.addMethod(mc);
+			if (structure != null) {
+				structure.addMethod(methodStructure);
+			}
 		}
 
 	}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.core.internal.analysis.diff.DiffClassRegistry;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Probe independent result of the analysis of a class. It contains all
+ * information to create a {@link ClassCoverageImpl} node for a given probe
+ * array without parsing the class file again.
+ *
+ * @see MethodStructure
+ */
+public class ClassStructure {
+
+	private final String name;
+
+	private String signature;
+
+	private String superName;
+
+	private String[] interfaces;
+
+	private String sourceFileName;
+
+	private final List<MethodStructure> methods;
+
+	/**
+	 * Creates a new empty structure for recording.
+	 *
+	 * @param name
+	 *            VM name of the class
+	 */
+	public ClassStructure(final String name) {
+		this.name = name;
+		this.methods = new ArrayList<MethodStructure>();
+	}
+
+	/**
+	 * @return VM name of the class
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return structure of all methods which contain code
+	 */
+	public List<MethodStructure> getMethods() {
+		return methods;
+	}
+
+	void setHeader(final String signature, final String superName,
+			final String[] interfaces) {
+		this.signature = signature;
+		this.superName = superName;
+		this.interfaces = interfaces;
+	}
+
+	void setSourceFileName(final String sourceFileName) {
+		this.sourceFileName = sourceFileName;
+	}
+
+	void addMethod(final MethodStructure method) {
+		methods.add(method);
+	}
+
+	/**
+	 * Creates the coverage node for this class with the given execution data.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param noMatch
+	 *            <code>true</code>, if class ids do not match
+	 * @param probes
+	 *            execution data for this class or <code>null</code>
+	 * @return coverage node for this class
+	 */
+	public ClassCoverageImpl createCoverage(final long id,
+			final boolean noMatch, final boolean[] probes) {
+		return createCoverage(id, noMatch, probes, null);
+	}
+
+	/**
+	 * Creates the coverage node for this class with the given execution data
+	 * and execution counts.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param noMatch
+	 *            <code>true</code>, if class ids do not match
+	 * @param probes
+	 *            execution data for this class or <code>null</code>
+	 * @param counts
+	 *            execution counts of the probes or <code>null</code>
+	 * @return coverage node for this class
+	 */
+	public ClassCoverageImpl createCoverage(final long id,
+			final boolean noMatch, final boolean[] probes,
+			final long[] counts) {
+		final ClassCoverageImpl coverage = new ClassCoverageImpl(name, id,
+				noMatch);
+		coverage.setSignature(signature);
+		coverage.setSuperName(superName);
+		coverage.setInterfaces(interfaces);
+		coverage.setSourceFileName(sourceFileName);
+		for (final MethodStructure m : methods) {
+			final MethodCoverageImpl mc = new MethodCoverageImpl(m.getName(),
+					m.getDesc(), m.getSignature(),
+					DiffClassRegistry.isDiffMethod(name, m.getName(),
+							m.getDesc()),
+					sourceFileName);
+			m.calculate(probes, counts, mc);
+			coverage.addMethod(mc);
+		}
+		return coverage;
+	}
+
+	// === Serialization ===
+
+	/**
+	 * Writes this structure to the given output.
+	 *
+	 * @param out
+	 *            output to write to
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public void write(final CompactDataOutput out) throws IOException {
+		out.writeUTF(name);
+		MethodStructure.writeOptionalUTF(out, signature);
+		MethodStructure.writeOptionalUTF(out, superName);
+		out.writeVarInt(interfaces == null ? 0 : interfaces.length);
+		if (interfaces != null) {
+			for (final String i : interfaces) {
+				out.writeUTF(i);
+			}
+		}
+		MethodStructure.writeOptionalUTF(out, sourceFileName);
+		out.writeVarInt(methods.size());
+		for (final MethodStructure m : methods) {
+			m.write(out);
+		}
+	}
+
+	/**
+	 * Reads a structure which has been written with
+	 * {@link #write(CompactDataOutput)}.
+	 *
+	 * @param in
+	 *            input to read from
+	 * @param stringPool
+	 *            shared pool to minimize the number of {@link String}
+	 *            instances
+	 * @return structure read from the input
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public static ClassStructure read(final CompactDataInput in,
+			final StringPool stringPool) throws IOException {
+		final ClassStructure structure = new ClassStructure(
+				stringPool.get(in.readUTF()));
+		final String signature = MethodStructure.readOptionalUTF(in);
+		final String superName = MethodStructure.readOptionalUTF(in);
+		final String[] interfaces = new String[in.readVarInt()];
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaces[i] = in.readUTF();
+		}
+		structure.setHeader(stringPool.get(signature),
+				stringPool.get(superName), stringPool.get(interfaces));
+		structure.setSourceFileName(
+				stringPool.get(MethodStructure.readOptionalUTF(in)));
+		final int methodCount = in.readVarInt();
+		for (int i = 0; i < methodCount; i++) {
+			structure.addMethod(MethodStructure.read(in, stringPool));
+		}
+		return structure;
+	}
+
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Persistent cache of {@link ClassStructure}s in a directory. Entries are
+ * keyed by the class id and are only valid for the JaCoCo build which has
+ * written them, as the result of the analysis depends on the set of filters.
+ * Unreadable or outdated entries are treated as cache misses. Instances can be
+ * shared between threads and multiple processes may use the same directory.
+ */
+public class ClassStructureCache {
+
+	/** Marker and format version of cache entries */
+	private static final char FORMAT = 0xCA01;
+
+	private final File directory;
+
+	private final StringPool stringPool;
+
+	/**
+	 * Creates a cache in the given directory. The directory is created on
+	 * demand.
+	 *
+	 * @param directory
+	 *            cache directory
+	 * @param stringPool
+	 *            shared pool to minimize the number of {@link String}
+	 *            instances
+	 */
+	public ClassStructureCache(final File directory,
+			final StringPool stringPool) {
+		this.directory = directory;
+		this.stringPool = stringPool;
+	}
+
+	/**
+	 * @return cache directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Looks up the structure of the class with the given id.
+	 *
+	 * @param classId
+	 *            class identifier
+	 * @return cached structure or <code>null</code> if no valid entry exists
+	 */
+	public ClassStructure get(final long classId) {
+		final File file = getFile(classId);
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			final InputStream in = new BufferedInputStream(
+					new FileInputStream(file));
+			try {
+				return read(new CompactDataInput(in), classId);
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			return null;
+		} catch (final RuntimeException e) {
+			return null;
+		}
+	}
+
+	private ClassStructure read(final CompactDataInput in, final long classId)
+			throws IOException {
+		if (in.readChar() != FORMAT || !JaCoCo.VERSION.equals(in.readUTF())
+				|| in.readLong() != classId) {
+			return null;
+		}
+		return ClassStructure.read(in, stringPool);
+	}
+
+	/**
+	 * Stores the structure of the class with the given id. The entry is
+	 * written to a temporary file first, so concurrent readers never see
+	 * partial entries.
+	 *
+	 * @param classId
+	 *            class identifier
+	 * @param structure
+	 *            structure to store
+	 * @throws IOException
+	 *             if the entry can't be written
+	 */
+	public void put(final long classId, final ClassStructure structure)
+			throws IOException {
+		final File file = getFile(classId);
+		final File parent = file.getParentFile();
+		parent.mkdirs();
+		final File tmp = File.createTempFile(file.getName(), ".tmp", parent);
+		try {
+			final OutputStream out = new BufferedOutputStream(
+					new FileOutputStream(tmp));
+			try {
+				final CompactDataOutput data = new CompactDataOutput(out);
+				data.writeChar(FORMAT);
+				data.writeUTF(JaCoCo.VERSION);
+				data.writeLong(classId);
+				structure.write(data);
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(file) && !file.isFile()) {
+				throw new IOException(
+						String.format("Unable to create cache entry %s.",
+								file.getAbsolutePath()));
+			}
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	private File getFile(final long classId) {
+		final String name = String.format("%016x", Long.valueOf(classId));
+		return new File(new File(directory, name.substring(0, 2)), name);
+	}
+
+}
@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.jacoco.core.analysis.CoverageNodeImpl;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.internal.data.CompactDataInput;
+
+/**
+ * Reads coverage nodes written by {@link CompactCoverageWriter}.
+ */
+public class CompactCoverageReader {
+
+	private final CompactDataInput in;
+
+	private final List<String> strings = new ArrayList<String>();
+
+	/**
+	 * Creates a new reader based on the given input.
+	 *
+	 * @param in
+	 *            input to read the nodes from
+	 */
+	public CompactCoverageReader(final CompactDataInput in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads all classes and source files of a package written by
+	 * {@link CompactCoverageWriter#writePackage(IPackageCoverage)}.
+	 *
+	 * @param name
+	 *            name of the package
+	 * @return package coverage data
+	 * @throws IOException
+	 *             in case of problems with the underlying input
+	 */
+	public IPackageCoverage readPackage(final String name)
+			throws IOException {
+		final int classCount = in.readVarInt();
+		final List<IClassCoverage> classes = new ArrayList<IClassCoverage>(
+				classCount);
+		for (int i = 0; i < classCount; i++) {
+			classes.add(readClass());
+		}
+		final int sourceFileCount = in.readVarInt();
+		final List<ISourceFileCoverage> sourceFiles = new ArrayList<ISourceFileCoverage>(
+				sourceFileCount);
+		for (int i = 0; i < sourceFileCount; i++) {
+			sourceFiles.add(readSourceFile(name));
+		}
+		return new PackageCoverageImpl(name, classes, sourceFiles);
+	}
+
+	/**
+	 * Reads a class with all its methods.
+	 *
+	 * @return class coverage data
+	 * @throws IOException
+	 *             in case of problems with the underlying input
+	 */
+	public IClassCoverage readClass() throws IOException {
+		final ClassNode c = new ClassNode(readString(), in.readLong(),
+				in.readBoolean());
+		c.signature = readString();
+		c.superName = readString();
+		final int interfaces = in.readVarInt();
+		if (interfaces > 0) {
+			c.interfaces = new String[interfaces - 1];
+			for (int i = 0; i < c.interfaces.length; i++) {
+				c.interfaces[i] = readString();
+			}
+		}
+		c.sourceFileName = readString();
+		readSourceNode(c);
+		final int methods = in.readVarInt();
+		for (int i = 0; i < methods; i++) {
+			final MethodNode m = new MethodNode(readString(), readString(),
+					readString());
+			readSourceNode(m);
+			c.methods.add(m);
+		}
+		return c;
+	}
+
+	/**
+	 * Reads a source file.
+	 *
+	 * @param packageName
+	 *            name of the package the source file belongs to
+	 * @return source file coverage data
+	 * @throws IOException
+	 *             in case of problems with the underlying input
+	 */
+	public ISourceFileCoverage readSourceFile(final String packageName)
+			throws IOException {
+		final SourceFileNode s = new SourceFileNode(readString(),
+				packageName);
+		readSourceNode(s);
+		return s;
+	}
+
+	/**
+	 * Reads counters written by
+	 * {@link CompactCoverageWriter#writeCounters(org.jacoco.core.analysis.ICoverageNode, org.jacoco.core.internal.data.CompactDataOutput)}.
+	 *
+	 * @param in
+	 *            input to read from
+	 * @return counters in the order of
+	 *         {@link org.jacoco.core.analysis.ICoverageNode.CounterEntity}
+	 * @throws IOException
+	 *             in case of problems with the input
+	 */
+	public static CounterImpl[] readCounters(final CompactDataInput in)
+			throws IOException {
+		final CounterImpl[] counters = new CounterImpl[CompactCoverageWriter.COUNTER_ENTITIES.length];
+		final int mask = in.readVarInt();
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = (mask & 1 << i) == 0 ? CounterImpl.COUNTER_0_0
+					: readCounter(in);
+		}
+		return counters;
+	}
+
+	private static CounterImpl readCounter(final CompactDataInput in)
+			throws IOException {
+		final int missed = in.readVarInt();
+		return CounterImpl.getInstance(missed, in.readVarInt());
+	}
+
+	private void readSourceNode(final SourceNode node) throws IOException {
+		node.setCounters(readCounters(in));
+		final int first = in.readVarInt() - 1;
+		if (first == ISourceNode.UNKNOWN_LINE) {
+			return;
+		}
+		final int count = in.readVarInt();
+		node.offset = first;
+		node.lines = new LineImpl[count];
+		for (int i = 0; i < count; i++) {
+			final int flags = in.readByte();
+			final boolean diff = (flags
+					& CompactCoverageWriter.LINE_DIFF) != 0;
+			if ((flags & CompactCoverageWriter.LINE_CODE) != 0) {
+				final CounterImpl instructions = readCounter(in);
+				node.lines[i] = LineImpl.EMPTY.increment(instructions,
+						readCounter(in), diff);
+			} else {
+				node.lines[i] = LineImpl.EMPTY.increment(
+						CounterImpl.COUNTER_0_0, CounterImpl.COUNTER_0_0,
+						diff);
+			}
+			if ((flags & CompactCoverageWriter.LINE_EXECUTION_COUNT) != 0) {
+				if (node.executionCounts == null) {
+					node.executionCounts = new long[count];
+				}
+				node.executionCounts[i] = in.readVarLong();
+			}
+		}
+	}
+
+	private String readString() throws IOException {
+		final int index = in.readVarInt();
+		if (index == 0) {
+			return null;
+		}
+		if (index == strings.size() + 1) {
+			strings.add(in.readUTF());
+		}
+		return strings.get(index - 1);
+	}
+
+	/**
+	 * Source node with counters and lines read from the input.
+	 */
+	private static class SourceNode extends CoverageNodeImpl
+			implements ISourceNode {
+
+		LineImpl[] lines;
+
+		long[] executionCounts;
+
+		int offset = UNKNOWN_LINE;
+
+		SourceNode(final ElementType elementType, final String name) {
+			super(elementType, name);
+		}
+
+		final void setCounters(final CounterImpl[] counters) {
+			instructionCounter = counters[CounterEntity.INSTRUCTION.ordinal()];
+			branchCounter = counters[CounterEntity.BRANCH.ordinal()];
+			diffBranchCounter = counters[CounterEntity.DIFF_BRANCH.ordinal()];
+			lineCounter = counters[CounterEntity.LINE.ordinal()];
+			diffLineCounter = counters[CounterEntity.DIFF_LINE.ordinal()];
+			complexityCounter = counters[CounterEntity.COMPLEXITY.ordinal()];
+			methodCounter = counters[CounterEntity.METHOD.ordinal()];
+			diffMethodCounter = counters[CounterEntity.DIFF_METHOD.ordinal()];
+			classCounter = counters[CounterEntity.CLASS.ordinal()];
+			diffClassCounter = counters[CounterEntity.DIFF_CLASS.ordinal()];
+		}
+
+		public int getFirstLine() {
+			return offset;
+		}
+
+		public int getLastLine() {
+			return lines == null ? UNKNOWN_LINE : offset + lines.length - 1;
+		}
+
+		public LineImpl getLine(final int nr) {
+			if (lines == null || nr < getFirstLine() || nr > getLastLine()) {
+				return LineImpl.EMPTY;
+			}
+			return lines[nr - offset];
+		}
+
+		public long getExecutionCount(final int nr) {
+			if (executionCounts == null || nr < getFirstLine()
+					|| nr > getLastLine()) {
+				return 0;
+			}
+			return executionCounts[nr - offset];
+		}
+
+	}
+
+	private static class ClassNode extends SourceNode
+			implements IClassCoverage {
+
+		private final long id;
+
+		private final boolean noMatch;
+
+		private final Collection<IMethodCoverage> methods = new ArrayList<IMethodCoverage>();
+
+		String signature;
+
+		String superName;
+
+		String[] interfaces;
+
+		String sourceFileName;
+
+		ClassNode(final String name, final long id, final boolean noMatch) {
+			super(ElementType.CLASS, name);
+			this.id = id;
+			this.noMatch = noMatch;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public boolean isNoMatch() {
+			return noMatch;
+		}
+
+		public String getSignature() {
+			return signature;
+		}
+
+		public String getSuperName() {
+			return superName;
+		}
+
+		public String[] getInterfaceNames() {
+			return interfaces;
+		}
+
+		public String getPackageName() {
+			final int pos = getName().lastIndexOf('/');
+			return pos == -1 ? "" : getName().substring(0, pos);
+		}
+
+		public String getSourceFileName() {
+			return sourceFileName;
+		}
+
+		public Collection<IMethodCoverage> getMethods() {
+			return methods;
+		}
+
+	}
+
+	private static class MethodNode extends SourceNode
+			implements IMethodCoverage {
+
+		private final String desc;
+
+		private final String signature;
+
+		MethodNode(final String name, final String desc,
+				final String signature) {
+			super(ElementType.METHOD, name);
+			this.desc = desc;
+			this.signature = signature;
+		}
+
+		public String getDesc() {
+			return desc;
+		}
+
+		public String getSignature() {
+			return signature;
+		}
+
+	}
+
+	private static class SourceFileNode extends SourceNode
+			implements ISourceFileCoverage {
+
+		private final String packageName;
+
+		SourceFileNode(final String name, final String packageName) {
+			super(ElementType.SOURCEFILE, name);
+			this.packageName = packageName;
+		}
+
+		public String getPackageName() {
+			return packageName;
+		}
+
+	}
+
+}
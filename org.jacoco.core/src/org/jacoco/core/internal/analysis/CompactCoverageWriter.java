@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.internal.data.CompactDataOutput;
+
+/**
+ * Serializes class and source file coverage nodes in a compact form which can
+ * be read again with {@link CompactCoverageReader}. The counters of the nodes
+ * and the counters, diff status and execution count of every line are written
+ * as they are, so the nodes read back are identical to the original ones.
+ *
+ * Strings are written once and referenced by their index afterwards. The
+ * string table is bound to the writer instance, a reader for the same data
+ * must read the same sequence of nodes with a single instance.
+ */
+public class CompactCoverageWriter {
+
+	/** Line flag for lines with instructions or branches */
+	static final int LINE_CODE = 0x01;
+
+	/** Line flag for lines which are part of a diff */
+	static final int LINE_DIFF = 0x02;
+
+	/** Line flag for lines with an execution count */
+	static final int LINE_EXECUTION_COUNT = 0x04;
+
+	/** All counter entities in the order of the counter mask bits */
+	static final CounterEntity[] COUNTER_ENTITIES = CounterEntity.values();
+
+	private final CompactDataOutput out;
+
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+	/**
+	 * Creates a new writer based on the given output.
+	 *
+	 * @param out
+	 *            output to write the nodes to
+	 */
+	public CompactCoverageWriter(final CompactDataOutput out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes all classes and source files of the given package. The name and
+	 * the counters of the package are not written.
+	 *
+	 * @param p
+	 *            package coverage data
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void writePackage(final IPackageCoverage p) throws IOException {
+		out.writeVarInt(p.getClasses().size());
+		for (final IClassCoverage c : p.getClasses()) {
+			writeClass(c);
+		}
+		out.writeVarInt(p.getSourceFiles().size());
+		for (final ISourceFileCoverage s : p.getSourceFiles()) {
+			writeSourceFile(s);
+		}
+	}
+
+	/**
+	 * Writes the given class with all its methods.
+	 *
+	 * @param c
+	 *            class coverage data
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void writeClass(final IClassCoverage c) throws IOException {
+		writeString(c.getName());
+		out.writeLong(c.getId());
+		out.writeBoolean(c.isNoMatch());
+		writeString(c.getSignature());
+		writeString(c.getSuperName());
+		final String[] interfaces = c.getInterfaceNames();
+		if (interfaces == null) {
+			out.writeVarInt(0);
+		} else {
+			out.writeVarInt(interfaces.length + 1);
+			for (final String i : interfaces) {
+				writeString(i);
+			}
+		}
+		writeString(c.getSourceFileName());
+		writeSourceNode(c);
+		out.writeVarInt(c.getMethods().size());
+		for (final IMethodCoverage m : c.getMethods()) {
+			writeString(m.getName());
+			writeString(m.getDesc());
+			writeString(m.getSignature());
+			writeSourceNode(m);
+		}
+	}
+
+	/**
+	 * Writes the given source file. The package name is not written, it is
+	 * supplied when the source file is read.
+	 *
+	 * @param s
+	 *            source file coverage data
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void writeSourceFile(final ISourceFileCoverage s)
+			throws IOException {
+		writeString(s.getName());
+		writeSourceNode(s);
+	}
+
+	/**
+	 * Writes all non-empty counters of the given node. A bit mask in front
+	 * marks the entities with counters.
+	 *
+	 * @param node
+	 *            node to write the counters of
+	 * @param out
+	 *            output to write to
+	 * @throws IOException
+	 *             in case of problems with the output
+	 */
+	public static void writeCounters(final ICoverageNode node,
+			final CompactDataOutput out) throws IOException {
+		int mask = 0;
+		for (int i = 0; i < COUNTER_ENTITIES.length; i++) {
+			if (node.getCounter(COUNTER_ENTITIES[i]).getTotalCount() > 0) {
+				mask |= 1 << i;
+			}
+		}
+		out.writeVarInt(mask);
+		for (int i = 0; i < COUNTER_ENTITIES.length; i++) {
+			if ((mask & 1 << i) != 0) {
+				writeCounter(node.getCounter(COUNTER_ENTITIES[i]), out);
+			}
+		}
+	}
+
+	private static void writeCounter(final ICounter counter,
+			final CompactDataOutput out) throws IOException {
+		out.writeVarInt(counter.getMissedCount());
+		out.writeVarInt(counter.getCoveredCount());
+	}
+
+	private void writeSourceNode(final ISourceNode node) throws IOException {
+		writeCounters(node, out);
+		final int first = node.getFirstLine();
+		if (first == ISourceNode.UNKNOWN_LINE) {
+			out.writeVarInt(0);
+			return;
+		}
+		final int last = node.getLastLine();
+		out.writeVarInt(first + 1);
+		out.writeVarInt(last - first + 1);
+		for (int nr = first; nr <= last; nr++) {
+			writeLine(node.getLine(nr), node.getExecutionCount(nr));
+		}
+	}
+
+	private void writeLine(final ILine line, final long executionCount)
+			throws IOException {
+		final ICounter instructions = line.getInstructionCounter();
+		final ICounter branches = line.getBranchCounter();
+		int flags = 0;
+		if (instructions.getTotalCount() > 0 || branches.getTotalCount() > 0) {
+			flags |= LINE_CODE;
+		}
+		if ((line.getStatus() & ICounter.DIFF_MAGIC) != 0) {
+			flags |= LINE_DIFF;
+		}
+		if (executionCount != 0) {
+			flags |= LINE_EXECUTION_COUNT;
+		}
+		out.writeByte(flags);
+		if ((flags & LINE_CODE) != 0) {
+			writeCounter(instructions, out);
+			writeCounter(branches, out);
+		}
+		if ((flags & LINE_EXECUTION_COUNT) != 0) {
+			out.writeVarLong(executionCount);
+		}
+	}
+
+	/**
+	 * Writes the index of the given string in the string table. Index 0 stands
+	 * for <code>null</code>, new strings get the next free index and are
+	 * written after their index.
+	 */
+	private void writeString(final String value) throws IOException {
+		if (value == null) {
+			out.writeVarInt(0);
+			return;
+		}
+		final Integer index = strings.get(value);
+		if (index != null) {
+			out.writeVarInt(index.intValue());
+			return;
+		}
+		final int newIndex = strings.size() + 1;
+		strings.put(value, Integer.valueOf(newIndex));
+		out.writeVarInt(newIndex);
+		out.writeUTF(value);
+	}
+
+}
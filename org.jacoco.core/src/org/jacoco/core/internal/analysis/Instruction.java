@@ -42,6 +42,7 @@ import org.jacoco.core.analysis.ICounter;
  * <li>{@link #getLine()}</li>
  * <li>{@link #getInstructionCounter()}</li>
  * <li>{@link #getBranchCounter()}</li>
+ * <li>{@link #getExecutionCount()}</li>
  * </ul>
  *
  * For the purpose of filtering instructions can be combined to new
@@ -65,6 +66,8 @@ public class Instruction {
 
 	private int predecessorBranch;
 
+	private long executionCount;
+
 	/**
 	 * New instruction at the given line.
 	 *
@@ -98,6 +101,9 @@ public class Instruction {
 		if (!target.coveredBranches.isEmpty()) {
 			propagateExecutedBranch(this, branch);
 		}
+		if (target.executionCount != 0) {
+			propagateExecutionCount(this, target.executionCount);
+		}
 	}
 
 	/**
@@ -114,10 +120,34 @@ public class Instruction {
 	 *            branch identifier unique for this instruction
 	 */
 	public void addBranch(final boolean executed, final int branch) {
+		addBranch(executed, 0, branch);
+	}
+
+	/**
+	 * Adds a branch to this instruction which execution status and execution
+	 * count is directly derived from a probe. In case the branch is covered
+	 * the status and the count is propagated also to the predecessors of this
+	 * instruction.
+	 *
+	 * Note: This method is not idempotent and must be called exactly once for
+	 * every branch.
+	 *
+	 * @param executed
+	 *            whether the corresponding probe has been executed
+	 * @param count
+	 *            execution count of the corresponding probe or 0 if unknown
+	 * @param branch
+	 *            branch identifier unique for this instruction
+	 */
+	public void addBranch(final boolean executed, final long count,
+			final int branch) {
 		branches++;
 		if (executed) {
 			propagateExecutedBranch(this, branch);
 		}
+		if (count != 0) {
+			propagateExecutionCount(this, count);
+		}
 	}
 
 	private static void propagateExecutedBranch(Instruction insn, int branch) {
@@ -133,6 +163,15 @@ public class Instruction {
 		}
 	}
 
+	private static void propagateExecutionCount(Instruction insn,
+			final long count) {
+		// Every instruction is executed as often as all its branches together
+		while (insn != null) {
+			insn.executionCount += count;
+			insn = insn.predecessor;
+		}
+	}
+
 	/**
 	 * Returns the source line this instruction belongs to.
 	 *
@@ -155,6 +194,7 @@ public class Instruction {
 		result.branches = this.branches;
 		result.coveredBranches.or(this.coveredBranches);
 		result.coveredBranches.or(other.coveredBranches);
+		result.executionCount = this.executionCount + other.executionCount;
 		return result;
 	}
 
@@ -177,6 +217,7 @@ public class Instruction {
 				result.coveredBranches.set(idx++);
 			}
 		}
+		result.executionCount = this.executionCount;
 		return result;
 	}
 
@@ -191,6 +232,16 @@ public class Instruction {
 				: CounterImpl.COUNTER_0_1;
 	}
 
+	/**
+	 * Returns how often this instruction has been executed. The count is only
+	 * available for classes instrumented with probe counters.
+	 *
+	 * @return execution count or 0 if unknown
+	 */
+	public long getExecutionCount() {
+		return executionCount;
+	}
+
 	/**
 	 * Returns the branch coverage counter of this instruction. Only
 	 * instructions with at least 2 outgoing edges report branches.
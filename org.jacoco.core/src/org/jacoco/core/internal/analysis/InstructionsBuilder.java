@@ -33,6 +33,9 @@ class InstructionsBuilder {
 	/** Probe array of the class the analyzed method belongs to. */
 	private final boolean[] probes;
 
+	/** Execution counts of the probes or <code>null</code>. */
+	private final long[] counts;
+
 	/** The line which belong to subsequently added instructions. */
 	private int currentLine;
 
@@ -58,6 +61,9 @@ class InstructionsBuilder {
 	 */
 	private final List<Jump> jumps;
 
+	/** Optional recording of the probe independent method structure. */
+	private final MethodStructure structure;
+
 	/**
 	 * Creates a new builder instance which can be used to analyze a single
 	 * method.
@@ -67,7 +73,26 @@ class InstructionsBuilder {
 	 *            coverage status of every instruction.
 	 */
 	InstructionsBuilder(final boolean[] probes) {
+		this(probes, null, null);
+	}
+
+	/**
+	 * Creates a new builder instance which can be used to analyze a single
+	 * method and additionally records the method structure.
+	 *
+	 * @param probes
+	 *            probe array of the corresponding class used to determine the
+	 *            coverage status of every instruction.
+	 * @param counts
+	 *            execution counts of the probes or <code>null</code>
+	 * @param structure
+	 *            structure to record to or <code>null</code>
+	 */
+	InstructionsBuilder(final boolean[] probes, final long[] counts,
+			final MethodStructure structure) {
 		this.probes = probes;
+		this.counts = counts;
+		this.structure = structure;
 		this.currentLine = ISourceNode.UNKNOWN_LINE;
 		this.currentInsn = null;
 		this.instructions = new HashMap<AbstractInsnNode, Instruction>();
@@ -102,6 +127,9 @@ class InstructionsBuilder {
 	 */
 	void addInstruction(final AbstractInsnNode node) {
 		final Instruction insn = new Instruction(currentLine);
+		if (structure != null) {
+			structure.addInstruction(insn);
+		}
 		final int labelCount = currentLabel.size();
 		if (labelCount > 0) {
 			for (int i = labelCount; --i >= 0;) {
@@ -111,6 +139,9 @@ class InstructionsBuilder {
 		}
 		if (currentInsn != null) {
 			currentInsn.addBranch(insn, 0);
+			if (structure != null) {
+				structure.addBranch(currentInsn, insn, 0);
+			}
 		}
 		currentInsn = insn;
 		instructions.put(node, insn);
@@ -147,7 +178,11 @@ class InstructionsBuilder {
 	 */
 	void addProbe(final int probeId, final int branch) {
 		final boolean executed = probes != null && probes[probeId];
-		currentInsn.addBranch(executed, branch);
+		final long count = counts == null ? 0 : counts[probeId];
+		currentInsn.addBranch(executed, count, branch);
+		if (structure != null) {
+			structure.addProbe(currentInsn, probeId, branch);
+		}
 	}
 
 	/**
@@ -160,7 +195,7 @@ class InstructionsBuilder {
 	Map<AbstractInsnNode, Instruction> getInstructions() {
 		// Wire jumps:
 		for (final Jump j : jumps) {
-			j.wire();
+			j.wire(structure);
 		}
 
 		return instructions;
@@ -178,8 +213,12 @@ class InstructionsBuilder {
 			this.branch = branch;
 		}
 
-		void wire() {
-			source.addBranch(LabelInfo.getInstruction(target), branch);
+		void wire(final MethodStructure structure) {
+			final Instruction targetInsn = LabelInfo.getInstruction(target);
+			source.addBranch(targetInsn, branch);
+			if (structure != null) {
+				structure.addBranch(source, targetInsn, branch);
+			}
 		}
 
 	}
@@ -77,8 +77,8 @@ public class MethodCoverageImpl extends SourceNodeImpl
 
 	@Override
 	public void increment(final ICounter instructions, final ICounter branches,
-			final int line) {
-		super.increment(instructions, branches, line);
+			final int line, final long executionCount) {
+		super.increment(instructions, branches, line, executionCount);
 		// Additionally increment complexity counter:
 		if (branches.getTotalCount() > 1) {
 			final int c = Math.max(0, branches.getCoveredCount() - 1);
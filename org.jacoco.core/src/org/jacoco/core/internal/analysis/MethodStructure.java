@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jacoco.core.internal.analysis.filter.IFilterOutput;
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+
+/**
+ * Probe independent result of the analysis of a single method. The structure
+ * is recorded as the sequence of operations which are applied to
+ * {@link Instruction} objects while the method is analyzed, followed by the
+ * commands issued by the filters. Replaying this sequence with the actual
+ * probe array gives the same coverage as a fresh analysis of the method, but
+ * without parsing the class file again.
+ */
+public class MethodStructure {
+
+	private static final int OP_INSTRUCTION = 0;
+	private static final int OP_BRANCH = 1;
+	private static final int OP_PROBE = 2;
+	private static final int OP_IGNORE = 3;
+	private static final int OP_MERGE = 4;
+	private static final int OP_REPLACE = 5;
+
+	private final String name;
+
+	private final String desc;
+
+	private final String signature;
+
+	private int[] ops;
+
+	private int size;
+
+	private int instructionCount;
+
+	/** only used while recording */
+	private Map<Instruction, Integer> indexes;
+
+	/**
+	 * Creates a new empty structure for recording.
+	 *
+	 * @param name
+	 *            name of the method
+	 * @param desc
+	 *            method descriptor
+	 * @param signature
+	 *            generic signature or <code>null</code>
+	 */
+	public MethodStructure(final String name, final String desc,
+			final String signature) {
+		this(name, desc, signature, new int[32], 0);
+		this.indexes = new HashMap<Instruction, Integer>();
+	}
+
+	private MethodStructure(final String name, final String desc,
+			final String signature, final int[] ops, final int size) {
+		this.name = name;
+		this.desc = desc;
+		this.signature = signature;
+		this.ops = ops;
+		this.size = size;
+		for (int i = 0; i < size; i += length(ops, i)) {
+			if (ops[i] == OP_INSTRUCTION) {
+				instructionCount++;
+			}
+		}
+	}
+
+	/**
+	 * @return name of the method
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return method descriptor
+	 */
+	public String getDesc() {
+		return desc;
+	}
+
+	/**
+	 * @return generic signature or <code>null</code>
+	 */
+	public String getSignature() {
+		return signature;
+	}
+
+	// === Recording ===
+
+	void addInstruction(final Instruction instruction) {
+		indexes.put(instruction, Integer.valueOf(instructionCount++));
+		append(OP_INSTRUCTION, instruction.getLine());
+	}
+
+	void addBranch(final Instruction source, final Instruction target,
+			final int branch) {
+		append(OP_BRANCH, indexOf(source), indexOf(target), branch);
+	}
+
+	void addProbe(final Instruction instruction, final int probeId,
+			final int branch) {
+		append(OP_PROBE, indexOf(instruction), probeId, branch);
+	}
+
+	private int indexOf(final Instruction instruction) {
+		return indexes.get(instruction).intValue();
+	}
+
+	/**
+	 * Creates a filter output that records all filter commands and forwards
+	 * them to the given delegate.
+	 *
+	 * @param instructions
+	 *            instructions of the method
+	 * @param delegate
+	 *            output to forward filter commands to
+	 * @return recording filter output
+	 */
+	IFilterOutput recordFilterOutput(
+			final Map<AbstractInsnNode, Instruction> instructions,
+			final IFilterOutput delegate) {
+		return new IFilterOutput() {
+
+			public void ignore(final AbstractInsnNode fromInclusive,
+					final AbstractInsnNode toInclusive) {
+				for (AbstractInsnNode i = fromInclusive; i != toInclusive; i = i
+						.getNext()) {
+					ignore(i);
+				}
+				ignore(toInclusive);
+				delegate.ignore(fromInclusive, toInclusive);
+			}
+
+			private void ignore(final AbstractInsnNode node) {
+				final Instruction instruction = instructions.get(node);
+				if (instruction != null) {
+					append(OP_IGNORE, indexOf(instruction));
+				}
+			}
+
+			public void merge(final AbstractInsnNode i1,
+					final AbstractInsnNode i2) {
+				append(OP_MERGE, indexOf(instructions.get(i1)),
+						indexOf(instructions.get(i2)));
+				delegate.merge(i1, i2);
+			}
+
+			public void replaceBranches(final AbstractInsnNode source,
+					final Set<AbstractInsnNode> newTargets) {
+				append(OP_REPLACE, indexOf(instructions.get(source)),
+						newTargets.size());
+				for (final AbstractInsnNode t : newTargets) {
+					append(indexOf(instructions.get(t)));
+				}
+				delegate.replaceBranches(source, newTargets);
+			}
+		};
+	}
+
+	private void append(final int... values) {
+		if (size + values.length > ops.length) {
+			final int[] newOps = new int[Math.max(ops.length * 2,
+					size + values.length)];
+			System.arraycopy(ops, 0, newOps, 0, size);
+			ops = newOps;
+		}
+		System.arraycopy(values, 0, ops, size, values.length);
+		size += values.length;
+	}
+
+	private static int length(final int[] ops, final int pos) {
+		switch (ops[pos]) {
+		case OP_INSTRUCTION:
+		case OP_IGNORE:
+			return 2;
+		case OP_MERGE:
+			return 3;
+		case OP_BRANCH:
+		case OP_PROBE:
+			return 4;
+		case OP_REPLACE:
+			return 3 + ops[pos + 2];
+		default:
+			throw new IllegalStateException("Unknown operation " + ops[pos]);
+		}
+	}
+
+	// === Replay ===
+
+	/**
+	 * Calculates the coverage of this method for the given probes.
+	 *
+	 * @param probes
+	 *            execution data for the class or <code>null</code>
+	 * @param coverage
+	 *            the result is added to this coverage node
+	 */
+	public void calculate(final boolean[] probes,
+			final MethodCoverageImpl coverage) {
+		calculate(probes, null, coverage);
+	}
+
+	/**
+	 * Calculates the coverage of this method for the given probes and
+	 * execution counts.
+	 *
+	 * @param probes
+	 *            execution data for the class or <code>null</code>
+	 * @param counts
+	 *            execution counts of the probes or <code>null</code>
+	 * @param coverage
+	 *            the result is added to this coverage node
+	 */
+	public void calculate(final boolean[] probes, final long[] counts,
+			final MethodCoverageImpl coverage) {
+		final Instruction[] instructions = new Instruction[instructionCount];
+		// The calculator operates on instruction nodes, as we don't have the
+		// original nodes we use placeholders with the same identity semantic:
+		final AbstractInsnNode[] nodes = new AbstractInsnNode[instructionCount];
+		MethodCoverageCalculator calculator = null;
+		int count = 0;
+		for (int i = 0; i < size; i += length(ops, i)) {
+			switch (ops[i]) {
+			case OP_INSTRUCTION:
+				instructions[count++] = new Instruction(ops[i + 1]);
+				break;
+			case OP_BRANCH:
+				instructions[ops[i + 1]].addBranch(instructions[ops[i + 2]],
+						ops[i + 3]);
+				break;
+			case OP_PROBE:
+				instructions[ops[i + 1]].addBranch(
+						probes != null && probes[ops[i + 2]],
+						counts == null ? 0 : counts[ops[i + 2]], ops[i + 3]);
+				break;
+			default:
+				if (calculator == null) {
+					calculator = createCalculator(instructions, nodes);
+				}
+				replayFilterCommand(i, calculator, nodes);
+				break;
+			}
+		}
+		if (calculator == null) {
+			calculator = createCalculator(instructions, nodes);
+		}
+		calculator.calculate(coverage);
+	}
+
+	private static MethodCoverageCalculator createCalculator(
+			final Instruction[] instructions, final AbstractInsnNode[] nodes) {
+		final Map<AbstractInsnNode, Instruction> map = new HashMap<AbstractInsnNode, Instruction>();
+		for (int i = 0; i < instructions.length; i++) {
+			nodes[i] = new InsnNode(Opcodes.NOP);
+			map.put(nodes[i], instructions[i]);
+		}
+		return new MethodCoverageCalculator(map);
+	}
+
+	private void replayFilterCommand(final int pos,
+			final MethodCoverageCalculator calculator,
+			final AbstractInsnNode[] nodes) {
+		switch (ops[pos]) {
+		case OP_IGNORE:
+			final AbstractInsnNode node = nodes[ops[pos + 1]];
+			calculator.ignore(node, node);
+			break;
+		case OP_MERGE:
+			calculator.merge(nodes[ops[pos + 1]], nodes[ops[pos + 2]]);
+			break;
+		case OP_REPLACE:
+			final Set<AbstractInsnNode> targets = new LinkedHashSet<AbstractInsnNode>();
+			for (int j = 0; j < ops[pos + 2]; j++) {
+				targets.add(nodes[ops[pos + 3 + j]]);
+			}
+			calculator.replaceBranches(nodes[ops[pos + 1]], targets);
+			break;
+		default:
+			throw new IllegalStateException("Unknown operation " + ops[pos]);
+		}
+	}
+
+	// === Serialization ===
+
+	/**
+	 * Writes this structure to the given output.
+	 *
+	 * @param out
+	 *            output to write to
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public void write(final CompactDataOutput out) throws IOException {
+		out.writeUTF(name);
+		out.writeUTF(desc);
+		writeOptionalUTF(out, signature);
+		out.writeVarInt(size);
+		for (int i = 0; i < size; i++) {
+			out.writeVarInt(ops[i]);
+		}
+	}
+
+	/**
+	 * Reads a structure which has been written with
+	 * {@link #write(CompactDataOutput)}.
+	 *
+	 * @param in
+	 *            input to read from
+	 * @param stringPool
+	 *            shared pool to minimize the number of {@link String}
+	 *            instances
+	 * @return structure read from the input
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public static MethodStructure read(final CompactDataInput in,
+			final StringPool stringPool) throws IOException {
+		final String name = stringPool.get(in.readUTF());
+		final String desc = stringPool.get(in.readUTF());
+		final String signature = stringPool.get(readOptionalUTF(in));
+		final int size = in.readVarInt();
+		final int[] ops = new int[size];
+		for (int i = 0; i < size; i++) {
+			ops[i] = in.readVarInt();
+		}
+		return new MethodStructure(name, desc, signature, ops, size);
+	}
+
+	static void writeOptionalUTF(final CompactDataOutput out,
+			final String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	static String readOptionalUTF(final CompactDataInput in)
+			throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+}
@@ -27,6 +27,9 @@ public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 
 	private LineImpl[] lines;
 
+	/** execution counts of the lines or <code>null</code> if not available */
+	private long[] executionCounts;
+
 	private int[][] diffineRanges;
 
 	/** first line number in {@link #lines} */
@@ -89,6 +92,12 @@ public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 				final LineImpl[] newLines = new LineImpl[newLength];
 				System.arraycopy(lines, 0, newLines, offset - newFirst,
 						lines.length);
+				if (executionCounts != null) {
+					final long[] newCounts = new long[newLength];
+					System.arraycopy(executionCounts, 0, newCounts,
+							offset - newFirst, executionCounts.length);
+					executionCounts = newCounts;
+				}
 				offset = newFirst;
 				lines = newLines;
 			}
@@ -121,6 +130,7 @@ public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 				final ILine line = child.getLine(i);
 				incrementLine(line.getInstructionCounter(),
 						line.getBranchCounter(), i);
+				incrementExecutionCount(child.getExecutionCount(i), i);
 			}
 		}
 	}
@@ -139,13 +149,45 @@ public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 	 */
 	public void increment(final ICounter instructions, final ICounter branches,
 			final int line) {
+		increment(instructions, branches, line, 0);
+	}
+
+	/**
+	 * Increments instructions and branches by the given counter values. If a
+	 * optional line number is specified the instructions and branches are added
+	 * to the given line and the execution count of the line is raised to the
+	 * given execution count. The line counter is incremented accordingly.
+	 *
+	 * @param instructions
+	 *            instructions to add
+	 * @param branches
+	 *            branches to add
+	 * @param line
+	 *            optional line number or {@link ISourceNode#UNKNOWN_LINE}
+	 * @param executionCount
+	 *            execution count of the instructions or 0 if unknown
+	 */
+	public void increment(final ICounter instructions, final ICounter branches,
+			final int line, final long executionCount) {
 		if (line != UNKNOWN_LINE) {
 			incrementLine(instructions, branches, line);
+			incrementExecutionCount(executionCount, line);
 		}
 		instructionCounter = instructionCounter.increment(instructions);
 		branchCounter = branchCounter.increment(branches);
 	}
 
+	private void incrementExecutionCount(final long executionCount,
+			final int line) {
+		if (executionCount == 0) {
+			return;
+		}
+		if (executionCounts == null) {
+			executionCounts = new long[lines.length];
+		}
+		final int idx = line - offset;
+		executionCounts[idx] = Math.max(executionCounts[idx], executionCount);
+	}
 	private static int binarySearchInRange(int[][] ranges, int targetRange) {
 		int low = 0;
 		int high = ranges.length - 1;
@@ -230,4 +272,12 @@ public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 		return line == null ? LineImpl.EMPTY : line;
 	}
 
+	public long getExecutionCount(final int nr) {
+		if (executionCounts == null || nr < getFirstLine()
+				|| nr > getLastLine()) {
+			return 0;
+		}
+		return executionCounts[nr - offset];
+	}
+
 }
@@ -23,6 +23,28 @@ import java.util.List;
 import java.util.Map;
 
 public class AstGenerator {
+    /**
+     * Parser used for java sources, either {@link #PARSER_JDT} (default) or
+     * {@link #PARSER_SCANNER}
+     */
+    private static final String JACOCO_DIFF_PARSER = "jacoco.diff.parser";
+
+    /** Parser mode which creates a full JDT syntax tree */
+    public static final String PARSER_JDT = "jdt";
+
+    /** Parser mode which only scans for type and method boundaries */
+    public static final String PARSER_SCANNER = "scanner";
+
+    /**
+     * get the parser mode selected by the system property <code>jacoco.diff.parser</code>.
+     *
+     * @return parser mode
+     */
+    public static String getParser() {
+        String parser = System.getProperty(JACOCO_DIFF_PARSER);
+        return PARSER_SCANNER.equals(parser) ? PARSER_SCANNER : PARSER_JDT;
+    }
+
     public static List<MethodInfo> parseClassFile(String classFilePath){
         byte[] input = null;
         try (BufferedInputStream bufferedInputStream = new BufferedInputStream(
@@ -38,14 +60,28 @@ public class AstGenerator {
     }
 
     public static List<MethodInfo> parseClassContent(String javaContent) {
+        return parseClassContent(javaContent, getParser());
+    }
+
+    /**
+     * parse the methods of a java source with the given parser mode.
+     *
+     * @param javaContent java source
+     * @param parser parser mode
+     * @return methods' info
+     */
+    public static List<MethodInfo> parseClassContent(String javaContent, String parser) {
+        if (PARSER_SCANNER.equals(parser)) {
+            return MethodBoundaryScanner.parse(javaContent);
+        }
         ASTParser astParser = ASTParser.newParser(AST.JLS8);
         Map<String, String> options = JavaCore.getOptions();
 
         JavaCore.setComplianceOptions(JavaCore.VERSION_1_8, options);
         astParser.setCompilerOptions(options);
         astParser.setKind(ASTParser.K_COMPILATION_UNIT);
-        astParser.setResolveBindings(true);
-        astParser.setBindingsRecovery(true);
+        // bindings can't be resolved without class path and are not used
+        astParser.setResolveBindings(false);
         astParser.setStatementsRecovery(true);
         astParser.setSource(javaContent.toCharArray());
 
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis.diff;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.jacoco.core.internal.InputStreams;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Computes the changed methods between the compiled classes of two builds.
+ * Methods are identified by name and descriptor, the same way the analyzer
+ * identifies them, so overloaded methods, lambda bodies and synthetic methods
+ * are distinguished. A method is considered as changed if it does not exist in
+ * the base build or if the hash of its normalized instruction stream differs.
+ * Line numbers, local variable names and stack map frames are not part of the
+ * hash, labels are replaced by their position within the method.
+ */
+public class BytecodeDiff {
+
+    private static final int SKIP = ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+    private BytecodeDiff() {
+    }
+
+    /**
+     * Compares the classes of two builds. Locations may be directories, class
+     * files or archives. Classes which only exist in the current build are
+     * reported with all of their methods, removed classes are ignored.
+     *
+     * @param baseLocations class locations of the base build
+     * @param currentLocations class locations of the current build
+     * @return VM names of changed classes with the name and descriptor of their changed methods
+     * @throws IOException if a location can not be read
+     */
+    public static Map<String, Set<String>> getDiffs(List<File> baseLocations, List<File> currentLocations)
+            throws IOException {
+        Map<String, Map<String, String>> base = fingerprints(baseLocations);
+        Map<String, Map<String, String>> current = fingerprints(currentLocations);
+        Map<String, Set<String>> diffs = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> entry : current.entrySet()) {
+            Map<String, String> baseMethods = base.getOrDefault(entry.getKey(), new HashMap<>());
+            Set<String> changed = entry.getValue().entrySet().stream()
+                    .filter(method -> !method.getValue().equals(baseMethods.get(method.getKey())))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+            if (!changed.isEmpty()) {
+                diffs.put(entry.getKey(), changed);
+            }
+        }
+        return diffs;
+    }
+
+    /**
+     * Reads the method fingerprints of all classes in the given locations.
+     *
+     * @param locations directories, class files or archives
+     * @return VM names of all classes with their method fingerprints
+     * @throws IOException if a location can not be read
+     */
+    public static Map<String, Map<String, String>> fingerprints(List<File> locations) throws IOException {
+        List<byte[]> classes = new ArrayList<>();
+        for (File location : locations) {
+            collect(location, classes);
+        }
+        return classes.parallelStream()
+                .map(InstrSupport::classReaderFor)
+                .filter(reader -> (reader.getAccess() & Opcodes.ACC_MODULE) == 0)
+                .collect(Collectors.toMap(ClassReader::getClassName, BytecodeDiff::fingerprint, (a, b) -> a));
+    }
+
+    /**
+     * Computes the fingerprints of all methods of the given class.
+     *
+     * @param buffer class definition
+     * @return name and descriptor of each method with the hash of its normalized instructions
+     */
+    public static Map<String, String> fingerprint(byte[] buffer) {
+        return fingerprint(InstrSupport.classReaderFor(buffer));
+    }
+
+    private static Map<String, String> fingerprint(ClassReader reader) {
+        Map<String, String> methods = new LinkedHashMap<>();
+        reader.accept(new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                             String[] exceptions) {
+                return new InstructionHasher() {
+                    @Override
+                    public void visitEnd() {
+                        methods.put(name + desc, getHash());
+                    }
+                };
+            }
+        }, SKIP);
+        return methods;
+    }
+
+    private static void collect(File location, List<byte[]> classes) throws IOException {
+        if (location.isDirectory()) {
+            List<Path> files;
+            try (Stream<Path> stream = Files.walk(location.toPath())) {
+                files = stream.filter(path -> path.toString().endsWith(".class")).collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                classes.add(Files.readAllBytes(file));
+            }
+        } else if (location.getName().endsWith(".class")) {
+            classes.add(Files.readAllBytes(location.toPath()));
+        } else if (location.isFile()) {
+            try (ZipFile zip = new ZipFile(location)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    // skip multi-release versions to get a single definition per class
+                    if (entry.getName().endsWith(".class") && !entry.getName().startsWith("META-INF/")) {
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            classes.add(InputStreams.readFully(in));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes all instructions and exception handlers of a method to a MD5
+     * digest. Labels are numbered in the order of their first occurrence.
+     */
+    private static class InstructionHasher extends MethodVisitor {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private final DataOutputStream out = new DataOutputStream(buffer);
+
+        private final Map<Label, Integer> labels = new HashMap<>();
+
+        InstructionHasher() {
+            super(InstrSupport.ASM_API_VERSION);
+        }
+
+        String getHash() {
+            try {
+                MessageDigest md5 = MessageDigest.getInstance("MD5");
+                return Base64.getEncoder().encodeToString(md5.digest(buffer.toByteArray()));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeInts(int... values) {
+            try {
+                for (int value : values) {
+                    out.writeInt(value);
+                }
+            } catch (IOException e) {
+                // can't happen for a byte array
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeValues(Object... values) {
+            try {
+                for (Object value : values) {
+                    out.writeUTF(String.valueOf(value));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeLabel(Label label) {
+            Integer index = labels.get(label);
+            if (index == null) {
+                index = labels.size();
+                labels.put(label, index);
+            }
+            writeInts(index.intValue());
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            writeInts(opcode);
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            writeInts(opcode, operand);
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            writeInts(opcode, var);
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            writeInts(opcode);
+            writeValues(type);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+            writeInts(opcode);
+            writeValues(owner, name, desc);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+            writeInts(opcode);
+            writeValues(owner, name, desc, itf);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+            writeInts(Opcodes.INVOKEDYNAMIC);
+            writeValues(name, desc, bsm);
+            writeValues(bsmArgs);
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            writeInts(opcode);
+            writeLabel(label);
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            writeInts(-1);
+            writeLabel(label);
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            writeInts(Opcodes.LDC);
+            writeValues(value.getClass().getName(), value);
+        }
+
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            writeInts(Opcodes.IINC, var, increment);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... targets) {
+            writeInts(Opcodes.TABLESWITCH, min, max);
+            writeLabel(dflt);
+            for (Label target : targets) {
+                writeLabel(target);
+            }
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] targets) {
+            writeInts(Opcodes.LOOKUPSWITCH);
+            writeInts(keys);
+            writeLabel(dflt);
+            for (Label target : targets) {
+                writeLabel(target);
+            }
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String desc, int dims) {
+            writeInts(Opcodes.MULTIANEWARRAY, dims);
+            writeValues(desc);
+        }
+
+        @Override
+        public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+            writeInts(-2);
+            writeLabel(start);
+            writeLabel(end);
+            writeLabel(handler);
+            writeValues(type);
+        }
+    }
+}
@@ -12,15 +12,33 @@
  *******************************************************************************/
 package org.jacoco.core.internal.analysis.diff;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class DiffClassRegistry {
     private static final String JACOCO_DIFF_MODE = "jacoco.diff.mode";
 
     private static final String JACOCO_MERGE_ID = "merge.id";
 
+    /**
+     * Class locations of the base build, separated by the platform's path
+     * separator. If set together with {@link #JACOCO_DIFF_CLASSES} diff
+     * methods are computed from the compiled classes instead of the sources.
+     */
+    private static final String JACOCO_DIFF_BASE_CLASSES = "jacoco.diff.baseClasses";
+
+    /**
+     * Class locations of the current build, separated by the platform's path
+     * separator.
+     */
+    private static final String JACOCO_DIFF_CLASSES = "jacoco.diff.classes";
+
     private static final boolean DIFF_MODE = Boolean.parseBoolean(System.getProperty(JACOCO_DIFF_MODE));
 
     private static final String MERGE_REQ_ID = System.getProperty(JACOCO_MERGE_ID);
@@ -38,6 +56,12 @@ public class DiffClassRegistry {
      */
     private static final Map<String, int[][]> classLineRanges = new ConcurrentHashMap<>();
 
+    /**
+     * Diff class with name and descriptor of its diff methods, computed from
+     * compiled classes
+     */
+    private static final Map<String, Set<String>> classMethodKeys = new ConcurrentHashMap<>();
+
     /**
      * get diff methods' info by a diff class name with full package.
      *
@@ -48,6 +72,45 @@ public class DiffClassRegistry {
         return classMethods.get(className);
     }
 
+    /**
+     * check whether a class contains diff methods.
+     *
+     * @param className class name with full package
+     * @return true if the class has diff methods
+     */
+    public static boolean isDiffClass(String className) {
+        return classMethodKeys.containsKey(className) || classMethods.containsKey(className);
+    }
+
+    /**
+     * check whether a method of a class is one of the class's diff methods.
+     * If diff methods have been computed from compiled classes the method is
+     * identified by name and descriptor, otherwise by name only.
+     *
+     * @param className class name with full package
+     * @param methodName method name
+     * @param desc method descriptor
+     * @return true if the method is a diff method
+     */
+    public static boolean isDiffMethod(String className, String methodName, String desc) {
+        Set<String> keys = classMethodKeys.get(className);
+        if (keys != null) {
+            return keys.contains(methodName + desc);
+        }
+        List<MethodInfo> methods = classMethods.get(className);
+        return methods != null && methods.stream().anyMatch(methodInfo -> methodInfo.methodName.equals(methodName));
+    }
+
+    /**
+     * update class's diff methods computed from compiled classes
+     *
+     * @param className class name with full package
+     * @param methodKeys name and descriptor of each diff method
+     */
+    public static void putDiffMethodKeysOfClass(String className, Set<String> methodKeys) {
+        classMethodKeys.put(className, methodKeys);
+    }
+
     /**
      * update class's diff methods
      *
@@ -111,10 +174,23 @@ public class DiffClassRegistry {
         String baseBranch = System.getProperty("baseBranch");
         String curBranch = System.getProperty("curBranch");
         String projectDir = System.getProperty("projectDir");
-        if (isEmpty(baseBranch) || isEmpty(projectDir)) {
-            return;
+        if (!isEmpty(baseBranch) && !isEmpty(projectDir)) {
+            DiffClassRegistry.parseDiffClassInfo(GitTool.getDiffs(projectDir, curBranch, baseBranch));
+        }
+        String baseClasses = System.getProperty(JACOCO_DIFF_BASE_CLASSES);
+        String classes = System.getProperty(JACOCO_DIFF_CLASSES);
+        if (!isEmpty(baseClasses) && !isEmpty(classes)) {
+            try {
+                classMethodKeys.putAll(BytecodeDiff.getDiffs(toFiles(baseClasses), toFiles(classes)));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
-        DiffClassRegistry.parseDiffClassInfo(GitTool.getDiffs(projectDir, curBranch, baseBranch));
+    }
+
+    private static List<File> toFiles(String path) {
+        return Arrays.stream(path.split(File.pathSeparator)).filter(s -> !s.isEmpty()).map(File::new)
+                .collect(Collectors.toList());
     }
 
     private static boolean isEmpty(String str) {
@@ -55,6 +55,13 @@ public class GitTool {
 
     private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(10);
 
+    /**
+     * Directory for the persistent method fingerprint cache, by default
+     * <code>jacoco/fingerprints</code> in the git directory. Fingerprints of
+     * each parser mode are stored in a separate sub-directory.
+     */
+    private static final String JACOCO_DIFF_CACHE_DIR = "jacoco.diff.cacheDir";
+
     /**
      * get diff between branch
      *
@@ -90,6 +97,8 @@ public class GitTool {
                                     diffEntry.getChangeType().equals(DiffEntry.ChangeType.MODIFY))
                             .collect(Collectors.toList());
 
+            MethodFingerprintCache cache = MethodFingerprintCache.forDirectory(getCacheDirectory(repository));
+
             DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
             diffFormatter.setRepository(repository);
             diffFormatter.setContext(0);
@@ -122,11 +131,13 @@ public class GitTool {
 
                 CompletableFuture<ClassInfo> future = CompletableFuture.supplyAsync(() -> {
                     List<MethodInfo> diffMethods;
-                    List<MethodInfo> newMethodInfo = getMethodInfoList(repository, newTree, entry.getNewPath());
+                    List<MethodInfo> newMethodInfo =
+                            getMethodInfoList(repository, newTree, entry.getNewPath(), entry.getNewId(), cache);
                     if (newMethodInfo.isEmpty()) {
                         return null;
                     }
-                    List<MethodInfo> oldMethodInfo = getMethodInfoList(repository, oldTree, entry.getOldPath());
+                    List<MethodInfo> oldMethodInfo =
+                            getMethodInfoList(repository, oldTree, entry.getOldPath(), entry.getOldId(), cache);
                     if (oldMethodInfo.isEmpty()) {
                         // new class
                         diffMethods = newMethodInfo;
@@ -149,14 +160,35 @@ public class GitTool {
         }
     }
 
-    private static List<MethodInfo> getMethodInfoList(Repository repository, RevTree newTree, String fileName) {
-        String javaContent;
-        if (fileName.equals("/dev/null")) {
+    private static File getCacheDirectory(Repository repository) {
+        String cacheDir = System.getProperty(JACOCO_DIFF_CACHE_DIR);
+        File base;
+        if (isEmpty(cacheDir)) {
+            base = new File(repository.getDirectory(), "jacoco" + File.separator + "fingerprints");
+        } else {
+            base = new File(cacheDir);
+        }
+        return new File(base, AstGenerator.getParser());
+    }
+
+    /**
+     * Parses the methods of the given file, blobs which have been parsed
+     * before are taken from the cache.
+     */
+    private static List<MethodInfo> getMethodInfoList(Repository repository, RevTree tree, String fileName,
+                                                      AbbreviatedObjectId id, MethodFingerprintCache cache) {
+        if (fileName.equals(DiffEntry.DEV_NULL)) {
             return Collections.emptyList();
         }
         try {
-            javaContent = getContent(repository, newTree, fileName);
-            return AstGenerator.parseClassContent(javaContent);
+            ObjectId blobId = id != null && id.isComplete() ? id.toObjectId() : getBlobId(repository, tree, fileName);
+            String key = blobId.name();
+            List<MethodInfo> methods = cache.get(key);
+            if (methods == null) {
+                methods = AstGenerator.parseClassContent(getContent(repository, blobId));
+                cache.put(key, methods);
+            }
+            return methods;
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -178,14 +210,17 @@ public class GitTool {
         }
     }
 
-    private static String getContent(Repository repo, RevTree tree, String path) throws IOException {
+    private static ObjectId getBlobId(Repository repo, RevTree tree, String path) throws IOException {
         try (TreeWalk treeWalk = TreeWalk.forPath(repo, path, tree)) {
-            ObjectId blobId = treeWalk.getObjectId(0);
-            try (ObjectReader objectReader = repo.newObjectReader()) {
-                ObjectLoader objectLoader = objectReader.open(blobId);
-                byte[] bytes = objectLoader.getBytes();
-                return new String(bytes, StandardCharsets.UTF_8);
-            }
+            return treeWalk.getObjectId(0);
+        }
+    }
+
+    private static String getContent(Repository repo, ObjectId blobId) throws IOException {
+        try (ObjectReader objectReader = repo.newObjectReader()) {
+            ObjectLoader objectLoader = objectReader.open(blobId);
+            byte[] bytes = objectLoader.getBytes();
+            return new String(bytes, StandardCharsets.UTF_8);
         }
     }
 
@@ -0,0 +1,456 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis.diff;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lightweight alternative to the JDT based parsing in {@link AstGenerator}.
+ * The source is only split into tokens, comments and whitespace are dropped.
+ * Based on the bracket structure of the tokens the boundaries of types and
+ * methods are detected, no syntax tree is created. The fingerprint of a
+ * method is the hash of its normalized tokens, so changes of formatting or
+ * comments do not mark a method as changed.
+ * <p>
+ * The scanner assumes syntactically valid source code. Class names are
+ * created like the binary names of javac, e.g. <code>pkg.Outer$Inner</code>
+ * for member classes and <code>pkg.Outer$1</code> for anonymous classes.
+ */
+public class MethodBoundaryScanner {
+
+    private final List<String> tokens;
+
+    /** index of the matching bracket for every bracket token */
+    private final int[] match;
+
+    private final Map<String, Integer> counters = new HashMap<>();
+
+    private final List<MethodInfo> methods = new ArrayList<>();
+
+    private String packageName;
+
+    private MethodBoundaryScanner(String source) {
+        tokens = tokenize(source);
+        match = matchBrackets(tokens);
+    }
+
+    /**
+     * Scans the given java source for methods.
+     *
+     * @param source content of a java source file
+     * @return all methods with body or abstract declaration in the order of their appearance
+     */
+    public static List<MethodInfo> parse(String source) {
+        MethodBoundaryScanner scanner = new MethodBoundaryScanner(source);
+        scanner.scanCompilationUnit();
+        return scanner.methods;
+    }
+
+    // === Tokenizer ===
+
+    static List<String> tokenize(String source) {
+        List<String> tokens = new ArrayList<>();
+        int length = source.length();
+        int i = 0;
+        while (i < length) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '/') {
+                while (i < length && source.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '*') {
+                int end = source.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (source.startsWith("\"\"\"", i)) {
+                int end = i + 3;
+                while (end < length && !source.startsWith("\"\"\"", end)) {
+                    end += source.charAt(end) == '\\' ? 2 : 1;
+                }
+                end = Math.min(end + 3, length);
+                tokens.add(source.substring(i, end));
+                i = end;
+            } else if (c == '"' || c == '\'') {
+                int end = i + 1;
+                while (end < length && source.charAt(end) != c && source.charAt(end) != '\n') {
+                    end += source.charAt(end) == '\\' ? 2 : 1;
+                }
+                end = Math.min(end + 1, length);
+                tokens.add(source.substring(i, end));
+                i = end;
+            } else if (Character.isJavaIdentifierPart(c)) {
+                // identifiers, keywords and numbers
+                int end = i + 1;
+                while (end < length && (Character.isJavaIdentifierPart(source.charAt(end))
+                        || (Character.isDigit(c) && source.charAt(end) == '.'))) {
+                    end++;
+                }
+                tokens.add(source.substring(i, end));
+                i = end;
+            } else if (source.startsWith("...", i)) {
+                tokens.add("...");
+                i += 3;
+            } else {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static int[] matchBrackets(List<String> tokens) {
+        int[] match = new int[tokens.size()];
+        Deque<Integer> open = new ArrayDeque<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            match[i] = -1;
+            String t = tokens.get(i);
+            if (t.equals("(") || t.equals("{") || t.equals("[")) {
+                open.push(i);
+            } else if ((t.equals(")") || t.equals("}") || t.equals("]")) && !open.isEmpty()) {
+                int start = open.pop();
+                match[start] = i;
+                match[i] = start;
+            }
+        }
+        // unbalanced brackets end with the source
+        while (!open.isEmpty()) {
+            match[open.pop()] = tokens.size();
+        }
+        return match;
+    }
+
+    // === Structure ===
+
+    private void scanCompilationUnit() {
+        int i = 0;
+        while (i < tokens.size()) {
+            String t = tokens.get(i);
+            if (t.equals("package")) {
+                int end = find(i, ";");
+                packageName = join(i + 1, end, false);
+                i = end + 1;
+            } else if (t.equals("import")) {
+                i = find(i, ";") + 1;
+            } else {
+                i = scanMembers(null, false, false, i, tokens.size());
+            }
+        }
+    }
+
+    /**
+     * Scans member declarations of a type body in the range [from, to).
+     *
+     * @return position after the range
+     */
+    private int scanMembers(String owner, boolean anonymous, boolean isEnum, int from, int to) {
+        int i = from;
+        if (isEnum) {
+            i = scanEnumConstants(owner, i, to);
+        }
+        int start = i;
+        while (i < to) {
+            String t = tokens.get(i);
+            if (t.equals(";") || t.equals("}")) {
+                start = ++i;
+            } else if (t.equals("@") && !isToken(i + 1, "interface")) {
+                i = skipAnnotation(i);
+            } else if (t.equals("{")) {
+                // initializer block
+                int end = match[i];
+                scanCode(owner, i + 1, end);
+                start = i = end + 1;
+            } else if (isTypeDeclaration(i)) {
+                i = scanType(owner, i, false);
+                start = i;
+            } else if (t.equals("(")) {
+                i = scanMethod(owner, anonymous, start, i);
+                start = i;
+            } else if (t.equals("=")) {
+                int end = findInCode(i, to, ";");
+                scanCode(owner, i + 1, end);
+                start = i = end + 1;
+            } else {
+                i++;
+            }
+        }
+        return to + 1;
+    }
+
+    private int scanEnumConstants(String owner, int from, int to) {
+        int i = from;
+        while (i < to) {
+            String t = tokens.get(i);
+            if (t.equals(";")) {
+                return i + 1;
+            } else if (t.equals("@")) {
+                i = skipAnnotation(i);
+            } else if (t.equals("(")) {
+                scanCode(owner, i + 1, match[i]);
+                i = match[i] + 1;
+            } else if (t.equals("{")) {
+                int end = match[i];
+                scanMembers(nextAnonymousName(owner), true, false, i + 1, end);
+                i = end + 1;
+            } else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Scans the type declaration starting with the keyword at the given
+     * position.
+     *
+     * @return position after the type body
+     */
+    private int scanType(String owner, int keyword, boolean local) {
+        boolean isEnum = tokens.get(keyword).equals("enum");
+        int nameIndex = tokens.get(keyword).equals("@") ? keyword + 2 : keyword + 1;
+        String simpleName = tokens.get(nameIndex);
+        String name;
+        if (owner == null) {
+            name = packageName == null ? simpleName : packageName + "." + simpleName;
+        } else if (local) {
+            name = owner + "$" + nextIndex(owner + "$" + simpleName) + simpleName;
+        } else {
+            name = owner + "$" + simpleName;
+        }
+        int body = nameIndex;
+        while (body < tokens.size() && !tokens.get(body).equals("{")) {
+            body = tokens.get(body).equals("(") ? match[body] + 1 : body + 1;
+        }
+        if (body >= tokens.size()) {
+            return body;
+        }
+        return scanMembers(name, false, isEnum, body + 1, match[body]);
+    }
+
+    /**
+     * Scans the method declaration which has the parameter list starting at
+     * the given position.
+     *
+     * @return position after the method declaration
+     */
+    private int scanMethod(String owner, boolean anonymous, int start, int params) {
+        int end = params > start ? match[params] : -1;
+        if (end < 0 || !isIdentifier(params - 1)) {
+            // not a method declaration, e.g. record components
+            return params + 1;
+        }
+        int i = end + 1;
+        while (i < tokens.size() && !tokens.get(i).equals("{") && !tokens.get(i).equals(";")) {
+            i = tokens.get(i).equals("(") ? match[i] + 1 : i + 1;
+        }
+        int last = i;
+        if (i < tokens.size() && tokens.get(i).equals("{")) {
+            last = match[i];
+            scanCode(owner, i + 1, last);
+        }
+        MethodInfo method = new MethodInfo();
+        method.className = owner;
+        method.methodName = tokens.get(params - 1);
+        method.paramList = getParameters(params + 1, end);
+        method.isAnonymousClass = anonymous;
+        method.md5 = md5(join(start, Math.min(last + 1, tokens.size()), true));
+        methods.add(method);
+        return last + 1;
+    }
+
+    private List<String> getParameters(int from, int to) {
+        List<String> params = new ArrayList<>();
+        int start = from;
+        int angle = 0;
+        for (int i = from; i < to; i++) {
+            String t = tokens.get(i);
+            if (t.equals("(")) {
+                i = match[i];
+            } else if (t.equals("<")) {
+                angle++;
+            } else if (t.equals(">")) {
+                angle--;
+            } else if (t.equals(",") && angle == 0) {
+                params.add(join(start, i, false));
+                start = i + 1;
+            }
+        }
+        if (start < to) {
+            params.add(join(start, to, false));
+        }
+        return params;
+    }
+
+    /**
+     * Scans code in the range [from, to) for anonymous and local classes.
+     */
+    private void scanCode(String owner, int from, int to) {
+        for (int i = from; i < to; i++) {
+            String t = tokens.get(i);
+            if (t.equals("new")) {
+                int body = getAnonymousBody(i);
+                if (body >= 0) {
+                    scanCode(owner, i + 1, body);
+                    scanMembers(nextAnonymousName(owner), true, false, body + 1, match[body]);
+                    i = match[body];
+                }
+            } else if (isTypeDeclaration(i) && !isToken(i - 1, ".")) {
+                i = scanType(owner, i, true) - 1;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the instance creation at the given position has a class
+     * body.
+     *
+     * @return position of the opening brace of the body or -1
+     */
+    private int getAnonymousBody(int creation) {
+        int i = creation + 1;
+        int angle = 0;
+        while (i < tokens.size()) {
+            String t = tokens.get(i);
+            if (t.equals("<")) {
+                angle++;
+            } else if (t.equals(">")) {
+                angle--;
+            } else if (t.equals("@")) {
+                i = skipAnnotation(i) - 1;
+            } else if (t.equals("(") && angle == 0) {
+                int end = match[i];
+                return isToken(end + 1, "{") ? end + 1 : -1;
+            } else if (!t.equals(".") && !t.equals(",") && !t.equals("?") && !isIdentifier(i)) {
+                // array creation or syntax error
+                return -1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private boolean isTypeDeclaration(int i) {
+        String t = tokens.get(i);
+        switch (t) {
+        case "class":
+        case "interface":
+        case "enum":
+            return isIdentifier(i + 1);
+        case "record":
+            return isIdentifier(i + 1) && (isToken(i + 2, "(") || isToken(i + 2, "<"));
+        case "@":
+            return isToken(i + 1, "interface") && isIdentifier(i + 2);
+        default:
+            return false;
+        }
+    }
+
+    private int skipAnnotation(int at) {
+        int i = at + 1;
+        while (isIdentifier(i) && isToken(i + 1, ".")) {
+            i += 2;
+        }
+        i++;
+        if (isToken(i, "(")) {
+            i = match[i] + 1;
+        }
+        return i;
+    }
+
+    private String nextAnonymousName(String owner) {
+        return owner + "$" + nextIndex(owner);
+    }
+
+    private int nextIndex(String key) {
+        int index = counters.getOrDefault(key, 0) + 1;
+        counters.put(key, index);
+        return index;
+    }
+
+    // === Token helpers ===
+
+    private int find(int from, String token) {
+        int i = from;
+        while (i < tokens.size() && !tokens.get(i).equals(token)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Finds the given token outside of brackets.
+     */
+    private int findInCode(int from, int to, String token) {
+        int i = from;
+        while (i < to && !tokens.get(i).equals(token)) {
+            String t = tokens.get(i);
+            i = (t.equals("(") || t.equals("{") || t.equals("[")) ? match[i] + 1 : i + 1;
+        }
+        return Math.min(i, to);
+    }
+
+    private boolean isToken(int i, String token) {
+        return i >= 0 && i < tokens.size() && tokens.get(i).equals(token);
+    }
+
+    private boolean isIdentifier(int i) {
+        if (i < 0 || i >= tokens.size()) {
+            return false;
+        }
+        char c = tokens.get(i).charAt(0);
+        return Character.isJavaIdentifierStart(c);
+    }
+
+    /**
+     * Joins the tokens of the given range. Unless all tokens should be
+     * separated, blanks are only inserted in front of words which follow a
+     * word or the end of a type, e.g. <code>final Map&lt;K,V&gt; map</code>.
+     */
+    private String join(int from, int to, boolean separateAll) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            if (i > from && (separateAll || (isWord(i) && (isWord(i - 1) || isTypeEnd(i - 1))))) {
+                builder.append(' ');
+            }
+            builder.append(tokens.get(i));
+        }
+        return builder.toString();
+    }
+
+    private boolean isWord(int i) {
+        return Character.isJavaIdentifierPart(tokens.get(i).charAt(0));
+    }
+
+    private boolean isTypeEnd(int i) {
+        String t = tokens.get(i);
+        return t.equals(">") || t.equals("]") || t.equals("...") || t.equals("?");
+    }
+
+    private static String md5(String body) {
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            return Base64.getEncoder().encodeToString(md5.digest(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.analysis.diff;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the methods parsed from java source files, keyed by the git blob
+ * id of the file content. As a blob id identifies the content, entries never
+ * become outdated and are shared by all branches. Entries are kept in memory
+ * and optionally in a directory, so repeated diff computations only parse
+ * blobs which have never been seen before. Instances can be shared between
+ * threads and multiple processes may use the same directory.
+ */
+public class MethodFingerprintCache {
+
+    /** Marker and format version of cache entries */
+    private static final char FORMAT = 0xCA11;
+
+    private static final Map<File, MethodFingerprintCache> INSTANCES = new ConcurrentHashMap<>();
+
+    private final File directory;
+
+    private final Map<String, List<MethodInfo>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a cache which stores entries in the given directory. The
+     * directory is created on demand.
+     *
+     * @param directory cache directory or <code>null</code> for an in-memory cache only
+     */
+    public MethodFingerprintCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cache instance for the given directory. All callers within
+     * the same class loader share the in-memory entries, e.g. all modules of
+     * a Maven reactor build.
+     *
+     * @param directory cache directory
+     * @return shared cache instance
+     */
+    public static MethodFingerprintCache forDirectory(File directory) {
+        return INSTANCES.computeIfAbsent(directory.getAbsoluteFile(), MethodFingerprintCache::new);
+    }
+
+    /**
+     * @return cache directory or <code>null</code> for an in-memory cache
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Looks up the methods of the blob with the given id.
+     *
+     * @param blobId hex string of the git blob id
+     * @return cached methods or <code>null</code> if no valid entry exists
+     */
+    public List<MethodInfo> get(String blobId) {
+        List<MethodInfo> methods = entries.get(blobId);
+        if (methods == null && directory != null) {
+            methods = read(blobId);
+            if (methods != null) {
+                entries.put(blobId, methods);
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Stores the methods of the blob with the given id. The entry is written
+     * to a temporary file first, so concurrent readers never see partial
+     * entries. Failures to write the file are ignored, the entry is still
+     * cached in memory.
+     *
+     * @param blobId hex string of the git blob id
+     * @param methods methods parsed from the blob
+     */
+    public void put(String blobId, List<MethodInfo> methods) {
+        List<MethodInfo> copy = Collections.unmodifiableList(new ArrayList<>(methods));
+        entries.put(blobId, copy);
+        if (directory != null) {
+            try {
+                write(blobId, copy);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private List<MethodInfo> read(String blobId) {
+        File file = getFile(blobId);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readChar() != FORMAT || !blobId.equals(in.readUTF())) {
+                return null;
+            }
+            int count = in.readInt();
+            List<MethodInfo> methods = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                MethodInfo method = new MethodInfo();
+                method.className = in.readUTF();
+                method.methodName = in.readUTF();
+                method.md5 = in.readUTF();
+                method.isAnonymousClass = in.readBoolean();
+                int paramCount = in.readInt();
+                for (int j = 0; j < paramCount; j++) {
+                    method.paramList.add(in.readUTF());
+                }
+                methods.add(method);
+            }
+            return Collections.unmodifiableList(methods);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void write(String blobId, List<MethodInfo> methods) throws IOException {
+        File file = getFile(blobId);
+        File parent = file.getParentFile();
+        parent.mkdirs();
+        File tmp = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeChar(FORMAT);
+                out.writeUTF(blobId);
+                out.writeInt(methods.size());
+                for (MethodInfo method : methods) {
+                    out.writeUTF(method.className);
+                    out.writeUTF(method.methodName);
+                    out.writeUTF(method.md5);
+                    out.writeBoolean(method.isAnonymousClass);
+                    out.writeInt(method.paramList.size());
+                    for (String param : method.paramList) {
+                        out.writeUTF(param);
+                    }
+                }
+            }
+            if (!tmp.renameTo(file) && !file.isFile()) {
+                throw new IOException(String.format("Unable to create cache entry %s.", file.getAbsolutePath()));
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private File getFile(String blobId) {
+        return new File(new File(directory, blobId.substring(0, 2)), blobId.substring(2));
+    }
+}
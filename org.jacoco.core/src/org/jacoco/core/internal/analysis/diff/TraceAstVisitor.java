@@ -13,12 +13,12 @@
 package org.jacoco.core.internal.analysis.diff;
 
 import org.eclipse.jdt.core.dom.*;
-import sun.misc.BASE64Encoder;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Stack;
 import java.util.stream.Collectors;
@@ -116,8 +116,7 @@ public class TraceAstVisitor extends ASTVisitor {
         String madeMD5String = "";
         try {
             MessageDigest md5 = MessageDigest.getInstance("MD5");
-            BASE64Encoder base64en = new BASE64Encoder();
-            madeMD5String = base64en.encode(
+            madeMD5String = Base64.getEncoder().encodeToString(
                     md5.digest(body.getBytes(StandardCharsets.UTF_8)));
         } catch (NoSuchAlgorithmException e) {
             e.printStackTrace();
@@ -12,6 +12,9 @@
  *******************************************************************************/
 package org.jacoco.core.internal.data;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 import org.objectweb.asm.Opcodes;
 
 /**
@@ -98,6 +101,26 @@ public final class CRC64 {
 		return update(0, bytes, 0, bytes.length);
 	}
 
+	/**
+	 * Calculates the checksum of all bytes of the given stream. Unlike
+	 * {@link #classId(byte[])} no special treatment is applied to class files.
+	 *
+	 * @param input
+	 *            stream to read until its end
+	 * @return checksum of the content
+	 * @throws IOException
+	 *             if the stream can't be read
+	 */
+	public static long checksum(final InputStream input) throws IOException {
+		final byte[] buffer = new byte[8192];
+		long sum = 0;
+		int n;
+		while ((n = input.read(buffer)) != -1) {
+			sum = update(sum, buffer, 0, n);
+		}
+		return sum;
+	}
+
 	private CRC64() {
 	}
 
@@ -49,6 +49,21 @@ public class CompactDataInput extends DataInputStream {
 		return (value & 0x7F) | (readVarInt() << 7);
 	}
 
+	/**
+	 * Reads a variable length representation of a long value.
+	 *
+	 * @return read value
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public long readVarLong() throws IOException {
+		final long value = 0xFF & readByte();
+		if ((value & 0x80) == 0) {
+			return value;
+		}
+		return (value & 0x7F) | (readVarLong() << 7);
+	}
+
 	/**
 	 * Reads a boolean array.
 	 *
@@ -69,4 +84,45 @@ public class CompactDataInput extends DataInputStream {
 		return value;
 	}
 
+	/**
+	 * Reads the values of a boolean array packed into a bit set. In contrast
+	 * to {@link #readBooleanArray()} the length of the array has to be read
+	 * before with {@link #readVarInt()}.
+	 *
+	 * @param length
+	 *            number of boolean values
+	 * @return packed boolean values, value <code>i</code> is stored in bit
+	 *         <code>i % 64</code> of <code>bits[i / 64]</code>
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public long[] readBooleanBits(final int length) throws IOException {
+		final byte[] buffer = new byte[(length + 7) >>> 3];
+		readFully(buffer);
+		return toBits(buffer, length);
+	}
+
+	/**
+	 * Converts boolean values packed into bytes to a bit set.
+	 *
+	 * @param buffer
+	 *            packed boolean values, value <code>i</code> is stored in bit
+	 *            <code>i % 8</code> of <code>buffer[i / 8]</code>
+	 * @param length
+	 *            number of boolean values
+	 * @return packed boolean values, value <code>i</code> is stored in bit
+	 *         <code>i % 64</code> of <code>bits[i / 64]</code>
+	 */
+	public static long[] toBits(final byte[] buffer, final int length) {
+		final long[] bits = new long[(length + 63) >>> 6];
+		for (int i = 0; i < buffer.length; i++) {
+			bits[i >>> 3] |= (buffer[i] & 0xFFL) << ((i & 7) << 3);
+		}
+		if ((length & 63) != 0) {
+			// clear unused bits of the last word
+			bits[bits.length - 1] &= (1L << length) - 1;
+		}
+		return bits;
+	}
+
 }
@@ -53,6 +53,25 @@ public class CompactDataOutput extends DataOutputStream {
 		}
 	}
 
+	/**
+	 * Writes a variable length representation of a long value. The value is
+	 * interpreted as unsigned, depending on the given value 1 to 10 bytes will
+	 * be written to the underlying stream.
+	 *
+	 * @param value
+	 *            value to write
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public void writeVarLong(final long value) throws IOException {
+		if ((value & 0xFFFFFFFFFFFFFF80L) == 0) {
+			writeByte((int) value);
+		} else {
+			writeByte(0x80 | ((int) value & 0x7F));
+			writeVarLong(value >>> 7);
+		}
+	}
+
 	/**
 	 * Writes a boolean array. Internally a sequence of boolean values is packed
 	 * into single bits.
@@ -81,4 +100,26 @@ public class CompactDataOutput extends DataOutputStream {
 		}
 	}
 
+	/**
+	 * Writes a boolean array which is packed into a bit set. The format is the
+	 * same as for {@link #writeBooleanArray(boolean[])}.
+	 *
+	 * @param bits
+	 *            packed boolean values, value <code>i</code> is stored in bit
+	 *            <code>i % 64</code> of <code>bits[i / 64]</code>
+	 * @param length
+	 *            number of boolean values
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public void writeBooleanArray(final long[] bits, final int length)
+			throws IOException {
+		writeVarInt(length);
+		final byte[] buffer = new byte[(length + 7) >>> 3];
+		for (int i = 0; i < buffer.length; i++) {
+			buffer[i] = (byte) (bits[i >>> 3] >>> ((i & 7) << 3));
+		}
+		write(buffer);
+	}
+
 }
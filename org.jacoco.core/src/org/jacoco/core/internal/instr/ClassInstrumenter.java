@@ -17,6 +17,7 @@ import org.jacoco.core.internal.flow.MethodProbesVisitor;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.commons.AnalyzerAdapter;
 
 /**
  * Adapter that instruments a class for coverage tracing.
@@ -25,8 +26,12 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 
 	private final IProbeArrayStrategy probeArrayStrategy;
 
+	private final boolean writeOnceProbes;
+
 	private String className;
 
+	private boolean withFrames;
+
 	/**
 	 * Emits a instrumented version of this class to the given class visitor.
 	 *
@@ -38,8 +43,26 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 	 */
 	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
 			final ClassVisitor cv) {
+		this(probeArrayStrategy, false, cv);
+	}
+
+	/**
+	 * Emits a instrumented version of this class to the given class visitor.
+	 *
+	 * @param probeArrayStrategy
+	 *            this strategy will be used to access the probe array
+	 * @param writeOnceProbes
+	 *            if <code>true</code> probes only write to the probe array if
+	 *            they have not been executed before
+	 * @param cv
+	 *            next delegate in the visitor chain will receive the
+	 *            instrumented class
+	 */
+	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
+			final boolean writeOnceProbes, final ClassVisitor cv) {
 		super(cv);
 		this.probeArrayStrategy = probeArrayStrategy;
+		this.writeOnceProbes = writeOnceProbes;
 	}
 
 	@Override
@@ -47,6 +70,7 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 			final String signature, final String superName,
 			final String[] interfaces) {
 		this.className = name;
+		this.withFrames = InstrSupport.needsFrames(version);
 		super.visit(version, access, name, signature, superName, interfaces);
 	}
 
@@ -71,8 +95,22 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 			return null;
 		}
 		final MethodVisitor frameEliminator = new DuplicateFrameEliminator(mv);
-		final ProbeInserter probeVariableInserter = new ProbeInserter(access,
-				name, desc, frameEliminator, probeArrayStrategy);
+		final ProbeInserter probeVariableInserter;
+		if (probeArrayStrategy instanceof CounterProbeArrayStrategy) {
+			probeVariableInserter = new CounterProbeInserter(access, name,
+					desc, frameEliminator, probeArrayStrategy);
+		} else if (writeOnceProbes) {
+			final AnalyzerAdapter analyzer = withFrames
+					? new AnalyzerAdapter(className, access, name, desc,
+							frameEliminator)
+					: null;
+			probeVariableInserter = new WriteOnceProbeInserter(access, name,
+					desc, analyzer == null ? frameEliminator : analyzer,
+					probeArrayStrategy, analyzer);
+		} else {
+			probeVariableInserter = new ProbeInserter(access, name, desc,
+					frameEliminator, probeArrayStrategy);
+		}
 		return new MethodInstrumenter(probeVariableInserter,
 				probeVariableInserter);
 	}
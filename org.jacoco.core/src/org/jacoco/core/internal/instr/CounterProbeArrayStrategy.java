@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The strategy for regular classes with probe counters adds a static field to
+ * hold the probe counter array and a static initialization method requesting
+ * the probe counter array from the runtime. Probes of methods of such classes
+ * are inserted with a {@link CounterProbeInserter}.
+ */
+class CounterProbeArrayStrategy implements IProbeArrayStrategy {
+
+	/**
+	 * Frame stack with a single int array.
+	 */
+	private static final Object[] FRAME_STACK_ARRI = new Object[] {
+			InstrSupport.COUNTER_DATAFIELD_DESC };
+
+	/**
+	 * Empty frame locals.
+	 */
+	private static final Object[] FRAME_LOCALS_EMPTY = new Object[0];
+
+	private final String className;
+	private final long classId;
+	private final boolean withFrames;
+	private final IExecutionDataAccessorGenerator accessorGenerator;
+
+	CounterProbeArrayStrategy(final String className, final long classId,
+			final boolean withFrames,
+			final IExecutionDataAccessorGenerator accessorGenerator) {
+		this.className = className;
+		this.classId = classId;
+		this.withFrames = withFrames;
+		this.accessorGenerator = accessorGenerator;
+	}
+
+	public int storeInstance(final MethodVisitor mv, final boolean clinit,
+			final int variable) {
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, className,
+				InstrSupport.INITMETHOD_NAME,
+				InstrSupport.COUNTER_INITMETHOD_DESC, false);
+		mv.visitVarInsn(Opcodes.ASTORE, variable);
+		return 1;
+	}
+
+	public void addMembers(final ClassVisitor cv, final int probeCount) {
+		cv.visitField(InstrSupport.DATAFIELD_ACC, InstrSupport.DATAFIELD_NAME,
+				InstrSupport.COUNTER_DATAFIELD_DESC, null, null);
+		createInitMethod(cv, probeCount);
+	}
+
+	private void createInitMethod(final ClassVisitor cv, final int probeCount) {
+		final MethodVisitor mv = cv.visitMethod(InstrSupport.INITMETHOD_ACC,
+				InstrSupport.INITMETHOD_NAME,
+				InstrSupport.COUNTER_INITMETHOD_DESC, null, null);
+		mv.visitCode();
+
+		// Load the value of the static data field:
+		mv.visitFieldInsn(Opcodes.GETSTATIC, className,
+				InstrSupport.DATAFIELD_NAME,
+				InstrSupport.COUNTER_DATAFIELD_DESC);
+		mv.visitInsn(Opcodes.DUP);
+
+		// Stack[1]: [I
+		// Stack[0]: [I
+
+		// Skip initialization when we already have a counter array:
+		final Label alreadyInitialized = new Label();
+		mv.visitJumpInsn(Opcodes.IFNONNULL, alreadyInitialized);
+
+		// Stack[0]: [I
+
+		mv.visitInsn(Opcodes.POP);
+		final int size = accessorGenerator.generateCounterAccessor(classId,
+				className, probeCount, mv);
+
+		// Stack[0]: [I
+
+		mv.visitInsn(Opcodes.DUP);
+
+		// Stack[1]: [I
+		// Stack[0]: [I
+
+		mv.visitFieldInsn(Opcodes.PUTSTATIC, className,
+				InstrSupport.DATAFIELD_NAME,
+				InstrSupport.COUNTER_DATAFIELD_DESC);
+
+		// Stack[0]: [I
+
+		// Return the class' probe counter array:
+		if (withFrames) {
+			mv.visitFrame(Opcodes.F_NEW, 0, FRAME_LOCALS_EMPTY, 1,
+					FRAME_STACK_ARRI);
+		}
+		mv.visitLabel(alreadyInitialized);
+		mv.visitInsn(Opcodes.ARETURN);
+
+		mv.visitMaxs(Math.max(size, 2), 0); // Maximum local stack size is 2
+		mv.visitEnd();
+	}
+
+}
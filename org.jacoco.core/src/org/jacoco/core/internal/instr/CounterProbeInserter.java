@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Probe inserter for classes instrumented with probe counters. Instead of
+ * setting a slot of a boolean array the code for a probe increments the
+ * corresponding slot of an int array. The increment is not atomic, concurrent
+ * executions of the same probe might not all be counted.
+ */
+class CounterProbeInserter extends ProbeInserter {
+
+	/**
+	 * Creates a new {@link CounterProbeInserter}.
+	 *
+	 * @param access
+	 *            access flags of the adapted method
+	 * @param name
+	 *            the method's name
+	 * @param desc
+	 *            the method's descriptor
+	 * @param mv
+	 *            the method visitor to which this adapter delegates calls
+	 * @param arrayStrategy
+	 *            callback to create the code that retrieves the reference to
+	 *            the probe counter array
+	 */
+	CounterProbeInserter(final int access, final String name,
+			final String desc, final MethodVisitor mv,
+			final IProbeArrayStrategy arrayStrategy) {
+		super(access, name, desc, mv, arrayStrategy);
+	}
+
+	@Override
+	public void insertProbe(final int id) {
+
+		// For a probe we increment the corresponding position in the int[]
+		// array.
+
+		mv.visitVarInsn(Opcodes.ALOAD, variable);
+		InstrSupport.push(mv, id);
+
+		// Stack[1]: I
+		// Stack[0]: [I
+
+		mv.visitInsn(Opcodes.DUP2);
+		mv.visitInsn(Opcodes.IALOAD);
+
+		// Stack[2]: I
+		// Stack[1]: I
+		// Stack[0]: [I
+
+		mv.visitInsn(Opcodes.ICONST_1);
+		mv.visitInsn(Opcodes.IADD);
+		mv.visitInsn(Opcodes.IASTORE);
+	}
+
+	@Override
+	String getProbeArrayDesc() {
+		return InstrSupport.COUNTER_DATAFIELD_DESC;
+	}
+
+	@Override
+	int getProbeStackSize() {
+		return 4;
+	}
+
+}
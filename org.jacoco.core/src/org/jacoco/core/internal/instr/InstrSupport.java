@@ -80,6 +80,30 @@ public final class InstrSupport {
 	 */
 	public static final String DATAFIELD_DESC = "[Z";
 
+	/**
+	 * Data type of the field that stores the probe arrays of all stripes for
+	 * a class with striped probes (<code>boolean[][]</code>).
+	 */
+	public static final String STRIPED_DATAFIELD_DESC = "[[Z";
+
+	/**
+	 * Data type of the field that stores the probe counters for a class
+	 * instrumented with probe counters (<code>int[]</code>).
+	 */
+	public static final String COUNTER_DATAFIELD_DESC = "[I";
+
+	/**
+	 * Maximum number of probe stripes per class.
+	 */
+	public static final int MAX_PROBE_STRIPES = 64;
+
+	/**
+	 * Separator between the VM class name and the stripe index in the class
+	 * name which is passed to the runtime to request the probe array of a
+	 * stripe. The character is not allowed in VM class names.
+	 */
+	public static final char STRIPE_SEPARATOR = ';';
+
 	// === Init Method ===
 
 	/**
@@ -92,6 +116,12 @@ public final class InstrSupport {
 	 */
 	public static final String INITMETHOD_DESC = "()[Z";
 
+	/**
+	 * Descriptor of the initialization method of a class instrumented with
+	 * probe counters.
+	 */
+	public static final String COUNTER_INITMETHOD_DESC = "()[I";
+
 	/**
 	 * Access modifiers of the initialization method.
 	 */
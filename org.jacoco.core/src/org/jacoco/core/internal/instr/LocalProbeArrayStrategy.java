@@ -21,7 +21,8 @@ import org.objectweb.asm.Opcodes;
  * The strategy for interfaces inlines the runtime access directly into the
  * methods as this is the only method without keeping reference within this
  * class. This is very inefficient as the runtime is contacted for every method
- * invocation and therefore only used for static initializers in interfaces.
+ * invocation and therefore only used for static initializers in interfaces and
+ * for classes which are instrumented with class retransformation.
  */
 class LocalProbeArrayStrategy implements IProbeArrayStrategy {
 
@@ -42,6 +42,60 @@ public final class ProbeArrayStrategyFactory {
 	public static IProbeArrayStrategy createFor(final long classId,
 			final ClassReader reader,
 			final IExecutionDataAccessorGenerator accessorGenerator) {
+		return createFor(classId, reader, accessorGenerator, 1);
+	}
+
+	/**
+	 * Creates a suitable strategy instance for the class described by the given
+	 * reader. Regular classes get the given number of probe stripes, for
+	 * interfaces probes are never striped. Created instance must be used only
+	 * to process a class or interface for which it has been created and must
+	 * be used only once.
+	 *
+	 * @param classId
+	 *            class identifier
+	 * @param reader
+	 *            reader to get information about the class
+	 * @param accessorGenerator
+	 *            accessor to the coverage runtime
+	 * @param probeStripes
+	 *            number of probe stripes, must be a power of two, 1 disables
+	 *            striping
+	 * @return strategy instance
+	 */
+	public static IProbeArrayStrategy createFor(final long classId,
+			final ClassReader reader,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final int probeStripes) {
+		return createFor(classId, reader, accessorGenerator, probeStripes,
+				false);
+	}
+
+	/**
+	 * Creates a suitable strategy instance for the class described by the given
+	 * reader. Regular classes get the given number of probe stripes or probe
+	 * counters, for interfaces probes are never striped nor counted. Probe
+	 * counters take precedence over probe stripes. Created instance must be
+	 * used only to process a class or interface for which it has been created
+	 * and must be used only once.
+	 *
+	 * @param classId
+	 *            class identifier
+	 * @param reader
+	 *            reader to get information about the class
+	 * @param accessorGenerator
+	 *            accessor to the coverage runtime
+	 * @param probeStripes
+	 *            number of probe stripes, must be a power of two, 1 disables
+	 *            striping
+	 * @param probeCounters
+	 *            if <code>true</code> regular classes count probe executions
+	 * @return strategy instance
+	 */
+	public static IProbeArrayStrategy createFor(final long classId,
+			final ClassReader reader,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final int probeStripes, final boolean probeCounters) {
 
 		final String className = reader.getClassName();
 		final int version = InstrSupport.getMajorVersion(reader);
@@ -63,6 +117,15 @@ public final class ProbeArrayStrategyFactory {
 						counter.getCount(), accessorGenerator);
 			}
 		} else {
+			if (probeCounters) {
+				return new CounterProbeArrayStrategy(className, classId,
+						InstrSupport.needsFrames(version), accessorGenerator);
+			}
+			if (probeStripes > 1) {
+				return new StripedProbeArrayStrategy(className, classId,
+						probeStripes, InstrSupport.needsFrames(version),
+						accessorGenerator);
+			}
 			if (version >= Opcodes.V11) {
 				return new CondyProbeArrayStrategy(className, false, classId,
 						accessorGenerator);
@@ -72,6 +135,32 @@ public final class ProbeArrayStrategyFactory {
 		}
 	}
 
+	/**
+	 * Creates a strategy instance for the class described by the given reader
+	 * which does not add any members to the class. Such classes can be
+	 * instrumented with class retransformation. Created instance must be used
+	 * only to process a class or interface for which it has been created and
+	 * must be used only once.
+	 *
+	 * @param classId
+	 *            class identifier
+	 * @param reader
+	 *            reader to get information about the class
+	 * @param accessorGenerator
+	 *            accessor to the coverage runtime
+	 * @return strategy instance
+	 */
+	public static IProbeArrayStrategy createForRetransformation(
+			final long classId, final ClassReader reader,
+			final IExecutionDataAccessorGenerator accessorGenerator) {
+		final ProbeCounter counter = getProbeCounter(reader);
+		if (counter.getCount() == 0) {
+			return new NoneProbeArrayStrategy();
+		}
+		return new LocalProbeArrayStrategy(reader.getClassName(), classId,
+				counter.getCount(), accessorGenerator);
+	}
+
 	private static boolean isInterfaceOrModule(final ClassReader reader) {
 		return (reader.getAccess()
 				& (Opcodes.ACC_INTERFACE | Opcodes.ACC_MODULE)) != 0;
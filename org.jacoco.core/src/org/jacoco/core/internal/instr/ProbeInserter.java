@@ -36,7 +36,7 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 	private final boolean clinit;
 
 	/** Position of the inserted variable. */
-	private final int variable;
+	final int variable;
 
 	/** Label for the new beginning of the method */
 	private final Label beginLabel;
@@ -138,13 +138,33 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 				newIndex, descriptor, visible);
 	}
 
+	/**
+	 * Returns the type of the probe array which is stored in the inserted
+	 * local variable.
+	 *
+	 * @return type descriptor of the probe array
+	 */
+	String getProbeArrayDesc() {
+		return InstrSupport.DATAFIELD_DESC;
+	}
+
+	/**
+	 * Returns the maximum stack size of the code inserted for a probe.
+	 *
+	 * @return stack size of a probe
+	 */
+	int getProbeStackSize() {
+		return 3;
+	}
+
 	@Override
 	public void visitMaxs(final int maxStack, final int maxLocals) {
-		// Max stack size of the probe code is 3 which can add to the
+		// Max stack size of the probe code which can add to the
 		// original stack size depending on the probe locations. The accessor
 		// stack size is an absolute maximum, as the accessor code is inserted
 		// at the very beginning of each method when the stack size is empty.
-		final int increasedStack = Math.max(maxStack + 3, accessorStackSize);
+		final int increasedStack = Math.max(maxStack + getProbeStackSize(),
+				accessorStackSize);
 		mv.visitMaxs(increasedStack, maxLocals + 1);
 	}
 
@@ -171,7 +191,7 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 		int pos = 0; // Current variable position
 		while (idx < nLocal || pos <= variable) {
 			if (pos == variable) {
-				newLocal[newIdx++] = InstrSupport.DATAFIELD_DESC;
+				newLocal[newIdx++] = getProbeArrayDesc();
 				pos++;
 			} else {
 				if (idx < nLocal) {
@@ -68,6 +68,18 @@ public class SignatureRemover {
 		return active && SIGNATURE_FILES.matcher(name).matches();
 	}
 
+	/**
+	 * Checks whether the content of an entry with the provided name is
+	 * modified by {@link #filterEntry(String, InputStream, OutputStream)}.
+	 *
+	 * @param name
+	 *            path name of the entry in question
+	 * @return true if the content of the entry is filtered
+	 */
+	public boolean filtersEntry(final String name) {
+		return active && MANIFEST_MF.equals(name);
+	}
+
 	/**
 	 * Filters the content of the entry with the provided name if necessary.
 	 *
@@ -83,7 +95,7 @@ public class SignatureRemover {
 	 */
 	public boolean filterEntry(final String name, final InputStream in,
 			final OutputStream out) throws IOException {
-		if (!active || !MANIFEST_MF.equals(name)) {
+		if (!filtersEntry(name)) {
 			return false;
 		}
 		final Manifest mf = new Manifest(in);
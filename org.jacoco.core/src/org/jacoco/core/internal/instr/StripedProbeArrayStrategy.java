@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The strategy for regular classes with striped probes. Instead of a single
+ * probe array every class has a fixed number of probe arrays, the stripe is
+ * selected by the id of the current thread. Threads therefore do not write to
+ * the same memory location when executing the same code, which avoids cache
+ * line contention on hot probes. The runtime merges all stripes when execution
+ * data is collected.
+ *
+ * The probe array of stripe 0 is requested with the VM class name, the probe
+ * array of stripe <i>n</i> with the VM class name followed by
+ * {@link InstrSupport#STRIPE_SEPARATOR} and <i>n</i>.
+ */
+class StripedProbeArrayStrategy implements IProbeArrayStrategy {
+
+	/**
+	 * Frame stack with the stripes array.
+	 */
+	private static final Object[] FRAME_STACK_ARRARRZ = new Object[] {
+			InstrSupport.STRIPED_DATAFIELD_DESC };
+
+	/**
+	 * Frame locals and stack with the stripes array and the stripe index.
+	 */
+	private static final Object[] FRAME_ARRARRZ_INT = new Object[] {
+			InstrSupport.STRIPED_DATAFIELD_DESC, Opcodes.INTEGER };
+
+	/**
+	 * Frame stack with the stripes array, the stripe index and a probe array.
+	 */
+	private static final Object[] FRAME_STACK_ARRARRZ_INT_ARRZ = new Object[] {
+			InstrSupport.STRIPED_DATAFIELD_DESC, Opcodes.INTEGER,
+			InstrSupport.DATAFIELD_DESC };
+
+	/**
+	 * Frame stack with a single boolean array.
+	 */
+	private static final Object[] FRAME_STACK_ARRZ = new Object[] {
+			InstrSupport.DATAFIELD_DESC };
+
+	/**
+	 * Empty frame locals.
+	 */
+	private static final Object[] FRAME_LOCALS_EMPTY = new Object[0];
+
+	private final String className;
+	private final long classId;
+	private final int stripes;
+	private final boolean withFrames;
+	private final IExecutionDataAccessorGenerator accessorGenerator;
+
+	StripedProbeArrayStrategy(final String className, final long classId,
+			final int stripes, final boolean withFrames,
+			final IExecutionDataAccessorGenerator accessorGenerator) {
+		this.className = className;
+		this.classId = classId;
+		this.stripes = stripes;
+		this.withFrames = withFrames;
+		this.accessorGenerator = accessorGenerator;
+	}
+
+	public int storeInstance(final MethodVisitor mv, final boolean clinit,
+			final int variable) {
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, className,
+				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
+				false);
+		mv.visitVarInsn(Opcodes.ASTORE, variable);
+		return 1;
+	}
+
+	public void addMembers(final ClassVisitor cv, final int probeCount) {
+		createDataField(cv);
+		createInitMethod(cv, probeCount);
+	}
+
+	private void createDataField(final ClassVisitor cv) {
+		cv.visitField(InstrSupport.DATAFIELD_ACC, InstrSupport.DATAFIELD_NAME,
+				InstrSupport.STRIPED_DATAFIELD_DESC, null, null);
+	}
+
+	private void createInitMethod(final ClassVisitor cv, final int probeCount) {
+		final MethodVisitor mv = cv.visitMethod(InstrSupport.INITMETHOD_ACC,
+				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
+				null, null);
+		mv.visitCode();
+
+		// Load the value of the static data field and create the stripes
+		// array if it does not exist yet:
+		mv.visitFieldInsn(Opcodes.GETSTATIC, className,
+				InstrSupport.DATAFIELD_NAME,
+				InstrSupport.STRIPED_DATAFIELD_DESC);
+		mv.visitInsn(Opcodes.DUP);
+		final Label hasStripes = new Label();
+		mv.visitJumpInsn(Opcodes.IFNONNULL, hasStripes);
+		mv.visitInsn(Opcodes.POP);
+		InstrSupport.push(mv, stripes);
+		mv.visitTypeInsn(Opcodes.ANEWARRAY, InstrSupport.DATAFIELD_DESC);
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitFieldInsn(Opcodes.PUTSTATIC, className,
+				InstrSupport.DATAFIELD_NAME,
+				InstrSupport.STRIPED_DATAFIELD_DESC);
+		if (withFrames) {
+			mv.visitFrame(Opcodes.F_NEW, 0, FRAME_LOCALS_EMPTY, 1,
+					FRAME_STACK_ARRARRZ);
+		}
+		mv.visitLabel(hasStripes);
+
+		// Stack[0]: [[Z
+
+		mv.visitVarInsn(Opcodes.ASTORE, 0);
+
+		// Select the stripe of the current thread:
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Thread",
+				"currentThread", "()Ljava/lang/Thread;", false);
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Thread", "getId",
+				"()J", false);
+		mv.visitInsn(Opcodes.L2I);
+		InstrSupport.push(mv, stripes - 1);
+		mv.visitInsn(Opcodes.IAND);
+		mv.visitVarInsn(Opcodes.ISTORE, 1);
+
+		// Return the probe array of the stripe if we already have it:
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitVarInsn(Opcodes.ILOAD, 1);
+		mv.visitInsn(Opcodes.AALOAD);
+		mv.visitInsn(Opcodes.DUP);
+		final Label done = new Label();
+		mv.visitJumpInsn(Opcodes.IFNONNULL, done);
+		mv.visitInsn(Opcodes.POP);
+
+		// Request the probe array of the stripe from the runtime:
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitVarInsn(Opcodes.ILOAD, 1);
+		mv.visitVarInsn(Opcodes.ILOAD, 1);
+
+		// Stack[1]: I
+		// Stack[0]: [[Z
+
+		final Label[] cases = new Label[stripes];
+		for (int i = 0; i < stripes; i++) {
+			cases[i] = new Label();
+		}
+		mv.visitTableSwitchInsn(0, stripes - 1, cases[0], cases);
+		final Label store = new Label();
+		int size = 0;
+		for (int i = 0; i < stripes; i++) {
+			if (withFrames) {
+				mv.visitFrame(Opcodes.F_NEW, 2, FRAME_ARRARRZ_INT, 2,
+						FRAME_ARRARRZ_INT);
+			}
+			mv.visitLabel(cases[i]);
+			size = Math.max(size, accessorGenerator.generateDataAccessor(
+					classId, getStripeName(i), probeCount, mv));
+			mv.visitJumpInsn(Opcodes.GOTO, store);
+		}
+
+		// Stack[2]: [Z
+		// Stack[1]: I
+		// Stack[0]: [[Z
+
+		if (withFrames) {
+			mv.visitFrame(Opcodes.F_NEW, 2, FRAME_ARRARRZ_INT, 3,
+					FRAME_STACK_ARRARRZ_INT_ARRZ);
+		}
+		mv.visitLabel(store);
+		mv.visitInsn(Opcodes.DUP_X2);
+		mv.visitInsn(Opcodes.AASTORE);
+
+		// Stack[0]: [Z
+
+		if (withFrames) {
+			mv.visitFrame(Opcodes.F_NEW, 2, FRAME_ARRARRZ_INT, 1,
+					FRAME_STACK_ARRZ);
+		}
+		mv.visitLabel(done);
+		mv.visitInsn(Opcodes.ARETURN);
+
+		// Maximum local stack size is 4 or 2 plus the accessor code
+		mv.visitMaxs(Math.max(size + 2, 4), 2);
+		mv.visitEnd();
+	}
+
+	private String getStripeName(final int stripe) {
+		if (stripe == 0) {
+			return className;
+		}
+		return className + InstrSupport.STRIPE_SEPARATOR + stripe;
+	}
+
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import java.util.List;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.AnalyzerAdapter;
+
+/**
+ * Probe inserter which only writes to the probe array if the probe has not
+ * been executed before. Once covered, the code executes a read of the probe
+ * array only, which avoids continuous writes to the same memory location from
+ * multiple threads.
+ *
+ * As the probe code contains a branch a stackmap frame is required for classes
+ * with frames. The frame is taken from an {@link AnalyzerAdapter} which must be
+ * the next visitor in the chain.
+ */
+class WriteOnceProbeInserter extends ProbeInserter {
+
+	private final AnalyzerAdapter analyzer;
+
+	/**
+	 * Creates a new {@link WriteOnceProbeInserter}.
+	 *
+	 * @param access
+	 *            access flags of the adapted method
+	 * @param name
+	 *            the method's name
+	 * @param desc
+	 *            the method's descriptor
+	 * @param mv
+	 *            the method visitor to which this adapter delegates calls
+	 * @param arrayStrategy
+	 *            callback to create the code that retrieves the reference to
+	 *            the probe array
+	 * @param analyzer
+	 *            analyzer to calculate stackmap frames or <code>null</code>
+	 *            if the class does not need frames, if given it must be the
+	 *            same instance as <code>mv</code>
+	 */
+	WriteOnceProbeInserter(final int access, final String name,
+			final String desc, final MethodVisitor mv,
+			final IProbeArrayStrategy arrayStrategy,
+			final AnalyzerAdapter analyzer) {
+		super(access, name, desc, mv, arrayStrategy);
+		this.analyzer = analyzer;
+	}
+
+	@Override
+	public void insertProbe(final int id) {
+		final Object[] locals;
+		final Object[] stack;
+		if (analyzer == null) {
+			locals = null;
+			stack = null;
+		} else {
+			if (analyzer.locals == null) {
+				// Unreachable code, no frame available
+				super.insertProbe(id);
+				return;
+			}
+			locals = compress(analyzer.locals);
+			stack = compress(analyzer.stack);
+		}
+
+		// Skip the probe if the corresponding position in the boolean[] array
+		// is already true:
+
+		mv.visitVarInsn(Opcodes.ALOAD, variable);
+		InstrSupport.push(mv, id);
+		mv.visitInsn(Opcodes.BALOAD);
+
+		// Stack[0]: Z
+
+		final Label skip = new Label();
+		mv.visitJumpInsn(Opcodes.IFNE, skip);
+
+		super.insertProbe(id);
+
+		if (locals != null) {
+			mv.visitFrame(Opcodes.F_NEW, locals.length, locals, stack.length,
+					stack);
+		}
+		mv.visitLabel(skip);
+		if (locals != null) {
+			// Avoid a second frame at the same offset if the original code
+			// defines a frame right after the probe
+			mv.visitInsn(Opcodes.NOP);
+		}
+	}
+
+	/**
+	 * Converts the types of the analyzer, where long and double values occupy
+	 * two entries, to the frame format where they occupy only one entry.
+	 */
+	private static Object[] compress(final List<Object> types) {
+		final Object[] result = new Object[types.size()];
+		int size = 0;
+		for (int i = 0; i < types.size(); i++) {
+			final Object t = types.get(i);
+			result[size++] = t;
+			if (t == Opcodes.LONG || t == Opcodes.DOUBLE) {
+				i++;
+			}
+		}
+		final Object[] compressed = new Object[size];
+		System.arraycopy(result, 0, compressed, 0, size);
+		return compressed;
+	}
+
+}
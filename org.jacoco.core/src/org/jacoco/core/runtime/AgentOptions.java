@@ -110,6 +110,7 @@ public final class AgentOptions {
 	 *
 	 * @see OutputMode#file
 	 * @see OutputMode#tcpserver
+	 * @see OutputMode#nioserver
 	 * @see OutputMode#tcpclient
 	 * @see OutputMode#none
 	 */
@@ -137,6 +138,14 @@ public final class AgentOptions {
 		 */
 		tcpserver,
 
+		/**
+		 * Value for the {@link AgentOptions#OUTPUT} parameter: The agent
+		 * listens for incoming connections on a TCP port specified by
+		 * {@link AgentOptions#ADDRESS} and {@link AgentOptions#PORT} and serves
+		 * any number of connections concurrently with non-blocking I/O.
+		 */
+		nioserver,
+
 		/**
 		 * Value for the {@link AgentOptions#OUTPUT} parameter: At startup the
 		 * agent connects to a TCP port specified by the
@@ -183,6 +192,37 @@ public final class AgentOptions {
 	 */
 	public static final String CLASSDUMPDIR = "classdumpdir";
 
+	/**
+	 * Specifies a directory where the agent caches instrumented class files.
+	 * On later starts classes are taken from the cache instead of
+	 * instrumenting them again. The location is specified as a relative path
+	 * to the working directory. Default is <code>null</code> (no cache).
+	 */
+	public static final String INSTRCACHE = "instrcache";
+
+	/**
+	 * Specifies the number of probe stripes of instrumented classes. With more
+	 * than one stripe threads record executions in separate probe arrays,
+	 * which avoids contention on probes executed by many threads concurrently.
+	 * The value must be a power of two not greater than 64. Default is 1 (no
+	 * striping).
+	 */
+	public static final String PROBESTRIPES = "probestripes";
+
+	/**
+	 * Specifies whether probes of instrumented classes only write to the probe
+	 * array if they have not been executed before. This avoids repeated writes
+	 * in hot code. Default is <code>false</code>.
+	 */
+	public static final String WRITEONCEPROBES = "writeonceprobes";
+
+	/**
+	 * Specifies whether probes of instrumented classes count their executions.
+	 * The execution counts are written with the execution data. Default is
+	 * <code>false</code>.
+	 */
+	public static final String PROBECOUNTERS = "probecounters";
+
 	/**
 	 * Specifies whether the agent should expose functionality via JMX under the
 	 * name "org.jacoco:type=Runtime". Default is <code>false</code>.
@@ -192,7 +232,8 @@ public final class AgentOptions {
 	private static final Collection<String> VALID_OPTIONS = Arrays.asList(
 			DESTFILE, APPEND, INCLUDES, EXCLUDES, EXCLCLASSLOADER,
 			INCLBOOTSTRAPCLASSES, INCLNOLOCATIONCLASSES, SESSIONID, DUMPONEXIT,
-			OUTPUT, ADDRESS, PORT, CLASSDUMPDIR, JMX);
+			OUTPUT, ADDRESS, PORT, CLASSDUMPDIR, INSTRCACHE, PROBESTRIPES,
+			WRITEONCEPROBES, PROBECOUNTERS, JMX);
 
 	private final Map<String, String> options;
 
@@ -538,6 +579,86 @@ public final class AgentOptions {
 		setOption(CLASSDUMPDIR, location);
 	}
 
+	/**
+	 * Returns the location of the directory where instrumented class files
+	 * are cached.
+	 *
+	 * @return cache location or <code>null</code> (no cache)
+	 */
+	public String getInstrCacheDir() {
+		return getOption(INSTRCACHE, null);
+	}
+
+	/**
+	 * Sets the directory where instrumented class files are cached.
+	 *
+	 * @param location
+	 *            cache location or <code>null</code> (no cache)
+	 */
+	public void setInstrCacheDir(final String location) {
+		setOption(INSTRCACHE, location);
+	}
+
+	/**
+	 * Returns the number of probe stripes of instrumented classes.
+	 *
+	 * @return number of probe stripes
+	 */
+	public int getProbeStripes() {
+		return getOption(PROBESTRIPES, 1);
+	}
+
+	/**
+	 * Sets the number of probe stripes of instrumented classes.
+	 *
+	 * @param probeStripes
+	 *            number of probe stripes, must be a power of two not greater
+	 *            than 64
+	 */
+	public void setProbeStripes(final int probeStripes) {
+		setOption(PROBESTRIPES, probeStripes);
+	}
+
+	/**
+	 * Returns whether probes only write to the probe array if they have not
+	 * been executed before.
+	 *
+	 * @return <code>true</code> if probes are written only once
+	 */
+	public boolean getWriteOnceProbes() {
+		return getOption(WRITEONCEPROBES, false);
+	}
+
+	/**
+	 * Sets whether probes should only write to the probe array if they have
+	 * not been executed before.
+	 *
+	 * @param writeOnceProbes
+	 *            <code>true</code> if probes should be written only once
+	 */
+	public void setWriteOnceProbes(final boolean writeOnceProbes) {
+		setOption(WRITEONCEPROBES, writeOnceProbes);
+	}
+
+	/**
+	 * Returns whether probes count their executions.
+	 *
+	 * @return <code>true</code> if probes count their executions
+	 */
+	public boolean getProbeCounters() {
+		return getOption(PROBECOUNTERS, false);
+	}
+
+	/**
+	 * Sets whether probes should count their executions.
+	 *
+	 * @param probeCounters
+	 *            <code>true</code> if probes should count their executions
+	 */
+	public void setProbeCounters(final boolean probeCounters) {
+		setOption(PROBECOUNTERS, probeCounters);
+	}
+
 	/**
 	 * Returns whether the agent exposes functionality via JMX.
 	 *
@@ -49,4 +49,26 @@ public interface IExecutionDataAccessorGenerator {
 	int generateDataAccessor(long classid, String classname, int probecount,
 			MethodVisitor mv);
 
+	/**
+	 * This method generates the byte code required to obtain the probe
+	 * counters for the class with the given id. The generated code must push
+	 * an <code>int[]</code> instance to the operand stack, where every element
+	 * counts the executions of the corresponding probe. Otherwise the same
+	 * contract as for
+	 * {@link #generateDataAccessor(long, String, int, MethodVisitor)} applies.
+	 *
+	 * @param classid
+	 *            identifier of the class
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @param mv
+	 *            code output
+	 * @return additional stack size required by the implementation, including
+	 *         the instance pushed to the stack
+	 */
+	int generateCounterAccessor(long classid, String classname,
+			int probecount, MethodVisitor mv);
+
 }
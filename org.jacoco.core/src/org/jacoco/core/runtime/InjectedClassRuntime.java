@@ -72,6 +72,18 @@ public class InjectedClassRuntime extends AbstractRuntime {
 		return 6;
 	}
 
+	public int generateCounterAccessor(final long classid,
+			final String classname, final int probecount,
+			final MethodVisitor mv) {
+		mv.visitFieldInsn(Opcodes.GETSTATIC, injectedClassName, FIELD_NAME,
+				FIELD_TYPE);
+
+		RuntimeData.generateCounterAccessCall(classid, classname, probecount,
+				mv);
+
+		return 6;
+	}
+
 	private static byte[] createClass(final String name) {
 		final ClassWriter cw = new ClassWriter(0);
 		cw.visit(Opcodes.V9, Opcodes.ACC_SYNTHETIC | Opcodes.ACC_PUBLIC,
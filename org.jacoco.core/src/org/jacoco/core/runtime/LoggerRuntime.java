@@ -61,6 +61,18 @@ public class LoggerRuntime extends AbstractRuntime {
 
 	public int generateDataAccessor(final long classid, final String classname,
 			final int probecount, final MethodVisitor mv) {
+		return generateAccessor(classid, classname, probecount, false, mv);
+	}
+
+	public int generateCounterAccessor(final long classid,
+			final String classname, final int probecount,
+			final MethodVisitor mv) {
+		return generateAccessor(classid, classname, probecount, true, mv);
+	}
+
+	private int generateAccessor(final long classid, final String classname,
+			final int probecount, final boolean counters,
+			final MethodVisitor mv) {
 
 		// The data accessor performs the following steps:
 		//
@@ -77,7 +89,8 @@ public class LoggerRuntime extends AbstractRuntime {
 
 		// 1. Create parameter array:
 
-		RuntimeData.generateArgumentArray(classid, classname, probecount, mv);
+		RuntimeData.generateArgumentArray(classid, classname, probecount,
+				counters, mv);
 
 		// Stack[0]: [Ljava/lang/Object;
 
@@ -145,9 +158,11 @@ public class LoggerRuntime extends AbstractRuntime {
 
 		mv.visitInsn(Opcodes.ICONST_0);
 		mv.visitInsn(Opcodes.AALOAD);
-		mv.visitTypeInsn(Opcodes.CHECKCAST, InstrSupport.DATAFIELD_DESC);
+		mv.visitTypeInsn(Opcodes.CHECKCAST, counters
+				? InstrSupport.COUNTER_DATAFIELD_DESC
+				: InstrSupport.DATAFIELD_DESC);
 
-		// Stack[0]: [Z
+		// Stack[0]: [Z or [I
 
 		return 5; // Maximum local stack size is 5
 	}
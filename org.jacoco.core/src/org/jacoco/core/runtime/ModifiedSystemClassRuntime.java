@@ -82,6 +82,18 @@ public class ModifiedSystemClassRuntime extends AbstractRuntime {
 		return 6;
 	}
 
+	public int generateCounterAccessor(final long classid,
+			final String classname, final int probecount,
+			final MethodVisitor mv) {
+		mv.visitFieldInsn(Opcodes.GETSTATIC, systemClassName, accessFieldName,
+				ACCESS_FIELD_TYPE);
+
+		RuntimeData.generateCounterAccessCall(classid, classname, probecount,
+				mv);
+
+		return 6;
+	}
+
 	/**
 	 * Creates a new {@link ModifiedSystemClassRuntime} using the given class as
 	 * the data container. Member is created with internal default name. The
@@ -56,4 +56,15 @@ public class OfflineInstrumentationAccessGenerator
 		return 4;
 	}
 
+	public int generateCounterAccessor(final long classid,
+			final String classname, final int probecount,
+			final MethodVisitor mv) {
+		mv.visitLdcInsn(Long.valueOf(classid));
+		mv.visitLdcInsn(classname);
+		InstrSupport.push(mv, probecount);
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, runtimeClassName,
+				"getCounters", "(JLjava/lang/String;I)[I", false);
+		return 4;
+	}
+
 }
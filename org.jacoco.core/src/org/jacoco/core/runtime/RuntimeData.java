@@ -12,8 +12,14 @@
  *******************************************************************************/
 package org.jacoco.core.runtime;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import org.jacoco.core.data.ExecutionData;
-import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
 import org.jacoco.core.data.SessionInfo;
@@ -23,12 +29,33 @@ import org.objectweb.asm.Opcodes;
 
 /**
  * Container for runtime execution and meta data. All access to the runtime data
- * is thread safe.
+ * is thread safe. Execution data of classes is looked up without locking, so
+ * class initialization never waits for other classes or for a dump in
+ * progress.
+ * <p>
+ * Classes instrumented with striped probes request a separate probe array per
+ * stripe. The probe arrays of all stripes of a class are merged when execution
+ * data is collected.
+ * </p>
+ * <p>
+ * Classes instrumented with probe counters request an <code>int[]</code>
+ * array instead, which is converted to probes and execution counts when
+ * execution data is collected.
+ * </p>
  */
 public class RuntimeData {
 
 	/** store for execution data */
-	protected final ExecutionDataStore store;
+	private final ConcurrentMap<Long, ExecutionData> store;
+
+	/** additional probe stripes of classes with striped probes */
+	private final ConcurrentMap<Long, AtomicReferenceArray<boolean[]>> stripes;
+
+	/** probe counters of classes instrumented with probe counters */
+	private final ConcurrentMap<Long, int[]> counters;
+
+	/** lock for collecting and resetting execution data */
+	private final Object lock = new Object();
 
 	private long startTimeStamp;
 
@@ -38,7 +65,9 @@ public class RuntimeData {
 	 * Creates a new runtime.
 	 */
 	public RuntimeData() {
-		store = new ExecutionDataStore();
+		store = new ConcurrentHashMap<Long, ExecutionData>();
+		stripes = new ConcurrentHashMap<Long, AtomicReferenceArray<boolean[]>>();
+		counters = new ConcurrentHashMap<Long, int[]>();
 		sessionId = "<none>";
 		startTimeStamp = System.currentTimeMillis();
 	}
@@ -69,7 +98,10 @@ public class RuntimeData {
 
 	/**
 	 * Collects the current execution data and writes it to the given
-	 * {@link IExecutionDataVisitor} object.
+	 * {@link IExecutionDataVisitor} object. The probes of all classes are
+	 * copied first and written afterwards, so slow visitors do not delay
+	 * other dumps or resets. With reset each probe is cleared right after it
+	 * has been copied, so hits which occur during the dump are not lost.
 	 *
 	 * @param executionDataVisitor
 	 *            handler to write coverage data to
@@ -81,13 +113,79 @@ public class RuntimeData {
 	 */
 	public final void collect(final IExecutionDataVisitor executionDataVisitor,
 			final ISessionInfoVisitor sessionInfoVisitor, final boolean reset) {
-		synchronized (store) {
-			final SessionInfo info = new SessionInfo(sessionId, startTimeStamp,
+		final SessionInfo info;
+		final List<ExecutionData> snapshot = new ArrayList<ExecutionData>(
+				store.size());
+		synchronized (lock) {
+			info = new SessionInfo(sessionId, startTimeStamp,
 					System.currentTimeMillis());
-			sessionInfoVisitor.visitSessionInfo(info);
-			store.accept(executionDataVisitor);
+			for (final ExecutionData data : store.values()) {
+				snapshot.add(copy(data, reset));
+			}
 			if (reset) {
-				reset();
+				startTimeStamp = info.getDumpTimeStamp();
+			}
+		}
+		sessionInfoVisitor.visitSessionInfo(info);
+		for (final ExecutionData data : snapshot) {
+			executionDataVisitor.visitClassExecution(data);
+		}
+	}
+
+	/**
+	 * Creates a copy of the given execution data with packed probes. Probes of
+	 * all stripes of the class are merged into the copy. For classes with
+	 * probe counters the copy also contains the execution counts.
+	 */
+	private ExecutionData copy(final ExecutionData data, final boolean reset) {
+		final boolean[] probes = data.getProbes();
+		final long[] bits = new long[ExecutionData
+				.getWordCount(probes.length)];
+		pack(probes, bits, reset);
+		final AtomicReferenceArray<boolean[]> s = stripes
+				.get(Long.valueOf(data.getId()));
+		if (s != null) {
+			for (int i = 0; i < s.length(); i++) {
+				final boolean[] stripe = s.get(i);
+				if (stripe != null) {
+					pack(stripe, bits, reset);
+				}
+			}
+		}
+		final int[] c = counters.get(Long.valueOf(data.getId()));
+		if (c != null) {
+			return new ExecutionData(data.getId(), data.getName(), bits,
+					probes.length, count(c, bits, reset));
+		}
+		return new ExecutionData(data.getId(), data.getName(), bits,
+				probes.length);
+	}
+
+	private static long[] count(final int[] counter, final long[] bits,
+			final boolean reset) {
+		final long[] counts = new long[counter.length];
+		for (int i = 0; i < counter.length; i++) {
+			final int c = counter[i];
+			if (c != 0) {
+				// Counters wrap around, interpret them as unsigned values
+				counts[i] = c & 0xFFFFFFFFL;
+				bits[i >>> 6] |= 1L << i;
+				if (reset) {
+					counter[i] = 0;
+				}
+			}
+		}
+		return counts;
+	}
+
+	private static void pack(final boolean[] probes, final long[] bits,
+			final boolean reset) {
+		for (int i = 0; i < probes.length; i++) {
+			if (probes[i]) {
+				bits[i >>> 6] |= 1L << i;
+				if (reset) {
+					probes[i] = false;
+				}
 			}
 		}
 	}
@@ -96,8 +194,21 @@ public class RuntimeData {
 	 * Resets all coverage information.
 	 */
 	public final void reset() {
-		synchronized (store) {
-			store.reset();
+		synchronized (lock) {
+			for (final ExecutionData data : store.values()) {
+				data.reset();
+			}
+			for (final AtomicReferenceArray<boolean[]> s : stripes.values()) {
+				for (int i = 0; i < s.length(); i++) {
+					final boolean[] stripe = s.get(i);
+					if (stripe != null) {
+						Arrays.fill(stripe, false);
+					}
+				}
+			}
+			for (final int[] c : counters.values()) {
+				Arrays.fill(c, 0);
+			}
 			startTimeStamp = System.currentTimeMillis();
 		}
 	}
@@ -105,7 +216,8 @@ public class RuntimeData {
 	/**
 	 * Returns the coverage data for the class with the given identifier. If
 	 * there is no data available under the given id a new entry is created.
-	 * This is a synchronized access to the underlying store.
+	 * This method does not block, if multiple threads concurrently request the
+	 * same class all of them get the same entry.
 	 *
 	 * @param id
 	 *            class identifier
@@ -117,9 +229,89 @@ public class RuntimeData {
 	 */
 	public ExecutionData getExecutionData(final Long id, final String name,
 			final int probecount) {
-		synchronized (store) {
-			return store.get(id, name, probecount);
+		ExecutionData entry = store.get(id);
+		if (entry == null) {
+			final ExecutionData newEntry = new ExecutionData(id.longValue(),
+					name, probecount);
+			entry = store.putIfAbsent(id, newEntry);
+			if (entry == null) {
+				return newEntry;
+			}
+		}
+		entry.assertCompatibility(id.longValue(), name, probecount);
+		return entry;
+	}
+
+	/**
+	 * Returns the probe array for the class with the given identifier. The
+	 * name is either the VM name of the class or, for classes with striped
+	 * probes, the VM name followed by
+	 * {@link InstrSupport#STRIPE_SEPARATOR} and the index of the stripe. The
+	 * probe array of stripe 0 is the probe array of the execution data of the
+	 * class, the probe arrays of all other stripes are merged into the
+	 * execution data when it is collected. This method does not block.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name of the class, optionally with stripe index
+	 * @param probecount
+	 *            probe data length
+	 * @return probe array
+	 */
+	public boolean[] getProbes(final Long id, final String name,
+			final int probecount) {
+		final int pos = name.lastIndexOf(InstrSupport.STRIPE_SEPARATOR);
+		if (pos == -1) {
+			return getExecutionData(id, name, probecount).getProbes();
+		}
+		final int stripe = Integer.parseInt(name.substring(pos + 1));
+		final ExecutionData data = getExecutionData(id,
+				name.substring(0, pos), probecount);
+		if (stripe == 0) {
+			return data.getProbes();
+		}
+		AtomicReferenceArray<boolean[]> s = stripes.get(id);
+		if (s == null) {
+			final AtomicReferenceArray<boolean[]> newStripes = new AtomicReferenceArray<boolean[]>(
+					InstrSupport.MAX_PROBE_STRIPES);
+			s = stripes.putIfAbsent(id, newStripes);
+			if (s == null) {
+				s = newStripes;
+			}
+		}
+		final boolean[] probes = s.get(stripe);
+		if (probes != null) {
+			return probes;
+		}
+		s.compareAndSet(stripe, null, new boolean[probecount]);
+		return s.get(stripe);
+	}
+
+	/**
+	 * Returns the probe counter array for the class with the given identifier.
+	 * Every element counts the executions of the corresponding probe. Counters
+	 * are incremented without synchronization, so concurrent executions of the
+	 * same probe might not all be counted. This method does not block.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name of the class
+	 * @param probecount
+	 *            probe data length
+	 * @return probe counter array
+	 */
+	public int[] getCounters(final Long id, final String name,
+			final int probecount) {
+		getExecutionData(id, name, probecount);
+		final int[] c = counters.get(id);
+		if (c != null) {
+			return c;
 		}
+		final int[] newCounters = new int[probecount];
+		final int[] existing = counters.putIfAbsent(id, newCounters);
+		return existing == null ? newCounters : existing;
 	}
 
 	/**
@@ -129,24 +321,31 @@ public class RuntimeData {
 	 *
 	 * <ul>
 	 * <li>args[0]: class id ({@link Long})
-	 * <li>args[1]: vm class name ({@link String})
+	 * <li>args[1]: vm class name, optionally with stripe index
+	 * ({@link String})
 	 * <li>args[2]: probe count ({@link Integer})
+	 * <li>args[3]: optional, {@link Boolean#TRUE} to request probe counters
 	 * </ul>
 	 *
 	 * Return value:
 	 *
 	 * <ul>
-	 * <li>args[0]: probe array (<code>boolean[]</code>)
+	 * <li>args[0]: probe array (<code>boolean[]</code>) or probe counter array
+	 * (<code>int[]</code>)
 	 * </ul>
 	 *
 	 * @param args
-	 *            parameter array of length 3
+	 *            parameter array of length 3 or 4
 	 */
 	public void getProbes(final Object[] args) {
 		final Long classid = (Long) args[0];
 		final String name = (String) args[1];
 		final int probecount = ((Integer) args[2]).intValue();
-		args[0] = getExecutionData(classid, name, probecount).getProbes();
+		if (args.length > 3 && Boolean.TRUE.equals(args[3])) {
+			args[0] = getCounters(classid, name, probecount);
+		} else {
+			args[0] = getProbes(classid, name, probecount);
+		}
 	}
 
 	/**
@@ -182,7 +381,30 @@ public class RuntimeData {
 	public static void generateArgumentArray(final long classid,
 			final String classname, final int probecount,
 			final MethodVisitor mv) {
-		mv.visitInsn(Opcodes.ICONST_3);
+		generateArgumentArray(classid, classname, probecount, false, mv);
+	}
+
+	/**
+	 * Generates code that creates the argument array for the
+	 * {@link #getProbes(Object[])} method, optionally requesting probe
+	 * counters. The array instance is left on the operand stack. The generated
+	 * code requires a stack size of 5.
+	 *
+	 * @param classid
+	 *            class identifier
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @param counters
+	 *            if <code>true</code> probe counters are requested
+	 * @param mv
+	 *            visitor to emit generated code
+	 */
+	public static void generateArgumentArray(final long classid,
+			final String classname, final int probecount,
+			final boolean counters, final MethodVisitor mv) {
+		mv.visitInsn(counters ? Opcodes.ICONST_4 : Opcodes.ICONST_3);
 		mv.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/Object");
 
 		// Class Id:
@@ -206,6 +428,15 @@ public class RuntimeData {
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Integer", "valueOf",
 				"(I)Ljava/lang/Integer;", false);
 		mv.visitInsn(Opcodes.AASTORE);
+
+		// Counters:
+		if (counters) {
+			mv.visitInsn(Opcodes.DUP);
+			mv.visitInsn(Opcodes.ICONST_3);
+			mv.visitFieldInsn(Opcodes.GETSTATIC, "java/lang/Boolean", "TRUE",
+					"Ljava/lang/Boolean;");
+			mv.visitInsn(Opcodes.AASTORE);
+		}
 	}
 
 	/**
@@ -227,9 +458,37 @@ public class RuntimeData {
 	public static void generateAccessCall(final long classid,
 			final String classname, final int probecount,
 			final MethodVisitor mv) {
+		generateAccessCall(classid, classname, probecount, false, mv);
+	}
+
+	/**
+	 * Generates the code that calls a {@link RuntimeData} instance through the
+	 * JRE API method {@link Object#equals(Object)} to obtain the probe
+	 * counters. The code pops a {@link Object} instance from the stack and
+	 * pushes the probe counter array of type <code>int[]</code> on the operand
+	 * stack. The generated code requires a stack size of 6.
+	 *
+	 * @param classid
+	 *            class identifier
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @param mv
+	 *            visitor to emit generated code
+	 */
+	public static void generateCounterAccessCall(final long classid,
+			final String classname, final int probecount,
+			final MethodVisitor mv) {
+		generateAccessCall(classid, classname, probecount, true, mv);
+	}
+
+	private static void generateAccessCall(final long classid,
+			final String classname, final int probecount,
+			final boolean counters, final MethodVisitor mv) {
 		// stack[0]: Ljava/lang/Object;
 
-		generateArgumentArray(classid, classname, probecount, mv);
+		generateArgumentArray(classid, classname, probecount, counters, mv);
 
 		// stack[1]: [Ljava/lang/Object;
 		// stack[0]: Ljava/lang/Object;
@@ -249,9 +508,11 @@ public class RuntimeData {
 		mv.visitInsn(Opcodes.ICONST_0);
 		mv.visitInsn(Opcodes.AALOAD);
 
-		// stack[0]: [Z
+		// stack[0]: [Z or [I
 
-		mv.visitTypeInsn(Opcodes.CHECKCAST, InstrSupport.DATAFIELD_DESC);
+		mv.visitTypeInsn(Opcodes.CHECKCAST,
+				counters ? InstrSupport.COUNTER_DATAFIELD_DESC
+						: InstrSupport.DATAFIELD_DESC);
 	}
 
 }
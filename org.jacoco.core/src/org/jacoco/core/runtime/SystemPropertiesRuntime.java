@@ -41,6 +41,33 @@ public class SystemPropertiesRuntime extends AbstractRuntime {
 
 	public int generateDataAccessor(final long classid, final String classname,
 			final int probecount, final MethodVisitor mv) {
+		generateRuntimeAccess(mv);
+
+		// Stack[0]: Ljava/lang/Object;
+
+		RuntimeData.generateAccessCall(classid, classname, probecount, mv);
+
+		// Stack[0]: [Z
+
+		return 6; // Maximum local stack size is 3
+	}
+
+	public int generateCounterAccessor(final long classid,
+			final String classname, final int probecount,
+			final MethodVisitor mv) {
+		generateRuntimeAccess(mv);
+
+		// Stack[0]: Ljava/lang/Object;
+
+		RuntimeData.generateCounterAccessCall(classid, classname, probecount,
+				mv);
+
+		// Stack[0]: [I
+
+		return 6;
+	}
+
+	private void generateRuntimeAccess(final MethodVisitor mv) {
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/System",
 				"getProperties", "()Ljava/util/Properties;", false);
 
@@ -53,14 +80,6 @@ public class SystemPropertiesRuntime extends AbstractRuntime {
 
 		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/util/Properties", "get",
 				"(Ljava/lang/Object;)Ljava/lang/Object;", false);
-
-		// Stack[0]: Ljava/lang/Object;
-
-		RuntimeData.generateAccessCall(classid, classname, probecount, mv);
-
-		// Stack[0]: [Z
-
-		return 6; // Maximum local stack size is 3
 	}
 
 	@Override
@@ -12,17 +12,24 @@
  *******************************************************************************/
 package org.jacoco.core.runtime;
 
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Matches strings against glob like wildcard expressions where <code>?</code>
  * matches any single character and <code>*</code> matches any number of any
  * character. Multiple expressions can be separated with a colon (:). In this
  * case the expression matches if at least one part matches.
+ *
+ * The expressions are compiled into a prefix tree of their literal prefixes
+ * up to the first wildcard. A string is matched by a single pass along the
+ * prefix tree, only the remainders of expressions with wildcards which share
+ * a prefix with the string are evaluated. This makes the matcher fast even for
+ * a large number of expressions.
  */
 public class WildcardMatcher {
 
-	private final Pattern pattern;
+	private final Node root;
 
 	/**
 	 * Creates a new matcher with the given expression.
@@ -31,35 +38,14 @@ public class WildcardMatcher {
 	 *            wildcard expressions
 	 */
 	public WildcardMatcher(final String expression) {
+		root = new Node();
 		final String[] parts = expression.split("\\:");
-		final StringBuilder regex = new StringBuilder(expression.length() * 2);
-		boolean next = false;
-		for (final String part : parts) {
-			if (next) {
-				regex.append('|');
-			}
-			regex.append('(').append(toRegex(part)).append(')');
-			next = true;
+		if (parts.length == 0) {
+			root.add("", 0);
 		}
-		pattern = Pattern.compile(regex.toString());
-	}
-
-	private static CharSequence toRegex(final String expression) {
-		final StringBuilder regex = new StringBuilder(expression.length() * 2);
-		for (final char c : expression.toCharArray()) {
-			switch (c) {
-			case '?':
-				regex.append(".");
-				break;
-			case '*':
-				regex.append(".*");
-				break;
-			default:
-				regex.append(Pattern.quote(String.valueOf(c)));
-				break;
-			}
+		for (final String part : parts) {
+			root.add(part, 0);
 		}
-		return regex;
 	}
 
 	/**
@@ -70,7 +56,176 @@ public class WildcardMatcher {
 	 * @return <code>true</code>, if the expression matches
 	 */
 	public boolean matches(final String s) {
-		return pattern.matcher(s).matches();
+		final int length = s.length();
+		Node node = root;
+		int pos = 0;
+		while (true) {
+			if (node.matchesRemainder(s, pos)) {
+				return true;
+			}
+			if (pos == length) {
+				return false;
+			}
+			node = node.getChild(s.charAt(pos++));
+			if (node == null) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Node of the prefix tree. The path to a node is a common literal prefix
+	 * of one or more expressions, the node keeps the remainders of these
+	 * expressions starting with the first wildcard.
+	 */
+	private static class Node {
+
+		private char[] keys = new char[0];
+
+		private Node[] children = new Node[0];
+
+		/** Some expression ends at this node */
+		private boolean end;
+
+		/** Some expression has only a single * remaining */
+		private boolean any;
+
+		/** Literal suffixes of remainders with a single leading * */
+		private final List<String> suffixes = new ArrayList<String>(0);
+
+		/** Other remainders starting with a wildcard */
+		private final List<String> remainders = new ArrayList<String>(0);
+
+		void add(final String expression, final int pos) {
+			if (pos == expression.length()) {
+				end = true;
+				return;
+			}
+			final char c = expression.charAt(pos);
+			if (c == '*' || c == '?') {
+				final String remainder = expression.substring(pos);
+				if ("*".equals(remainder)) {
+					any = true;
+				} else if (isSuffix(remainder)) {
+					suffixes.add(remainder.substring(1));
+				} else {
+					remainders.add(remainder);
+				}
+				return;
+			}
+			Node child = getChild(c);
+			if (child == null) {
+				child = new Node();
+				addChild(c, child);
+			}
+			child.add(expression, pos + 1);
+		}
+
+		private static boolean isSuffix(final String remainder) {
+			if (remainder.charAt(0) != '*') {
+				return false;
+			}
+			for (int i = 1; i < remainder.length(); i++) {
+				final char c = remainder.charAt(i);
+				if (c == '*' || c == '?') {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void addChild(final char c, final Node child) {
+			final int size = keys.length;
+			final char[] newKeys = new char[size + 1];
+			final Node[] newChildren = new Node[size + 1];
+			int i = 0;
+			while (i < size && keys[i] < c) {
+				newKeys[i] = keys[i];
+				newChildren[i] = children[i];
+				i++;
+			}
+			newKeys[i] = c;
+			newChildren[i] = child;
+			System.arraycopy(keys, i, newKeys, i + 1, size - i);
+			System.arraycopy(children, i, newChildren, i + 1, size - i);
+			keys = newKeys;
+			children = newChildren;
+		}
+
+		Node getChild(final char c) {
+			int low = 0;
+			int high = keys.length - 1;
+			while (low <= high) {
+				final int mid = (low + high) >>> 1;
+				final char key = keys[mid];
+				if (key < c) {
+					low = mid + 1;
+				} else if (key > c) {
+					high = mid - 1;
+				} else {
+					return children[mid];
+				}
+			}
+			return null;
+		}
+
+		boolean matchesRemainder(final String s, final int pos) {
+			if (any || (end && pos == s.length())) {
+				return true;
+			}
+			for (final String suffix : suffixes) {
+				if (s.endsWith(suffix) && s.length() - suffix.length() >= pos) {
+					return true;
+				}
+			}
+			for (final String remainder : remainders) {
+				if (matches(remainder, s, pos)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+	/**
+	 * Matches the substring of <code>s</code> starting at the given position
+	 * against the given wildcard expression. On a mismatch the last
+	 * <code>*</code> is extended by one character, earlier <code>*</code>
+	 * never need to be extended as the part after the last <code>*</code> can
+	 * be matched at any later position.
+	 */
+	private static boolean matches(final String expression, final String s,
+			int pos) {
+		final int length = s.length();
+		final int exprLength = expression.length();
+		int e = 0;
+		int starExpr = -1;
+		int starPos = 0;
+		while (pos < length) {
+			if (e < exprLength) {
+				final char c = expression.charAt(e);
+				if (c == '*') {
+					starExpr = e++;
+					starPos = pos;
+					continue;
+				}
+				if (c == '?' || c == s.charAt(pos)) {
+					e++;
+					pos++;
+					continue;
+				}
+			}
+			if (starExpr == -1) {
+				return false;
+			}
+			e = starExpr + 1;
+			pos = ++starPos;
+		}
+		while (e < exprLength && expression.charAt(e) == '*') {
+			e++;
+		}
+		return e == exprLength;
 	}
 
 }
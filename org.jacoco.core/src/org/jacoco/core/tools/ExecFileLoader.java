@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import org.jacoco.core.data.ExecutionDataIndex;
+import org.jacoco.core.data.ExecutionDataIndexWriter;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.ExecutionDataWriter;
@@ -28,13 +30,19 @@ import org.jacoco.core.data.SessionInfoStore;
 
 /**
  * Convenience utility for loading *.exec files into a
- * {@link ExecutionDataStore} and a {@link SessionInfoStore}.
+ * {@link ExecutionDataStore} and a {@link SessionInfoStore}. Files in the
+ * indexed format written by {@link ExecutionDataIndexWriter} are detected
+ * automatically. Such files are memory mapped and the execution data of a
+ * class is only read when it is requested from the store.
  */
 public class ExecFileLoader {
 
 	private final SessionInfoStore sessionInfos;
 	private final ExecutionDataStore executionData;
 
+	/** whether a file has been memory mapped */
+	private boolean mapped;
+
 	/**
 	 * New instance to combine session infos and execution data from multiple
 	 * files.
@@ -53,8 +61,12 @@ public class ExecFileLoader {
 	 *             in case of problems while reading from the stream
 	 */
 	public void load(final InputStream stream) throws IOException {
-		final ExecutionDataReader reader = new ExecutionDataReader(
-				new BufferedInputStream(stream));
+		final InputStream buffered = new BufferedInputStream(stream);
+		if (isIndexed(buffered)) {
+			add(ExecutionDataIndex.read(buffered));
+			return;
+		}
+		final ExecutionDataReader reader = new ExecutionDataReader(buffered);
 		reader.setExecutionDataVisitor(executionData);
 		reader.setSessionInfoVisitor(sessionInfos);
 		reader.read();
@@ -69,14 +81,77 @@ public class ExecFileLoader {
 	 *             in case of problems while reading from the stream
 	 */
 	public void load(final File file) throws IOException {
-		final InputStream stream = new FileInputStream(file);
+		final InputStream stream = new BufferedInputStream(
+				new FileInputStream(file));
 		try {
-			load(stream);
+			if (isIndexed(stream)) {
+				add(ExecutionDataIndex.open(file));
+				mapped = true;
+			} else {
+				load(stream);
+			}
 		} finally {
 			stream.close();
 		}
 	}
 
+	/**
+	 * Checks whether the given stream starts with the header of the indexed
+	 * format. The stream must support mark and reset and is reset to its
+	 * current position.
+	 */
+	static boolean isIndexed(final InputStream stream)
+			throws IOException {
+		final byte[] header = new byte[5];
+		stream.mark(header.length);
+		int length = 0;
+		int n;
+		while (length < header.length && (n = stream.read(header, length,
+				header.length - length)) != -1) {
+			length += n;
+		}
+		stream.reset();
+		return length == header.length && ExecutionDataIndex.isIndexed(header);
+	}
+
+	/**
+	 * Ensures that data in the stream format can be appended to the given
+	 * file. Files in the indexed format can't be appended, as their trailer
+	 * has to be at the end of the file.
+	 */
+	static void checkAppendable(final File file) throws IOException {
+		if (!file.isFile()) {
+			return;
+		}
+		final InputStream stream = new BufferedInputStream(
+				new FileInputStream(file));
+		try {
+			if (isIndexed(stream)) {
+				throw new IOException(String.format(
+						"Can't append to execution data file %s in the indexed format.",
+						file.getPath()));
+			}
+		} finally {
+			stream.close();
+		}
+	}
+
+	private void add(final ExecutionDataIndex index) {
+		index.acceptSessions(sessionInfos);
+		executionData.add(index);
+	}
+
+	/**
+	 * Reads the content of all memory mapped files into memory, as the target
+	 * file might be one of them.
+	 */
+	private void unmap() {
+		if (mapped) {
+			executionData.resolveAll();
+			mapped = false;
+		}
+	}
+
 	/**
 	 * Saves the current content into the given output stream.
 	 *
@@ -91,6 +166,50 @@ public class ExecFileLoader {
 		executionData.accept(dataWriter);
 	}
 
+	/**
+	 * Saves the current content in the indexed format into the given output
+	 * stream.
+	 *
+	 * @param stream
+	 *            stream to save content to
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 * @see ExecutionDataIndexWriter
+	 */
+	public void saveIndexed(final OutputStream stream) throws IOException {
+		final ExecutionDataIndexWriter dataWriter = new ExecutionDataIndexWriter(
+				stream);
+		sessionInfos.accept(dataWriter);
+		executionData.accept(dataWriter);
+		dataWriter.finish();
+	}
+
+	/**
+	 * Saves the current content in the indexed format into the given file.
+	 * Parent directories are created as needed. Existing files are
+	 * overwritten, files in the indexed format can't be appended.
+	 *
+	 * @param file
+	 *            file to save content to
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 * @see ExecutionDataIndexWriter
+	 */
+	public void saveIndexed(final File file) throws IOException {
+		unmap();
+		final File folder = file.getParentFile();
+		if (folder != null) {
+			folder.mkdirs();
+		}
+		final OutputStream stream = new BufferedOutputStream(
+				new FileOutputStream(file));
+		try {
+			saveIndexed(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
 	/**
 	 * Saves the current content into the given file. Parent directories are
 	 * created as needed. Also a files system lock is acquired to avoid
@@ -100,11 +219,17 @@ public class ExecFileLoader {
 	 *            file to save content to
 	 * @param append
 	 *            <code>true</code> if the content should be appended, otherwise
-	 *            the file is overwritten.
+	 *            the file is overwritten. Files in the indexed format can't
+	 *            be appended.
 	 * @throws IOException
-	 *             in case of problems while writing to the stream
+	 *             in case of problems while writing to the stream or if the
+	 *             content should be appended to a file in the indexed format
 	 */
 	public void save(final File file, final boolean append) throws IOException {
+		unmap();
+		if (append) {
+			checkAppendable(file);
+		}
 		final File folder = file.getParentFile();
 		if (folder != null) {
 			folder.mkdirs();
@@ -0,0 +1,342 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static java.lang.String.format;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jacoco.core.data.ExecutionDataIndex;
+import org.jacoco.core.data.ExecutionDataIndexWriter;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+
+/**
+ * Utility for merging a large number of *.exec files. In contrast to
+ * {@link ExecFileLoader} the execution data of all files is never loaded into
+ * memory at the same time: Every input is first sorted by class id into a
+ * temporary file in the indexed format written by
+ * {@link ExecutionDataIndexWriter}. The sorted files are then merged on the
+ * fly, so only the execution data of a single class is held in memory while
+ * the merged data is written. Optionally inputs are sorted with multiple
+ * threads.
+ * <p>
+ * A merger instance can be used for a single merge only, all temporary files
+ * are deleted afterwards.
+ */
+public class ExecFileMerger {
+
+	private final List<Input> inputs = new ArrayList<Input>();
+
+	private int threads = 1;
+
+	/**
+	 * Sets the number of threads used to sort the files added with
+	 * {@link #add(File)}. Default is 1.
+	 *
+	 * @param threads
+	 *            number of threads, must be at least 1
+	 */
+	public void setThreads(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be positive: " + threads);
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Returns the number of threads used to sort files.
+	 *
+	 * @return number of threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Adds the given file to the inputs of this merger. The file is read when
+	 * {@link #merge(ISessionInfoVisitor, IExecutionDataVisitor)} is called.
+	 *
+	 * @param file
+	 *            execution data file in any format
+	 */
+	public void add(final File file) {
+		inputs.add(new Input(file));
+	}
+
+	/**
+	 * Adds the content of the given stream to the inputs of this merger. The
+	 * stream is read and sorted immediately. The provided {@link InputStream}
+	 * is not closed by this method.
+	 *
+	 * @param stream
+	 *            execution data in any format
+	 * @throws IOException
+	 *             in case of problems while reading from the stream or writing
+	 *             the temporary file
+	 */
+	public void add(final InputStream stream) throws IOException {
+		final Input input = new Input(null);
+		input.sorted = sort(stream);
+		inputs.add(input);
+	}
+
+	/**
+	 * Merges all inputs and writes the session infos and the execution data
+	 * to the given visitors. Session infos are written first in the order of
+	 * the inputs, execution data is written in the order of class ids.
+	 *
+	 * @param sessionInfoVisitor
+	 *            visitor for all session infos
+	 * @param executionDataVisitor
+	 *            visitor for the merged execution data
+	 * @throws IOException
+	 *             in case of problems while reading an input or writing the
+	 *             temporary files
+	 * @throws IllegalStateException
+	 *             if the execution data of a class is not compatible in all
+	 *             inputs
+	 */
+	public void merge(final ISessionInfoVisitor sessionInfoVisitor,
+			final IExecutionDataVisitor executionDataVisitor)
+			throws IOException {
+		try {
+			sortAll();
+			final List<ExecutionDataIndex> indexes = new ArrayList<ExecutionDataIndex>();
+			for (final Input input : inputs) {
+				final ExecutionDataIndex index = ExecutionDataIndex
+						.open(input.sorted);
+				index.acceptSessions(sessionInfoVisitor);
+				indexes.add(index);
+			}
+			ExecutionDataIndex.merge(indexes, executionDataVisitor);
+		} finally {
+			deleteTemporaryFiles();
+		}
+	}
+
+	private void deleteTemporaryFiles() {
+		for (final Input input : inputs) {
+			if (input.sorted != null && !input.sorted.delete()) {
+				// Memory mapped files can't be deleted on some platforms
+				input.sorted.deleteOnExit();
+			}
+		}
+		inputs.clear();
+	}
+
+	/**
+	 * Merges all inputs and writes the result in the stream format to the
+	 * given output stream.
+	 *
+	 * @param stream
+	 *            stream to write merged content to
+	 * @throws IOException
+	 *             in case of problems while reading an input or writing to
+	 *             the stream
+	 */
+	public void merge(final OutputStream stream) throws IOException {
+		final ExecutionDataWriter dataWriter = new ExecutionDataWriter(stream);
+		merge(dataWriter, dataWriter);
+	}
+
+	/**
+	 * Merges all inputs and writes the result in the stream format to the
+	 * given file. Parent directories are created as needed. Also a files
+	 * system lock is acquired to avoid concurrent write access. The file may
+	 * be one of the inputs, as all inputs are read before the file is opened.
+	 *
+	 * @param file
+	 *            file to write merged content to
+	 * @param append
+	 *            <code>true</code> if the content should be appended, otherwise
+	 *            the file is overwritten. Files in the indexed format can't
+	 *            be appended.
+	 * @throws IOException
+	 *             in case of problems while reading an input or writing to
+	 *             the file or if the content should be appended to a file in
+	 *             the indexed format
+	 */
+	public void merge(final File file, final boolean append)
+			throws IOException {
+		try {
+			sortAll();
+			if (append) {
+				ExecFileLoader.checkAppendable(file);
+			}
+			final File folder = file.getParentFile();
+			if (folder != null) {
+				folder.mkdirs();
+			}
+			final FileOutputStream fileStream = new FileOutputStream(file,
+					append);
+			// Avoid concurrent writes from other processes:
+			fileStream.getChannel().lock();
+			final OutputStream bufferedStream = new BufferedOutputStream(
+					fileStream);
+			try {
+				merge(bufferedStream);
+			} finally {
+				bufferedStream.close();
+			}
+		} finally {
+			deleteTemporaryFiles();
+		}
+	}
+
+	private void sortAll() throws IOException {
+		final List<Input> pending = new ArrayList<Input>();
+		for (final Input input : inputs) {
+			if (input.sorted == null) {
+				pending.add(input);
+			}
+		}
+		if (threads == 1 || pending.size() < 2) {
+			for (final Input input : pending) {
+				input.sort();
+			}
+			return;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(threads, pending.size()));
+		try {
+			final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (final Input input : pending) {
+				futures.add(executor.submit(input));
+			}
+			Throwable failure = null;
+			for (final Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (final CancellationException e) {
+					// skipped after a previous failure
+				} catch (final ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+						// Tasks which are already running will complete
+						for (final Future<Void> f : futures) {
+							f.cancel(false);
+						}
+					}
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+			}
+			rethrow(failure);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void rethrow(final Throwable failure) throws IOException {
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+	}
+
+	private static File sort(final InputStream stream) throws IOException {
+		final File file = File.createTempFile("jacoco", ".exec");
+		try {
+			final OutputStream out = new BufferedOutputStream(
+					new FileOutputStream(file));
+			try {
+				final InputStream in = new BufferedInputStream(stream);
+				if (ExecFileLoader.isIndexed(in)) {
+					// Files in the indexed format are already sorted
+					final byte[] buffer = new byte[0x2000];
+					int n;
+					while ((n = in.read(buffer)) != -1) {
+						out.write(buffer, 0, n);
+					}
+				} else {
+					final ExecutionDataIndexWriter writer = new ExecutionDataIndexWriter(
+							out);
+					final ExecutionDataReader reader = new ExecutionDataReader(
+							in);
+					reader.setSessionInfoVisitor(writer);
+					reader.setExecutionDataVisitor(writer);
+					reader.read();
+					writer.finish();
+				}
+			} finally {
+				out.close();
+			}
+		} catch (final IOException e) {
+			file.delete();
+			throw e;
+		} catch (final RuntimeException e) {
+			file.delete();
+			throw e;
+		}
+		return file;
+	}
+
+	private static class Input implements Callable<Void> {
+
+		private final File source;
+
+		File sorted;
+
+		Input(final File source) {
+			this.source = source;
+		}
+
+		void sort() throws IOException {
+			final InputStream in = new FileInputStream(source);
+			try {
+				sorted = ExecFileMerger.sort(in);
+			} catch (final IOException e) {
+				final IOException ex = new IOException(
+						format("Error while reading execution data file %s.",
+								source.getPath()));
+				ex.initCause(e);
+				throw ex;
+			} finally {
+				in.close();
+			}
+		}
+
+		public Void call() throws IOException {
+			sort();
+			return null;
+		}
+
+	}
+
+}
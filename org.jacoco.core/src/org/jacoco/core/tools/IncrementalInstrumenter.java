@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.internal.data.CRC64;
+
+/**
+ * Offline instrumentation which skips unchanged files. A manifest file records
+ * the source, the checksum of the source and the checksum of the written
+ * output for every instrumented file. A file is only instrumented again if its
+ * source or its output has been modified, if it has been instrumented from a
+ * different source or with a different JaCoCo version. Outputs of previously
+ * instrumented files which are not part of the current set of files are
+ * removed.
+ * <p>
+ * The manifest does not record the configuration of the {@link Instrumenter},
+ * a manifest must only be used with instrumenters configured the same way.
+ * </p>
+ */
+public class IncrementalInstrumenter {
+
+	private static final String HEADER = "JaCoCo instrumentation manifest ";
+
+	private static final String UTF_8 = "UTF-8";
+
+	private final Instrumenter instrumenter;
+
+	private final File manifest;
+
+	private Map<File, Record> records;
+
+	private int skipped;
+
+	private int removed;
+
+	/**
+	 * Creates a new instance which uses the given manifest file.
+	 *
+	 * @param instrumenter
+	 *            instrumenter for modified files
+	 * @param manifest
+	 *            manifest file, will be created if it does not exist
+	 */
+	public IncrementalInstrumenter(final Instrumenter instrumenter,
+			final File manifest) {
+		this.instrumenter = instrumenter;
+		this.manifest = manifest;
+	}
+
+	/**
+	 * Checks whether the given target has been instrumented from the given
+	 * source and neither has been modified since.
+	 *
+	 * @param source
+	 *            source file
+	 * @param target
+	 *            target file
+	 * @return <code>true</code> if the target does not need to be
+	 *         instrumented again
+	 * @throws IOException
+	 *             if the manifest or one of the files can't be read
+	 */
+	public boolean isUpToDate(final File source, final File target)
+			throws IOException {
+		final Record record = getRecords().get(target.getAbsoluteFile());
+		return record != null
+				&& record.source.equals(source.getAbsoluteFile())
+				&& source.isFile() && target.isFile()
+				&& record.sourceChecksum == checksum(source)
+				&& record.targetChecksum == checksum(target);
+	}
+
+	/**
+	 * Instruments all modified files like
+	 * {@link Instrumenter#instrumentAll(Map)} and updates the manifest
+	 * afterwards. Up-to-date files are skipped, outputs of files which have
+	 * been instrumented before but are not contained in the given files any
+	 * more are removed.
+	 *
+	 * @param files
+	 *            source files or folders mapped to their targets
+	 * @return number of instrumented classes in modified files
+	 * @throws IOException
+	 *             if reading or writing a file fails or a class can't be
+	 *             instrumented
+	 */
+	public int instrumentAll(final Map<File, File> files) throws IOException {
+		final Map<File, File> all = new LinkedHashMap<File, File>();
+		for (final Map.Entry<File, File> e : files.entrySet()) {
+			collect(e.getKey().getAbsoluteFile(),
+					e.getValue().getAbsoluteFile(), all);
+		}
+		final Map<File, Record> previous = getRecords();
+		final Map<File, File> modified = new LinkedHashMap<File, File>();
+		final Map<File, Record> current = new LinkedHashMap<File, Record>();
+		skipped = 0;
+		for (final Map.Entry<File, File> e : all.entrySet()) {
+			if (isUpToDate(e.getKey(), e.getValue())) {
+				current.put(e.getValue(), previous.get(e.getValue()));
+				skipped++;
+			} else {
+				modified.put(e.getKey(), e.getValue());
+			}
+		}
+
+		// A failed instrumentation leaves an incomplete set of outputs
+		manifest.delete();
+		records = null;
+		final int count = instrumenter.instrumentAll(modified);
+		for (final Map.Entry<File, File> e : modified.entrySet()) {
+			final File target = e.getValue();
+			current.put(target, new Record(e.getKey(), checksum(e.getKey()),
+					checksum(target)));
+		}
+
+		removed = 0;
+		for (final Map.Entry<File, Record> e : previous.entrySet()) {
+			final File target = e.getKey();
+			final Record record = e.getValue();
+			if (!current.containsKey(target) && target.isFile()
+					&& record.targetChecksum == checksum(target)) {
+				removeOutput(record.source, target);
+				removed++;
+			}
+		}
+
+		write(current);
+		records = current;
+		return count;
+	}
+
+	/**
+	 * Removes the output of a file which has been instrumented before but is
+	 * not instrumented any more. This implementation deletes the target file.
+	 *
+	 * @param source
+	 *            source the target has been instrumented from
+	 * @param target
+	 *            unmodified target file
+	 * @throws IOException
+	 *             if the output can't be removed
+	 */
+	protected void removeOutput(final File source, final File target)
+			throws IOException {
+		if (!target.delete()) {
+			throw new IOException("Unable to delete " + target);
+		}
+	}
+
+	/**
+	 * @return number of up-to-date files skipped by the last call of
+	 *         {@link #instrumentAll(Map)}
+	 */
+	public int getSkippedFiles() {
+		return skipped;
+	}
+
+	/**
+	 * @return number of outputs removed by the last call of
+	 *         {@link #instrumentAll(Map)}
+	 */
+	public int getRemovedFiles() {
+		return removed;
+	}
+
+	private static void collect(final File source, final File target,
+			final Map<File, File> files) {
+		if (source.isDirectory()) {
+			for (final File child : source.listFiles()) {
+				collect(child, new File(target, child.getName()), files);
+			}
+		} else {
+			files.put(source, target);
+		}
+	}
+
+	private static long checksum(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			return CRC64.checksum(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private Map<File, Record> getRecords() throws IOException {
+		if (records == null) {
+			records = read();
+		}
+		return records;
+	}
+
+	/**
+	 * Reads the manifest. Every line after the header contains the checksums
+	 * of source and target followed by both paths, separated by tabs.
+	 */
+	private Map<File, Record> read() throws IOException {
+		final Map<File, Record> result = new LinkedHashMap<File, Record>();
+		if (!manifest.isFile()) {
+			return result;
+		}
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(manifest), UTF_8));
+		try {
+			if (!(HEADER + JaCoCo.VERSION).equals(reader.readLine())) {
+				return result;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String[] fields = line.split("\t");
+				if (fields.length != 4) {
+					return new LinkedHashMap<File, Record>();
+				}
+				result.put(new File(fields[3]),
+						new Record(new File(fields[2]), parse(fields[0]),
+								parse(fields[1])));
+			}
+			return result;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static long parse(final String hex) throws IOException {
+		try {
+			return Long.parseLong(hex.substring(0, 8), 16) << 32
+					| Long.parseLong(hex.substring(8), 16);
+		} catch (final RuntimeException e) {
+			throw new IOException("Invalid checksum in manifest: " + hex);
+		}
+	}
+
+	private void write(final Map<File, Record> content) throws IOException {
+		final File parent = manifest.getAbsoluteFile().getParentFile();
+		parent.mkdirs();
+		final File temp = new File(parent, manifest.getName() + ".tmp");
+		final Writer writer = new OutputStreamWriter(
+				new FileOutputStream(temp), UTF_8);
+		try {
+			writer.write(HEADER + JaCoCo.VERSION + "\n");
+			for (final Map.Entry<File, Record> e : content.entrySet()) {
+				final Record record = e.getValue();
+				writer.write(String.format("%016x\t%016x\t%s\t%s\n",
+						Long.valueOf(record.sourceChecksum),
+						Long.valueOf(record.targetChecksum), record.source,
+						e.getKey()));
+			}
+		} finally {
+			writer.close();
+		}
+		if (!temp.renameTo(manifest)) {
+			manifest.delete();
+			if (!temp.renameTo(manifest)) {
+				throw new IOException("Unable to write " + manifest);
+			}
+		}
+	}
+
+	private static class Record {
+
+		final File source;
+
+		final long sourceChecksum;
+
+		final long targetChecksum;
+
+		Record(final File source, final long sourceChecksum,
+				final long targetChecksum) {
+			this.source = source;
+			this.sourceChecksum = sourceChecksum;
+			this.targetChecksum = targetChecksum;
+		}
+
+	}
+
+}
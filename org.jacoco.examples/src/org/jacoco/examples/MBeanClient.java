@@ -76,6 +76,8 @@ public final class MBeanClient {
 		void dump(boolean reset);
 
 		void reset();
+
+		void removeInstrumentation();
 	}
 
 	private MBeanClient() {
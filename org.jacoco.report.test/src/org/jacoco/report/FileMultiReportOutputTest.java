@@ -19,6 +19,12 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -52,6 +58,35 @@ public class FileMultiReportOutputTest {
 		actual.close();
 	}
 
+	@Test
+	public void testCreateFilesConcurrently() throws Exception {
+		final IMultiReportOutput output = new FileMultiReportOutput(
+				folder.getRoot());
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		final List<Future<Void>> results = new ArrayList<Future<Void>>();
+		for (int i = 0; i < 64; i++) {
+			final String path = "a/b" + (i % 4) + "/c" + (i % 8) + "/test" + i;
+			results.add(executor.submit(new Callable<Void>() {
+				public Void call() throws IOException {
+					final OutputStream stream = output.createFile(path);
+					stream.write(1);
+					stream.close();
+					return null;
+				}
+			}));
+		}
+		for (final Future<Void> result : results) {
+			result.get();
+		}
+		executor.shutdown();
+		output.close();
+
+		for (int i = 0; i < 64; i++) {
+			assertEquals(1, new File(folder.getRoot(),
+					"a/b" + (i % 4) + "/c" + (i % 8) + "/test" + i).length());
+		}
+	}
+
 	@Test(expected = IOException.class)
 	public void testCreateFileNegative() throws IOException {
 		folder.newFile("a");
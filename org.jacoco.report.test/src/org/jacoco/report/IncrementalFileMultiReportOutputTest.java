@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.jacoco.core.JaCoCo;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link IncrementalFileMultiReportOutput}.
+ */
+public class IncrementalFileMultiReportOutputTest {
+
+	private static final long OLD_TIMESTAMP = 1000000000000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File root;
+
+	@Before
+	public void setup() {
+		root = folder.getRoot();
+	}
+
+	@Test
+	public void should_write_files_and_manifest() throws IOException {
+		final IncrementalFileMultiReportOutput output = new IncrementalFileMultiReportOutput(
+				root);
+		write(output, "a/b/test", "content");
+		output.close();
+
+		assertEquals("content", read(new File(root, "a/b/test")));
+		assertTrue(new File(root,
+				IncrementalFileMultiReportOutput.MANIFEST).isFile());
+		assertEquals(0, output.getSkippedFiles());
+		assertEquals(0, output.getRemovedFiles());
+	}
+
+	@Test
+	public void should_skip_unchanged_files() throws IOException {
+		report("a/test", "content");
+		final File file = new File(root, "a/test");
+		file.setLastModified(OLD_TIMESTAMP);
+
+		final IncrementalFileMultiReportOutput output = report("a/test",
+				"content");
+
+		assertEquals(1, output.getSkippedFiles());
+		assertEquals(OLD_TIMESTAMP, file.lastModified());
+		assertEquals("content", read(file));
+	}
+
+	@Test
+	public void should_write_changed_files() throws IOException {
+		report("a/test", "content");
+
+		final IncrementalFileMultiReportOutput output = report("a/test",
+				"changed");
+
+		assertEquals(0, output.getSkippedFiles());
+		assertEquals("changed", read(new File(root, "a/test")));
+	}
+
+	@Test
+	public void should_write_unchanged_files_when_deleted()
+			throws IOException {
+		report("a/test", "content");
+		assertTrue(new File(root, "a/test").delete());
+
+		final IncrementalFileMultiReportOutput output = report("a/test",
+				"content");
+
+		assertEquals(0, output.getSkippedFiles());
+		assertEquals("content", read(new File(root, "a/test")));
+	}
+
+	@Test
+	public void should_remove_outdated_files_and_empty_directories()
+			throws IOException {
+		report("a/b/old", "content");
+
+		final IncrementalFileMultiReportOutput output = report("new",
+				"content");
+
+		assertEquals(1, output.getRemovedFiles());
+		assertFalse(new File(root, "a").exists());
+		assertTrue(new File(root, "new").isFile());
+	}
+
+	@Test
+	public void should_keep_modified_outdated_files() throws IOException {
+		report("old", "content");
+		final OutputStream out = new FileOutputStream(new File(root, "old"));
+		out.write("modified".getBytes("UTF-8"));
+		out.close();
+
+		final IncrementalFileMultiReportOutput output = report("new",
+				"content");
+
+		assertEquals(0, output.getRemovedFiles());
+		assertEquals("modified", read(new File(root, "old")));
+	}
+
+	@Test
+	public void should_ignore_manifest_of_other_version() throws IOException {
+		report("a/test", "content");
+		final File manifest = new File(root,
+				IncrementalFileMultiReportOutput.MANIFEST);
+		final String content = read(manifest);
+		final OutputStream out = new FileOutputStream(manifest);
+		out.write(content.replace(JaCoCo.VERSION, "0.0.0").getBytes("UTF-8"));
+		out.close();
+
+		final IncrementalFileMultiReportOutput output = report("new",
+				"content");
+
+		assertEquals(0, output.getSkippedFiles());
+		assertEquals(0, output.getRemovedFiles());
+		assertTrue(new File(root, "a/test").isFile());
+	}
+
+	@Test(expected = IOException.class)
+	public void should_throw_IOException_for_invalid_manifest()
+			throws IOException {
+		final OutputStream out = new FileOutputStream(
+				new File(root, IncrementalFileMultiReportOutput.MANIFEST));
+		out.write(("JaCoCo report manifest " + JaCoCo.VERSION
+				+ "\nxyz\t1\ttest\n").getBytes("UTF-8"));
+		out.close();
+
+		new IncrementalFileMultiReportOutput(root);
+	}
+
+	private IncrementalFileMultiReportOutput report(final String path,
+			final String content) throws IOException {
+		final IncrementalFileMultiReportOutput output = new IncrementalFileMultiReportOutput(
+				root);
+		write(output, path, content);
+		output.close();
+		return output;
+	}
+
+	private static void write(final IMultiReportOutput output,
+			final String path, final String content) throws IOException {
+		final OutputStream stream = output.createFile(path);
+		stream.write(content.getBytes("UTF-8"));
+		stream.close();
+	}
+
+	private static String read(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			final byte[] buffer = new byte[(int) file.length()];
+			int pos = 0;
+			while (pos < buffer.length) {
+				pos += in.read(buffer, pos, buffer.length - pos);
+			}
+			return new String(buffer, "UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+
+}
@@ -40,13 +40,16 @@ public class MemoryMultiReportOutput implements IMultiReportOutput {
 
 	private boolean closed = false;
 
-	public OutputStream createFile(final String path) throws IOException {
+	public synchronized OutputStream createFile(final String path)
+			throws IOException {
 		assertFalse("Duplicate output " + path, files.containsKey(path));
 		open.add(path);
 		final ByteArrayOutputStream out = new ByteArrayOutputStream() {
 			@Override
 			public void close() throws IOException {
-				open.remove(path);
+				synchronized (MemoryMultiReportOutput.this) {
+					open.remove(path);
+				}
 				super.close();
 			}
 		};
@@ -139,6 +139,42 @@ public class ZipMultiReportOutputTest {
 		assertArrayEquals(content2, entries.get("readme.txt"));
 	}
 
+	@Test
+	public void testCreateFilesConcurrently() throws Exception {
+		final OutputStream out1 = zipOutput.createFile("a.txt");
+		out1.write("HelloZip".getBytes());
+
+		final OutputStream[] others = new OutputStream[2];
+		final Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					others[0] = zipOutput.createFile("b.txt");
+					others[0].write("HelloB".getBytes());
+					others[0].close();
+					others[1] = zipOutput.createFile("c.txt");
+					others[1].write("HelloC".getBytes());
+				} catch (final IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+
+		out1.write("Again".getBytes());
+		out1.close();
+		others[1].close();
+		zipOutput.close();
+
+		final Map<String, byte[]> entries = readEntries();
+		assertEquals(new HashSet<String>(Arrays.asList("a.txt", "b.txt",
+				"c.txt")), entries.keySet());
+		assertArrayEquals("HelloZipAgain".getBytes(), entries.get("a.txt"));
+		assertArrayEquals("HelloB".getBytes(), entries.get("b.txt"));
+		assertArrayEquals("HelloC".getBytes(), entries.get("c.txt"));
+	}
+
 	@Test(expected = IOException.class)
 	public void testWriteToClosedStream1() throws IOException {
 		OutputStream out = zipOutput.createFile("index.html");
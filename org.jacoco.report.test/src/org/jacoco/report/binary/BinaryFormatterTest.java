@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.binary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ICoverageNode.CounterEntity;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.analysis.BundleCoverageImpl;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+import org.jacoco.core.internal.analysis.PackageCoverageImpl;
+import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
+import org.jacoco.core.internal.analysis.diff.DiffClassRegistry;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.MemoryOutput;
+import org.jacoco.report.xml.XMLFormatter;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link BinaryFormatter} and {@link BinaryReportReader}.
+ */
+public class BinaryFormatterTest {
+
+	private static final String SOURCE = "BinaryFormatterTestTarget.java";
+
+	private List<SessionInfo> infos;
+
+	private IBundleCoverage bundle;
+
+	@Before
+	public void setup() {
+		infos = Arrays.asList(new SessionInfo("session-1", 12345, 67890),
+				new SessionInfo("session-2", 1, 2));
+		bundle = createBundle("bundle");
+	}
+
+	@Test
+	public void should_read_session_infos() throws IOException {
+		final BinaryReportReader reader = read(write(bundle));
+
+		assertEquals(2, reader.getSessionInfos().size());
+		final SessionInfo info = reader.getSessionInfos().get(0);
+		assertEquals("session-1", info.getId());
+		assertEquals(12345, info.getStartTimeStamp());
+		assertEquals(67890, info.getDumpTimeStamp());
+	}
+
+	@Test
+	public void should_read_bundle() throws IOException {
+		final BinaryReportReader reader = read(write(bundle));
+
+		assertEquals(1, reader.getBundles().size());
+		assertBundle(bundle, reader.getBundles().get(0));
+	}
+
+	@Test
+	public void should_read_class_attributes() throws IOException {
+		final IBundleCoverage actual = read(write(bundle)).getBundles()
+				.get(0);
+
+		final Iterator<IClassCoverage> classes = actual.getPackages()
+				.iterator().next().getClasses().iterator();
+		final IClassCoverage c1 = classes.next();
+		assertEquals("org/example/Foo", c1.getName());
+		assertEquals("org/example", c1.getPackageName());
+		assertEquals(0x1234567890abcdefL, c1.getId());
+		assertFalse(c1.isNoMatch());
+		assertEquals("Ljava/lang/Object;", c1.getSignature());
+		assertEquals("java/lang/Object", c1.getSuperName());
+		assertArrayEquals(new String[] { "java/lang/Runnable" },
+				c1.getInterfaceNames());
+		assertEquals(SOURCE, c1.getSourceFileName());
+		final IClassCoverage c2 = classes.next();
+		assertTrue(c2.isNoMatch());
+		assertNull(c2.getSignature());
+		assertNull(c2.getSuperName());
+		assertNull(c2.getInterfaceNames());
+		assertNull(c2.getSourceFileName());
+	}
+
+	@Test
+	public void should_read_lines() throws IOException {
+		final IBundleCoverage actual = read(write(bundle)).getBundles()
+				.get(0);
+
+		final ISourceFileCoverage s = actual.getPackages().iterator().next()
+				.getSourceFiles().iterator().next();
+		assertEquals(10, s.getFirstLine());
+		assertEquals(13, s.getLastLine());
+		assertEquals(ICounter.DIFF_PARTLY_COVERED, s.getLine(10).getStatus());
+		assertEquals(ICounter.DIFF_FULLY_COVERED, s.getLine(11).getStatus());
+		assertEquals(ICounter.EMPTY, s.getLine(12).getStatus());
+		assertEquals(ICounter.NOT_COVERED, s.getLine(13).getStatus());
+		assertEquals(ICounter.EMPTY, s.getLine(14).getStatus());
+		assertEquals(42, s.getExecutionCount(11));
+		assertEquals(0, s.getExecutionCount(13));
+	}
+
+	@Test
+	public void should_replay_groups_to_other_formatters() throws IOException {
+		final MemoryOutput expected = new MemoryOutput();
+		writeGroups(new XMLFormatter().createVisitor(expected));
+		final MemoryOutput binary = new MemoryOutput();
+		writeGroups(new BinaryFormatter().createVisitor(binary));
+		binary.assertClosed();
+
+		final BinaryReportReader reader = read(binary);
+		final MemoryOutput actual = new MemoryOutput();
+		reader.accept(new XMLFormatter().createVisitor(actual), null);
+
+		assertEquals(3, reader.getBundles().size());
+		assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+	}
+
+	@Test(expected = IOException.class)
+	public void should_throw_IOException_for_invalid_content()
+			throws IOException {
+		new BinaryReportReader(
+				new ByteArrayInputStream(new byte[] { 0x01, 0x02, 0x03 }));
+	}
+
+	private void writeGroups(final IReportVisitor visitor)
+			throws IOException {
+		visitor.visitInfo(infos, Collections.<ExecutionData> emptyList());
+		final IReportGroupVisitor group = visitor.visitGroup("root");
+		group.visitBundle(createBundle("b1"), null);
+		final IReportGroupVisitor child = group.visitGroup("child");
+		child.visitBundle(createBundle("b2"), null);
+		child.visitGroup("empty");
+		group.visitBundle(createBundle("b3"), null);
+		visitor.visitEnd();
+	}
+
+	private MemoryOutput write(final IBundleCoverage bundle)
+			throws IOException {
+		final MemoryOutput output = new MemoryOutput();
+		final IReportVisitor visitor = new BinaryFormatter()
+				.createVisitor(output);
+		visitor.visitInfo(infos, Collections.<ExecutionData> emptyList());
+		visitor.visitBundle(bundle, null);
+		visitor.visitEnd();
+		output.assertClosed();
+		return output;
+	}
+
+	private static BinaryReportReader read(final MemoryOutput output)
+			throws IOException {
+		return new BinaryReportReader(output.getContentsAsStream());
+	}
+
+	private static IBundleCoverage createBundle(final String name) {
+		DiffClassRegistry.putDiffLinesOfClass(SOURCE,
+				new int[][] { { 10, 12 } });
+
+		final ClassCoverageImpl c1 = new ClassCoverageImpl("org/example/Foo",
+				0x1234567890abcdefL, false);
+		c1.setSignature("Ljava/lang/Object;");
+		c1.setSuperName("java/lang/Object");
+		c1.setInterfaces(new String[] { "java/lang/Runnable" });
+		c1.setSourceFileName(SOURCE);
+		final MethodCoverageImpl m1 = new MethodCoverageImpl("run", "()V",
+				null, true, SOURCE);
+		m1.increment(CounterImpl.getInstance(1, 2),
+				CounterImpl.getInstance(1, 1), 10);
+		m1.increment(CounterImpl.getInstance(0, 3), CounterImpl.COUNTER_0_0,
+				11, 42);
+		m1.incrementMethodCounter();
+		c1.addMethod(m1);
+		final MethodCoverageImpl m2 = new MethodCoverageImpl("<init>",
+				"(I)V", "<T:Ljava/lang/Object;>(I)V", false, SOURCE);
+		m2.increment(CounterImpl.getInstance(4, 0), CounterImpl.COUNTER_0_0,
+				13);
+		m2.incrementMethodCounter();
+		c1.addMethod(m2);
+
+		final ClassCoverageImpl c2 = new ClassCoverageImpl("org/example/Bar",
+				42, true);
+		final MethodCoverageImpl m3 = new MethodCoverageImpl("bar", "()V",
+				null, false, SOURCE);
+		m3.increment(CounterImpl.getInstance(2, 0), CounterImpl.COUNTER_0_0,
+				ISourceNode.UNKNOWN_LINE);
+		m3.incrementMethodCounter();
+		c2.addMethod(m3);
+
+		final SourceFileCoverageImpl s = new SourceFileCoverageImpl(SOURCE,
+				"org/example");
+		s.increment(c1);
+
+		final List<IClassCoverage> classes = new ArrayList<IClassCoverage>();
+		classes.add(c1);
+		classes.add(c2);
+		final IPackageCoverage p = new PackageCoverageImpl("org/example",
+				classes, Collections.<ISourceFileCoverage> singletonList(s));
+		return new BundleCoverageImpl(name,
+				Collections.<IPackageCoverage> singletonList(p));
+	}
+
+	private static void assertBundle(final IBundleCoverage expected,
+			final IBundleCoverage actual) {
+		assertNode(expected, actual);
+		assertEquals(expected.getPackages().size(),
+				actual.getPackages().size());
+		final Iterator<IPackageCoverage> packages = actual.getPackages()
+				.iterator();
+		for (final IPackageCoverage p : expected.getPackages()) {
+			final IPackageCoverage a = packages.next();
+			assertNode(p, a);
+			assertEquals(p.getClasses().size(), a.getClasses().size());
+			final Iterator<IClassCoverage> classes = a.getClasses()
+					.iterator();
+			for (final IClassCoverage c : p.getClasses()) {
+				final IClassCoverage ac = classes.next();
+				assertSourceNode(c, ac);
+				assertEquals(c.getMethods().size(), ac.getMethods().size());
+				final Iterator<IMethodCoverage> methods = ac.getMethods()
+						.iterator();
+				for (final IMethodCoverage m : c.getMethods()) {
+					final IMethodCoverage am = methods.next();
+					assertSourceNode(m, am);
+					assertEquals(m.getDesc(), am.getDesc());
+					assertEquals(m.getSignature(), am.getSignature());
+				}
+			}
+			assertEquals(p.getSourceFiles().size(),
+					a.getSourceFiles().size());
+			final Iterator<ISourceFileCoverage> sourceFiles = a
+					.getSourceFiles().iterator();
+			for (final ISourceFileCoverage s : p.getSourceFiles()) {
+				final ISourceFileCoverage as = sourceFiles.next();
+				assertSourceNode(s, as);
+				assertEquals(s.getPackageName(), as.getPackageName());
+			}
+		}
+	}
+
+	private static void assertSourceNode(final ISourceNode expected,
+			final ISourceNode actual) {
+		assertNode(expected, actual);
+		assertEquals(expected.getFirstLine(), actual.getFirstLine());
+		assertEquals(expected.getLastLine(), actual.getLastLine());
+		for (int nr = expected.getFirstLine(); nr <= expected
+				.getLastLine(); nr++) {
+			assertEquals(expected.getLine(nr).getStatus(),
+					actual.getLine(nr).getStatus());
+			assertEquals(expected.getLine(nr).getInstructionCounter(),
+					actual.getLine(nr).getInstructionCounter());
+			assertEquals(expected.getLine(nr).getBranchCounter(),
+					actual.getLine(nr).getBranchCounter());
+			assertEquals(expected.getExecutionCount(nr),
+					actual.getExecutionCount(nr));
+		}
+	}
+
+	private static void assertNode(final ICoverageNode expected,
+			final ICoverageNode actual) {
+		assertEquals(expected.getElementType(), actual.getElementType());
+		assertEquals(expected.getName(), actual.getName());
+		for (final CounterEntity entity : CounterEntity.values()) {
+			assertEquals(entity.name(), expected.getCounter(entity),
+					actual.getCounter(entity));
+		}
+	}
+
+}
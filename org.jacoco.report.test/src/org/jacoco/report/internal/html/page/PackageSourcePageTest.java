@@ -145,4 +145,14 @@ public class PackageSourcePageTest extends PageTestBase {
 		assertNull(page.getSourceFilePage("Src2.java"));
 	}
 
+	@Test
+	public void should_release_source_file_pages() throws Exception {
+		page = new PackageSourcePage(node, null, sourceLocator, rootFolder,
+				context, packagePageLink);
+		page.render();
+		page.releaseSourceFilePages();
+
+		assertNull(page.getSourceFilePage("Src1.java"));
+	}
+
 }
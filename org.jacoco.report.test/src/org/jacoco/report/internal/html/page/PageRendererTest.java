@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.html.page;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.jacoco.report.internal.html.HTMLElement;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PageRenderer}.
+ */
+public class PageRendererTest extends PageTestBase {
+
+	private class TestPage extends ReportPage {
+
+		private final String name;
+
+		private Thread thread;
+
+		TestPage(final String name) {
+			super(null, rootFolder, PageRendererTest.this.context);
+			this.name = name;
+		}
+
+		@Override
+		public void render() throws IOException {
+			thread = Thread.currentThread();
+			if (name.startsWith("fail")) {
+				throw new IOException("Failed " + name);
+			}
+			super.render();
+		}
+
+		@Override
+		protected void content(final HTMLElement body) throws IOException {
+			body.text(name);
+		}
+
+		@Override
+		protected String getFileName() {
+			return name + ".html";
+		}
+
+		public String getLinkLabel() {
+			return name;
+		}
+
+		public String getLinkStyle() {
+			return null;
+		}
+
+	}
+
+	@Before
+	@Override
+	public void setup() throws Exception {
+		super.setup();
+	}
+
+	@Test
+	public void render_should_render_page_immediately_with_single_thread()
+			throws IOException {
+		final PageRenderer renderer = new PageRenderer();
+		final TestPage page = new TestPage("a");
+
+		renderer.render(page);
+
+		assertEquals(Thread.currentThread(), page.thread);
+		output.assertFile("a.html");
+		renderer.finish();
+		renderer.shutdown();
+	}
+
+	@Test
+	public void finish_should_wait_for_all_pages_with_multiple_threads()
+			throws IOException {
+		final PageRenderer renderer = new PageRenderer(3);
+		final TestPage[] pages = new TestPage[100];
+		for (int i = 0; i < pages.length; i++) {
+			pages[i] = new TestPage("p" + i);
+			renderer.render(pages[i]);
+		}
+
+		renderer.finish();
+		renderer.shutdown();
+
+		for (int i = 0; i < pages.length; i++) {
+			output.assertFile("p" + i + ".html");
+		}
+	}
+
+	@Test
+	public void finish_should_throw_IOException_of_failed_page() {
+		final PageRenderer renderer = new PageRenderer(3);
+		try {
+			renderer.render(new TestPage("ok"));
+			renderer.render(new TestPage("fail1"));
+			renderer.finish();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals("Failed fail1", e.getMessage());
+		} finally {
+			renderer.shutdown();
+		}
+	}
+
+}
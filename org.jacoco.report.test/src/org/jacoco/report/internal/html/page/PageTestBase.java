@@ -49,6 +49,7 @@ public abstract class PageTestBase {
 		final Resources resources = new Resources(rootFolder);
 		final Table table = new Table();
 		table.add("Element", null, new LabelColumn(), true);
+		final PageRenderer renderer = new PageRenderer();
 		context = new IHTMLReportContext() {
 
 			public ILanguageNames getLanguageNames() {
@@ -63,6 +64,10 @@ public abstract class PageTestBase {
 				return table;
 			}
 
+			public PageRenderer getPageRenderer() {
+				return renderer;
+			}
+
 			public String getFooterText() {
 				return "CustomFooter";
 			}
@@ -120,6 +120,28 @@ public class SourceHighlighterTest {
 				htmlSupport.findStr(doc, "//pre/span/@title"));
 	}
 
+	@Test
+	public void testHighlightExecutionCount() throws Exception {
+		source.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0, 1);
+		sourceHighlighter.highlight(parent.pre(null), source.getLine(1), 1,
+				1234);
+		final Document doc = parseDoc();
+		assertEquals("fc", htmlSupport.findStr(doc, "//pre/span/@class"));
+		assertEquals("Executed 1,234 times.",
+				htmlSupport.findStr(doc, "//pre/span/@title"));
+	}
+
+	@Test
+	public void testHighlightBranchesWithExecutionCount() throws Exception {
+		source.increment(CounterImpl.COUNTER_0_1, CounterImpl.getInstance(0, 2),
+				1);
+		sourceHighlighter.highlight(parent.pre(null), source.getLine(1), 1,
+				7);
+		final Document doc = parseDoc();
+		assertEquals("All 2 branches covered. Executed 7 times.",
+				htmlSupport.findStr(doc, "//pre/span/@title"));
+	}
+
 	@Test
 	public void testHighlightBranchesPC() throws Exception {
 		source.increment(CounterImpl.COUNTER_0_1, CounterImpl.getInstance(2, 3),
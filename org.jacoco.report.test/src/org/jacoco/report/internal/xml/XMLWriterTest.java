@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.xml;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link XMLWriter}.
+ */
+public class XMLWriterTest {
+
+	private static final String TEXT = "a\u00e4\u20ac\ud83d\ude00<&>\"z";
+
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+	@Test
+	public void write_should_encode_UTF8() throws IOException {
+		final XMLWriter writer = new XMLWriter(buffer, "UTF-8");
+		writer.write(TEXT);
+		writer.close();
+
+		assertArrayEquals(reference(TEXT, "UTF-8"), buffer.toByteArray());
+	}
+
+	@Test
+	public void write_should_replace_unpaired_surrogates_in_UTF8()
+			throws IOException {
+		final XMLWriter writer = new XMLWriter(buffer, "UTF-8");
+		writer.write("a\ud83db\ude00");
+		writer.close();
+
+		assertEquals("a?b?", buffer.toString("UTF-8"));
+	}
+
+	@Test
+	public void write_should_encode_ISO_8859_1() throws IOException {
+		final XMLWriter writer = new XMLWriter(buffer, "ISO-8859-1");
+		writer.write(TEXT);
+		writer.close();
+
+		assertArrayEquals(reference(TEXT, "ISO-8859-1"), buffer.toByteArray());
+	}
+
+	@Test
+	public void write_should_encode_UTF16() throws IOException {
+		final XMLWriter writer = new XMLWriter(buffer, "UTF-16");
+		writer.writeStartTag("root");
+		writer.writeAttributeName("attr");
+		writer.writeNumber(-42);
+		writer.write('"');
+		writer.write('>');
+		writer.writeEscaped(TEXT);
+		writer.writeEndTag("root");
+		writer.close();
+
+		assertArrayEquals(reference("<root attr=\"-42\">"
+				+ "a\u00e4\u20ac\ud83d\ude00&lt;&amp;&gt;&quot;z</root>",
+				"UTF-16"), buffer.toByteArray());
+	}
+
+	@Test
+	public void writeEscaped_should_replace_special_characters()
+			throws IOException {
+		final XMLWriter writer = new XMLWriter(buffer, "UTF-8");
+		writer.writeEscaped("<black&white\">");
+		writer.close();
+
+		assertEquals("&lt;black&amp;white&quot;&gt;", buffer.toString("UTF-8"));
+	}
+
+	@Test
+	public void writeNumber_should_write_decimal_representation()
+			throws IOException {
+		final XMLWriter writer = new XMLWriter(buffer, "UTF-8");
+		final long[] values = new long[] { 0, 9, 10, 99, -1, 1234567890,
+				999999999999999999L, 1000000000000000000L, Long.MAX_VALUE,
+				Long.MIN_VALUE };
+		final StringBuilder expected = new StringBuilder();
+		for (final long value : values) {
+			writer.writeNumber(value);
+			writer.write(' ');
+			expected.append(value).append(' ');
+		}
+		writer.close();
+
+		assertEquals(expected.toString(), buffer.toString("UTF-8"));
+	}
+
+	@Test
+	public void names_should_be_written_with_cached_sequences()
+			throws IOException {
+		final XMLWriter writer = new XMLWriter(buffer, "UTF-8");
+		for (int i = 0; i < 2; i++) {
+			writer.writeStartTag("line");
+			writer.writeAttributeName("nr");
+			writer.writeNumber(i);
+			writer.write('"');
+			writer.write('>');
+			writer.writeEndTag("line");
+		}
+		writer.close();
+
+		assertEquals("<line nr=\"0\"></line><line nr=\"1\"></line>",
+				buffer.toString("UTF-8"));
+	}
+
+	@Test
+	public void write_should_flush_content_larger_than_buffer()
+			throws IOException {
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 50000; i++) {
+			text.append("x\u00e4");
+		}
+		final XMLWriter writer = new XMLWriter(buffer, "UTF-8");
+		writer.write(text.toString());
+		writer.flush();
+
+		assertEquals(text.toString(), buffer.toString("UTF-8"));
+	}
+
+	@Test
+	public void close_should_close_output() throws IOException {
+		final boolean[] closed = new boolean[1];
+		final XMLWriter writer = new XMLWriter(new ByteArrayOutputStream() {
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		}, "UTF-8");
+		writer.close();
+
+		assertTrue(closed[0]);
+	}
+
+	@Test(expected = UnsupportedEncodingException.class)
+	public void init_should_throw_exception_for_unknown_encoding()
+			throws IOException {
+		new XMLWriter(buffer, "does-not-exist");
+	}
+
+	private static byte[] reference(final String text, final String encoding)
+			throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final Writer writer = new OutputStreamWriter(out, encoding);
+		writer.write(text);
+		writer.close();
+		return out.toByteArray();
+	}
+
+}
@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.test.perf;
+
+import java.io.PrintWriter;
+
+import org.jacoco.core.test.perf.IPerfOutput;
+import org.jacoco.core.test.perf.IPerfScenario;
+import org.jacoco.core.test.perf.PerfOutputWriter;
+
+/**
+ * The test suite for report creation.
+ */
+public class ReportPerformanceSuite implements IPerfScenario {
+
+	public void run(IPerfOutput output) throws Exception {
+		new XMLReportScenario(20000).run(output);
+	}
+
+	public static void main(String[] args) throws Exception {
+		final PrintWriter writer;
+		if (args.length == 0) {
+			writer = new PrintWriter(System.out, true);
+		} else {
+			writer = new PrintWriter(args[0]);
+		}
+		IPerfOutput output = new PerfOutputWriter(writer);
+		new ReportPerformanceSuite().run(output);
+		writer.close();
+	}
+
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.test.perf;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.analysis.BundleCoverageImpl;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.analysis.CounterImpl;
+import org.jacoco.core.internal.analysis.MethodCoverageImpl;
+import org.jacoco.core.internal.analysis.PackageCoverageImpl;
+import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
+import org.jacoco.core.test.perf.TimedScenario;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.xml.XMLFormatter;
+
+/**
+ * Scenario to measure the time taken to write the XML report of a synthetic
+ * bundle with the given number of classes. Every class has 5 methods with 10
+ * lines each.
+ */
+public class XMLReportScenario extends TimedScenario {
+
+	private static final int CLASSES_PER_PACKAGE = 50;
+
+	private static final int METHODS = 5;
+
+	private static final int LINES_PER_METHOD = 10;
+
+	private final IBundleCoverage bundle;
+
+	protected XMLReportScenario(final int classes) {
+		super(String.format("writing XML report of %s classes",
+				Integer.valueOf(classes)));
+		bundle = createBundle(classes);
+	}
+
+	@Override
+	protected Callable<Void> getInstrumentedCallable() throws Exception {
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				final IReportVisitor visitor = new XMLFormatter()
+						.createVisitor(new NullOutputStream());
+				visitor.visitInfo(
+						Collections.singletonList(new SessionInfo("id", 1, 2)),
+						Collections.<ExecutionData> emptyList());
+				visitor.visitBundle(bundle, null);
+				visitor.visitEnd();
+				return null;
+			}
+		};
+	}
+
+	private static IBundleCoverage createBundle(final int classes) {
+		final List<IPackageCoverage> packages = new ArrayList<IPackageCoverage>();
+		for (int p = 0; p * CLASSES_PER_PACKAGE < classes; p++) {
+			final String packageName = "org/example/module" + p;
+			final Collection<IClassCoverage> classCoverages = new ArrayList<IClassCoverage>();
+			final Collection<ISourceFileCoverage> sourceFiles = new ArrayList<ISourceFileCoverage>();
+			final int end = Math.min(classes, (p + 1) * CLASSES_PER_PACKAGE);
+			for (int c = p * CLASSES_PER_PACKAGE; c < end; c++) {
+				final String sourceName = "Class" + c + ".java";
+				final ClassCoverageImpl classCoverage = new ClassCoverageImpl(
+						packageName + "/Class" + c, c, false);
+				classCoverage.setSourceFileName(sourceName);
+				final SourceFileCoverageImpl sourceFile = new SourceFileCoverageImpl(
+						sourceName, packageName);
+				for (int m = 0; m < METHODS; m++) {
+					classCoverage.addMethod(createMethod(c, m, sourceName));
+				}
+				sourceFile.increment(classCoverage);
+				classCoverages.add(classCoverage);
+				sourceFiles.add(sourceFile);
+			}
+			packages.add(new PackageCoverageImpl(packageName, classCoverages,
+					sourceFiles));
+		}
+		return new BundleCoverageImpl("benchmark", packages);
+	}
+
+	private static MethodCoverageImpl createMethod(final int c, final int m,
+			final String sourceName) {
+		final MethodCoverageImpl method = new MethodCoverageImpl("method" + m,
+				"(Ljava/lang/String;I)V", null, false, sourceName);
+		for (int l = 0; l < LINES_PER_METHOD; l++) {
+			final int line = 10 + m * LINES_PER_METHOD + l;
+			final int covered = (c + line) % 3;
+			final int branches = line % 2 * 2;
+			final int coveredBranches = covered % 2 * branches / 2;
+			method.increment(CounterImpl.getInstance(3 - covered, covered),
+					CounterImpl.getInstance(branches - coveredBranches,
+							coveredBranches),
+					line);
+		}
+		method.incrementMethodCounter();
+		return method;
+	}
+
+	private static class NullOutputStream extends OutputStream {
+
+		@Override
+		public void write(final int b) {
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+		}
+
+	}
+
+}
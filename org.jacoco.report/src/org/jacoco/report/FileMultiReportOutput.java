@@ -22,7 +22,7 @@ import java.io.OutputStream;
 
 /**
  * Implementation of {@link IMultiReportOutput} that writes files directly to a
- * given directory.
+ * given directory. Files may be created concurrently by different threads.
  */
 public class FileMultiReportOutput implements IMultiReportOutput {
 
@@ -22,7 +22,7 @@ public interface IMultiReportOutput {
 
 	/**
 	 * Creates a file at the given local path. The returned {@link OutputStream}
-	 * has to be closed before the next document is created.
+	 * has to be closed before the next document is created by the same thread.
 	 *
 	 * @param path
 	 *            local path to the new document
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report;
+
+import static java.lang.String.format;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.jacoco.core.JaCoCo;
+
+/**
+ * Implementation of {@link IMultiReportOutput} that writes files to a given
+ * directory, but only if their content has changed since the last report. The
+ * CRC32 checksum and the length of every file are recorded in the manifest file
+ * {@value #MANIFEST} in the base directory. A file is not written again if its
+ * content has the same checksum and the existing file still has the recorded
+ * length. Files of the previous report which are not created again are
+ * removed, unless they have been modified.
+ * <p>
+ * The content of every file is buffered in memory until the file is closed.
+ * Files may be created concurrently by different threads. The manifest is
+ * written when this output is closed.
+ * </p>
+ */
+public class IncrementalFileMultiReportOutput implements IMultiReportOutput {
+
+	/** Name of the manifest file in the base directory */
+	public static final String MANIFEST = "jacoco.manifest";
+
+	private static final String HEADER = "JaCoCo report manifest ";
+
+	private static final String UTF_8 = "UTF-8";
+
+	private final File basedir;
+
+	private final File manifest;
+
+	private final Map<String, Record> previous;
+
+	private final Map<String, Record> current = new TreeMap<String, Record>();
+
+	private int skipped;
+
+	private int removed;
+
+	/**
+	 * Creates a new instance for document output in the given base directory.
+	 * The manifest of a previous report in this directory is read immediately.
+	 *
+	 * @param basedir
+	 *            base directory
+	 * @throws IOException
+	 *             if the manifest can't be read
+	 */
+	public IncrementalFileMultiReportOutput(final File basedir)
+			throws IOException {
+		this.basedir = basedir;
+		this.manifest = new File(basedir, MANIFEST);
+		this.previous = read();
+	}
+
+	public OutputStream createFile(final String path) throws IOException {
+		return new FileBuffer(path);
+	}
+
+	/**
+	 * Removes outdated files of the previous report and writes the manifest.
+	 */
+	public synchronized void close() throws IOException {
+		removed = 0;
+		for (final Map.Entry<String, Record> e : previous.entrySet()) {
+			final File file = new File(basedir, e.getKey());
+			if (!current.containsKey(e.getKey()) && file.isFile()
+					&& e.getValue().checksum == checksum(file)) {
+				if (!file.delete()) {
+					throw new IOException("Unable to delete " + file);
+				}
+				deleteEmptyParents(file);
+				removed++;
+			}
+		}
+		write();
+	}
+
+	/**
+	 * @return number of files which have not been written because their
+	 *         content did not change
+	 */
+	public synchronized int getSkippedFiles() {
+		return skipped;
+	}
+
+	/**
+	 * @return number of outdated files of the previous report removed by
+	 *         {@link #close()}
+	 */
+	public synchronized int getRemovedFiles() {
+		return removed;
+	}
+
+	private void closeFile(final String path, final FileBuffer buffer)
+			throws IOException {
+		final Record record = new Record(buffer.checksum(), buffer.size());
+		final File file = new File(basedir, path);
+		synchronized (this) {
+			current.put(path, record);
+			if (record.equals(previous.get(path)) && file.isFile()
+					&& file.length() == record.length) {
+				skipped++;
+				return;
+			}
+		}
+		final File parent = file.getParentFile();
+		parent.mkdirs();
+		if (!parent.isDirectory()) {
+			throw new IOException(format("Can't create directory %s.", parent));
+		}
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			buffer.writeTo(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	private void deleteEmptyParents(final File file) {
+		File dir = file.getParentFile();
+		while (dir != null && !dir.equals(basedir) && dir.delete()) {
+			dir = dir.getParentFile();
+		}
+	}
+
+	private static long checksum(final File file) throws IOException {
+		final CRC32 crc = new CRC32();
+		final InputStream in = new FileInputStream(file);
+		try {
+			final byte[] buffer = new byte[0x1000];
+			int len;
+			while ((len = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, len);
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Reads the manifest. Every line after the header contains the checksum,
+	 * the length and the relative path of a file, separated by tabs.
+	 */
+	private Map<String, Record> read() throws IOException {
+		final Map<String, Record> result = new TreeMap<String, Record>();
+		if (!manifest.isFile()) {
+			return result;
+		}
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(manifest), UTF_8));
+		try {
+			if (!(HEADER + JaCoCo.VERSION).equals(reader.readLine())) {
+				return result;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String[] fields = line.split("\t");
+				if (fields.length != 3) {
+					return new TreeMap<String, Record>();
+				}
+				result.put(fields[2],
+						new Record(parse(fields[0]), Long.parseLong(fields[1])));
+			}
+			return result;
+		} catch (final NumberFormatException e) {
+			throw new IOException("Invalid length in manifest " + manifest);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static long parse(final String hex) throws IOException {
+		try {
+			return Long.parseLong(hex, 16);
+		} catch (final RuntimeException e) {
+			throw new IOException("Invalid checksum in manifest: " + hex);
+		}
+	}
+
+	private void write() throws IOException {
+		basedir.mkdirs();
+		final File temp = new File(basedir, MANIFEST + ".tmp");
+		final Writer writer = new OutputStreamWriter(
+				new FileOutputStream(temp), UTF_8);
+		try {
+			writer.write(HEADER + JaCoCo.VERSION + "\n");
+			for (final Map.Entry<String, Record> e : current.entrySet()) {
+				final Record record = e.getValue();
+				writer.write(format("%08x\t%d\t%s\n",
+						Long.valueOf(record.checksum),
+						Long.valueOf(record.length), e.getKey()));
+			}
+		} finally {
+			writer.close();
+		}
+		if (!temp.renameTo(manifest)) {
+			manifest.delete();
+			if (!temp.renameTo(manifest)) {
+				throw new IOException("Unable to write " + manifest);
+			}
+		}
+	}
+
+	private final class FileBuffer extends ByteArrayOutputStream {
+
+		private final String path;
+
+		private boolean closed = false;
+
+		FileBuffer(final String path) {
+			super(0x1000);
+			this.path = path;
+		}
+
+		long checksum() {
+			final CRC32 crc = new CRC32();
+			crc.update(buf, 0, count);
+			return crc.getValue();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				closeFile(path, this);
+			}
+		}
+
+	}
+
+	private static class Record {
+
+		final long checksum;
+
+		final long length;
+
+		Record(final long checksum, final long length) {
+			this.checksum = checksum;
+			this.length = length;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Record)) {
+				return false;
+			}
+			final Record other = (Record) obj;
+			return checksum == other.checksum && length == other.length;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (checksum ^ (checksum >>> 32));
+		}
+
+	}
+
+}
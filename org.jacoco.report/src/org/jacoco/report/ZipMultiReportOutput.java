@@ -12,20 +12,27 @@
  *******************************************************************************/
 package org.jacoco.report;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 /**
  * Implementation of {@link IMultiReportOutput} that writes files into a
- * {@link ZipOutputStream}.
+ * {@link ZipOutputStream}. Files may be created concurrently by different
+ * threads: While an entry is written directly to the ZIP stream, files created
+ * by other threads are buffered in memory and added when they are closed.
  */
 public class ZipMultiReportOutput implements IMultiReportOutput {
 
 	private final ZipOutputStream zip;
 
-	private OutputStream currentEntry;
+	private EntryOutput currentEntry;
+
+	private final List<BufferedEntryOutput> pendingEntries = new ArrayList<BufferedEntryOutput>();
 
 	/**
 	 * Creates a new instance based on the given {@link ZipOutputStream}.
@@ -47,22 +54,56 @@ public class ZipMultiReportOutput implements IMultiReportOutput {
 		this(new ZipOutputStream(out));
 	}
 
-	public OutputStream createFile(final String path) throws IOException {
+	public synchronized OutputStream createFile(final String path)
+			throws IOException {
 		if (currentEntry != null) {
+			if (currentEntry.owner != Thread.currentThread()) {
+				return new BufferedEntryOutput(path);
+			}
 			currentEntry.close();
 		}
-		final ZipEntry entry = new ZipEntry(path);
-		zip.putNextEntry(entry);
+		zip.putNextEntry(new ZipEntry(path));
 		currentEntry = new EntryOutput();
 		return currentEntry;
 	}
 
-	public void close() throws IOException {
+	public synchronized void close() throws IOException {
+		if (currentEntry != null) {
+			currentEntry.close();
+		}
+		writePendingEntries();
 		zip.close();
 	}
 
+	private void writePendingEntries() throws IOException {
+		for (final BufferedEntryOutput entry : pendingEntries) {
+			entry.writeTo(zip);
+		}
+		pendingEntries.clear();
+	}
+
+	private synchronized void closeEntry(final EntryOutput entry)
+			throws IOException {
+		zip.closeEntry();
+		if (currentEntry == entry) {
+			currentEntry = null;
+			writePendingEntries();
+		}
+	}
+
+	private synchronized void closeEntry(final BufferedEntryOutput entry)
+			throws IOException {
+		if (currentEntry == null) {
+			entry.writeTo(zip);
+		} else {
+			pendingEntries.add(entry);
+		}
+	}
+
 	private final class EntryOutput extends OutputStream {
 
+		private final Thread owner = Thread.currentThread();
+
 		private boolean closed = false;
 
 		@Override
@@ -94,10 +135,62 @@ public class ZipMultiReportOutput implements IMultiReportOutput {
 		public void close() throws IOException {
 			if (!closed) {
 				closed = true;
-				zip.closeEntry();
+				closeEntry(this);
+			}
+		}
+
+		private void ensureNotClosed() throws IOException {
+			if (closed) {
+				throw new IOException("Zip entry already closed.");
 			}
 		}
 
+	}
+
+	private final class BufferedEntryOutput extends OutputStream {
+
+		private final String path;
+
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		private boolean closed = false;
+
+		BufferedEntryOutput(final String path) {
+			this.path = path;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len)
+				throws IOException {
+			ensureNotClosed();
+			buffer.write(b, off, len);
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			ensureNotClosed();
+			buffer.write(b);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			ensureNotClosed();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				closeEntry(this);
+			}
+		}
+
+		void writeTo(final ZipOutputStream zip) throws IOException {
+			zip.putNextEntry(new ZipEntry(path));
+			buffer.writeTo(zip);
+			zip.closeEntry();
+		}
+
 		private void ensureNotClosed() throws IOException {
 			if (closed) {
 				throw new IOException("Zip entry already closed.");
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.internal.binary.BinaryCoverageWriter;
+import org.jacoco.report.internal.binary.BinaryGroupVisitor;
+
+/**
+ * Report formatter that creates a single file in a compact binary format. The
+ * file contains the same coverage data as a XML report, including the
+ * counters of every line, and can be loaded again with a
+ * {@link BinaryReportReader}.
+ */
+public class BinaryFormatter {
+
+	/**
+	 * Creates a new visitor to write a report to the given stream.
+	 *
+	 * @param output
+	 *            output stream to write the report to, will be closed at the
+	 *            end of the report
+	 * @return visitor to emit the report data to
+	 * @throws IOException
+	 *             in case of problems with the output stream
+	 */
+	public IReportVisitor createVisitor(final OutputStream output)
+			throws IOException {
+		final OutputStream buffered = new BufferedOutputStream(output);
+		final BinaryCoverageWriter writer = new BinaryCoverageWriter(buffered);
+		class RootVisitor implements IReportVisitor {
+
+			private List<SessionInfo> sessionInfos;
+			private BinaryGroupVisitor groupVisitor;
+
+			public void visitInfo(final List<SessionInfo> sessionInfos,
+					final Collection<ExecutionData> executionData)
+					throws IOException {
+				this.sessionInfos = sessionInfos;
+			}
+
+			public void visitBundle(final IBundleCoverage bundle,
+					final ISourceFileLocator locator) throws IOException {
+				writer.writeHeader(sessionInfos);
+				writer.writeBundle(bundle);
+			}
+
+			public IReportGroupVisitor visitGroup(final String name)
+					throws IOException {
+				writer.writeHeader(sessionInfos);
+				writer.writeGroupStart(name);
+				groupVisitor = new BinaryGroupVisitor(writer, name);
+				return groupVisitor;
+			}
+
+			public void visitEnd() throws IOException {
+				if (groupVisitor != null) {
+					groupVisitor.visitEnd();
+				}
+				writer.flush();
+				buffered.close();
+			}
+		}
+		return new RootVisitor();
+	}
+
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.binary;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.IReportGroupVisitor;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.internal.binary.BinaryCoverageReader;
+import org.jacoco.report.internal.binary.BinaryCoverageWriter;
+
+/**
+ * Reader for reports created by {@link BinaryFormatter}. The structure of the
+ * report with all groups, bundles and packages and their counters is read
+ * immediately. The classes, methods and source files of a package are decoded
+ * when they are accessed for the first time.
+ */
+public class BinaryReportReader {
+
+	private final List<SessionInfo> sessionInfos;
+
+	private final Object root;
+
+	private final List<IBundleCoverage> bundles = new ArrayList<IBundleCoverage>();
+
+	/**
+	 * Reads the report from the given input stream. The stream is read
+	 * completely but not closed.
+	 *
+	 * @param input
+	 *            input stream to read the report from
+	 * @throws IOException
+	 *             if the stream does not contain a binary report or can't be
+	 *             read
+	 */
+	public BinaryReportReader(final InputStream input) throws IOException {
+		final BinaryCoverageReader reader = new BinaryCoverageReader(
+				new BufferedInputStream(input));
+		sessionInfos = reader.readHeader();
+		root = readNode(reader, reader.readRecordType());
+	}
+
+	private Object readNode(final BinaryCoverageReader reader,
+			final byte type) throws IOException {
+		switch (type) {
+		case BinaryCoverageWriter.BUNDLE:
+			final IBundleCoverage bundle = reader.readBundle();
+			bundles.add(bundle);
+			return bundle;
+		case BinaryCoverageWriter.GROUP:
+			final Group group = new Group(reader.readGroupName());
+			byte child;
+			while ((child = reader
+					.readRecordType()) != BinaryCoverageWriter.END) {
+				group.children.add(readNode(reader, child));
+			}
+			return group;
+		default:
+			throw new IOException("Unexpected end of group.");
+		}
+	}
+
+	/**
+	 * @return session infos of the report
+	 */
+	public List<SessionInfo> getSessionInfos() {
+		return sessionInfos;
+	}
+
+	/**
+	 * @return all bundles of the report in the order of the report structure
+	 */
+	public List<IBundleCoverage> getBundles() {
+		return bundles;
+	}
+
+	/**
+	 * Emits the complete report to the given visitor, for example to create
+	 * reports in other formats. Execution data is not contained in binary
+	 * reports, so an empty collection is passed to
+	 * {@link IReportVisitor#visitInfo(List, java.util.Collection)}.
+	 *
+	 * @param visitor
+	 *            visitor to emit the report to
+	 * @param locator
+	 *            source locator passed with every bundle
+	 * @throws IOException
+	 *             in case of problems with the visitor
+	 */
+	public void accept(final IReportVisitor visitor,
+			final ISourceFileLocator locator) throws IOException {
+		visitor.visitInfo(sessionInfos,
+				Collections.<ExecutionData> emptyList());
+		accept(root, visitor, locator);
+		visitor.visitEnd();
+	}
+
+	private static void accept(final Object node,
+			final IReportGroupVisitor visitor,
+			final ISourceFileLocator locator) throws IOException {
+		if (node instanceof IBundleCoverage) {
+			visitor.visitBundle((IBundleCoverage) node, locator);
+		} else {
+			final Group group = (Group) node;
+			final IReportGroupVisitor groupVisitor = visitor
+					.visitGroup(group.name);
+			for (final Object child : group.children) {
+				accept(child, groupVisitor, locator);
+			}
+		}
+	}
+
+	private static class Group {
+
+		final String name;
+
+		final List<Object> children = new ArrayList<Object>();
+
+		Group(final String name) {
+			this.name = name;
+		}
+
+	}
+
+}
@@ -34,6 +34,7 @@ import org.jacoco.report.internal.html.ILinkable;
 import org.jacoco.report.internal.html.index.ElementIndex;
 import org.jacoco.report.internal.html.index.IIndexUpdate;
 import org.jacoco.report.internal.html.page.BundlePage;
+import org.jacoco.report.internal.html.page.PageRenderer;
 import org.jacoco.report.internal.html.page.ReportPage;
 import org.jacoco.report.internal.html.page.SessionsPage;
 import org.jacoco.report.internal.html.resources.Resources;
@@ -57,13 +58,17 @@ public class HTMLFormatter implements IHTMLReportContext {
 
 	private String outputEncoding = "UTF-8";
 
+	private int threads = 1;
+
 	private Resources resources;
 
 	private ElementIndex index;
 
 	private SessionsPage sessionsPage;
 
-	private Table table;
+	private PageRenderer pageRenderer;
+
+	private final ThreadLocal<Table> table = new ThreadLocal<Table>();
 
 	/**
 	 * New instance with default settings.
@@ -113,6 +118,26 @@ public class HTMLFormatter implements IHTMLReportContext {
 		this.outputEncoding = outputEncoding;
 	}
 
+	/**
+	 * Sets the number of threads used to render the pages of source files and
+	 * classes. With more than one thread the output given to
+	 * {@link #createVisitor(IMultiReportOutput)} must support concurrent
+	 * creation of files, like {@link org.jacoco.report.FileMultiReportOutput}
+	 * and {@link org.jacoco.report.ZipMultiReportOutput}. Source file locators
+	 * are always called from the thread which emits the report data. Default
+	 * is 1.
+	 *
+	 * @param threads
+	 *            number of threads, must be at least 1
+	 */
+	public void setThreads(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(
+					"Number of threads must be positive: " + threads);
+		}
+		this.threads = threads;
+	}
+
 	// === IHTMLReportContext ===
 
 	public ILanguageNames getLanguageNames() {
@@ -124,10 +149,16 @@ public class HTMLFormatter implements IHTMLReportContext {
 	}
 
 	public Table getTable() {
-		if (table == null) {
-			table = createTable();
+		Table t = table.get();
+		if (t == null) {
+			t = createTable();
+			table.set(t);
 		}
-		return table;
+		return t;
+	}
+
+	public PageRenderer getPageRenderer() {
+		return pageRenderer;
 	}
 
 	private Table createTable() {
@@ -205,6 +236,7 @@ public class HTMLFormatter implements IHTMLReportContext {
 		resources = new Resources(root);
 		resources.copyResources();
 		index = new ElementIndex(root);
+		pageRenderer = new PageRenderer(threads);
 		return new IReportVisitor() {
 
 			private List<SessionInfo> sessionInfos;
@@ -242,8 +274,13 @@ public class HTMLFormatter implements IHTMLReportContext {
 			}
 
 			public void visitEnd() throws IOException {
-				if (groupHandler != null) {
-					groupHandler.visitEnd();
+				try {
+					if (groupHandler != null) {
+						groupHandler.visitEnd();
+					}
+					pageRenderer.finish();
+				} finally {
+					pageRenderer.shutdown();
 				}
 				sessionsPage.render();
 				output.close();
@@ -67,7 +67,7 @@ public class ReportOutputFolder {
 	 *            name of the sub-folder
 	 * @return handle for output into the sub-folder
 	 */
-	public ReportOutputFolder subFolder(final String name) {
+	public synchronized ReportOutputFolder subFolder(final String name) {
 		final String normalizedName = normalize(name);
 		ReportOutputFolder folder = subFolders.get(normalizedName);
 		if (folder != null) {
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.binary;
+
+import static java.lang.String.format;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.jacoco.core.analysis.CompactCoverageCodec;
+import org.jacoco.core.analysis.CoverageNodeImpl;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.data.SessionInfo;
+
+/**
+ * Deserializes coverage data written by {@link BinaryCoverageWriter}. The
+ * content of a package is kept in its encoded form and only decoded when the
+ * classes or source files of the package are requested for the first time.
+ */
+public class BinaryCoverageReader {
+
+	private final DataInputStream in;
+
+	/**
+	 * Creates a new reader based on the given input stream.
+	 *
+	 * @param input
+	 *            binary stream to read the report from
+	 */
+	public BinaryCoverageReader(final InputStream input) {
+		this.in = new DataInputStream(input);
+	}
+
+	/**
+	 * Reads the header and the session infos.
+	 *
+	 * @return session infos of the report
+	 * @throws IOException
+	 *             if the stream is not a binary report or can't be read
+	 */
+	public List<SessionInfo> readHeader() throws IOException {
+		if (in.readChar() != BinaryCoverageWriter.MAGIC_NUMBER) {
+			throw new IOException("Invalid binary report.");
+		}
+		final char version = in.readChar();
+		if (version != BinaryCoverageWriter.FORMAT_VERSION) {
+			throw new IOException(format("Incompatible version %x.",
+					Integer.valueOf(version)));
+		}
+		final int count = in.readInt();
+		final List<SessionInfo> infos = new ArrayList<SessionInfo>(count);
+		for (int i = 0; i < count; i++) {
+			infos.add(new SessionInfo(in.readUTF(), in.readLong(),
+					in.readLong()));
+		}
+		return infos;
+	}
+
+	/**
+	 * Reads the type of the next record.
+	 *
+	 * @return {@link BinaryCoverageWriter#BUNDLE},
+	 *         {@link BinaryCoverageWriter#GROUP} or
+	 *         {@link BinaryCoverageWriter#END}
+	 * @throws IOException
+	 *             in case of an unknown record type or problems with the
+	 *             underlying stream
+	 */
+	public byte readRecordType() throws IOException {
+		final byte type = in.readByte();
+		switch (type) {
+		case BinaryCoverageWriter.BUNDLE:
+		case BinaryCoverageWriter.GROUP:
+		case BinaryCoverageWriter.END:
+			return type;
+		default:
+			throw new IOException(format("Unknown record type %x.",
+					Byte.valueOf(type)));
+		}
+	}
+
+	/**
+	 * Reads the name of a group record.
+	 *
+	 * @return name of the group
+	 * @throws IOException
+	 *             in case of problems with the underlying stream
+	 */
+	public String readGroupName() throws IOException {
+		return in.readUTF();
+	}
+
+	/**
+	 * Reads a bundle record. The names and counters of all packages are
+	 * available immediately, their classes and source files are decoded on
+	 * first access.
+	 *
+	 * @return bundle coverage data
+	 * @throws IOException
+	 *             in case of problems with the underlying stream
+	 */
+	public IBundleCoverage readBundle() throws IOException {
+		final ICoverageNode counters = CompactCoverageCodec.readCounters(
+				ICoverageNode.ElementType.BUNDLE, in.readUTF(), in);
+		final int count = in.readInt();
+		final List<IPackageCoverage> packages = new ArrayList<IPackageCoverage>(
+				count);
+		for (int i = 0; i < count; i++) {
+			final ICoverageNode packageCounters = CompactCoverageCodec
+					.readCounters(ICoverageNode.ElementType.PACKAGE,
+							in.readUTF(), in);
+			final byte[] content = new byte[in.readInt()];
+			in.readFully(content);
+			packages.add(new PackageNode(packageCounters, content));
+		}
+		return new BundleNode(counters, packages);
+	}
+
+	private static class BundleNode extends CoverageNodeImpl
+			implements IBundleCoverage {
+
+		private final Collection<IPackageCoverage> packages;
+
+		BundleNode(final ICoverageNode counters,
+				final Collection<IPackageCoverage> packages) {
+			super(ElementType.BUNDLE, counters.getName());
+			increment(counters);
+			this.packages = packages;
+		}
+
+		public Collection<IPackageCoverage> getPackages() {
+			return packages;
+		}
+
+	}
+
+	private static class PackageNode extends CoverageNodeImpl
+			implements IPackageCoverage {
+
+		private byte[] content;
+
+		private Collection<IClassCoverage> classes;
+
+		private Collection<ISourceFileCoverage> sourceFiles;
+
+		PackageNode(final ICoverageNode counters, final byte[] content) {
+			super(ElementType.PACKAGE, counters.getName());
+			increment(counters);
+			this.content = content;
+		}
+
+		public synchronized Collection<IClassCoverage> getClasses() {
+			decode();
+			return classes;
+		}
+
+		public synchronized Collection<ISourceFileCoverage> getSourceFiles() {
+			decode();
+			return sourceFiles;
+		}
+
+		private void decode() {
+			if (content == null) {
+				return;
+			}
+			try {
+				final IPackageCoverage p = CompactCoverageCodec
+						.decodePackage(getName(), content);
+				classes = p.getClasses();
+				sourceFiles = p.getSourceFiles();
+			} catch (final IOException e) {
+				throw new IllegalStateException(
+						format("Invalid content of package %s.", getName()),
+						e);
+			}
+			content = null;
+		}
+
+	}
+
+}
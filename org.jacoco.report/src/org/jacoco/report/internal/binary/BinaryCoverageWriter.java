@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.binary;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.jacoco.core.analysis.CompactCoverageCodec;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.data.SessionInfo;
+
+/**
+ * Serializes coverage data in the compact binary report format. The report
+ * starts with a header and the session infos followed by a tree of group and
+ * bundle records. Bundle records contain the name and counters of every
+ * package followed by the length of the package content, so readers can skip
+ * the classes and source files of a package until they are needed.
+ *
+ * Counters and package contents are encoded with
+ * {@link CompactCoverageCodec}, so strings are written once per package and
+ * referenced by their index afterwards.
+ */
+public class BinaryCoverageWriter {
+
+	/** Magic number in header */
+	public static final char MAGIC_NUMBER = 0xC0C1;
+
+	/** Version of the format */
+	public static final char FORMAT_VERSION = 0x1002;
+
+	/** Record type of a bundle */
+	public static final byte BUNDLE = 0x01;
+
+	/** Record type of the start of a group */
+	public static final byte GROUP = 0x02;
+
+	/** Record type of the end of a group */
+	public static final byte END = 0x03;
+
+	private final DataOutputStream out;
+
+	/**
+	 * Creates a new writer based on the given output stream.
+	 *
+	 * @param output
+	 *            binary stream to write the report to
+	 */
+	public BinaryCoverageWriter(final OutputStream output) {
+		this.out = new DataOutputStream(output);
+	}
+
+	/**
+	 * Writes the header and the given session infos.
+	 *
+	 * @param sessionInfos
+	 *            session infos of the report
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void writeHeader(final List<SessionInfo> sessionInfos)
+			throws IOException {
+		out.writeChar(MAGIC_NUMBER);
+		out.writeChar(FORMAT_VERSION);
+		out.writeInt(sessionInfos.size());
+		for (final SessionInfo info : sessionInfos) {
+			out.writeUTF(info.getId());
+			out.writeLong(info.getStartTimeStamp());
+			out.writeLong(info.getDumpTimeStamp());
+		}
+	}
+
+	/**
+	 * Writes the start of a group. All following records up to the matching
+	 * {@link #writeGroupEnd()} are children of this group.
+	 *
+	 * @param name
+	 *            name of the group
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void writeGroupStart(final String name) throws IOException {
+		out.writeByte(GROUP);
+		out.writeUTF(name);
+	}
+
+	/**
+	 * Writes the end of the current group.
+	 *
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void writeGroupEnd() throws IOException {
+		out.writeByte(END);
+	}
+
+	/**
+	 * Writes the given bundle with all its packages.
+	 *
+	 * @param bundle
+	 *            bundle coverage data
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void writeBundle(final IBundleCoverage bundle) throws IOException {
+		out.writeByte(BUNDLE);
+		out.writeUTF(bundle.getName());
+		CompactCoverageCodec.writeCounters(bundle, out);
+		out.writeInt(bundle.getPackages().size());
+		for (final IPackageCoverage p : bundle.getPackages()) {
+			out.writeUTF(p.getName());
+			CompactCoverageCodec.writeCounters(p, out);
+			final byte[] content = CompactCoverageCodec.encodePackage(p);
+			out.writeInt(content.length);
+			out.write(content);
+		}
+	}
+
+	/**
+	 * Flushes the underlying output.
+	 *
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+}
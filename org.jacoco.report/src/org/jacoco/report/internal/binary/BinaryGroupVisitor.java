@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.binary;
+
+import java.io.IOException;
+
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.internal.AbstractGroupVisitor;
+
+/**
+ * A {@link org.jacoco.report.IReportGroupVisitor} that writes the report
+ * structure as records of the binary report format.
+ */
+public class BinaryGroupVisitor extends AbstractGroupVisitor {
+
+	/** Writer for the records of this group */
+	protected final BinaryCoverageWriter writer;
+
+	/**
+	 * New handler for a group with the given name. The start record of the
+	 * group must have been written already.
+	 *
+	 * @param writer
+	 *            writer for the records of this group
+	 * @param name
+	 *            name of the group
+	 */
+	public BinaryGroupVisitor(final BinaryCoverageWriter writer,
+			final String name) {
+		super(name);
+		this.writer = writer;
+	}
+
+	@Override
+	protected void handleBundle(final IBundleCoverage bundle,
+			final ISourceFileLocator locator) throws IOException {
+		writer.writeBundle(bundle);
+	}
+
+	@Override
+	protected AbstractGroupVisitor handleGroup(final String name)
+			throws IOException {
+		writer.writeGroupStart(name);
+		return new BinaryGroupVisitor(writer, name);
+	}
+
+	@Override
+	protected void handleEnd() throws IOException {
+		writer.writeGroupEnd();
+	}
+
+}
@@ -77,6 +77,15 @@ public class PackageSourcePage extends TablePage<IPackageCoverage> {
 		return sourceFilePages.get(name);
 	}
 
+	/**
+	 * Releases the source file pages after all class pages have been linked to
+	 * them. Otherwise the pages would keep the line data of all source files
+	 * until the complete report is rendered.
+	 */
+	void releaseSourceFilePages() {
+		sourceFilePages.clear();
+	}
+
 	private final void renderSourceFilePages() throws IOException {
 		final String packagename = getNode().getName();
 		for (final ISourceFileCoverage s : getNode().getSourceFiles()) {
@@ -91,7 +100,10 @@ public class PackageSourcePage extends TablePage<IPackageCoverage> {
 			} else {
 				final SourceFilePage sourcePage = new SourceFilePage(s, reader,
 						locator.getTabWidth(), this, folder, context);
-				sourcePage.render();
+				// Reserve the file name in the original order to get stable
+				// names independently of the rendering order:
+				sourcePage.getLink(folder);
+				context.getPageRenderer().render(sourcePage);
 				sourceFilePages.put(sourcename, sourcePage);
 				addItem(sourcePage);
 			}
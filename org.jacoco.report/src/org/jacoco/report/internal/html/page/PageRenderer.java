@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.html.page;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders pages which do not have other pages depending on their output, like
+ * source file and class pages. With more than one thread pages are rendered
+ * concurrently on a worker pool. The number of pages waiting for rendering is
+ * limited, so only a bounded number of source files is open at a time.
+ *
+ * Pages are submitted from a single thread. All other report state like
+ * source file locators is only accessed from this thread.
+ */
+public class PageRenderer {
+
+	/** Maximum number of pending pages per thread */
+	private static final int PENDING_PAGES = 4;
+
+	private final int threads;
+
+	private final ForkJoinPool pool;
+
+	private final LinkedList<ForkJoinTask<Void>> pending = new LinkedList<ForkJoinTask<Void>>();
+
+	/**
+	 * Creates a renderer which renders every page immediately in the calling
+	 * thread.
+	 */
+	public PageRenderer() {
+		this(1);
+	}
+
+	/**
+	 * Creates a renderer with the given number of worker threads.
+	 *
+	 * @param threads
+	 *            number of threads, with 1 pages are rendered immediately in
+	 *            the calling thread
+	 */
+	public PageRenderer(final int threads) {
+		this.threads = threads;
+		this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+	}
+
+	/**
+	 * Renders the given page, either immediately or on the worker pool. If too
+	 * many pages are pending this method waits for the oldest pending page.
+	 *
+	 * @param page
+	 *            page to render
+	 * @throws IOException
+	 *             in case of problems with rendering this or a previously
+	 *             submitted page
+	 */
+	public void render(final ReportPage page) throws IOException {
+		if (pool == null) {
+			page.render();
+			return;
+		}
+		pending.add(pool.submit(new RenderTask(page)));
+		while (pending.size() > threads * PENDING_PAGES) {
+			await(pending.removeFirst());
+		}
+	}
+
+	/**
+	 * Waits until all pending pages have been rendered.
+	 *
+	 * @throws IOException
+	 *             in case of problems with rendering a page
+	 */
+	public void finish() throws IOException {
+		while (!pending.isEmpty()) {
+			await(pending.removeFirst());
+		}
+	}
+
+	/**
+	 * Stops the worker threads. Pages which are still pending are discarded.
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdownNow();
+		}
+		pending.clear();
+	}
+
+	private static void await(final ForkJoinTask<Void> task)
+			throws IOException {
+		try {
+			task.join();
+		} catch (final RenderException e) {
+			throw e.unwrap();
+		}
+	}
+
+	private static class RenderTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient ReportPage page;
+
+		RenderTask(final ReportPage page) {
+			this.page = page;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				page.render();
+			} catch (final IOException e) {
+				throw new RenderException(e);
+			}
+		}
+	}
+
+	/**
+	 * Transports checked {@link IOException}s out of fork/join tasks.
+	 */
+	private static class RenderException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		RenderException(final IOException cause) {
+			super(cause);
+		}
+
+		IOException unwrap() {
+			// The fork/join framework might re-create the exception instance
+			// when it is re-thrown in a different thread
+			Throwable t = getCause();
+			while (t != null && !(t instanceof IOException)) {
+				t = t.getCause();
+			}
+			if (t == null) {
+				throw this;
+			}
+			return (IOException) t;
+		}
+	}
+
+}
@@ -75,18 +75,25 @@ final class SourceHighlighter {
 		int nr = 0;
 		while ((line = lineBuffer.readLine()) != null) {
 			nr++;
-			renderCodeLine(pre, line, source.getLine(nr), nr);
+			renderCodeLine(pre, line, source.getLine(nr), nr,
+					source.getExecutionCount(nr));
 		}
 	}
 
 	private void renderCodeLine(final HTMLElement pre, final String linesrc,
-			final ILine line, final int lineNr) throws IOException {
-		highlight(pre, line, lineNr).text(linesrc);
+			final ILine line, final int lineNr, final long executionCount)
+			throws IOException {
+		highlight(pre, line, lineNr, executionCount).text(linesrc);
 		pre.text("\n");
 	}
 
 	HTMLElement highlight(final HTMLElement pre, final ILine line,
 			final int lineNr) throws IOException {
+		return highlight(pre, line, lineNr, 0);
+	}
+
+	HTMLElement highlight(final HTMLElement pre, final ILine line,
+			final int lineNr, final long executionCount) throws IOException {
 		final String style;
 		switch (line.getStatus()) {
 		case ICounter.NOT_COVERED:
@@ -116,35 +123,52 @@ final class SourceHighlighter {
 		switch (branches.getStatus()) {
 		case ICounter.NOT_COVERED:
 			return span(pre, lineId, style, Styles.BRANCH_NOT_COVERED,
-					"All %2$d branches missed.", branches);
+					"All %2$d branches missed.", branches, executionCount);
 		case ICounter.DIFF_NOT_COVERED:
 			return span(pre, lineId, style, Styles.DIFF_BRANCH_NOT_COVERED,
-					"All %2$d diff branches missed.", branches);
+					"All %2$d diff branches missed.", branches,
+					executionCount);
 		case ICounter.FULLY_COVERED:
 			return span(pre, lineId, style, Styles.BRANCH_FULLY_COVERED,
-					"All %2$d branches covered.", branches);
+					"All %2$d branches covered.", branches, executionCount);
 		case ICounter.PARTLY_COVERED:
 			return span(pre, lineId, style, Styles.BRANCH_PARTLY_COVERED,
-					"%1$d of %2$d branches missed.", branches);
+					"%1$d of %2$d branches missed.", branches, executionCount);
 		case ICounter.DIFF_FULLY_COVERED:
 			return span(pre, lineId, style, Styles.DIFF_BRANCH_FULLY_COVERED,
-					"All diff %2$d branches covered.", branches);
+					"All diff %2$d branches covered.", branches,
+					executionCount);
 		case ICounter.DIFF_PARTLY_COVERED:
 			return span(pre, lineId, style, Styles.DIFF_BRANCH_PARTLY_COVERED,
-					"%1$d of %2$d diff branches missed.", branches);
+					"%1$d of %2$d diff branches missed.", branches,
+					executionCount);
 		default:
-			return pre.span(style, lineId);
+			final HTMLElement span = pre.span(style, lineId);
+			if (executionCount != 0) {
+				span.attr("title", executions(executionCount));
+			}
+			return span;
 		}
 	}
 
 	private HTMLElement span(final HTMLElement parent, final String id,
 			final String style1, final String style2, final String title,
-			final ICounter branches) throws IOException {
+			final ICounter branches, final long executionCount)
+			throws IOException {
 		final HTMLElement span = parent.span(style1 + " " + style2, id);
 		final Integer missed = Integer.valueOf(branches.getMissedCount());
 		final Integer total = Integer.valueOf(branches.getTotalCount());
-		span.attr("title", String.format(locale, title, missed, total));
+		String text = String.format(locale, title, missed, total);
+		if (executionCount != 0) {
+			text += " " + executions(executionCount);
+		}
+		span.attr("title", text);
 		return span;
 	}
 
+	private String executions(final long executionCount) {
+		return String.format(locale, "Executed %,d times.",
+				Long.valueOf(executionCount));
+	}
+
 }
@@ -30,6 +30,9 @@ import org.jacoco.core.analysis.ISourceNode;
  */
 public final class XMLCoverageWriter {
 
+	private static final CounterEntity[] COUNTER_ENTITIES = CounterEntity
+			.values();
+
 	/**
 	 * Writes the structure of a given bundle.
 	 *
@@ -94,7 +97,7 @@ public final class XMLCoverageWriter {
 	 */
 	public static void writeCounters(final ICoverageNode node,
 			final ReportElement parent) throws IOException {
-		for (final CounterEntity counterEntity : CounterEntity.values()) {
+		for (final CounterEntity counterEntity : COUNTER_ENTITIES) {
 			final ICounter counter = node.getCounter(counterEntity);
 			if (counter.getTotalCount() > 0) {
 				parent.counter(counterEntity, counter);
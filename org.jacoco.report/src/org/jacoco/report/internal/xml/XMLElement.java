@@ -16,14 +16,12 @@ import static java.lang.String.format;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 
 /**
  * Simple API to create well formed XML streams with minimal memory overhead. A
  * {@link XMLElement} instance represents a single element in a XML document.
  * {@link XMLElement} can be used directly or might be subclassed for schema
- * specific convenience methods.
+ * specific convenience methods. Content is encoded with a {@link XMLWriter}.
  */
 public class XMLElement {
 
@@ -37,7 +35,7 @@ public class XMLElement {
 	private static final String DOCTYPE = "<!DOCTYPE %s PUBLIC \"%s\" \"%s\">";
 
 	/** Writer for content output */
-	protected final Writer writer;
+	protected final XMLWriter writer;
 
 	private final String name;
 
@@ -49,7 +47,7 @@ public class XMLElement {
 
 	private final boolean root;
 
-	private XMLElement(final Writer writer, final String name,
+	private XMLElement(final XMLWriter writer, final String name,
 			final boolean root) throws IOException {
 		this.writer = writer;
 		this.name = name;
@@ -81,7 +79,7 @@ public class XMLElement {
 			final String system, final boolean standalone,
 			final String encoding, final OutputStream output)
 			throws IOException {
-		this(new OutputStreamWriter(output, encoding), name, true);
+		this(new XMLWriter(output, encoding), name, true);
 		if (standalone) {
 			writer.write(format(HEADER_STANDALONE, encoding));
 		} else {
@@ -90,8 +88,7 @@ public class XMLElement {
 		if (pubId != null) {
 			writer.write(format(DOCTYPE, name, pubId, system));
 		}
-		writer.write('<');
-		writer.write(name);
+		writer.writeStartTag(name);
 	}
 
 	/**
@@ -110,8 +107,7 @@ public class XMLElement {
 			throws IOException {
 		this(parent.writer, name, false);
 		parent.addChildElement(this);
-		writer.write('<');
-		writer.write(name);
+		writer.writeStartTag(name);
 	}
 
 	private void addChildElement(final XMLElement child) throws IOException {
@@ -127,35 +123,11 @@ public class XMLElement {
 
 	private void finishOpenTag() throws IOException {
 		if (!openTagDone) {
-			writer.append('>');
+			writer.write('>');
 			openTagDone = true;
 		}
 	}
 
-	private void quote(final String text) throws IOException {
-		final int len = text.length();
-		for (int i = 0; i < len; i++) {
-			final char c = text.charAt(i);
-			switch (c) {
-			case '<':
-				writer.write("&lt;");
-				break;
-			case '>':
-				writer.write("&gt;");
-				break;
-			case '"':
-				writer.write("&quot;");
-				break;
-			case '&':
-				writer.write("&amp;");
-				break;
-			default:
-				writer.write(c);
-				break;
-			}
-		}
-	}
-
 	/**
 	 * Adds an attribute to this element. May only be called before an child
 	 * element is added or this element has been closed. The attribute value
@@ -175,15 +147,9 @@ public class XMLElement {
 		if (value == null) {
 			return;
 		}
-		if (closed || openTagDone) {
-			throw new IOException(
-					format("Element %s already closed.", this.name));
-		}
-		writer.write(' ');
-		writer.write(name);
-		writer.write('=');
-		writer.write('"');
-		quote(value);
+		checkAttr();
+		writer.writeAttributeName(name);
+		writer.writeEscaped(value);
 		writer.write('"');
 	}
 
@@ -202,7 +168,7 @@ public class XMLElement {
 	 */
 	public final void attr(final String name, final int value)
 			throws IOException {
-		attr(name, String.valueOf(value));
+		attr(name, (long) value);
 	}
 
 	/**
@@ -220,7 +186,17 @@ public class XMLElement {
 	 */
 	public final void attr(final String name, final long value)
 			throws IOException {
-		attr(name, String.valueOf(value));
+		checkAttr();
+		writer.writeAttributeName(name);
+		writer.writeNumber(value);
+		writer.write('"');
+	}
+
+	private void checkAttr() throws IOException {
+		if (closed || openTagDone) {
+			throw new IOException(
+					format("Element %s already closed.", this.name));
+		}
 	}
 
 	/**
@@ -241,7 +217,7 @@ public class XMLElement {
 		if (lastchild != null) {
 			lastchild.close();
 		}
-		quote(text);
+		writer.writeEscaped(text);
 	}
 
 	/**
@@ -270,13 +246,11 @@ public class XMLElement {
 				lastchild.close();
 			}
 			if (openTagDone) {
-				writer.write('<');
-				writer.write('/');
-				writer.write(name);
+				writer.writeEndTag(name);
 			} else {
 				writer.write('/');
+				writer.write('>');
 			}
-			writer.write('>');
 			closed = true;
 			openTagDone = true;
 			if (root) {
@@ -0,0 +1,447 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2021 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.report.internal.xml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Buffered output for XML documents which encodes characters directly into a
+ * byte buffer. Characters of the ASCII range are copied into the buffer without
+ * an encoder if the output encoding is compatible with ASCII, UTF-8 is always
+ * encoded without an encoder. The encoded byte sequences of element and
+ * attribute names are cached, numbers are written without creating strings.
+ */
+public class XMLWriter {
+
+	private static final int BUFFER_SIZE = 0x10000;
+
+	private static final String UTF_8 = "UTF-8";
+
+	private final OutputStream out;
+
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+
+	private int pos;
+
+	private final Charset charset;
+
+	private final CharsetEncoder encoder;
+
+	private final boolean utf8;
+
+	private final boolean ascii;
+
+	private final Map<String, Name> names = new HashMap<String, Name>();
+
+	/**
+	 * Creates a new writer for the given encoding.
+	 *
+	 * @param out
+	 *            output stream for the encoded document, will be closed with
+	 *            this writer
+	 * @param encoding
+	 *            character encoding
+	 * @throws UnsupportedEncodingException
+	 *             if the given encoding is not supported
+	 */
+	public XMLWriter(final OutputStream out, final String encoding)
+			throws UnsupportedEncodingException {
+		this.out = out;
+		try {
+			charset = Charset.forName(encoding);
+		} catch (final IllegalCharsetNameException e) {
+			throw new UnsupportedEncodingException(encoding);
+		} catch (final UnsupportedCharsetException e) {
+			throw new UnsupportedEncodingException(encoding);
+		}
+		this.encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.utf8 = UTF_8.equals(charset.name());
+		this.ascii = utf8 || isAsciiCompatible(charset);
+	}
+
+	private static boolean isAsciiCompatible(final Charset charset) {
+		final char[] chars = new char[0x80];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char) i;
+		}
+		try {
+			final ByteBuffer encoded = charset.newEncoder()
+					.encode(CharBuffer.wrap(chars));
+			if (encoded.remaining() != chars.length) {
+				return false;
+			}
+			for (final char c : chars) {
+				if (encoded.get() != c) {
+					return false;
+				}
+			}
+			return true;
+		} catch (final CharacterCodingException e) {
+			return false;
+		} catch (final UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes a single character.
+	 *
+	 * @param c
+	 *            character to write
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void write(final char c) throws IOException {
+		if (ascii && c < 0x80) {
+			if (pos == BUFFER_SIZE) {
+				flushBuffer();
+			}
+			buffer[pos++] = (byte) c;
+		} else {
+			write(String.valueOf(c));
+		}
+	}
+
+	/**
+	 * Writes the given text without escaping.
+	 *
+	 * @param text
+	 *            text to write
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void write(final String text) throws IOException {
+		write(text, false);
+	}
+
+	/**
+	 * Writes the given text and replaces characters with special meaning in
+	 * XML by entities.
+	 *
+	 * @param text
+	 *            text to write
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void writeEscaped(final String text) throws IOException {
+		write(text, true);
+	}
+
+	private void write(final String text, final boolean escape)
+			throws IOException {
+		final int len = text.length();
+		int i = 0;
+		while (i < len) {
+			final char c = text.charAt(i);
+			if (escape && writeEntity(c)) {
+				i++;
+			} else if (ascii && c < 0x80) {
+				if (pos == BUFFER_SIZE) {
+					flushBuffer();
+				}
+				buffer[pos++] = (byte) c;
+				i++;
+			} else {
+				int end = i + 1;
+				while (end < len && !isDirect(text.charAt(end), escape)) {
+					end++;
+				}
+				encode(text, i, end);
+				i = end;
+			}
+		}
+	}
+
+	private boolean isDirect(final char c, final boolean escape) {
+		if (escape && (c == '<' || c == '>' || c == '"' || c == '&')) {
+			return true;
+		}
+		return ascii && c < 0x80;
+	}
+
+	private boolean writeEntity(final char c) throws IOException {
+		switch (c) {
+		case '<':
+			write("&lt;", false);
+			return true;
+		case '>':
+			write("&gt;", false);
+			return true;
+		case '"':
+			write("&quot;", false);
+			return true;
+		case '&':
+			write("&amp;", false);
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Encodes the characters of the given range which can not be copied
+	 * directly to the buffer. For encodings compatible with ASCII the encoder
+	 * is reset to its initial state after every range, as the following ASCII
+	 * characters are copied directly.
+	 */
+	private void encode(final String text, final int start, final int end)
+			throws IOException {
+		if (utf8) {
+			encodeUTF8(text, start, end);
+			return;
+		}
+		final CharBuffer in = CharBuffer.wrap(text, start, end);
+		encode(in, ascii);
+		if (in.hasRemaining()) {
+			// Unpaired high surrogate at the end of the range
+			encode(CharBuffer.wrap("?"), false);
+		}
+	}
+
+	private void encode(final CharBuffer in, final boolean endOfInput)
+			throws IOException {
+		byteBuffer.position(pos);
+		while (encoder.encode(in, byteBuffer, endOfInput).isOverflow()) {
+			pos = byteBuffer.position();
+			flushBuffer();
+			byteBuffer.position(0);
+		}
+		if (endOfInput) {
+			while (encoder.flush(byteBuffer).isOverflow()) {
+				pos = byteBuffer.position();
+				flushBuffer();
+				byteBuffer.position(0);
+			}
+			encoder.reset();
+		}
+		pos = byteBuffer.position();
+	}
+
+	private void encodeUTF8(final String text, final int start, final int end)
+			throws IOException {
+		for (int i = start; i < end; i++) {
+			if (BUFFER_SIZE - pos < 4) {
+				flushBuffer();
+			}
+			final char c = text.charAt(i);
+			if (c < 0x80) {
+				buffer[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[pos++] = (byte) (0xc0 | c >> 6);
+				buffer[pos++] = (byte) (0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c) && i + 1 < end
+					&& Character.isLowSurrogate(text.charAt(i + 1))) {
+				final int cp = Character.toCodePoint(c, text.charAt(++i));
+				buffer[pos++] = (byte) (0xf0 | cp >> 18);
+				buffer[pos++] = (byte) (0x80 | cp >> 12 & 0x3f);
+				buffer[pos++] = (byte) (0x80 | cp >> 6 & 0x3f);
+				buffer[pos++] = (byte) (0x80 | cp & 0x3f);
+			} else if (c >= Character.MIN_SURROGATE
+					&& c <= Character.MAX_SURROGATE) {
+				// Same replacement as the JDK encoder for unpaired surrogates
+				buffer[pos++] = '?';
+			} else {
+				buffer[pos++] = (byte) (0xe0 | c >> 12);
+				buffer[pos++] = (byte) (0x80 | c >> 6 & 0x3f);
+				buffer[pos++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+	}
+
+	/**
+	 * Writes the decimal representation of the given number.
+	 *
+	 * @param value
+	 *            number to write
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void writeNumber(final long value) throws IOException {
+		if (!ascii || value == Long.MIN_VALUE) {
+			write(String.valueOf(value), false);
+			return;
+		}
+		if (BUFFER_SIZE - pos < 20) {
+			flushBuffer();
+		}
+		long v = value;
+		if (v < 0) {
+			buffer[pos++] = '-';
+			v = -v;
+		}
+		int digits = 1;
+		for (long limit = 10; digits < 19 && v >= limit; limit *= 10) {
+			digits++;
+		}
+		int i = pos + digits;
+		pos = i;
+		do {
+			buffer[--i] = (byte) ('0' + v % 10);
+			v /= 10;
+		} while (v != 0);
+	}
+
+	/**
+	 * Writes the start of an opening tag with the given element name.
+	 *
+	 * @param name
+	 *            element name
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void writeStartTag(final String name) throws IOException {
+		if (ascii) {
+			write(getName(name).start);
+		} else {
+			write('<');
+			write(name, false);
+		}
+	}
+
+	/**
+	 * Writes a closing tag with the given element name.
+	 *
+	 * @param name
+	 *            element name
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void writeEndTag(final String name) throws IOException {
+		if (ascii) {
+			write(getName(name).end);
+		} else {
+			write("</", false);
+			write(name, false);
+			write('>');
+		}
+	}
+
+	/**
+	 * Writes the given attribute name including the opening quote of the
+	 * value.
+	 *
+	 * @param name
+	 *            attribute name
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void writeAttributeName(final String name) throws IOException {
+		if (ascii) {
+			write(getName(name).attribute);
+		} else {
+			write(' ');
+			write(name, false);
+			write("=\"", false);
+		}
+	}
+
+	/**
+	 * Returns the cached byte sequences for the given name. Only used for
+	 * encodings compatible with ASCII, which are reset after every encoded
+	 * range, so byte sequences do not depend on the encoder state.
+	 */
+	private Name getName(final String name) {
+		Name n = names.get(name);
+		if (n == null) {
+			n = new Name(toBytes("<" + name), toBytes("</" + name + ">"),
+					toBytes(" " + name + "=\""));
+			names.put(name, n);
+		}
+		return n;
+	}
+
+	private byte[] toBytes(final String text) {
+		return text.getBytes(charset);
+	}
+
+	private void write(final byte[] bytes) throws IOException {
+		if (BUFFER_SIZE - pos < bytes.length) {
+			flushBuffer();
+			if (bytes.length > BUFFER_SIZE) {
+				out.write(bytes);
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+		pos += bytes.length;
+	}
+
+	private void flushBuffer() throws IOException {
+		if (pos > 0) {
+			out.write(buffer, 0, pos);
+			pos = 0;
+		}
+	}
+
+	/**
+	 * Writes all buffered content to the underlying output stream and flushes
+	 * it.
+	 *
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	/**
+	 * Writes all buffered content and closes the underlying output stream.
+	 *
+	 * @throws IOException
+	 *             in case of problems with the underlying output
+	 */
+	public void close() throws IOException {
+		try {
+			if (!ascii) {
+				encode(CharBuffer.allocate(0), true);
+			}
+			flushBuffer();
+		} finally {
+			out.close();
+		}
+	}
+
+	private static class Name {
+
+		final byte[] start;
+
+		final byte[] end;
+
+		final byte[] attribute;
+
+		Name(final byte[] start, final byte[] end, final byte[] attribute) {
+			this.start = start;
+			this.end = end;
+			this.attribute = attribute;
+		}
+
+	}
+
+}